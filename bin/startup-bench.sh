@@ -0,0 +1,77 @@
+#! /bin/bash
+
+# Compares the startup time of a module with and without a class
+# data sharing archive, both when run by `ceylon run` and as a fat jar.
+#
+# Usage: startup-bench.sh [--rep <repo>]... <module/version> [runs]
+#
+# Running this script will:
+#
+# * Create the archive of the `ceylon` command with `ceylon run --cds-archive`
+#   (replacing any previous one)
+# * Create a fat jar of the module, with its archive, in a temporary folder
+# * Time `runs` launches (5 by default) of each, with and without the archive
+#
+# It needs JAVA_HOME to point to Java 11 or later, and a distribution
+# (such as dist/dist) with the `ceylon` command on the PATH or in CEYLON.
+
+#set -x
+
+CEYLON=${CEYLON:-ceylon}
+
+REPS=()
+while [ "$1" = "--rep" ]; do
+    REPS+=("--rep" "$2")
+    shift 2
+done
+MODULE=$1
+RUNS=${2:-5}
+
+if [ -z "$MODULE" ]; then
+    echo "Usage: $0 [--rep <repo>]... <module/version> [runs]" >&2
+    exit 1
+fi
+if [ -z "$JAVA_HOME" ]; then
+    echo "JAVA_HOME must be set" >&2
+    exit 1
+fi
+
+TMP=$(mktemp -d)
+trap 'rm -rf "$TMP"' EXIT
+
+# prints the average wall time of RUNS runs of the given command, in ms
+function measure() {
+    local total=0
+    for ((i = 0; i < RUNS; i++)); do
+        local start=$(date +%s%N)
+        "$@" > /dev/null 2>&1 || { echo "failed: $*" >&2; exit 1; }
+        local end=$(date +%s%N)
+        total=$((total + (end - start) / 1000000))
+    done
+    echo $((total / RUNS))
+}
+
+function report() {
+    local plain=$2
+    local cds=$3
+    printf "%-12s %8d ms %8d ms %7d%%\n" "$1" "$plain" "$cds" $(((plain - cds) * 100 / plain))
+}
+
+echo "Creating the archive of the ceylon command..."
+"$CEYLON" run "${REPS[@]}" --cds-archive "$MODULE" > /dev/null || exit 1
+echo "Creating the fat jar and its archive..."
+"$CEYLON" fat-jar "${REPS[@]}" --cds --out "$TMP/bench.jar" "$MODULE" > /dev/null || exit 1
+
+# warm up the file system cache
+"$CEYLON" run "${REPS[@]}" "$MODULE" > /dev/null 2>&1
+
+# the ceylon command only adds its options when PRESERVE_JAVA_OPTS is not set
+RUN_PLAIN=$(PRESERVE_JAVA_OPTS=true measure "$CEYLON" run "${REPS[@]}" "$MODULE")
+RUN_CDS=$(measure "$CEYLON" run "${REPS[@]}" "$MODULE")
+JAR_PLAIN=$(measure "$JAVA_HOME/bin/java" -jar "$TMP/bench.jar")
+JAR_CDS=$(measure "$JAVA_HOME/bin/java" -XX:SharedArchiveFile="$TMP/bench.jsa" -jar "$TMP/bench.jar")
+
+echo
+printf "%-12s %11s %11s %8s\n" "" "plain" "cds" "gain"
+report "ceylon run" "$RUN_PLAIN" "$RUN_CDS"
+report "fat jar" "$JAR_PLAIN" "$JAR_CDS"
@@ -122,6 +122,20 @@ for %%x in (%*) do (
 
 set "JAVA_OPTS=%PREPEND_JAVA_OPTS% %JAVA_OPTS%"
 
+rem Use the class data sharing archive created by "ceylon run --cds-archive"
+rem if it was created for this Java and this bootstrap
+set "CDS=%USERPROFILE%\.ceylon\cds\ceylon.jsa"
+if NOT "%PRESERVE_JAVA_OPTS%" == "true" if exist "%CDS%" if exist "%CDS%.launcher" (
+    < "%CDS%.launcher" (
+        set /p CDS_JAVA_HOME=
+        set /p CDS_BOOTSTRAP=
+        set /p CDS_OPTS=
+    )
+    if "!CDS_JAVA_HOME!" == "%JAVA_HOME%" if "!CDS_BOOTSTRAP!" == "%LIB%\ceylon-bootstrap.jar" (
+        set "JAVA_OPTS=!CDS_OPTS! !JAVA_OPTS!"
+    )
+)
+
 "%JAVA%" ^
     %JAVA_OPTS% ^
     -jar "%LIB%\ceylon-bootstrap.jar" ^
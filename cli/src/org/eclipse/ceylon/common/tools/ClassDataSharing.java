@@ -0,0 +1,250 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.common.tools;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.ProcessBuilder.Redirect;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.eclipse.ceylon.common.FileUtil;
+import org.eclipse.ceylon.common.OSUtil;
+
+/**
+ * Creates class data sharing (AppCDS) archives, which let a JVM map
+ * the classes a previous run loaded instead of loading, parsing and
+ * verifying them again.
+ *
+ * An archive is created from a training run of the program: from
+ * Java 13 the JVM dumps the classes it loaded into a dynamic archive
+ * when it exits, while with Java 10 to 12 it dumps the list of classes
+ * it loaded, from which a second JVM creates the archive. Either way
+ * the archive only works for the same Java installation and class path,
+ * and older Java versions cannot create one.
+ *
+ * The training run is stopped after
+ * {@code ceylon.cds.training.timeout} seconds (60 by default), for
+ * programs which do not exit on their own, such as services.
+ */
+public class ClassDataSharing {
+
+    /** The archive used by the {@code ceylon} command */
+    public static final String LAUNCHER_ARCHIVE = "cds/ceylon.jsa";
+    /** Next to the launcher archive, with what the launcher checks before using it */
+    public static final String LAUNCHER_SUFFIX = ".launcher";
+
+    private static final String TIMEOUT_PROPERTY = "ceylon.cds.training.timeout";
+
+    /**
+     * Returns true if the running JVM can create and use archives.
+     */
+    public static boolean isSupported() {
+        return getJavaVersion() >= 10;
+    }
+
+    /**
+     * Returns the JVM options which make a JVM use the given archive.
+     */
+    public static List<String> getOptions(File archive) {
+        List<String> options = new ArrayList<String>(2);
+        if (getJavaVersion() == 10) {
+            options.add("-XX:+UseAppCDS");
+        }
+        options.add("-XX:SharedArchiveFile=" + archive.getPath());
+        return options;
+    }
+
+    /**
+     * Returns the options the running JVM was started with, except
+     * for those about class data sharing, to start another one with.
+     */
+    public static List<String> getJvmOptions() {
+        List<String> options = new ArrayList<String>();
+        for (String option : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (!option.startsWith("-Xshare:")
+                    && !option.equals("-XX:+UseAppCDS")
+                    && !option.startsWith("-XX:SharedArchiveFile=")
+                    && !option.startsWith("-XX:SharedClassListFile=")
+                    && !option.startsWith("-XX:ArchiveClassesAtExit=")
+                    && !option.startsWith("-XX:DumpLoadedClassList=")) {
+                options.add(option);
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Returns the archive used by the {@code ceylon} command.
+     */
+    public static File getLauncherArchive() {
+        // the launcher scripts do not know about ceylon.user.dir
+        return new File(FileUtil.getDefaultUserDir(), LAUNCHER_ARCHIVE);
+    }
+
+    /**
+     * Records, next to the given archive, the Java installation and
+     * bootstrap jar it was created for and the options which make the
+     * {@code ceylon} command use it. The launcher scripts only add these
+     * options when it runs with the same {@code JAVA_HOME} and bootstrap
+     * jar, since the JVM refuses, or even fails to start with, archives
+     * created for another one.
+     */
+    public static void writeLauncherFile(File archive, String bootstrap) throws IOException {
+        String javaHome = System.getenv("JAVA_HOME");
+        StringBuilder options = new StringBuilder();
+        for (String option : getOptions(archive)) {
+            if (options.length() > 0)
+                options.append(' ');
+            options.append(option);
+        }
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(archive.getPath() + LAUNCHER_SUFFIX))) {
+            writer.write((javaHome != null ? javaHome : "") + "\n");
+            writer.write(bootstrap + "\n");
+            writer.write(options + "\n");
+        }
+    }
+
+    /**
+     * Creates the given archive from a training run of the given
+     * program, with the running Java installation.
+     *
+     * @param archive the archive to create
+     * @param options the JVM options to run with
+     * @param classPath the class path of the program, which it must
+     * later be run with
+     * @param mainClass the main class of the program, or null to run
+     * the class path as an executable jar
+     * @param args the arguments of the program
+     * @param out where the output of the training run goes
+     */
+    public static void createArchive(File archive, List<String> options, String classPath, String mainClass,
+            List<String> args, Appendable out) throws IOException, InterruptedException {
+        if (!isSupported()) {
+            throw new IOException("Class data sharing archives require Java 10 or later");
+        }
+        FileUtil.mkdirs(archive.getAbsoluteFile().getParentFile());
+        archive.delete();
+        if (getJavaVersion() >= 13) {
+            train(options, Arrays.asList("-XX:ArchiveClassesAtExit=" + archive.getPath()),
+                    classPath, mainClass, args, out);
+            if (!archive.isFile()) {
+                throw new IOException("The training run did not create the archive " + archive);
+            }
+            return;
+        }
+        File classList = File.createTempFile("ceylon-", ".classlist");
+        try {
+            List<String> trainingOptions = new ArrayList<String>();
+            if (getJavaVersion() == 10) {
+                trainingOptions.add("-XX:+UseAppCDS");
+            }
+            trainingOptions.add("-Xshare:off");
+            trainingOptions.add("-XX:DumpLoadedClassList=" + classList.getPath());
+            train(options, trainingOptions, classPath, mainClass, args, out);
+            if (classList.length() == 0) {
+                throw new IOException("The training run did not load any class");
+            }
+            List<String> dump = new ArrayList<String>();
+            dump.add(getJava());
+            dump.addAll(options);
+            dump.addAll(getOptions(archive));
+            dump.add("-Xshare:dump");
+            dump.add("-XX:SharedClassListFile=" + classList.getPath());
+            dump.add("-cp");
+            dump.add(classPath);
+            ProcessBuilder processBuilder = new ProcessBuilder(dump);
+            processBuilder.redirectErrorStream(true);
+            Process process = processBuilder.start();
+            StringBuilder output = new StringBuilder();
+            copy(process, output);
+            if (process.waitFor() != 0 || !archive.isFile()) {
+                throw new IOException("Failed to create the archive " + archive + ":\n" + output);
+            }
+        } finally {
+            classList.delete();
+        }
+    }
+
+    private static void train(List<String> options, List<String> trainingOptions, String classPath, String mainClass,
+            List<String> args, Appendable out) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<String>();
+        command.add(getJava());
+        command.addAll(options);
+        command.addAll(trainingOptions);
+        if (mainClass != null) {
+            command.add("-cp");
+            command.add(classPath);
+            command.add(mainClass);
+        } else {
+            command.add("-jar");
+            command.add(classPath);
+        }
+        command.addAll(args);
+        ProcessBuilder processBuilder = new ProcessBuilder(command);
+        processBuilder.redirectError(Redirect.INHERIT);
+        processBuilder.redirectInput(Redirect.INHERIT);
+        final Process process = processBuilder.start();
+        Timer timer = new Timer(true);
+        // the JVM still writes the archive or class list when stopped
+        timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                process.destroy();
+            }
+        }, Long.getLong(TIMEOUT_PROPERTY, 60) * 1000);
+        try {
+            copy(process, out);
+            process.waitFor();
+        } finally {
+            timer.cancel();
+        }
+    }
+
+    private static void copy(Process process, Appendable out) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // what the JVM says about classes it cannot list
+                if (line.startsWith("skip writing class "))
+                    continue;
+                out.append(line).append(System.lineSeparator());
+            }
+        }
+    }
+
+    private static String getJava() {
+        File java = new File(new File(System.getProperty("java.home"), "bin"),
+                OSUtil.isWindows() ? "java.exe" : "java");
+        return java.getPath();
+    }
+
+    private static int getJavaVersion() {
+        String version = System.getProperty("java.specification.version");
+        String[] parts = version.split("\\.");
+        try {
+            int major = Integer.parseInt(parts[0]);
+            if (major == 1 && parts.length > 1)
+                return Integer.parseInt(parts[1]);
+            return major;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
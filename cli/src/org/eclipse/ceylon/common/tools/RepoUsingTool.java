@@ -675,6 +675,14 @@ public abstract class RepoUsingTool extends CeylonBaseTool {
         }
     }
 
+    protected Properties getMetaInfDependencies(File carFile) {
+        try {
+            return JarUtils.getMetaInfProperties(carFile, "META-INF/dependencies.txt");
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
     protected boolean isModuleArtifactOutOfDate(File artifile, String name, ModuleQuery.Type type) throws IOException {
         long oldestArtifact;
         if (type == ModuleQuery.Type.JVM) {
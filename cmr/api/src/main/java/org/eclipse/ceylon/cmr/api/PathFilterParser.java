@@ -59,12 +59,24 @@ public final class PathFilterParser {
     private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
 
     public static PathFilter parse(String filter) throws IOException {
+        String source = filter;
         if(filter.startsWith("<exports>") || filter.startsWith("<filter>")){
             // JBoss modules wants a namespace for validation
             int end = filter.indexOf('>');
             filter = filter.substring(0, end) + " xmlns=\"urn:jboss:module:1.0\"" + filter.substring(end);
         }
-        return parse(new ByteArrayInputStream(filter.getBytes()));
+        ModulesPathFilter pathFilter = (ModulesPathFilter) parse(new ByteArrayInputStream(filter.getBytes()));
+        pathFilter.source = source;
+        return pathFilter;
+    }
+
+    /**
+     * Returns the string the given filter was parsed from by
+     * {@link #parse(String)}, so that it can be parsed again,
+     * or null if it was not.
+     */
+    public static String getSource(PathFilter filter) {
+        return filter instanceof ModulesPathFilter ? ((ModulesPathFilter) filter).source : null;
     }
 
     private static void setIfSupported(XMLInputFactory inputFactory, String property, Object value) {
@@ -101,6 +113,7 @@ public final class PathFilterParser {
     private static class ModulesPathFilter implements PathFilter {
 
         List<FilterRule> rules = new LinkedList<FilterRule>();
+        String source;
         
         private ModulesPathFilter() {
         }
@@ -51,7 +51,11 @@ public abstract class AbstractCeylonArtifactResult extends AbstractArtifactResul
     protected ModuleInfo resolve(){
         if(!resolved){
             Overrides overrides = ((CmrRepository)repository()).getRoot().getService(Overrides.class);
-            this.infos = Configuration.getResolvers(manager).resolve(this, overrides);
+            if (manager instanceof RootRepositoryManager) {
+                this.infos = ((RootRepositoryManager) manager).resolveModuleInfo(this, overrides);
+            } else {
+                this.infos = Configuration.getResolvers(manager).resolve(this, overrides);
+            }
             resolved = true;
         }
         return infos;
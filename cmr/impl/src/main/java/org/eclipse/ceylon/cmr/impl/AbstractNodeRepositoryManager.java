@@ -15,10 +15,20 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.ceylon.cmr.api.AbstractRepositoryManager;
 import org.eclipse.ceylon.cmr.api.ArtifactContext;
@@ -33,6 +43,7 @@ import org.eclipse.ceylon.cmr.spi.ContentStore;
 import org.eclipse.ceylon.cmr.spi.Node;
 import org.eclipse.ceylon.cmr.spi.OpenNode;
 import org.eclipse.ceylon.common.FileUtil;
+import org.eclipse.ceylon.common.config.DefaultToolOptions;
 import org.eclipse.ceylon.common.log.Logger;
 import org.eclipse.ceylon.model.cmr.ArtifactResult;
 import org.eclipse.ceylon.model.cmr.RepositoryException;
@@ -55,6 +66,9 @@ public abstract class AbstractNodeRepositoryManager extends AbstractRepositoryMa
     protected CmrRepository cache; // cache root
     protected boolean addCacheAsRoot; // do we treat cache as repo
     
+    private int lookupThreads = DefaultToolOptions.getDefaultLookupThreads(); // 1 means sequential lookups
+    private ExecutorService lookupExecutor;
+
     public AbstractNodeRepositoryManager(Logger log, Overrides overrides) {
         this(log, overrides, true);
     }
@@ -63,6 +77,53 @@ public abstract class AbstractNodeRepositoryManager extends AbstractRepositoryMa
         super(log, overrides == null ? Overrides.getDistOverrides(upgradeDist) : overrides);
     }
 
+    /**
+     * Sets the number of threads used to query the repositories
+     * concurrently. With a single thread, the default, repositories
+     * are queried one after the other.
+     */
+    public synchronized void setLookupThreads(int lookupThreads) {
+        this.lookupThreads = lookupThreads;
+        if (lookupExecutor != null) {
+            lookupExecutor.shutdown();
+            lookupExecutor = null;
+        }
+    }
+
+    public synchronized int getLookupThreads() {
+        return lookupThreads;
+    }
+
+    private synchronized ExecutorService getLookupExecutor() {
+        if (lookupThreads <= 1 || Thread.currentThread() instanceof LookupThread) {
+            return null;
+        }
+        if (lookupExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(lookupThreads, lookupThreads,
+                    30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    return new LookupThread(r);
+                }
+            });
+            // don't keep idle threads around, we don't know when we're done
+            executor.allowCoreThreadTimeOut(true);
+            lookupExecutor = executor;
+        }
+        return lookupExecutor;
+    }
+
+    /**
+     * Lookups started from one of these threads are never fanned out
+     * again, so that we can't run out of threads waiting for each other.
+     */
+    private static final class LookupThread extends Thread {
+        LookupThread(Runnable r) {
+            super(r, "ceylon-cmr-lookup");
+            setDaemon(true);
+        }
+    }
+
     public synchronized void setAddCacheAsRoot(boolean addCacheAsRoot) {
         this.addCacheAsRoot = addCacheAsRoot;
         if (addCacheAsRoot == false && cache != null) {
@@ -437,12 +498,26 @@ public abstract class AbstractNodeRepositoryManager extends AbstractRepositoryMa
     private Node fromRepositories(Iterable<CmrRepository> repositories, ArtifactContext context, boolean addLeaf) {
         log.debug("Looking for " + context);
 
+        List<CmrRepository> candidates = new ArrayList<>();
         for (CmrRepository repository : repositories) {
-            log.debug(" Looking in " + repository);
             if(!repository.supportsNamespace(context.getNamespace())){
-                log.debug(" -> does not support namespace "+context.getNamespace());
+                log.debug(" " + repository + " does not support namespace "+context.getNamespace());
+                continue;
+            }
+            if(isKnownMissing(repository, context)){
+                log.debug(" " + repository + " is known not to have " + context);
                 continue;
             }
+            candidates.add(repository);
+        }
+
+        ExecutorService executor = candidates.size() > 1 ? getLookupExecutor() : null;
+        if (executor != null) {
+            return fromRepositoriesConcurrently(executor, candidates, context, addLeaf);
+        }
+
+        for (CmrRepository repository : candidates) {
+            log.debug(" Looking in " + repository);
             Node child = fromRepository(repository, context, addLeaf);
             if (child != null){
                 log.debug(" -> Found");
@@ -456,6 +531,126 @@ public abstract class AbstractNodeRepositoryManager extends AbstractRepositoryMa
         return null;
     }
 
+    /**
+     * Queries all the repositories at once, but still returns the result
+     * of the first repository in the list which has the artifact. As soon
+     * as we have it, lookups which did not start yet are cancelled, and
+     * the results of those still running are ignored.
+     */
+    private Node fromRepositoriesConcurrently(ExecutorService executor, List<CmrRepository> repositories, 
+            ArtifactContext context, final boolean addLeaf) {
+        List<Future<Node>> lookups = new ArrayList<>(repositories.size());
+        for (final CmrRepository repository : repositories) {
+            // each lookup gets its own copy since they may modify it
+            final ArtifactContext lookupContext = context.copy();
+            lookups.add(executor.submit(new Callable<Node>() {
+                @Override
+                public Node call() throws Exception {
+                    LookupCaching.enable();
+                    try {
+                        return fromRepository(repository, lookupContext, addLeaf);
+                    } finally {
+                        LookupCaching.disable();
+                    }
+                }
+            }));
+        }
+        try {
+            for (int i = 0; i < lookups.size(); i++) {
+                log.debug(" Looking in " + repositories.get(i));
+                Node child = waitFor(lookups.get(i));
+                if (child != null){
+                    log.debug(" -> Found");
+                    return child;
+                }
+                log.debug("  -> Not Found");
+            }
+        } finally {
+            for (Future<Node> lookup : lookups) {
+                lookup.cancel(false);
+            }
+        }
+
+        log.debug(" -> Artifact " + context + " not found in any repository");
+        return null;
+    }
+
+    private static <T> T waitFor(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RepositoryException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RepositoryException(cause);
+        }
+    }
+
+    /**
+     * Resolves the whole dependency graph of the given artifact, breadth-first,
+     * looking up all the dependencies found at a given depth in parallel. This
+     * is a no-op unless concurrent lookups are enabled. Lookup failures are
+     * ignored here: they will be reported by whoever then walks the graph.
+     */
+    public void resolveDependencies(ArtifactResult result) {
+        ExecutorService executor = getLookupExecutor();
+        if (result == null || executor == null) {
+            return;
+        }
+        Set<String> seen = new HashSet<>();
+        seen.add(result.name() + "/" + result.version());
+        List<ArtifactResult> level = Collections.singletonList(result);
+        while (!level.isEmpty()) {
+            List<Future<List<ArtifactResult>>> lookups = new ArrayList<>(level.size());
+            for (final ArtifactResult current : level) {
+                lookups.add(executor.submit(new Callable<List<ArtifactResult>>() {
+                    @Override
+                    public List<ArtifactResult> call() throws Exception {
+                        try {
+                            // forces the lookup of lazy results
+                            current.artifact();
+                            return current.dependencies();
+                        } catch (RuntimeException e) {
+                            return Collections.emptyList();
+                        }
+                    }
+                }));
+            }
+            List<ArtifactResult> next = new ArrayList<>();
+            for (Future<List<ArtifactResult>> lookup : lookups) {
+                for (ArtifactResult dependency : waitFor(lookup)) {
+                    if (seen.add(dependency.name() + "/" + dependency.version())) {
+                        next.add(dependency);
+                    }
+                }
+            }
+            level = next;
+        }
+    }
+
+    @Override
+    public File[] resolve(ArtifactContext context) throws RepositoryException {
+        final ArtifactResult result = getArtifactResult(context);
+        resolveDependencies(result);
+        return flatten(result);
+    }
+
+    /**
+     * Returns true if we already know, from a previous lookup, that the
+     * given repository does not have the artifact, so that we don't even
+     * need to ask.
+     */
+    protected boolean isKnownMissing(CmrRepository repository, ArtifactContext context) {
+        return false;
+    }
+
     protected Node fromRepository(CmrRepository repository, ArtifactContext context, boolean addLeaf) {
         log.debug(" Trying repository " + repository.getDisplayString());
         Node node = repository.findParent(context);
@@ -503,12 +698,20 @@ public abstract class AbstractNodeRepositoryManager extends AbstractRepositoryMa
         for (CmrRepository root : getRepositories()) {
             if (query.getNamespace() == null
                     || query.getNamespace().equals(root.getNamespace())) {
-                root.completeVersions(query, result);
+                completeVersions(root, query, result);
             }
         }
         return result;
     }
 
+    /**
+     * Adds the versions of the given repository to the result. Versions
+     * already in the result, from a repository before it, are kept.
+     */
+    protected void completeVersions(CmrRepository repository, ModuleVersionQuery query, ModuleVersionResult result) {
+        repository.completeVersions(query, result);
+    }
+
     @Override
     public ModuleSearchResult searchModules(ModuleQuery query) {
         if (!query.isPaging()) {
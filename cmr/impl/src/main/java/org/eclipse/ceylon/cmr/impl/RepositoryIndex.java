@@ -0,0 +1,418 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.cmr.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.ceylon.cmr.api.ModuleDependencyInfo;
+import org.eclipse.ceylon.cmr.api.ModuleInfo;
+import org.eclipse.ceylon.cmr.api.ModuleVersionArtifact;
+import org.eclipse.ceylon.cmr.api.ModuleVersionDetails;
+import org.eclipse.ceylon.common.Backends;
+import org.eclipse.ceylon.common.FileUtil;
+import org.eclipse.ceylon.model.cmr.ModuleScope;
+
+/**
+ * What we learnt from previous lookups, kept in a single file of the cache
+ * repository so that it is shared by all processes: which remote repositories
+ * do not have an artifact, the versions of a module found in a repository,
+ * and the module info read from an artifact. Each entry has a stamp, which
+ * the {@link RootRepositoryManager} uses to decide whether it is still valid:
+ * the time it was written, or a signature of the files it was read from.
+ *
+ * The file is only ever appended to, one entry at a time, and the last entry
+ * for a key wins. We read what other processes appended whenever the file
+ * grows, and rewrite it with only the latest entries once it gets too big.
+ * Since this is only a cache, anything we cannot read is ignored.
+ */
+class RepositoryIndex {
+
+    static final String FILE_NAME = ".index";
+
+    /** Past this size, the file is rewritten with the latest entries only */
+    private static final long MAX_SIZE = 4 * 1024 * 1024;
+
+    private static final int VERSION = 1;
+
+    private static final byte MISSING = 1;
+    private static final byte VERSIONS = 2;
+    private static final byte MODULE_INFO = 3;
+
+    static final class Entry {
+        final long stamp;
+        final Object value;
+
+        Entry(long stamp, Object value) {
+            this.stamp = stamp;
+            this.value = value;
+        }
+    }
+
+    private final File file;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    /** How much of the file we have read */
+    private long read;
+
+    RepositoryIndex(File root) {
+        this.file = new File(root, FILE_NAME);
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * The remote repositories known not to have the given artifact, and
+     * when we last asked them, or null.
+     */
+    Entry getMissing(String artifact) {
+        return get(MISSING, artifact, Set.class);
+    }
+
+    void putMissing(String artifact, long time, Collection<String> repositories) {
+        put(MISSING, artifact, new Entry(time, new HashSet<String>(repositories)));
+    }
+
+    Entry getVersions(String query) {
+        return get(VERSIONS, query, List.class);
+    }
+
+    void putVersions(String query, long stamp, Collection<ModuleVersionDetails> versions) {
+        put(VERSIONS, query, new Entry(stamp, new ArrayList<ModuleVersionDetails>(versions)));
+    }
+
+    Entry getModuleInfo(String artifact) {
+        return get(MODULE_INFO, artifact, ModuleInfo.class);
+    }
+
+    void putModuleInfo(String artifact, long stamp, ModuleInfo info) {
+        put(MODULE_INFO, artifact, new Entry(stamp, info));
+    }
+
+    private Entry get(byte kind, String key, Class<?> type) {
+        refresh();
+        Entry entry = entries.get(kind + key);
+        return entry != null && type.isInstance(entry.value) ? entry : null;
+    }
+
+    private void put(byte kind, String key, Entry entry) {
+        entries.put(kind + key, entry);
+        try {
+            byte[] record = record(kind, key, entry);
+            synchronized (this) {
+                if (file.length() + record.length > MAX_SIZE) {
+                    compact();
+                } else {
+                    FileUtil.mkdirs(file.getParentFile());
+                    // a single write, so that concurrent appends do not mix
+                    try (FileOutputStream out = new FileOutputStream(file, true)) {
+                        out.write(record);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // we will just have to ask again
+        }
+    }
+
+    /**
+     * Reads the entries other processes appended since we last looked.
+     */
+    private synchronized void refresh() {
+        long length = file.length();
+        if (length == read) {
+            return;
+        }
+        if (length < read) {
+            // it was rewritten
+            entries.clear();
+            read = 0;
+        }
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            in.seek(read);
+            while (true) {
+                int size;
+                byte[] record;
+                try {
+                    size = in.readInt();
+                    if (size <= 0 || size > MAX_SIZE) {
+                        break;
+                    }
+                    record = new byte[size];
+                    in.readFully(record);
+                } catch (EOFException e) {
+                    // the rest is still being written
+                    break;
+                }
+                read = in.getFilePointer();
+                try {
+                    readRecord(record);
+                } catch (IOException | RuntimeException e) {
+                    // written by another version, or damaged
+                }
+            }
+        } catch (IOException e) {
+            // nothing there yet
+        }
+    }
+
+    /**
+     * Rewrites the file with the entries we know about, which are the latest.
+     */
+    private void compact() throws IOException {
+        refresh();
+        File tmp = File.createTempFile(FILE_NAME, ".tmp", file.getParentFile());
+        try {
+            try (FileOutputStream out = new FileOutputStream(tmp)) {
+                long size = 0;
+                for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                    String key = entry.getKey();
+                    byte kind = (byte) (key.charAt(0) - '0');
+                    byte[] record = record(kind, key.substring(1), entry.getValue());
+                    // leave room to grow, even if we forget some
+                    size += record.length;
+                    if (size > MAX_SIZE / 2) {
+                        break;
+                    }
+                    out.write(record);
+                }
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            read = file.length();
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    private static byte[] record(byte kind, String key, Entry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        out.writeByte(VERSION);
+        out.writeByte(kind);
+        writeString(out, key);
+        out.writeLong(entry.stamp);
+        switch (kind) {
+        case MISSING:
+            writeStrings(out, (Set<?>) entry.value);
+            break;
+        case VERSIONS:
+            List<?> versions = (List<?>) entry.value;
+            out.writeInt(versions.size());
+            for (Object version : versions) {
+                writeDetails(out, (ModuleVersionDetails) version);
+            }
+            break;
+        case MODULE_INFO:
+            writeModuleInfo(out, (ModuleInfo) entry.value);
+            break;
+        }
+        out.flush();
+        byte[] record = bytes.toByteArray();
+        int size = record.length - 4;
+        record[0] = (byte) (size >>> 24);
+        record[1] = (byte) (size >>> 16);
+        record[2] = (byte) (size >>> 8);
+        record[3] = (byte) size;
+        return record;
+    }
+
+    private void readRecord(byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        if (in.readByte() != VERSION) {
+            return;
+        }
+        byte kind = in.readByte();
+        String key = readString(in);
+        long stamp = in.readLong();
+        Object value;
+        switch (kind) {
+        case MISSING:
+            value = new HashSet<String>(readStrings(in));
+            break;
+        case VERSIONS:
+            int count = in.readInt();
+            List<ModuleVersionDetails> versions = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                versions.add(readDetails(in));
+            }
+            value = versions;
+            break;
+        case MODULE_INFO:
+            value = readModuleInfo(in);
+            break;
+        default:
+            return;
+        }
+        entries.put(kind + key, new Entry(stamp, value));
+    }
+
+    private static void writeDetails(DataOutputStream out, ModuleVersionDetails details) throws IOException {
+        writeString(out, details.getNamespace());
+        writeString(out, details.getModule());
+        writeString(out, details.getVersion());
+        writeString(out, details.getGroupId());
+        writeString(out, details.getArtifactId());
+        writeString(out, details.getLabel());
+        writeString(out, details.getDoc());
+        writeString(out, details.getLicense());
+        writeStrings(out, details.getAuthors());
+        writeDependencies(out, details.getDependencies());
+        out.writeInt(details.getArtifactTypes().size());
+        for (ModuleVersionArtifact artifact : details.getArtifactTypes()) {
+            writeString(out, artifact.getSuffix());
+            writeInteger(out, artifact.getMajorBinaryVersion());
+            writeInteger(out, artifact.getMinorBinaryVersion());
+        }
+        writeStrings(out, details.getMembers());
+        out.writeBoolean(details.isRemote());
+        writeString(out, details.getOrigin());
+    }
+
+    private static ModuleVersionDetails readDetails(DataInputStream in) throws IOException {
+        String namespace = readString(in);
+        String module = readString(in);
+        String version = readString(in);
+        String groupId = readString(in);
+        String artifactId = readString(in);
+        String label = readString(in);
+        String doc = readString(in);
+        String license = readString(in);
+        Set<String> authors = new HashSet<>(readStrings(in));
+        Set<ModuleDependencyInfo> dependencies = readDependencies(in);
+        int count = in.readInt();
+        Set<ModuleVersionArtifact> artifactTypes = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            artifactTypes.add(new ModuleVersionArtifact(readString(in), readInteger(in), readInteger(in)));
+        }
+        List<String> members = readStrings(in);
+        boolean remote = in.readBoolean();
+        String origin = readString(in);
+        ModuleVersionDetails details = new ModuleVersionDetails(namespace, module, version, groupId, artifactId,
+                label, doc, license, authors, dependencies, artifactTypes, remote, origin);
+        details.setMembers(new HashSet<String>(members));
+        return details;
+    }
+
+    private static void writeModuleInfo(DataOutputStream out, ModuleInfo info) throws IOException {
+        writeString(out, info.getNamespace());
+        writeString(out, info.getName());
+        writeString(out, info.getVersion());
+        writeString(out, info.getGroupId());
+        writeString(out, info.getArtifactId());
+        writeString(out, info.getClassifier());
+        writeString(out, info.getFilter());
+        writeDependencies(out, info.getDependencies());
+    }
+
+    private static ModuleInfo readModuleInfo(DataInputStream in) throws IOException {
+        return new ModuleInfo(readString(in), readString(in), readString(in),
+                readString(in), readString(in), readString(in), readString(in),
+                readDependencies(in));
+    }
+
+    private static void writeDependencies(DataOutputStream out, Collection<ModuleDependencyInfo> dependencies) throws IOException {
+        out.writeInt(dependencies.size());
+        for (ModuleDependencyInfo dependency : dependencies) {
+            writeString(out, dependency.getNamespace());
+            writeString(out, dependency.getName());
+            writeString(out, dependency.getVersion());
+            out.writeBoolean(dependency.isOptional());
+            out.writeBoolean(dependency.isExport());
+            writeString(out, dependency.getNativeBackends().names());
+            writeString(out, dependency.getModuleScope() == null ? null : dependency.getModuleScope().name());
+        }
+    }
+
+    private static Set<ModuleDependencyInfo> readDependencies(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        Set<ModuleDependencyInfo> dependencies = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            String namespace = readString(in);
+            String name = readString(in);
+            String version = readString(in);
+            boolean optional = in.readBoolean();
+            boolean shared = in.readBoolean();
+            String backends = readString(in);
+            String scope = readString(in);
+            dependencies.add(new ModuleDependencyInfo(namespace, name, version, optional, shared,
+                    backends.isEmpty() ? Backends.ANY : Backends.fromAnnotations(Arrays.asList(backends.split(","))),
+                    scope == null ? null : ModuleScope.valueOf(scope)));
+        }
+        return dependencies;
+    }
+
+    private static void writeStrings(DataOutputStream out, Collection<?> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (Object string : strings) {
+            writeString(out, (String) string);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<String> strings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            strings.add(readString(in));
+        }
+        return strings;
+    }
+
+    private static void writeInteger(DataOutputStream out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeInt(value);
+        }
+    }
+
+    private static Integer readInteger(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readInt() : null;
+    }
+
+    // not writeUTF(), which is limited to 64K, and docs can be long
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        if (string == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -13,18 +13,28 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 
 import org.eclipse.ceylon.cmr.api.ArtifactCallback;
 import org.eclipse.ceylon.cmr.api.ArtifactCallbackStream;
 import org.eclipse.ceylon.cmr.api.ArtifactContext;
 import org.eclipse.ceylon.cmr.api.CmrRepository;
+import org.eclipse.ceylon.cmr.api.ContentFinderDelegate;
+import org.eclipse.ceylon.cmr.api.ModuleInfo;
+import org.eclipse.ceylon.cmr.api.ModuleVersionDetails;
+import org.eclipse.ceylon.cmr.api.ModuleVersionQuery;
+import org.eclipse.ceylon.cmr.api.ModuleVersionResult;
 import org.eclipse.ceylon.cmr.api.Overrides;
 import org.eclipse.ceylon.cmr.spi.ContentStore;
 import org.eclipse.ceylon.cmr.spi.Node;
 import org.eclipse.ceylon.cmr.spi.OpenNode;
 import org.eclipse.ceylon.cmr.spi.SizedInputStream;
 import org.eclipse.ceylon.common.FileUtil;
+import org.eclipse.ceylon.common.ModuleUtil;
+import org.eclipse.ceylon.common.config.DefaultToolOptions;
 import org.eclipse.ceylon.common.config.Repositories;
 import org.eclipse.ceylon.common.log.Logger;
 import org.eclipse.ceylon.model.cmr.ArtifactResult;
@@ -37,6 +47,9 @@ import org.eclipse.ceylon.model.cmr.RepositoryException;
  */
 public class RootRepositoryManager extends AbstractNodeRepositoryManager {
     private final FileContentStore fileContentStore;
+    private final RepositoryIndex index;
+    private final boolean upgradeDist;
+    private long missingTtl = DefaultToolOptions.getDefaultMissingTtl();
 
     private static File getRootDir() {
         org.eclipse.ceylon.common.config.Repositories.Repository rootRepo = Repositories.get().getCacheRepository();
@@ -56,12 +69,15 @@ public class RootRepositoryManager extends AbstractNodeRepositoryManager {
     }
     public RootRepositoryManager(File rootDir, Logger log, Overrides overrides, boolean upgradeDist) {
         super(log, overrides, upgradeDist);
+        this.upgradeDist = upgradeDist;
         if(rootDir != null){
             this.fileContentStore = new FileContentStore(rootDir);
             final CmrRepository aaca = new DefaultRepository(new RootNode(fileContentStore, fileContentStore));
             setCache(aaca);
+            this.index = new RepositoryIndex(rootDir);
         }else{
             this.fileContentStore = null;
+            this.index = null;
         }
     }
 
@@ -113,15 +129,27 @@ public class RootRepositoryManager extends AbstractNodeRepositoryManager {
     protected ArtifactResult artifactNotFound(ArtifactContext context) throws RepositoryException {
         boolean hasRemote = false;
         StringBuilder reps = new StringBuilder();
+        List<String> tried = new ArrayList<>();
+        boolean asked = false;
         for (CmrRepository rep : getRepositories()) {
             if (rep.getRoot().isRemote() && !isOffline(rep)) {
                 hasRemote = true;
                 reps.append(rep.getDisplayString());
                 reps.append('\n');
+                tried.add(rep.getDisplayString());
+                asked |= !isKnownMissing(rep, context);
             }
         }
 
         if (hasRemote && cache != null) {
+            if (isIndexEnabled() && asked && context.getSearchRepository() != cache) {
+                // remember the remote repositories which do not have it, see
+                // isKnownMissing(), for every suffix we looked for
+                long now = System.currentTimeMillis();
+                for (String name : cache.getArtifactNames(context)) {
+                    index.putMissing(getIndexKey(context, name), now, tried);
+                }
+            }
             // Create a .missing file in the cache to mark that we tried to locate the file but it didn't exist 
             Node parent = cache.findParent(context);
             if (parent != null) {
@@ -156,6 +184,207 @@ public class RootRepositoryManager extends AbstractNodeRepositoryManager {
         return super.artifactNotFound(context);
     }
     
+    /**
+     * Sets how long, in milliseconds, we trust what the remote repositories
+     * told us, using the index we keep in the cache, which is shared by all
+     * processes. During that time, the remote repositories which did not have
+     * an artifact are not asked for it again, and the versions of a module
+     * they had are remembered. The index also keeps the versions found in
+     * local repositories, and the module info read from artifacts, for as
+     * long as their files do not change. Zero means no index is kept.
+     */
+    public void setMissingTtl(long missingTtl) {
+        this.missingTtl = missingTtl;
+    }
+
+    public long getMissingTtl() {
+        return missingTtl;
+    }
+
+    private boolean isIndexEnabled() {
+        return missingTtl > 0 && index != null;
+    }
+
+    private static String getIndexKey(ArtifactContext context, String artifactName) {
+        return context.getNamespace() + ":" + context.getName() + "/" + context.getVersion() + "/" + artifactName;
+    }
+
+    private boolean isFresh(long time) {
+        return System.currentTimeMillis() - time < missingTtl;
+    }
+
+    @Override
+    protected boolean isKnownMissing(CmrRepository repository, ArtifactContext context) {
+        if (!isIndexEnabled()
+                || cache == null 
+                || context.isIgnoreCache()
+                || context.isForceOperation()
+                || !repository.getRoot().isRemote()
+                || isOffline(repository)) {
+            return false;
+        }
+        String[] names = cache.getArtifactNames(context);
+        for (String name : names) {
+            RepositoryIndex.Entry entry = index.getMissing(getIndexKey(context, name));
+            if (entry == null 
+                    || !isFresh(entry.stamp)
+                    || !((Set<?>) entry.value).contains(repository.getDisplayString())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    protected void completeVersions(CmrRepository repository, ModuleVersionQuery query, ModuleVersionResult result) {
+        String key = isIndexEnabled() ? getIndexKey(repository, query) : null;
+        if (key == null) {
+            super.completeVersions(repository, query, result);
+            return;
+        }
+        boolean remote = repository.getRoot().isRemote();
+        long stamp;
+        if (remote) {
+            if (isOffline(repository)) {
+                super.completeVersions(repository, query, result);
+                return;
+            }
+            stamp = System.currentTimeMillis();
+        } else {
+            File folder = getModuleFolder(repository, query.getName());
+            if (folder == null) {
+                super.completeVersions(repository, query, result);
+                return;
+            }
+            stamp = getSignature(folder, 2);
+        }
+        RepositoryIndex.Entry entry = index.getVersions(key);
+        if (entry != null 
+                && (remote ? isFresh(entry.stamp) : entry.stamp == stamp)) {
+            for (Object version : (List<?>) entry.value) {
+                result.addVersion((ModuleVersionDetails) version);
+            }
+            return;
+        }
+        ModuleVersionResult found = new ModuleVersionResult(query.getName());
+        super.completeVersions(repository, query, found);
+        index.putVersions(key, stamp, found.getVersions().values());
+        for (ModuleVersionDetails version : found.getVersions().values()) {
+            result.addVersion(version);
+        }
+    }
+
+    /**
+     * The key of the versions of a module found by the given query in the
+     * given repository, or null if we cannot tell which overrides were used
+     * to read them.
+     */
+    private String getIndexKey(CmrRepository repository, ModuleVersionQuery query) {
+        String overrides = getOverridesKey();
+        if (overrides == null) {
+            return null;
+        }
+        return repository.getDisplayString()
+                + "|" + overrides
+                + "|" + query.getNamespace()
+                + "|" + query.getName()
+                + "|" + query.getVersion()
+                + "|" + query.isExactVersionMatch()
+                + "|" + query.getType()
+                + "|" + query.getRetrieval()
+                + "|" + query.getJvmBinaryMajor()
+                + "|" + query.getJvmBinaryMinor()
+                + "|" + query.getJsBinaryMajor()
+                + "|" + query.getJsBinaryMinor()
+                + "|" + query.getMemberName()
+                + "|" + query.isMemberSearchPackageOnly()
+                + "|" + query.isMemberSearchExact();
+    }
+
+    /**
+     * Where the overrides come from, or null if they were made up at runtime.
+     */
+    private String getOverridesKey() {
+        Overrides overrides = getOverrides();
+        if (overrides == null) {
+            return "";
+        }
+        String source = overrides.getSource();
+        if (source == null) {
+            return null;
+        }
+        File file = new File(source);
+        return source + (upgradeDist ? "+" : "-")
+                + (file.isFile() ? file.lastModified() + ":" + file.length() : "");
+    }
+
+    /**
+     * The folder of the given module in the given local repository, or null
+     * if its modules are not laid out in folders.
+     */
+    private static File getModuleFolder(CmrRepository repository, String name) {
+        if (repository.getClass() != DefaultRepository.class 
+                || ModuleUtil.isMavenModule(name)
+                || repository.getRoot().getService(ContentFinderDelegate.class) != null) {
+            return null;
+        }
+        ContentStore cs = repository.getRoot().getService(ContentStore.class);
+        if (!(cs instanceof FileContentStore)) {
+            return null;
+        }
+        return new File(cs.getDisplayString(), name.replace('.', File.separatorChar));
+    }
+
+    /**
+     * A signature of the names, sizes and modification times of the given
+     * file, and of what is in it up to the given depth, which changes when
+     * any of them changes.
+     */
+    private static long getSignature(File file, int depth) {
+        long signature = file.getName().hashCode();
+        signature = 31 * signature + file.lastModified();
+        signature = 31 * signature + file.length();
+        File[] children = depth > 0 ? file.listFiles() : null;
+        if (children != null) {
+            Arrays.sort(children);
+            for (File child : children) {
+                signature = 31 * signature + getSignature(child, depth - 1);
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * The module info of the given artifact, with the given overrides. When
+     * the index is enabled, the module info is kept there, without overrides,
+     * until the files of that module version change.
+     */
+    ModuleInfo resolveModuleInfo(ArtifactResult result, Overrides overrides) {
+        File artifact = isIndexEnabled() ? result.artifact() : null;
+        if (artifact == null || !artifact.isFile()) {
+            return Configuration.getResolvers(this).resolve(result, overrides);
+        }
+        String key = result.name() + "/" + result.version() + "/" + artifact.getAbsolutePath();
+        // descriptors may sit next to the artifact
+        long stamp = getSignature(artifact.getParentFile(), 1);
+        ModuleInfo info;
+        RepositoryIndex.Entry entry = index.getModuleInfo(key);
+        if (entry != null && entry.stamp == stamp) {
+            info = (ModuleInfo) entry.value;
+        } else {
+            info = Configuration.getResolvers(this).resolve(result, null);
+            if (info == null) {
+                return null;
+            }
+            index.putModuleInfo(key, stamp, info);
+        }
+        if (overrides != null) {
+            String version = info.getVersion() != null ? info.getVersion() : result.version();
+            info = overrides.applyOverrides(result.name(), version, info);
+        }
+        return info;
+    }
+
     private boolean isOffline(CmrRepository repo) {
         ContentStore cs = repo.getRoot().getService(ContentStore.class);
         return cs != null && cs.isOffline();
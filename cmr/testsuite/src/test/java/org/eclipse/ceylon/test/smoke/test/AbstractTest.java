@@ -97,6 +97,10 @@ public class AbstractTest {
         FileUtil.deleteQuietly(temp.toFile());
     }
 
+    protected File getCacheRoot() {
+        return temp.toFile();
+    }
+
     protected File getRepositoryRoot() throws URISyntaxException {
         URL url = getClass().getResource("/repo");
         Assert.assertNotNull("RepositoryManager root '/repo' not found", url);
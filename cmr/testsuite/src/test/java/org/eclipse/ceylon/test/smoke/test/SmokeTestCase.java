@@ -18,6 +18,7 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.net.URL;
+import java.nio.file.Files;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -31,6 +32,8 @@ import org.eclipse.ceylon.cmr.api.ModuleQuery;
 import org.eclipse.ceylon.cmr.api.ModuleSearchResult;
 import org.eclipse.ceylon.cmr.api.ModuleVersionArtifact;
 import org.eclipse.ceylon.cmr.api.ModuleVersionDetails;
+import org.eclipse.ceylon.cmr.api.ModuleVersionQuery;
+import org.eclipse.ceylon.cmr.api.ModuleVersionResult;
 import org.eclipse.ceylon.cmr.api.Overrides;
 import org.eclipse.ceylon.cmr.api.RepositoryBuilder;
 import org.eclipse.ceylon.cmr.api.RepositoryManager;
@@ -38,15 +41,20 @@ import org.eclipse.ceylon.cmr.api.RepositoryManagerBuilder;
 import org.eclipse.ceylon.cmr.api.ModuleQuery.Retrieval;
 import org.eclipse.ceylon.cmr.api.ModuleQuery.Type;
 import org.eclipse.ceylon.cmr.api.ModuleSearchResult.ModuleDetails;
+import org.eclipse.ceylon.cmr.impl.AbstractNodeRepositoryManager;
 import org.eclipse.ceylon.cmr.impl.DefaultRepository;
+import org.eclipse.ceylon.cmr.impl.FileContentStore;
 import org.eclipse.ceylon.cmr.impl.JDKRepository;
 import org.eclipse.ceylon.cmr.impl.MavenRepository;
 import org.eclipse.ceylon.cmr.impl.MavenRepositoryHelper;
 import org.eclipse.ceylon.cmr.impl.RemoteContentStore;
+import org.eclipse.ceylon.cmr.impl.RootNode;
+import org.eclipse.ceylon.cmr.impl.RootRepositoryManager;
 import org.eclipse.ceylon.cmr.impl.SimpleRepositoryManager;
 import org.eclipse.ceylon.cmr.spi.OpenNode;
 import org.eclipse.ceylon.common.CeylonVersionComparator;
 import org.eclipse.ceylon.common.Constants;
+import org.eclipse.ceylon.common.FileUtil;
 import org.eclipse.ceylon.common.Versions;
 import org.eclipse.ceylon.model.cmr.ArtifactResult;
 import org.eclipse.ceylon.model.cmr.JDKUtils;
@@ -212,6 +220,152 @@ public class SmokeTestCase extends AbstractTest {
         }
     }
 
+    @Test
+    public void testConcurrentLookupPriority() throws Exception {
+        RepositoryManagerBuilder builder = getRepositoryManagerBuilder(false, 60000, java.net.Proxy.NO_PROXY);
+
+        String name = "org.eclipse.acme";
+        String version = "1.0.0.CR2";
+        ArtifactContext context = new ArtifactContext(null, name, version);
+        context.setIgnoreSHA(true); // ignore with in-memory
+
+        for (String content : new String[] { "first", "second", "third" }) {
+            CmrRepository repo = new DefaultRepository(new InMemoryContentStore().createRoot());
+            OpenNode parent = repo.createParent(context);
+            parent.addContent(name + "-" + version + ArtifactContext.CAR, new ByteArrayInputStream(content.getBytes()), context);
+            builder.addRepository(repo);
+        }
+        RepositoryManager manager = builder.buildRepository();
+        ((AbstractNodeRepositoryManager) manager).setLookupThreads(4);
+
+        try {
+            File file = manager.getArtifact(context);
+            Assert.assertNotNull("Failed to retrieve artifact", file);
+            assertEquals("first", new String(Files.readAllBytes(file.toPath())));
+        } finally {
+            manager.removeArtifact(null, name, version);
+        }
+    }
+
+    @Test
+    public void testKnownMissing() throws Exception {
+        RepositoryManagerBuilder builder = getRepositoryManagerBuilder(false, 60000, java.net.Proxy.NO_PROXY);
+
+        File remoteDir = Files.createTempDirectory("ceylon-cmrtest-remote").toFile();
+        FileContentStore fcs = new FileContentStore(remoteDir) {
+            @Override
+            public boolean isOffline() {
+                return false;
+            }
+        };
+        CmrRepository repo = new DefaultRepository(new RootNode(fcs, fcs) {
+            @Override
+            public boolean isRemote() {
+                return true;
+            }
+        });
+        RepositoryManager manager = builder.addRepository(repo).buildRepository();
+        RootRepositoryManager root = (RootRepositoryManager) manager;
+        root.setMissingTtl(60000);
+
+        String name = "org.eclipse.acme";
+        String version = "1.0.0.CR3";
+        ArtifactContext context = new ArtifactContext(null, name, version);
+        context.setIgnoreSHA(true);
+
+        try {
+            Assert.assertNull(manager.getArtifact(context));
+            Assert.assertFalse("Should not leave a folder in the cache", 
+                    new File(getCacheRoot(), "org/eclipse/acme").exists());
+
+            OpenNode parent = repo.createParent(context);
+            parent.addContent(name + "-" + version + ArtifactContext.CAR, new ByteArrayInputStream("qwerty".getBytes()), context);
+            Assert.assertNull("Remote repository should not have been asked again", manager.getArtifact(context));
+
+            root.setMissingTtl(0);
+            Assert.assertNotNull("Failed to retrieve after put", manager.getArtifact(context));
+        } finally {
+            manager.removeArtifact(null, name, version);
+            FileUtil.delete(remoteDir);
+        }
+    }
+
+    @Test
+    public void testKnownMissingSeveralSuffixes() throws Exception {
+        RepositoryManagerBuilder builder = getRepositoryManagerBuilder(false, 60000, java.net.Proxy.NO_PROXY);
+
+        File remoteDir = Files.createTempDirectory("ceylon-cmrtest-remote").toFile();
+        FileContentStore fcs = new FileContentStore(remoteDir) {
+            @Override
+            public boolean isOffline() {
+                return false;
+            }
+        };
+        CmrRepository repo = new DefaultRepository(new RootNode(fcs, fcs) {
+            @Override
+            public boolean isRemote() {
+                return true;
+            }
+        });
+        RepositoryManager manager = builder.addRepository(repo).buildRepository();
+        RootRepositoryManager root = (RootRepositoryManager) manager;
+        root.setMissingTtl(60000);
+
+        String name = "org.eclipse.acme.jar";
+        String version = "1.0.0.CR3";
+        ArtifactContext context = new ArtifactContext(null, name, version, ArtifactContext.CAR, ArtifactContext.JAR);
+        context.setIgnoreSHA(true);
+
+        try {
+            Assert.assertNull(manager.getArtifact(context));
+
+            OpenNode parent = repo.createParent(context);
+            parent.addContent(name + "-" + version + ArtifactContext.JAR, new ByteArrayInputStream("qwerty".getBytes()), context);
+            Assert.assertNull("Remote repository should not have been asked again", manager.getArtifact(context));
+
+            root.setMissingTtl(0);
+            Assert.assertNotNull("Failed to retrieve after put", manager.getArtifact(context));
+        } finally {
+            manager.removeArtifact(null, name, version);
+            FileUtil.delete(remoteDir);
+        }
+    }
+
+    @Test
+    public void testListVersionsIndexed() throws Exception {
+        File localDir = Files.createTempDirectory("ceylon-cmrtest-local").toFile();
+        File module = new File(localDir, "com/acme/helloworld");
+        FileUtil.mkdirs(module);
+        FileUtil.copyAll(new File(getRepositoryRoot(), "com/acme/helloworld"), module);
+
+        ModuleVersionQuery query = new ModuleVersionQuery("com.acme.helloworld", null, Type.JVM);
+        try {
+            ModuleVersionResult result = getIndexedRepositoryManager(localDir).completeVersions(query);
+            Assert.assertEquals(1, result.getVersions().size());
+            ModuleVersionDetails details = result.getVersions().get("1.0.0");
+            Assert.assertNotNull(details);
+            Assert.assertTrue("Should have indexed the versions", new File(getCacheRoot(), ".index").isFile());
+
+            // the next process reads them from the index
+            ModuleVersionResult again = getIndexedRepositoryManager(localDir).completeVersions(query);
+            Assert.assertEquals(details, again.getVersions().get("1.0.0"));
+            Assert.assertEquals(details.getDependencies(), again.getVersions().get("1.0.0").getDependencies());
+            Assert.assertEquals(details.getArtifactTypes(), again.getVersions().get("1.0.0").getArtifactTypes());
+
+            FileUtil.delete(new File(module, "1.0.0"));
+            Assert.assertTrue("Should see the version is gone", 
+                    getIndexedRepositoryManager(localDir).completeVersions(query).getVersions().isEmpty());
+        } finally {
+            FileUtil.delete(localDir);
+        }
+    }
+
+    private RepositoryManager getIndexedRepositoryManager(File localDir) throws Exception {
+        RootRepositoryManager manager = (RootRepositoryManager) getRepositoryManagerBuilder(localDir, false, 60000, java.net.Proxy.NO_PROXY).buildRepository();
+        manager.setMissingTtl(60000);
+        return manager;
+    }
+
     @Test
     public void testFolderPut() throws Exception {
         RepositoryManager manager = getRepositoryManager();
@@ -0,0 +1,272 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.common;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records how long the phases of a tool take and how much
+ * memory they allocate, along with any counters the tool
+ * cares about, and writes them out as JSON so that builds
+ * can be compared with one another.
+ *
+ * Phases and units may be recorded from several threads at
+ * once. Allocations are those of the thread that records
+ * them, so a phase whose units run on other threads only
+ * counts its own allocations, while its units count theirs.
+ */
+public class Profile {
+
+    /**
+     * A point in time, and in the allocations of the thread
+     * which took it.
+     */
+    public static final class Mark {
+        private final long nanos;
+        private final long allocatedBytes;
+
+        private Mark(long nanos, long allocatedBytes) {
+            this.nanos = nanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+    }
+
+    private static final class Sample {
+        private final String phase;
+        private final String unit;
+        private final long nanos;
+        private final long allocatedBytes;
+
+        private Sample(String phase, String unit,
+                long nanos, long allocatedBytes) {
+            this.phase = phase;
+            this.unit = unit;
+            this.nanos = nanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+    }
+
+    private final String tool;
+    private final Mark start;
+    private final List<Sample> phases = new ArrayList<Sample>();
+    private final List<Sample> units = new ArrayList<Sample>();
+    private final Map<String,Number> counters =
+            new LinkedHashMap<String,Number>();
+
+    /**
+     * @param tool the name of the tool being profiled, for
+     *        example {@code compile}
+     */
+    public Profile(String tool) {
+        this.tool = tool;
+        this.start = mark();
+    }
+
+    /**
+     * Returns the current point in time, to pass to
+     * {@link #phase(String, Mark)} or
+     * {@link #unit(String, String, Mark)} once the work to
+     * time is done.
+     */
+    public Mark mark() {
+        return new Mark(System.nanoTime(), allocatedBytes());
+    }
+
+    /**
+     * Records a phase of the tool, which started at the given
+     * mark and ends now.
+     */
+    public void phase(String name, Mark start) {
+        Sample sample = sample(name, null, start);
+        synchronized (phases) {
+            phases.add(sample);
+        }
+    }
+
+    /**
+     * Records the work of a phase on a single unit, such as
+     * a source file, which started at the given mark and
+     * ends now.
+     */
+    public void unit(String phase, String unit, Mark start) {
+        Sample sample = sample(phase, unit, start);
+        synchronized (units) {
+            units.add(sample);
+        }
+    }
+
+    public void counter(String name, long value) {
+        synchronized (counters) {
+            counters.put(name, value);
+        }
+    }
+
+    public void counter(String name, double value) {
+        synchronized (counters) {
+            counters.put(name, value);
+        }
+    }
+
+    private Sample sample(String phase, String unit, Mark start) {
+        Mark end = mark();
+        long allocated = end.allocatedBytes < 0 || start.allocatedBytes < 0 ?
+                -1 : end.allocatedBytes - start.allocatedBytes;
+        return new Sample(phase, unit, end.nanos - start.nanos, allocated);
+    }
+
+    /**
+     * Writes the profile to the given file, in UTF-8
+     */
+    public void write(File file) throws IOException {
+        Writer writer = new OutputStreamWriter(
+                new FileOutputStream(file), "UTF-8");
+        try {
+            write(writer);
+        }
+        finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Writes the profile as a JSON object, with the total
+     * time, the phases and units in the order they ended, and
+     * the counters. Times are in milliseconds and
+     * allocations in bytes, -1 when the JVM cannot tell.
+     */
+    public void write(Writer writer) throws IOException {
+        Sample total = sample(null, null, start);
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"tool\": ");
+        string(json, tool);
+        json.append(",\n  \"millis\": ").append(millis(total.nanos));
+        json.append(",\n  \"allocatedBytes\": ").append(total.allocatedBytes);
+        json.append(",\n  \"phases\": [");
+        synchronized (phases) {
+            samples(json, phases);
+        }
+        json.append("],\n  \"units\": [");
+        synchronized (units) {
+            samples(json, units);
+        }
+        json.append("],\n  \"counters\": {");
+        synchronized (counters) {
+            boolean first = true;
+            for (Map.Entry<String,Number> entry: counters.entrySet()) {
+                json.append(first ? "\n    " : ",\n    ");
+                first = false;
+                string(json, entry.getKey());
+                json.append(": ").append(entry.getValue());
+            }
+            if (!first) {
+                json.append("\n  ");
+            }
+        }
+        json.append("}\n}\n");
+        writer.write(json.toString());
+        writer.flush();
+    }
+
+    private static void samples(StringBuilder json, List<Sample> samples) {
+        boolean first = true;
+        for (Sample sample: samples) {
+            json.append(first ? "\n    {" : ",\n    {");
+            first = false;
+            json.append("\"phase\": ");
+            string(json, sample.phase);
+            if (sample.unit != null) {
+                json.append(", \"unit\": ");
+                string(json, sample.unit);
+            }
+            json.append(", \"millis\": ").append(millis(sample.nanos));
+            json.append(", \"allocatedBytes\": ").append(sample.allocatedBytes);
+            json.append("}");
+        }
+        if (!first) {
+            json.append("\n  ");
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.valueOf(nanos / 1000 / 1000.0);
+    }
+
+    private static void string(StringBuilder json, String string) {
+        json.append('"');
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            switch (c) {
+            case '"': json.append("\\\""); break;
+            case '\\': json.append("\\\\"); break;
+            case '\n': json.append("\\n"); break;
+            case '\r': json.append("\\r"); break;
+            case '\t': json.append("\\t"); break;
+            default:
+                if (c < 0x20) {
+                    json.append(String.format("\\u%04x", (int) c));
+                }
+                else {
+                    json.append(c);
+                }
+            }
+        }
+        json.append('"');
+    }
+
+    private static long allocatedBytes() {
+        return Allocations.allocatedBytes();
+    }
+
+    /**
+     * Only loaded when profiling, since the management API is
+     * not available everywhere.
+     */
+    private static final class Allocations {
+        private static final com.sun.management.ThreadMXBean BEAN;
+        static {
+            com.sun.management.ThreadMXBean bean = null;
+            try {
+                ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+                if (threadBean instanceof com.sun.management.ThreadMXBean) {
+                    bean = (com.sun.management.ThreadMXBean) threadBean;
+                    if (bean.isThreadAllocatedMemorySupported()) {
+                        bean.setThreadAllocatedMemoryEnabled(true);
+                    }
+                    else {
+                        bean = null;
+                    }
+                }
+            }
+            catch (LinkageError e) {
+                bean = null;
+            }
+            catch (RuntimeException e) {
+                bean = null;
+            }
+            BEAN = bean;
+        }
+
+        static long allocatedBytes() {
+            return BEAN == null ? -1 :
+                BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+    }
+}
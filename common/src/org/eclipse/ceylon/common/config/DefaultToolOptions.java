@@ -26,6 +26,8 @@ public class DefaultToolOptions {
     public final static String DEFAULTS_ENCODING = "defaults.encoding";
     public final static String DEFAULTS_OFFLINE = "defaults.offline";
     public final static String DEFAULTS_TIMEOUT = "defaults.timeout";
+    public final static String DEFAULTS_LOOKUP_THREADS = "defaults.lookupthreads";
+    public final static String DEFAULTS_MISSING_TTL = "defaults.missingttl";
     // BACKWARDS-COMPAT
     public final static String DEFAULTS_MAVENOVERRIDES = "defaults.mavenoverrides";
     public final static String DEFAULTS_OVERRIDES = "defaults.overrides";
@@ -107,6 +109,27 @@ public class DefaultToolOptions {
         return timeoutFromString(config.getOption(DEFAULTS_TIMEOUT), Constants.DEFAULT_TIMEOUT);
     }
     
+    public static int getDefaultLookupThreads() {
+        return getDefaultLookupThreads(CeylonConfig.get());
+    }
+    
+    public static int getDefaultLookupThreads(CeylonConfig config) {
+        return (int) config.getNumberOption(DEFAULTS_LOOKUP_THREADS, 1);
+    }
+    
+    /**
+     * How long, in milliseconds, we trust that an artifact which was not 
+     * found in any remote repository is still missing, without asking
+     * those repositories again. Zero means always asking.
+     */
+    public static long getDefaultMissingTtl() {
+        return getDefaultMissingTtl(CeylonConfig.get());
+    }
+    
+    public static long getDefaultMissingTtl(CeylonConfig config) {
+        return timeoutFromString(config.getOption(DEFAULTS_MISSING_TTL), 0);
+    }
+    
     public static int timeoutFromString(String num, int defaultTimeout) {
         if (num != null) {
             int fact = 1000;
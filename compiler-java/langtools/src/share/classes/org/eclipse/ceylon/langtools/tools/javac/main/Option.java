@@ -508,6 +508,10 @@ public enum Option {
     CEYLONTIMEOUT("-timeout", "opt.arg.number",       "opt.ceylontimeout", OptionKind.STANDARD, OptionGroup.CEYLON),
     CEYLONCONTINUE("-continue", "opt.ceyloncontinue", OptionKind.STANDARD, OptionGroup.CEYLON),
     CEYLONPROGRESS("-progress", "opt.ceylonprogress", OptionKind.STANDARD, OptionGroup.CEYLON),
+    CEYLONTYPECHECKTHREADS("-typecheck-threads", "opt.arg.number", "opt.ceylontypecheckthreads", OptionKind.STANDARD, OptionGroup.CEYLON),
+    CEYLONOUTPUTTHREADS("-output-threads", "opt.arg.number", "opt.ceylonoutputthreads", OptionKind.STANDARD, OptionGroup.CEYLON),
+    CEYLONPROFILEOUTPUT("-profile-output", "opt.arg.file", "opt.ceylonprofileoutput", OptionKind.STANDARD, OptionGroup.CEYLON),
+    CEYLONPARSECACHE("-parse-cache", "opt.arg.directory", "opt.ceylonparsecache", OptionKind.STANDARD, OptionGroup.CEYLON),
     // Backwards-compat
     CEYLONMAVENOVERRIDES("-maven-overrides", "opt.arg.url",        "opt.ceylonoverrides", OptionKind.STANDARD, OptionGroup.CEYLON) {
             @Override
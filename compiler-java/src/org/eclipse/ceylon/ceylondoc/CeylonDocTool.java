@@ -39,13 +39,15 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.eclipse.ceylon.ceylondoc.Util.ReferenceableComparatorByName;
 import org.eclipse.ceylon.cmr.api.ArtifactContext;
@@ -53,6 +55,7 @@ import org.eclipse.ceylon.cmr.api.RepositoryManager;
 import org.eclipse.ceylon.common.Constants;
 import org.eclipse.ceylon.common.FileUtil;
 import org.eclipse.ceylon.common.ModuleSpec;
+import org.eclipse.ceylon.common.Profile;
 import org.eclipse.ceylon.common.config.CeylonConfig;
 import org.eclipse.ceylon.common.config.DefaultToolOptions;
 import org.eclipse.ceylon.common.log.Logger;
@@ -75,8 +78,10 @@ import org.eclipse.ceylon.compiler.typechecker.TypeCheckerBuilder;
 import org.eclipse.ceylon.compiler.typechecker.analyzer.ModuleSourceMapper;
 import org.eclipse.ceylon.compiler.typechecker.analyzer.ModuleValidator;
 import org.eclipse.ceylon.compiler.typechecker.context.Context;
+import org.eclipse.ceylon.compiler.typechecker.context.PhaseExecutor;
 import org.eclipse.ceylon.compiler.typechecker.context.PhasedUnit;
 import org.eclipse.ceylon.compiler.typechecker.context.PhasedUnits;
+import org.eclipse.ceylon.compiler.typechecker.context.TokenRetention;
 import org.eclipse.ceylon.compiler.typechecker.tree.Node;
 import org.eclipse.ceylon.compiler.typechecker.tree.Tree;
 import org.eclipse.ceylon.compiler.typechecker.tree.Visitor;
@@ -171,8 +176,12 @@ public class CeylonDocTool extends OutputRepoUsingTool {
     private List<File> docFolders = DefaultToolOptions.getCompilerDocDirs();
     private List<String> moduleSpecs = Arrays.asList("*");
     private List<String> links = new LinkedList<String>();
+    private File profileOutput;
+    private File parseCache;
+    private int threads = 1;
     
     private TypeChecker typeChecker;
+    private Profile profile;
     private Module currentModule;
     private File tempDestDir;
     private final List<PhasedUnit> phasedUnits = new LinkedList<PhasedUnit>();
@@ -184,7 +193,15 @@ public class CeylonDocTool extends OutputRepoUsingTool {
     private final Map<Referenceable, Node> modelNodeMap = new IdentityHashMap<Referenceable, Node>();
     private final Map<Parameter, PhasedUnit> parameterUnitMap = new IdentityHashMap<Parameter, PhasedUnit>();
     private final Map<Parameter, Node> parameterNodeMap = new IdentityHashMap<Parameter, Node>();
-    private final Map<String, Boolean> moduleUrlAvailabilityCache = new HashMap<String, Boolean>();
+    private final ConcurrentMap<String, Boolean> moduleUrlAvailabilityCache = new ConcurrentHashMap<String, Boolean>();
+    private final ConcurrentMap<Object, URI> objectUrlCache = new ConcurrentHashMap<Object, URI>();
+    private final ConcurrentMap<Module, URI> baseUrlCache = new ConcurrentHashMap<Module, URI>();
+    private final ConcurrentMap<URI, String> parentPathCache = new ConcurrentHashMap<URI, String>();
+    private final ConcurrentMap<Object, Object> linkCache = new ConcurrentHashMap<Object, Object>();
+    private final ConcurrentMap<Object, RenderedDoc> docCache = new ConcurrentHashMap<Object, RenderedDoc>();
+    private final ThreadLocal<List<Warning>> recordedWarnings = new ThreadLocal<List<Warning>>();
+    private final Map<String, Long> timings = new LinkedHashMap<String, Long>();
+    private PhaseExecutor pageExecutor;
     private RepositoryManager outputRepositoryManager;
     protected Logger richLog;
 
@@ -219,13 +236,13 @@ public class CeylonDocTool extends OutputRepoUsingTool {
     @Description("Produce verbose output. " +
             "If no `flags` are given then be verbose about everything, " +
             "otherwise just be verbose about the flags which are present. " +
-            "Allowed flags include: `all`, `loader`, `cmr`.")
+            "Allowed flags include: `all`, `loader`, `cmr`, `timing`.")
     public void setVerbose(String verbose) {
         super.setVerbose(verbose);
     }
     
     protected Set<String> getVerboseCategories(String... morecats) {
-        return super.getVerboseCategories("cmr");
+        return super.getVerboseCategories("cmr", "timing");
     }
     
     @OptionArgument(argumentName="encoding")
@@ -398,6 +415,30 @@ public class CeylonDocTool extends OutputRepoUsingTool {
         this.resourceFolder = resourceFolder;
     }
 
+    @OptionArgument(longName="profile-output", argumentName="file")
+    @Description("Writes the time and memory taken to typecheck each source file " +
+            "and to document each module, as JSON, to the given file.")
+    public void setProfileOutput(File profileOutput) {
+        this.profileOutput = profileOutput;
+    }
+
+    @OptionArgument(longName="parse-cache", argumentName="dir")
+    @Description("Caches the parsed source files in the given directory, so that " +
+            "the source files which did not change are not parsed again. " +
+            "The least recently used entries are deleted once the directory " +
+            "holds more than 128MB, or the number of bytes given by the " +
+            "`ceylon.parse.cache.size` system property.")
+    public void setParseCache(File parseCache) {
+        this.parseCache = parseCache;
+    }
+
+    @OptionArgument(longName="threads", argumentName="number")
+    @Description("Sets the number of threads used to parse and typecheck the source files, " +
+            "and to generate the pages of each module (default: 1).")
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
     public String getOut() {
         return out;
     }
@@ -410,7 +451,18 @@ public class CeylonDocTool extends OutputRepoUsingTool {
     @Override
     public void initialize(CeylonTool mainTool) throws Exception {
         super.initialize(mainTool);
+        long start = System.nanoTime();
+        if (profileOutput != null) {
+            profile = new Profile("doc");
+        }
         TypeCheckerBuilder builder = new TypeCheckerBuilder();
+        builder.profile(profile);
+        builder.threads(threads);
+        // the documentation is generated from the tree alone
+        builder.tokenRetention(TokenRetention.NONE);
+        if (parseCache != null) {
+            builder.parseCache(FileUtil.applyCwd(cwd, parseCache));
+        }
         for(File src : sourceFolders){
             builder.addSrcDirectory(src);
         }
@@ -497,6 +549,7 @@ public class CeylonDocTool extends OutputRepoUsingTool {
         
         initModules(modules);
         initPhasedUnits();
+        time("typecheck", start);
     }
 
     private void initModules(List<ModuleSpec> moduleSpecs) {
@@ -608,26 +661,76 @@ public class CeylonDocTool extends OutputRepoUsingTool {
     public void run() throws Exception {
         // make a temp dest folder
         tempDestDir = Files.createTempDirectory("ceylon-doc-").toFile();
+        pageExecutor = new PhaseExecutor(threads);
         try {
             // create the documentation
             makeDoc();
         } finally {
+            pageExecutor.shutdown();
             FileUtil.deleteQuietly(tempDestDir);
         }
+        if (profile != null) {
+            writeProfile();
+        }
+        if (isVerbose("timing")) {
+            writeTimings();
+        }
+    }
+
+    private void time(String stage, long start) {
+        long nanos = System.nanoTime() - start;
+        Long previous = timings.get(stage);
+        timings.put(stage, previous != null ? previous + nanos : nanos);
+    }
+
+    private void writeTimings() {
+        StringBuilder sb = new StringBuilder();
+        long total = 0;
+        for (Map.Entry<String, Long> timing : timings.entrySet()) {
+            sb.append(timing.getKey()).append(' ').append(timing.getValue() / 1000000);
+            if (timing.getKey().equals("pages") && pageExecutor.isParallel()) {
+                sb.append(" (").append(pageExecutor.getThreads()).append(" threads)");
+            }
+            sb.append(", ");
+            total += timing.getValue();
+        }
+        sb.append("total ").append(total / 1000000);
+        getLogger().info(CeylondMessages.msg("info.timings", sb));
+    }
+
+    private void writeProfile() throws IOException {
+        long hits = 0;
+        long misses = 0;
+        for (Module module : typeChecker.getContext().getModules().getListOfModules()) {
+            hits += module.getCache().getRelationHits();
+            misses += module.getCache().getRelationMisses();
+        }
+        profile.counter("typeCache.relationHits", hits);
+        profile.counter("typeCache.relationMisses", misses);
+        if (hits + misses != 0) {
+            profile.counter("typeCache.relationHitRatio", hits / (double)(hits + misses));
+        }
+        profile.write(FileUtil.applyCwd(cwd, profileOutput));
     }
     
     private void makeDoc() throws IOException {
+        long start = System.nanoTime();
         buildNodesMaps();
+        collectSubclasses();
+        collectAnnotationConstructors();
+        time("prepare", start);
+
         if (includeSourceCode) {
+            start = System.nanoTime();
             copySourceFiles();
+            time("source code", start);
         }
 
-        collectSubclasses();
-        collectAnnotationConstructors();
-
         // document every module
         boolean documentedOne = false;
+        Profile.Mark profileStart = profile != null ? profile.mark() : null;
         for(Module module : modules){
+            Profile.Mark moduleStart = profile != null ? profile.mark() : null;
             if (isEmpty(module)) {
                 getLogger().warning(CeylondMessages.msg("warn.moduleHasNoDeclaration", module.getNameAsString()));
             } else {
@@ -639,6 +742,7 @@ public class CeylonDocTool extends OutputRepoUsingTool {
             ArtifactContext artifactDocs = new ArtifactContext(null, module.getNameAsString(), module.getVersion(), ArtifactContext.DOCS);
             
             // find all doc folders to copy
+            start = System.nanoTime();
             File outputDocFolder = getDocOutputFolder(module);
             for (File docFolder : docFolders) {
                 File moduleDocFolder = new File(docFolder, join("/", module.getName()));
@@ -646,10 +750,19 @@ public class CeylonDocTool extends OutputRepoUsingTool {
                     FileUtil.copyAll(moduleDocFolder, outputDocFolder);
                 }
             }
+            time("resources", start);
 
+            start = System.nanoTime();
             repositoryRemoveArtifact(outputRepositoryManager, artifactDocs);
             
             repositoryPutArtifact(outputRepositoryManager, artifactDocs, getOutputFolder(module, null));
+            time("repository", start);
+            if (profile != null) {
+                profile.unit("document", module.getNameAsString(), moduleStart);
+            }
+        }
+        if (profile != null) {
+            profile.phase("document", profileStart);
         }
         if (!documentedOne) {
             getLogger().warning(CeylondMessages.msg("warn.couldNotFindAnyDeclaration"));
@@ -702,11 +815,16 @@ public class CeylonDocTool extends OutputRepoUsingTool {
             currentModule = module;
             clearModuleUrlAvailabilityCache();
             
-            doc(module);
-            makeApiIndex(module);
-            makeIndex(module);
-            makeSearch(module);
+            long start = System.nanoTime();
+            List<Page> pages = new ArrayList<Page>();
+            doc(module, pages);
+            makeApiIndex(module, pages);
+            makeIndex(module, pages);
+            makeSearch(module, pages);
+            generate(pages);
+            time("pages", start);
             
+            start = System.nanoTime();
             File resourcesDir = getResourcesDir(module);
             copyResource("resources/ceylondoc.css", new File(resourcesDir, "ceylondoc.css"));
             copyResource("resources/ceylondoc.js", new File(resourcesDir, "ceylondoc.js"));
@@ -724,9 +842,13 @@ public class CeylonDocTool extends OutputRepoUsingTool {
             copyResource("resources/ceylondoc-logo.png", new File(resourcesDir, "ceylondoc-logo.png"));
             copyResource("resources/ceylondoc-icons.png", new File(resourcesDir, "ceylondoc-icons.png"));
             copyResource("resources/NOTICE.txt", new File(getApiOutputFolder(module), "NOTICE.txt"));
+            time("resources", start);
         }
         finally {
             currentModule = null;
+            // the links and documentation are rendered for the pages of a module
+            linkCache.clear();
+            docCache.clear();
         }
     }
     
@@ -800,13 +922,13 @@ public class CeylonDocTool extends OutputRepoUsingTool {
         return new OutputStreamWriter(new FileOutputStream(file), "UTF-8"); 
     }
     
-    private void makeSearch(Module module) throws IOException {
-        Writer writer = openWriter(new File(getApiOutputFolder(module), "search.html"));
-        try {
-            new Search(module, this, writer).generate();
-        } finally {
-            writer.close();
-        }
+    private void makeSearch(final Module module, List<Page> pages) throws IOException {
+        pages.add(new Page(new File(getApiOutputFolder(module), "search.html")) {
+            @Override
+            protected void generate(Writer writer) throws IOException {
+                new Search(module, CeylonDocTool.this, writer).generate();
+            }
+        });
     }
 
     private void buildNodesMaps() {
@@ -914,40 +1036,38 @@ public class CeylonDocTool extends OutputRepoUsingTool {
         }
     }
 
-    private void doc(Module module) throws IOException {
-        Writer rootWriter = openWriter(getObjectFile(module));
-        try {
-            ModuleDoc moduleDoc = new ModuleDoc(this, rootWriter, module);
-            moduleDoc.generate();
-            for (Package pkg : getPackages(module)) {
-                if(pkg.getMembers().isEmpty()){
-                    continue;
-                }
-                // document the package
-                if (!isRootPackage(module, pkg)) {
-                    Writer packageWriter = openWriter(getObjectFile(pkg));
-                    try {
-                        new PackageDoc(this, packageWriter, pkg).generate();
-                    } finally {
-                        packageWriter.close();
+    private void doc(final Module module, List<Page> pages) throws IOException {
+        pages.add(new Page(getObjectFile(module)) {
+            @Override
+            protected void generate(Writer writer) throws IOException {
+                new ModuleDoc(CeylonDocTool.this, writer, module).generate();
+            }
+        });
+        for (final Package pkg : getPackages(module)) {
+            if(pkg.getMembers().isEmpty()){
+                continue;
+            }
+            // document the package
+            if (!isRootPackage(module, pkg)) {
+                pages.add(new Page(getObjectFile(pkg)) {
+                    @Override
+                    protected void generate(Writer writer) throws IOException {
+                        new PackageDoc(CeylonDocTool.this, writer, pkg).generate();
                     }
-                }
-                // document its members
-                for (Declaration decl : pkg.getMembers()) {
-                    doc(decl);
-                }
-                
-                if (pkg.getNameAsString().equals(AbstractModelLoader.CEYLON_LANGUAGE)) {
-                    docNothingType(pkg);
-                }
+                });
+            }
+            // document its members
+            for (Declaration decl : pkg.getMembers()) {
+                doc(decl, pages);
+            }
+            
+            if (pkg.getNameAsString().equals(AbstractModelLoader.CEYLON_LANGUAGE)) {
+                docNothingType(pkg, pages);
             }
-        } finally {
-            rootWriter.close();
         }
-        
     }
 
-    private void docNothingType(Package pkg) throws IOException {
+    private void docNothingType(Package pkg, List<Page> pages) throws IOException {
         final Annotation nothingDoc = new Annotation();
         nothingDoc.setName("doc");
         nothingDoc.addPositionalArgument(
@@ -971,26 +1091,26 @@ public class CeylonDocTool extends OutputRepoUsingTool {
             }
         };
         
-        doc(nothingType);
+        doc(nothingType, pages);
     }
 
-    private void makeIndex(Module module) throws IOException {
+    private void makeIndex(final Module module, List<Page> pages) throws IOException {
         File dir = getResourcesDir(module);
-        Writer writer = openWriter(new File(dir, "index.js"));
-        try {
-            new IndexDoc(this, writer, module).generate();
-        } finally {
-            writer.close();
-        }
+        pages.add(new Page(new File(dir, "index.js")) {
+            @Override
+            protected void generate(Writer writer) throws IOException {
+                new IndexDoc(CeylonDocTool.this, writer, module).generate();
+            }
+        });
     }
     
-    private void makeApiIndex(Module module) throws IOException {
-        Writer writer = openWriter(new File(getApiOutputFolder(module), "api-index.html"));
-        try {
-            new IndexApiDoc(this, writer, module).generate();
-        } finally {
-            writer.close();
-        }
+    private void makeApiIndex(final Module module, List<Page> pages) throws IOException {
+        pages.add(new Page(new File(getApiOutputFolder(module), "api-index.html")) {
+            @Override
+            protected void generate(Writer writer) throws IOException {
+                new IndexApiDoc(CeylonDocTool.this, writer, module).generate();
+            }
+        });
     }
 
     private File getResourcesDir(Module module) throws IOException {
@@ -1050,6 +1170,173 @@ public class CeylonDocTool extends OutputRepoUsingTool {
         }
     }
 
+    private void doc(final Declaration decl, List<Page> pages) throws IOException {
+        if (decl instanceof TypeDeclaration) {
+            if (shouldInclude(decl)) {
+                pages.add(new Page(getObjectFile(decl)) {
+                    @Override
+                    protected void generate(Writer writer) throws IOException {
+                        // also documents its member types, on the same thread
+                        new ClassDoc(CeylonDocTool.this, writer, (TypeDeclaration) decl).generate();
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * A page of the documentation, which may be generated on any 
+     * thread, and only ever written by the thread generating it.
+     */
+    private abstract class Page implements Callable<List<Warning>> {
+        private final File file;
+
+        Page(File file) {
+            this.file = file;
+        }
+
+        protected abstract void generate(Writer writer) throws IOException;
+
+        void write() throws IOException {
+            Writer writer = openWriter(file);
+            try {
+                generate(writer);
+            } finally {
+                writer.close();
+            }
+        }
+
+        /**
+         * Writes the page, and returns the warnings about it rather 
+         * than reporting them.
+         */
+        @Override
+        public List<Warning> call() throws IOException {
+            List<Warning> warnings = new ArrayList<Warning>();
+            recordedWarnings.set(warnings);
+            try {
+                write();
+            } finally {
+                recordedWarnings.remove();
+            }
+            return warnings;
+        }
+    }
+
+    /**
+     * Generates the given pages, concurrently if we have more than 
+     * one thread, in which case the warnings about every page are 
+     * reported once they are all done, in the order of the pages, so 
+     * that they do not depend on scheduling.
+     */
+    private void generate(List<Page> pages) throws IOException {
+        if (!pageExecutor.isParallel()) {
+            for (Page page : pages) {
+                page.write();
+            }
+            return;
+        }
+        List<List<Warning>> warnings;
+        try {
+            warnings = pageExecutor.invokeAll(pages);
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        for (List<Warning> pageWarnings : warnings) {
+            report(pageWarnings);
+        }
+    }
+
+    /**
+     * A warning, which we may have to report later, or again.
+     */
+    private static final class Warning {
+        final Logger log;
+        final String message;
+        /** Whether rendering the same thing again would warn again */
+        final boolean repeatable;
+
+        Warning(Logger log, String message, boolean repeatable) {
+            this.log = log;
+            this.message = message;
+            this.repeatable = repeatable;
+        }
+    }
+
+    /**
+     * Documentation rendered as HTML, with the warnings about it.
+     */
+    private static final class RenderedDoc {
+        final String html;
+        final List<Warning> warnings;
+
+        RenderedDoc(String html, List<Warning> warnings) {
+            this.html = html;
+            this.warnings = warnings;
+        }
+    }
+
+    private void warning(Logger log, String message, boolean repeatable) {
+        List<Warning> recorded = recordedWarnings.get();
+        if (recorded != null) {
+            recorded.add(new Warning(log, message, repeatable));
+        } else {
+            log.warning(message);
+        }
+    }
+
+    private void report(List<Warning> warnings) {
+        for (Warning warning : warnings) {
+            warning(warning.log, warning.message, warning.repeatable);
+        }
+    }
+
+    /**
+     * Reports that the given module documentation URL does not exist.
+     * This is only done once for every URL, as we remember whether 
+     * it exists.
+     */
+    protected void warningUrlDoesNotExist(String moduleUrl) {
+        warning(getLogger(), CeylondMessages.msg("info.urlDoesNotExist", moduleUrl), false);
+    }
+
+    /**
+     * Renders the given documentation, reusing what we rendered for 
+     * the same documentation and page, in which links are the same, 
+     * and reporting the warnings about it again.
+     * 
+     * @param key what the rendered documentation depends on
+     */
+    protected String renderDoc(Object key, Callable<String> renderer) {
+        RenderedDoc doc = docCache.get(key);
+        if (doc == null) {
+            List<Warning> outer = recordedWarnings.get();
+            List<Warning> warnings = new ArrayList<Warning>();
+            recordedWarnings.set(warnings);
+            String html;
+            try {
+                html = renderer.call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            } finally {
+                recordedWarnings.set(outer);
+            }
+            report(warnings);
+            docCache.putIfAbsent(key, new RenderedDoc(html, warnings));
+            return html;
+        }
+        for (Warning warning : doc.warnings) {
+            if (warning.repeatable) {
+                warning(warning.log, warning.message, true);
+            }
+        }
+        return doc.html;
+    }
+
     protected Package getPackage(Declaration decl) {
         Scope scope = decl.getContainer();
         while (!(scope instanceof Package)) {
@@ -1099,16 +1386,22 @@ public class CeylonDocTool extends OutputRepoUsingTool {
     }
 
     /**
-     * Returns the absolute URI of the page for the given thing
+     * Returns the absolute URI of the page for the given thing, which
+     * we remember since every page links to many others
      * @param obj (Module, Package, Declaration etc)
      * @throws IOException 
      */
     private URI getAbsoluteObjectUrl(Object obj) throws IOException {
-        File f = getObjectFile(obj);
-        if (f == null) {
-            throw new RuntimeException(CeylondMessages.msg("error.noPage", obj));
+        URI url = objectUrlCache.get(obj);
+        if (url == null) {
+            File f = getObjectFile(obj);
+            if (f == null) {
+                throw new RuntimeException(CeylondMessages.msg("error.noPage", obj));
+            }
+            url = f.toURI();
+            objectUrlCache.putIfAbsent(obj, url);
         }
-        return f.toURI();
+        return url;
     }
     
     /**
@@ -1116,7 +1409,12 @@ public class CeylonDocTool extends OutputRepoUsingTool {
      * @return Gets the base URL
      */
     private URI getBaseUrl(Module module) throws IOException {
-        return getApiOutputFolder(module).getCanonicalFile().toURI();
+        URI url = baseUrlCache.get(module);
+        if (url == null) {
+            url = getApiOutputFolder(module).getCanonicalFile().toURI();
+            baseUrlCache.putIfAbsent(module, url);
+        }
+        return url;
     }
     
     /**
@@ -1137,19 +1435,25 @@ public class CeylonDocTool extends OutputRepoUsingTool {
             throw new IllegalArgumentException(CeylondMessages.msg("error.expectedUriToBeAbsolute", uri2));
         }
         URI baseUrl = getBaseUrl(module);
-        StringBuilder sb = new StringBuilder();
-        URI r = uri;
-        if (!r.equals(baseUrl)) {
-            r = uri.resolve(URI.create(sb.toString()));
+        // the same for every link from the same page
+        String parentPath = parentPathCache.get(uri);
+        if (parentPath == null) {
+            StringBuilder sb = new StringBuilder();
+            URI r = uri;
             if (!r.equals(baseUrl)) {
-                r = uri;
+                r = uri.resolve(URI.create(sb.toString()));
+                if (!r.equals(baseUrl)) {
+                    r = uri;
+                }
             }
+            while (!r.equals(baseUrl)) {
+                sb.append("../");
+                r = uri.resolve(URI.create(sb.toString()));
+            }
+            parentPath = sb.toString();
+            parentPathCache.putIfAbsent(uri, parentPath);
         }
-        while (!r.equals(baseUrl)) {
-            sb.append("../");
-            r = uri.resolve(URI.create(sb.toString()));
-        }
-        URI result = URI.create(sb.toString() + baseUrl.relativize(uri2));
+        URI result = URI.create(parentPath + baseUrl.relativize(uri2));
         if (result.isAbsolute()) {
             // FIXME: this throws in some cases even for absolute URIs, not sure why
             //throw new RuntimeException("Result not absolute: "+result);
@@ -1252,9 +1556,13 @@ public class CeylonDocTool extends OutputRepoUsingTool {
         return subclasses.get(klass);
     }
     
-    protected Map<String, Boolean> getModuleUrlAvailabilityCache() {
+    protected ConcurrentMap<String, Boolean> getModuleUrlAvailabilityCache() {
         return moduleUrlAvailabilityCache;
     }
+
+    protected ConcurrentMap<Object, Object> getLinkCache() {
+        return linkCache;
+    }
     
     /**
      * Returns the starting and ending line number of the given declaration
@@ -1284,18 +1592,18 @@ public class CeylonDocTool extends OutputRepoUsingTool {
     
     protected void warningMissingDoc(String name, Referenceable scope) {
         if (!ignoreMissingDoc) {
-            richLog.warning(CeylondMessages.msg("warn.missingDoc", name, getPosition(getNode(scope))));
+            warning(richLog, CeylondMessages.msg("warn.missingDoc", name, getPosition(getNode(scope))), true);
         }
     }
 
     protected void warningBrokenLink(String docLinkText, Tree.DocLink docLink, Referenceable scope) {
         if (!ignoreBrokenLink) {
-            richLog.warning(CeylondMessages.msg("warn.brokenLink", docLinkText, getWhere(scope), getPosition(docLink)));
+            warning(richLog, CeylondMessages.msg("warn.brokenLink", docLinkText, getWhere(scope), getPosition(docLink)), true);
         }
     }
     
     protected void warningSetterDoc(String name, Declaration scope) {
-        richLog.warning(CeylondMessages.msg("warn.setterDoc", name, getPosition(getNode(scope))));
+        warning(richLog, CeylondMessages.msg("warn.setterDoc", name, getPosition(getNode(scope))), true);
     }
 
     protected void warningMissingThrows(Declaration d) {
@@ -1347,7 +1655,7 @@ public class CeylonDocTool extends OutputRepoUsingTool {
                 }
             }
             if (!isDocumented) {
-                richLog.warning(CeylondMessages.msg("warn.missingThrows", thrownException.asString(), getWhere(d), getPosition(getNode(d))));
+                warning(richLog, CeylondMessages.msg("warn.missingThrows", thrownException.asString(), getWhere(d), getPosition(getNode(d))), true);
             }
         }
     }
@@ -19,7 +19,6 @@
  */
 package org.eclipse.ceylon.ceylondoc;
 
-import static org.eclipse.ceylon.ceylondoc.CeylondMessages.msg;
 import static org.eclipse.ceylon.ceylondoc.Util.getAnnotation;
 import static org.eclipse.ceylon.ceylondoc.Util.isAbbreviatedType;
 import static org.eclipse.ceylon.ceylondoc.Util.normalizeSpaces;
@@ -40,6 +39,7 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import org.eclipse.ceylon.common.Constants;
 import org.eclipse.ceylon.common.config.DefaultToolOptions;
@@ -73,6 +73,9 @@ import org.eclipse.ceylon.model.typechecker.util.TypePrinter;
 
 public class LinkRenderer {
     
+    /** What we remember for links we could not resolve */
+    private static final Object UNRESOLVED = new Object();
+    
     private Object to;
     private Object from;
     private CeylonDocTool ceylonDocTool;
@@ -256,6 +259,17 @@ public class LinkRenderer {
     public void write() throws IOException {
         writer.write(getLink());
     }
+    
+    /**
+     * Renders the given documentation, whose links are rendered by 
+     * copies of this renderer, or reuses what we already rendered for 
+     * the same documentation with the same renderer settings.
+     */
+    public String renderDoc(String text, Callable<String> renderer) {
+        CacheKey key = new CacheKey("doc", text, from, scope, anchor, 
+                printAbbreviated, printTypeParameterDetail, printLinkDropdownMenu);
+        return ceylonDocTool.renderDoc(key, renderer);
+    }
 
     private String processModule(Module module) {
         String moduleUrl = getUrl(module, anchor);
@@ -336,13 +350,7 @@ public class LinkRenderer {
     }
 
     private String processWikiLink(final String docLinkText) {
-        Tree.DocLink docLink = findDocLink(docLinkText, scope);
-        if (docLink == null && scope instanceof Declaration) {
-            Declaration refinedDeclaration = ((Declaration) scope).getRefinedDeclaration();
-            if (refinedDeclaration != scope) {
-                docLink = findDocLink(docLinkText, refinedDeclaration);
-            }
-        }
+        Tree.DocLink docLink = resolveDocLink(docLinkText);
 
         if (docLink != null) {
             if (docLink.getQualified() != null && docLink.getQualified().size() > 0) {
@@ -367,6 +375,29 @@ public class LinkRenderer {
         return getUnresolvableLink(docLinkText);
     }
 
+    /**
+     * Finds the given doc link in the tree of our scope, remembering 
+     * it for the other pages with the same link in the same scope.
+     */
+    private Tree.DocLink resolveDocLink(String docLinkText) {
+        CacheKey key = new CacheKey("wiki", docLinkText, scope);
+        Object docLink = ceylonDocTool.getLinkCache().get(key);
+        if (docLink == null) {
+            docLink = findDocLink(docLinkText, scope);
+            if (docLink == null && scope instanceof Declaration) {
+                Declaration refinedDeclaration = ((Declaration) scope).getRefinedDeclaration();
+                if (refinedDeclaration != scope) {
+                    docLink = findDocLink(docLinkText, refinedDeclaration);
+                }
+            }
+            if (docLink == null) {
+                docLink = UNRESOLVED;
+            }
+            ceylonDocTool.getLinkCache().putIfAbsent(key, docLink);
+        }
+        return docLink != UNRESOLVED ? (Tree.DocLink) docLink : null;
+    }
+
     private String processAnnotationParam(String text) {
         if( text.equals("module")) {
             Module mod = getCurrentModule();
@@ -412,7 +443,39 @@ public class LinkRenderer {
             }
         }
         
+        Declaration currentDecl = resolveAnnotationParam(text);
         
+        // we can't link to parameters yet, unless they're toplevel
+        if (currentDecl != null && !isParameter(currentDecl)) {
+            if (currentDecl instanceof TypeDeclaration) {
+                return processProducedType(((TypeDeclaration) currentDecl).getType());
+            } else {
+                return processTypedDeclaration((TypedDeclaration) currentDecl);
+            }
+        } else {
+            return getUnresolvableLink(text);
+        }
+    }
+
+    /**
+     * Resolves the declaration named by the given annotation argument 
+     * in our scope, remembering it for the other pages with the same 
+     * argument in the same scope.
+     */
+    private Declaration resolveAnnotationParam(String text) {
+        CacheKey key = new CacheKey("annotation", text, scope, ceylonDocTool.getCurrentModule());
+        Object decl = ceylonDocTool.getLinkCache().get(key);
+        if (decl == null) {
+            decl = findAnnotationParamDeclaration(text);
+            if (decl == null) {
+                decl = UNRESOLVED;
+            }
+            ceylonDocTool.getLinkCache().putIfAbsent(key, decl);
+        }
+        return decl != UNRESOLVED ? (Declaration) decl : null;
+    }
+
+    private Declaration findAnnotationParamDeclaration(String text) {
         String declName;
         Scope currentScope;
         
@@ -444,17 +507,7 @@ public class LinkRenderer {
                 break;
             }
         }
-        
-        // we can't link to parameters yet, unless they're toplevel
-        if (currentDecl != null && !isParameter(currentDecl)) {
-            if (currentDecl instanceof TypeDeclaration) {
-                return processProducedType(((TypeDeclaration) currentDecl).getType());
-            } else {
-                return processTypedDeclaration((TypedDeclaration) currentDecl);
-            }
-        } else {
-            return getUnresolvableLink(text);
-        }
+        return currentDecl;
     }
 
     private boolean isLinkable(Declaration decl) {
@@ -808,15 +861,13 @@ public class LinkRenderer {
                 if( responseCode == HttpURLConnection.HTTP_OK ) {
                     result = Boolean.TRUE;                
                 } else {
-                    ceylonDocTool.getLogger().warning(msg("info.urlDoesNotExist", moduleUrl));
                     result = Boolean.FALSE;
                 }
             }
             catch (IOException e) {
-                ceylonDocTool.getLogger().warning(msg("info.urlDoesNotExist", moduleUrl));
                 result = Boolean.FALSE;
             }
-            ceylonDocTool.getModuleUrlAvailabilityCache().put(moduleUrl, result);
+            rememberUrlAvailability(moduleUrl, result);
         }
         return result.booleanValue();
     }
@@ -828,14 +879,21 @@ public class LinkRenderer {
             if (moduleDocDir.isDirectory() && moduleDocDir.exists()) {
                 result = Boolean.TRUE;
             } else {
-                ceylonDocTool.getLogger().warning(msg("info.urlDoesNotExist", moduleUrl));
                 result = Boolean.FALSE;
             }
-            ceylonDocTool.getModuleUrlAvailabilityCache().put(moduleUrl, result);
+            rememberUrlAvailability(moduleUrl, result);
         }
         return result.booleanValue();
     }
     
+    private void rememberUrlAvailability(String moduleUrl, Boolean result) {
+        // only warn once, even if other pages checked it at the same time
+        Boolean previous = ceylonDocTool.getModuleUrlAvailabilityCache().putIfAbsent(moduleUrl, result);
+        if (previous == null && !result.booleanValue()) {
+            ceylonDocTool.warningUrlDoesNotExist(moduleUrl);
+        }
+    }
+    
     private static String encodeResult(String text) {
         if (text != null) {
             text = text.replaceAll("<", "#LT;");
@@ -1006,6 +1064,50 @@ public class LinkRenderer {
         return docLinks[0];
     }
     
+    /**
+     * A key of the caches of the tool, which compares model objects 
+     * by identity, as distinct declarations can be equal.
+     */
+    private static final class CacheKey {
+        private final Object[] parts;
+        private final int hash;
+
+        CacheKey(Object... parts) {
+            this.parts = parts;
+            int hash = 0;
+            for (Object part : parts) {
+                hash = 31 * hash + (isValue(part) ? part.hashCode() : System.identityHashCode(part));
+            }
+            this.hash = hash;
+        }
+
+        private static boolean isValue(Object part) {
+            return part instanceof String || part instanceof Boolean;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+            Object[] otherParts = ((CacheKey) obj).parts;
+            if (otherParts.length != parts.length) {
+                return false;
+            }
+            for (int i = 0; i < parts.length; i++) {
+                if (isValue(parts[i]) ? !parts[i].equals(otherParts[i]) : parts[i] != otherParts[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+    
     private Module getCurrentModule() {
         if (scope instanceof Module) {
             return (Module) scope;
@@ -33,6 +33,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.regex.Pattern;
 
 import javax.swing.text.MutableAttributeSet;
@@ -290,18 +291,24 @@ public class Util {
         return tags;
     }
     
-    public static String wikiToHTML(String text, LinkRenderer linkRenderer) {
+    public static String wikiToHTML(final String text, final LinkRenderer linkRenderer) {
         if( text == null || text.length() == 0 ) {
             return text;
         }
         
-        Configuration config = Configuration.builder()
-                .forceExtentedProfile()
-                .setCodeBlockEmitter(CeylondocBlockEmitter.INSTANCE)
-                .setSpecialLinkEmitter(new CeylondocSpanEmitter(linkRenderer))
-                .build();
-        
-        return Processor.process(text, config);
+        // the same documentation is often rendered for several parts of a page
+        return linkRenderer.renderDoc(text, new Callable<String>() {
+            @Override
+            public String call() {
+                Configuration config = Configuration.builder()
+                        .forceExtentedProfile()
+                        .setCodeBlockEmitter(CeylondocBlockEmitter.INSTANCE)
+                        .setSpecialLinkEmitter(new CeylondocSpanEmitter(linkRenderer))
+                        .build();
+                
+                return Processor.process(text, config);
+            }
+        });
     }
 
     private static String getRawDoc(Declaration decl) {
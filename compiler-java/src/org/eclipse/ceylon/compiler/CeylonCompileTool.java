@@ -30,8 +30,11 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 
@@ -201,6 +204,10 @@ public class CeylonCompileTool extends OutputRepoUsingTool {
     private List<String> modulesOrFiles = DefaultToolOptions.getCompilerModules(Backend.Java);
     private boolean continueOnErrors;
     private boolean progress = DefaultToolOptions.getCompilerProgress();
+    private int typecheckThreads = 1;
+    private int outputThreads = 1;
+    private File profileOutput;
+    private File parseCache;
     private List<String> javac = DefaultToolOptions.getCompilerJavac();
     private String encoding;
     private String includeDependencies;
@@ -358,6 +365,38 @@ public class CeylonCompileTool extends OutputRepoUsingTool {
         this.progress = progress;
     }
 
+    @OptionArgument(longName="typecheck-threads", argumentName="number")
+    @Description("Sets the number of threads used to parse and typecheck the source files, " +
+            "parsing files and typechecking distinct packages in parallel (default: 1).")
+    public void setTypecheckThreads(int typecheckThreads) {
+        this.typecheckThreads = typecheckThreads;
+    }
+
+    @OptionArgument(longName="output-threads", argumentName="number")
+    @Description("Sets the number of threads used to write the generated class files, " +
+            "so that code generation does not wait for the disk (default: 1). " +
+            "Classes are still generated one at a time.")
+    public void setOutputThreads(int outputThreads) {
+        this.outputThreads = outputThreads;
+    }
+
+    @OptionArgument(longName="profile-output", argumentName="file")
+    @Description("Writes the time and memory taken by each compiler phase and source file, " +
+            "along with model loader and type cache counters, as JSON to the given file.")
+    public void setProfileOutput(File profileOutput) {
+        this.profileOutput = profileOutput;
+    }
+
+    @OptionArgument(longName="parse-cache", argumentName="dir")
+    @Description("Caches the parsed source files in the given directory, so that " +
+            "the source files which did not change are not parsed again. " +
+            "The least recently used entries are deleted once the directory " +
+            "holds more than 128MB, or the number of bytes given by the " +
+            "`ceylon.parse.cache.size` system property.")
+    public void setParseCache(File parseCache) {
+        this.parseCache = parseCache;
+    }
+
     @OptionArgument(shortName='E', argumentName="encoding")
     @Description("Sets the encoding used for reading source files" +
             "(default: platform-specific).")
@@ -550,6 +589,26 @@ public class CeylonCompileTool extends OutputRepoUsingTool {
             arguments.add("-progress");
         }
 
+        if (typecheckThreads > 1) {
+            arguments.add("-typecheck-threads");
+            arguments.add(String.valueOf(typecheckThreads));
+        }
+
+        if (outputThreads > 1) {
+            arguments.add("-output-threads");
+            arguments.add(String.valueOf(outputThreads));
+        }
+
+        if (profileOutput != null) {
+            arguments.add("-profile-output");
+            arguments.add(applyCwd(profileOutput).getPath());
+        }
+
+        if (parseCache != null) {
+            arguments.add("-parse-cache");
+            arguments.add(applyCwd(parseCache).getPath());
+        }
+
         if (offline) {
             arguments.add("-offline");
         }
@@ -769,6 +828,10 @@ public class CeylonCompileTool extends OutputRepoUsingTool {
                             Properties newHashes = getFileHashes(module, files);
                             // Compare the two and make list of changed files
                             Collection<String> changedFiles = determineChangedFiles(module, oldHashes, newHashes, carFile);
+                            if (changedFiles != null && !changedFiles.isEmpty()) {
+                                // Files that depend on the changed ones must be compiled again too
+                                changedFiles = addDependentFiles(module, changedFiles, oldHashes, newHashes, carFile);
+                            }
                             if (changedFiles == null) {
                                 // This shouldn't happen, but if it does we just skip any
                                 // special treatment and compile this module normally
@@ -893,6 +956,65 @@ public class CeylonCompileTool extends OutputRepoUsingTool {
         return result;
     }
     
+    /**
+     * Adds to the given changed files those that depend on them, directly
+     * or not, according to the {@code META-INF/dependencies.txt} of the
+     * module's CAR file. CAR files without dependencies leave the changed
+     * files as they are.
+     * @return the files to compile, or null if the whole module must be
+     * compiled because one of its source files was removed
+     */
+    private Collection<String> addDependentFiles(String moduleName, Collection<String> changedFiles, 
+            Properties oldHashes, Properties newHashes, File carFile) {
+        Properties dependencies = getMetaInfDependencies(carFile);
+        if (dependencies == null) {
+            return changedFiles;
+        }
+        // The classes of a removed file would otherwise be left in the CAR
+        for (String name : dependencies.stringPropertyNames()) {
+            if (oldHashes.containsKey(name) && !newHashes.containsKey(name)) {
+                return null;
+            }
+        }
+        // Turn the dependencies around
+        Map<String,List<String>> dependents = new HashMap<String,List<String>>();
+        for (String name : dependencies.stringPropertyNames()) {
+            for (String dependency : dependencies.getProperty(name).split(",")) {
+                if (dependency.isEmpty()) {
+                    continue;
+                }
+                List<String> list = dependents.get(dependency);
+                if (list == null) {
+                    list = new ArrayList<String>();
+                    dependents.put(dependency, list);
+                }
+                list.add(name);
+            }
+        }
+        Set<String> result = new LinkedHashSet<String>(changedFiles);
+        LinkedList<String> todo = new LinkedList<String>();
+        for (String file : changedFiles) {
+            todo.add(handleResourceRoot(moduleName, FileUtil.relativeFile(allDirs(), file)));
+        }
+        Set<String> seen = new HashSet<String>(todo);
+        while (!todo.isEmpty()) {
+            List<String> list = dependents.get(todo.removeFirst());
+            if (list == null) {
+                continue;
+            }
+            for (String dependent : list) {
+                if (seen.add(dependent)) {
+                    File full = FileUtil.applyPath(allDirs(), dependent);
+                    if (full != null) {
+                        result.add(full.getPath());
+                        todo.add(dependent);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+    
     private Collection<String> filesToStrings(String moduleName, Collection<File> files) {
         List<String> result = new ArrayList<String>(files.size());
         for (File f : files) {
@@ -4108,14 +4108,23 @@ public class ExpressionTransformer extends AbstractTransformer {
         // we extract from the tuple not more than we have tuple members, but even less than that if we don't
         // have enough parameters to put them in
         final int argumentsToExtract = Math.min(argIndex + minimumTupleArguments, variadic ? maxParameters - 1 : maxParameters); 
+        // Tuple is final, so if it's statically a tuple we can read its elements directly
+        final boolean isTuple = typeFact().isTupleType(tupleArgument.getTypeModel().resolveAliases());
         for (; spreadArgIndex < argumentsToExtract; spreadArgIndex++) {
             boxingStrategy = invocation.getParameterBoxingStrategy(spreadArgIndex);
             Type paramType = getParameterTypeOfCallable(callableType, spreadArgIndex);
-            JCExpression tupleIndex = boxType(make().Literal((long)spreadArgIndex-argIndex), 
-                    typeFact().getIntegerType());
-            JCExpression tupleElement = make().Apply(null, 
-                    naming.makeQualIdent(tupleAlias.makeIdent(), "get"),
-                    List.<JCExpression>of(tupleIndex));
+            JCExpression tupleElement;
+            if (isTuple) {
+                tupleElement = make().Apply(null, 
+                        naming.makeQualIdent(make().TypeCast(make().QualIdent(syms().ceylonTupleType.tsym), tupleAlias.makeIdent()), "$getElement$"),
+                        List.<JCExpression>of(make().Literal(spreadArgIndex-argIndex)));
+            } else {
+                JCExpression tupleIndex = boxType(make().Literal((long)spreadArgIndex-argIndex), 
+                        typeFact().getIntegerType());
+                tupleElement = make().Apply(null, 
+                        naming.makeQualIdent(tupleAlias.makeIdent(), "get"),
+                        List.<JCExpression>of(tupleIndex));
+            }
             
             tupleElement = applyErasureAndBoxing(tupleElement, 
                     typeFact().getAnythingType(), 
@@ -6197,6 +6206,7 @@ public class ExpressionTransformer extends AbstractTransformer {
     class CorrespondenceIndexTransformer extends AbstractIndexTransformer {
 
         private boolean useGetFromFirst;
+        private boolean useStaticString;
 
         CorrespondenceIndexTransformer(Tree.IndexExpression indexExpr, Type leftType, Type rightType, Type sequentialElementType) {
             super(indexExpr, leftType, rightType, sequentialElementType);
@@ -6219,6 +6229,8 @@ public class ExpressionTransformer extends AbstractTransformer {
             } else {
                 useGetFromFirst = false;
             }
+            // for strings we can call the static String.getFromFirst() to avoid boxing the string
+            useStaticString = useGetFromFirst && !isOnSuper && isCeylonString(primaryType);
         }
 
         @Override
@@ -6226,6 +6238,18 @@ public class ExpressionTransformer extends AbstractTransformer {
             return useGetFromFirst ? "getFromFirst": "get";
         }
 
+        @Override
+        protected JCExpression transformIndexed(Tree.IndexExpression indexExpr) {
+            if (!useStaticString) {
+                return super.transformIndexed(indexExpr);
+            }
+            JCExpression string = transformExpression(indexExpr.getPrimary(), BoxingStrategy.UNBOXED, primaryType);
+            JCExpression index = transformIndex((Tree.Element)indexExpr.getElementOrRange());
+            return at(indexExpr).Apply(List.<JCTree.JCExpression>nil(), 
+                    makeSelect(makeJavaType(typeFact().getStringType(), JT_NO_PRIMITIVES), getGetterName()), 
+                    List.of(string, index));
+        }
+
         @Override
         protected BoxingStrategy getIndexBoxing() {
             return useGetFromFirst ? BoxingStrategy.UNBOXED : BoxingStrategy.BOXED;
@@ -32,6 +32,7 @@ public enum Optimization {
     TupleIterationStatic,
     ArrayIterationDynamic,
     TupleIterationDynamic,
+    StringIteration,
     
     PowerUnroll
 }
@@ -2055,11 +2055,12 @@ public class StatementTransformer extends AbstractTransformer {
     
     /** 
      * Loop transformation when the iterated expression is statically known 
-     * to be a {@code String}.
+     * to be a {@code String}, iterating its code points without boxing 
+     * them, unless the loop variable itself needs to be boxed.
      * <pre>
         java.lang.String s = ITERABLE.value;
-        int sz = s.codePointCount(0, s.length());
-        for (int index = 0; index < sz; ) {
+        int length = s.length();
+        for (int index = 0; index < length; ) {
             int ITEM = s.codePointAt(index);
             index+= java.lang.Character.charCount(ITEM);
             
@@ -2137,10 +2138,19 @@ public class StatementTransformer extends AbstractTransformer {
     
     private ForStatementTransformation stringIteration(Tree.ForStatement stmt,
             Tree.Term baseIterable, Tree.Term step) {
-        if (step == null &&
-                baseIterable.getTypeModel().getSupertype(typeFact().getStringDeclaration()) != null) {
+        if (baseIterable.getTypeModel().getSupertype(typeFact().getStringDeclaration()) != null) {
+            if (step != null) {
+                return optimizationFailed(stmt, Optimization.StringIteration, 
+                        "String iterated with a step");
+            }
+            if (isOptimizationDisabled(stmt, Optimization.StringIteration)) {
+                return optimizationDisabled(stmt, Optimization.StringIteration);
+            }
             return new StringIterationOptimization(stmt, baseIterable, step);
         }
+        if (isOptimizationRequired(stmt, Optimization.StringIteration)) {
+            return optimizationFailed(stmt, Optimization.StringIteration, "static type of iterable in for statement is not String");
+        }
         return null;
     }
 
@@ -2250,7 +2260,7 @@ public class StatementTransformer extends AbstractTransformer {
             } else if (forIterator instanceof Tree.PatternIterator) {
                 Tree.PatternIterator patIter = (Tree.PatternIterator)forIterator;
                 Tree.Pattern pattern = patIter.getPattern();
-                for (VarDefBuilder vdb : transformPattern(pattern, elementGet)) {
+                for (VarDefBuilder vdb : transformPattern(pattern, elementGet, elementType)) {
                     transformedBlock = transformedBlock.prepend(vdb.build());
                 }
             } else {
@@ -2327,6 +2337,12 @@ public class StatementTransformer extends AbstractTransformer {
         
         public static final String OPT_NAME = "ArrayIterationStatic";
         private final boolean unboxed;
+        /** 
+         * The tag of the primitive type of the backing array when the 
+         * elements are Java wrapper types (e.g. {@code java.lang::Float}
+         * backed by a {@code float[]}), otherwise null 
+         */
+        private final TypeTag javaPrimitive;
         
         ArrayIterationOptimization(Tree.ForStatement stmt, 
                 Tree.Term baseIterable, Tree.Term step,
@@ -2338,12 +2354,48 @@ public class StatementTransformer extends AbstractTransformer {
                     || typeFact().getArrayType(typeFact().getCharacterType()).isExactly(arrayType)
                     || typeFact().getArrayType(typeFact().getFloatType()).isExactly(arrayType)
                     || typeFact().getArrayType(typeFact().getStringType()).isExactly(arrayType);;
+            javaPrimitive = unboxed ? null : javaPrimitive(elementType);
+        }
+        
+        /**
+         * Returns the primitive type tag for an element type which is 
+         * exactly one of the Java wrapper types, since an {@code Array} 
+         * of those is backed by an array of the corresponding primitive 
+         * type.
+         */
+        private TypeTag javaPrimitive(Type elementType) {
+            if (elementType == null
+                    || !elementType.isClass()) {
+                return null;
+            }
+            switch (elementType.getDeclaration().getQualifiedNameString()) {
+            case "java.lang::Long":
+                return TypeTag.LONG;
+            case "java.lang::Integer":
+                return TypeTag.INT;
+            case "java.lang::Short":
+                return TypeTag.SHORT;
+            case "java.lang::Byte":
+                return TypeTag.BYTE;
+            case "java.lang::Double":
+                return TypeTag.DOUBLE;
+            case "java.lang::Float":
+                return TypeTag.FLOAT;
+            case "java.lang::Character":
+                return TypeTag.CHAR;
+            case "java.lang::Boolean":
+                return TypeTag.BOOLEAN;
+            default:
+                return null;
+            }
         }
         
         @Override
         protected JCExpression makeIndexableType() {
             if(unboxed)
                 return make().Type(syms().objectType);
+            if(javaPrimitive != null)
+                return make().TypeArray(make().TypeIdent(javaPrimitive));
             return makeJavaType(typeFact().getArrayType(elementType));
         }
         
@@ -2354,6 +2406,11 @@ public class StatementTransformer extends AbstractTransformer {
                 return make().Apply(null,
                                     naming.makeQualIdent(iterableExpr, "toArray"),
                                     List.<JCExpression>nil());
+            if(javaPrimitive != null)
+                return make().TypeCast(make().TypeArray(make().TypeIdent(javaPrimitive)), 
+                                       make().Apply(null,
+                                                    naming.makeQualIdent(iterableExpr, "toArray"),
+                                                    List.<JCExpression>nil()));
             return iterableExpr;
         }
         
@@ -2363,6 +2420,8 @@ public class StatementTransformer extends AbstractTransformer {
         
         @Override
         protected JCExpression makeLengthExpr() {
+            if(javaPrimitive != null)
+                return naming.makeQualIdent(indexableName.makeIdent(), "length");
             if(unboxed)
                 return utilInvocation().arrayLength(indexableName.makeIdent());
             else
@@ -2402,6 +2461,12 @@ public class StatementTransformer extends AbstractTransformer {
                 elementGet = utilInvocation().getStringArray( 
                         indexableName.makeIdent(), indexName.makeIdent());
                 gotType = elementType;
+            } else if (javaPrimitive != null) {
+                // java.lang.Float.valueOf(array[i])
+                elementGet = make().Apply(null, 
+                        naming.makeQualIdent(makeJavaType(elementType), "valueOf"), 
+                        List.<JCExpression>of(make().Indexed(indexableName.makeIdent(), indexName.makeIdent())));
+                gotType = elementType;
             }
             
             if(elementGet == null){
@@ -3062,7 +3127,7 @@ public class StatementTransformer extends AbstractTransformer {
             } else if (forIterator instanceof Tree.PatternIterator) {
                 Tree.PatternIterator patIter = (Tree.PatternIterator)forIterator;
                 Tree.Pattern pat = patIter.getPattern();
-                List<VarDefBuilder> varsDefs = transformPattern(pat, elem_name.makeIdent());
+                List<VarDefBuilder> varsDefs = transformPattern(pat, elem_name.makeIdent(), iteratorElementType);
                 for (VarDefBuilder vdb : varsDefs) {
                     itemDecls = itemDecls.append(vdb.build());
                 }
@@ -5381,7 +5446,7 @@ public class StatementTransformer extends AbstractTransformer {
         result = result.append(tmpVar);
         
         // Now add the destructured variables
-        List<VarDefBuilder> destructured = transformPattern(pat, tmpVarName.makeIdent());
+        List<VarDefBuilder> destructured = transformPattern(pat, tmpVarName.makeIdent(), destExpr.getTypeModel());
         for (VarDefBuilder vdb : destructured) {
             Value v = vdb.var.getDeclarationModel();
             at(vdb.var);
@@ -5511,14 +5576,32 @@ public class StatementTransformer extends AbstractTransformer {
     }
     
     List<VarDefBuilder> transformPattern(Tree.Pattern pat, JCExpression varAccessExpr) {
+        return transformPattern(pat, varAccessExpr, null);
+    }
+    
+    /**
+     * Transforms the given pattern, where {@code exprType} is the static 
+     * type of the destructured value, if known, and lets us read the 
+     * elements of a {@code Tuple} directly.
+     */
+    List<VarDefBuilder> transformPattern(Tree.Pattern pat, JCExpression varAccessExpr, Type exprType) {
         List<VarDefBuilder> result = List.nil();
+        if (exprType != null) {
+            exprType = exprType.resolveAliases();
+        }
         
         if (pat instanceof Tree.TuplePattern) {
             // For a Tuple we get the value of each of its items and assign it to a local value
             int idx = 0;
             Tree.TuplePattern tuple = (Tree.TuplePattern)pat;
+            // Tuple is final, so a value of a tuple type is a Tuple instance
+            boolean isTuple = exprType != null && typeFact().isTupleType(exprType);
+            java.util.List<Type> elementTypes = isTuple ? typeFact().getTupleElementTypes(exprType) : null;
             for (Tree.Pattern p : tuple.getPatterns()) {
-                JCExpression idxExpr = makeInteger(idx++);
+                int index = idx++;
+                Type elementType = elementTypes != null && index < elementTypes.size() && !isVariadicVariable(p) ? 
+                        elementTypes.get(index) : null;
+                JCExpression idxExpr = makeInteger(index);
                 Type ot = typeFact().getObjectType();
                 JCExpression fullGetExpr;
                 if (varAccessExpr != null) {
@@ -5526,6 +5609,11 @@ public class StatementTransformer extends AbstractTransformer {
                     JCExpression tupleAccessExpr;
                     if (isVariadicVariable(p)) {
                         tupleAccessExpr = makeQualIdent(seqVarAccessExpr, "skip");
+                    } else if (isTuple) {
+                        // read the element straight out of the tuple, without boxing the index
+                        seqVarAccessExpr = make().TypeCast(make().QualIdent(syms().ceylonTupleType.tsym), varAccessExpr);
+                        tupleAccessExpr = makeQualIdent(seqVarAccessExpr, "$getElement$");
+                        idxExpr = make().Literal(index);
                     } else {
                         tupleAccessExpr = makeQualIdent(seqVarAccessExpr, "getFromFirst");
                     }
@@ -5558,22 +5646,25 @@ public class StatementTransformer extends AbstractTransformer {
                 } else {
                     fullGetExpr = null;
                 }
-                result = result.appendList(transformPattern(p, fullGetExpr));
+                result = result.appendList(transformPattern(p, fullGetExpr, elementType));
             }
         } else if (pat instanceof Tree.KeyValuePattern) {
             // For an Entry we create two local values, one for the key and one for the value
             Tree.KeyValuePattern entry = (Tree.KeyValuePattern)pat;
             Type ot = typeFact().getObjectType();
+            boolean isEntry = exprType != null && typeFact().isEntryType(exprType);
+            Type keyType = isEntry ? typeFact().getKeyType(exprType) : null;
+            Type itemType = isEntry ? typeFact().getValueType(exprType) : null;
             JCExpression getItemExpr;
             if (varAccessExpr != null) {
                 JCExpression entryVarAccessExpr = make().TypeCast(makeJavaType(typeFact().getEntryType(ot , ot), JT_RAW), varAccessExpr);
                 JCExpression getKeyExpr = make().Apply(null, makeQualIdent(entryVarAccessExpr, "getKey"), List.<JCExpression>nil());
-                result = result.appendList(transformPattern(entry.getKey(), getKeyExpr));
+                result = result.appendList(transformPattern(entry.getKey(), getKeyExpr, keyType));
                 getItemExpr = make().Apply(null, makeQualIdent(entryVarAccessExpr, "getItem"), List.<JCExpression>nil());
             } else {
                 getItemExpr = null;
             }
-            result = result.appendList(transformPattern(entry.getValue(), getItemExpr));
+            result = result.appendList(transformPattern(entry.getValue(), getItemExpr, itemType));
         } else if (pat instanceof Tree.VariablePattern) {
             Tree.VariablePattern var = (Tree.VariablePattern)pat;
             result = result.append(transformVariable(var.getVariable(), varAccessExpr));
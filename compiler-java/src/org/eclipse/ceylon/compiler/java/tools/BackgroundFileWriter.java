@@ -0,0 +1,178 @@
+/*
+ * Copyright Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the authors tag. All rights reserved.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License version 2.
+ *
+ * This particular file is subject to the "Classpath" exception as provided in the
+ * LICENSE file that accompanied this code.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License,
+ * along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+
+package org.eclipse.ceylon.compiler.java.tools;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Writes the files produced by the compiler on a pool of worker
+ * threads, so that generating the next class does not have to wait
+ * for the previous one to hit the disk. The bytes of each file are
+ * collected in memory by the stream returned by
+ * {@link #openOutputStream(File)}, and are only handed to a worker
+ * when that stream is closed, so what ends up on disk is exactly
+ * what a {@link FileOutputStream} would have written.
+ *
+ * At most {@link #PENDING_PER_THREAD} files per thread wait to be
+ * written at any time, so that a slow disk cannot make us hold the
+ * bytes of every class of the module: past that, the file is
+ * written by the thread which closes it.
+ *
+ * Every file must be waited for with {@link #await()} before it is
+ * read back, which {@link JarOutputRepositoryManager} does before
+ * assembling its jars.
+ *
+ * Only the writing happens here: the classes themselves are still
+ * generated one at a time on the compiler thread, because
+ * {@code Gen}, {@code ClassWriter}, the {@code Names} table and
+ * symbol completion share per-context state which is not
+ * thread-safe, and the constant pool of each class depends on the
+ * order in which they are visited.
+ */
+class BackgroundFileWriter {
+
+    /** The number of files per thread which may wait to be written */
+    static final int PENDING_PER_THREAD = 16;
+
+    private final int threads;
+    private final int maxPending;
+    private final Semaphore pending;
+    private ExecutorService pool;
+    private IOException failure;
+
+    BackgroundFileWriter(int threads) {
+        this.threads = threads;
+        this.maxPending = threads * PENDING_PER_THREAD;
+        this.pending = new Semaphore(maxPending);
+    }
+
+    /**
+     * Returns a stream whose contents are written to the given file
+     * in the background once it is closed. The parent folder of the
+     * file must already exist.
+     */
+    OutputStream openOutputStream(final File file) {
+        return new ByteArrayOutputStream() {
+            private boolean closed;
+
+            @Override
+            public void close() throws IOException {
+                if(closed)
+                    return;
+                closed = true;
+                writeInBackground(file, toByteArray());
+            }
+        };
+    }
+
+    private void writeInBackground(final File file, final byte[] bytes) throws IOException {
+        if(!pending.tryAcquire()){
+            // enough is waiting already: write it ourselves
+            write(file, bytes);
+            return;
+        }
+        try{
+            pool().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try{
+                        write(file, bytes);
+                    }catch(IOException x){
+                        failed(x);
+                    }catch(RuntimeException | Error x){
+                        failed(new IOException(x));
+                    }finally{
+                        pending.release();
+                    }
+                }
+            });
+        }catch(RejectedExecutionException x){
+            pending.release();
+            throw new IOException(x);
+        }
+    }
+
+    private static void write(File file, byte[] bytes) throws IOException {
+        try(OutputStream out = new FileOutputStream(file)){
+            out.write(bytes);
+        }
+    }
+
+    private synchronized ExecutorService pool() {
+        if(pool == null){
+            pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "ceylon-compiler-output");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return pool;
+    }
+
+    private synchronized void failed(IOException x) {
+        if(failure == null)
+            failure = x;
+    }
+
+    /**
+     * Waits until every file handed to us so far is written, and
+     * rethrows the first failure.
+     */
+    void await() throws IOException {
+        try{
+            pending.acquire(maxPending);
+        }catch(InterruptedException x){
+            Thread.currentThread().interrupt();
+            throw new IOException(x);
+        }
+        pending.release(maxPending);
+        IOException x;
+        synchronized(this){
+            x = failure;
+            failure = null;
+        }
+        if(x != null)
+            throw x;
+    }
+
+    /**
+     * Releases the worker threads. We may still be used afterwards,
+     * in which case new ones are started.
+     */
+    synchronized void shutdown() {
+        if(pool != null){
+            pool.shutdown();
+            pool = null;
+        }
+    }
+}
@@ -19,17 +19,24 @@
  */
 package org.eclipse.ceylon.compiler.java.tools;
 
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.eclipse.ceylon.common.StatusPrinter;
 import org.eclipse.ceylon.compiler.java.loader.UnknownTypeCollector;
 import org.eclipse.ceylon.compiler.java.loader.model.CompilerModuleManager;
 import org.eclipse.ceylon.compiler.java.loader.model.LazyModuleSourceMapper;
 import org.eclipse.ceylon.compiler.java.tools.LanguageCompiler.CompilerDelegate;
+import org.eclipse.ceylon.compiler.java.util.Timer;
 import org.eclipse.ceylon.compiler.typechecker.TypeChecker;
 import org.eclipse.ceylon.compiler.typechecker.analyzer.ModuleSourceMapper;
 import org.eclipse.ceylon.compiler.typechecker.analyzer.ModuleValidator;
+import org.eclipse.ceylon.compiler.typechecker.context.PhaseExecutor;
+import org.eclipse.ceylon.compiler.typechecker.context.PhaseExecutor.Phase;
 import org.eclipse.ceylon.compiler.typechecker.context.PhasedUnit;
 import org.eclipse.ceylon.compiler.typechecker.context.PhasedUnits;
 import org.eclipse.ceylon.compiler.typechecker.io.VirtualFile;
+import org.eclipse.ceylon.javax.tools.JavaFileManager;
 import org.eclipse.ceylon.langtools.tools.javac.main.Option;
 import org.eclipse.ceylon.langtools.tools.javac.tree.JCTree.JCCompilationUnit;
 import org.eclipse.ceylon.langtools.tools.javac.util.Context;
@@ -83,53 +90,123 @@ public final class CeyloncCompilerDelegate implements
         StatusPrinter sp = getStatusPrinter();
 
         int size = listOfUnits.size();
-        int i=1;
-        for (PhasedUnit pu : listOfUnits) {
-            if(sp != null)
-                progress(sp, 1, i++, size, pu);
-            pu.validateTree();
-            pu.scanDeclarations();
-        }
-        i=1;
-        for (PhasedUnit pu : listOfUnits) { 
-            if(sp != null)
-                progress(sp, 2, i++, size, pu);
-            pu.scanTypeDeclarations(); 
-        } 
-        i=1;
-        for (PhasedUnit pu: listOfUnits) { 
-            if(sp != null)
-                progress(sp, 3, i++, size, pu);
-            pu.validateRefinement();
+        PhaseExecutor executor = new PhaseExecutor(getTypecheckThreads());
+        executor.setProfile(Timer.instance(context).getProfile());
+        try {
+            executor.execute(listOfUnits, "validateTree", new ProgressPhase(sp, 1, size) {
+                @Override
+                protected void runPhase(PhasedUnit pu) {
+                    pu.validateTree();
+                    pu.scanDeclarations();
+                }
+            });
+            executor.execute(listOfUnits, "scanTypeDeclarations", new ProgressPhase(sp, 2, size) {
+                @Override
+                protected void runPhase(PhasedUnit pu) {
+                    pu.scanTypeDeclarations(); 
+                }
+            });
+            executor.execute(listOfUnits, "validateRefinement", new ProgressPhase(sp, 3, size) {
+                @Override
+                protected void runPhase(PhasedUnit pu) {
+                    pu.validateRefinement();
+                }
+            });
+            executor.execute(listOfUnits, "analyseTypes", new ProgressPhase(sp, 4, size) {
+                @Override
+                protected void runPhase(PhasedUnit pu) {
+                    pu.analyseTypes(); 
+                }
+            });
+            executor.execute(listOfUnits, "analyseFlow", new ProgressPhase(sp, 5, size) {
+                @Override
+                protected void runPhase(PhasedUnit pu) {
+                    pu.analyseFlow();
+                }
+            });
+            executor.execute(listOfUnits, "analyseUsage", new ProgressPhase(sp, 6, size) {
+                @Override
+                protected void runPhase(PhasedUnit pu) {
+                    pu.analyseUsage();
+                }
+            });
+        } finally {
+            executor.shutdown();
         }
         
-        i=1;
+        int i=1;
+        UnknownTypeCollector utc = new UnknownTypeCollector();
+        JavaFileManager fileManager = context.get(JavaFileManager.class);
         for (PhasedUnit pu : listOfUnits) { 
             if(sp != null)
-                progress(sp, 4, i++, size, pu);
-            pu.analyseTypes(); 
+                progress(sp, 7, i++, size, pu);
+            pu.getCompilationUnit().visit(utc);
+            if(fileManager instanceof CeyloncFileManager)
+                collectSourceDependencies((CeyloncFileManager) fileManager, pu);
         }
-        
-        i=1;
-        for (PhasedUnit pu : listOfUnits) { 
-            if(sp != null)
-                progress(sp, 5, i++, size, pu);
-            pu.analyseFlow();
+    }
+
+    /**
+     * Records the source files the given unit depends on, for
+     * incremental compilation.
+     */
+    private void collectSourceDependencies(CeyloncFileManager fileManager, PhasedUnit pu) {
+        String path = pu.getUnit().getFullPath();
+        if(path == null || pu.getPackage() == null)
+            return;
+        Module module = pu.getPackage().getModule();
+        SourceDependencyCollector collector = new SourceDependencyCollector(module);
+        pu.getCompilationUnit().visit(collector);
+        fileManager.addSourceDependencies(module, new File(path), 
+                collector.getSourceFiles(), collector.getClassFiles());
+    }
+
+    /**
+     * A typechecking phase which reports its progress, possibly
+     * from several threads at once.
+     */
+    private abstract class ProgressPhase extends Phase {
+        private final StatusPrinter sp;
+        private final int phase;
+        private final int size;
+        private final AtomicInteger count = new AtomicInteger();
+
+        ProgressPhase(StatusPrinter sp, int phase, int size) {
+            this.sp = sp;
+            this.phase = phase;
+            this.size = size;
         }
 
-        i=1;
-        for (PhasedUnit pu : listOfUnits) { 
-            if(sp != null)
-                progress(sp, 6, i++, size, pu);
-            pu.analyseUsage();
+        @Override
+        public void run(PhasedUnit pu) {
+            if(sp != null){
+                int i = count.incrementAndGet();
+                synchronized(sp){
+                    progress(sp, phase, i, size, pu);
+                }
+            }
+            runPhase(pu);
         }
-        
-        i=1;
-        UnknownTypeCollector utc = new UnknownTypeCollector();
-        for (PhasedUnit pu : listOfUnits) { 
-            if(sp != null)
-                progress(sp, 7, i++, size, pu);
-            pu.getCompilationUnit().visit(utc);
+
+        protected abstract void runPhase(PhasedUnit pu);
+    }
+
+    private int getTypecheckThreads() {
+        return getTypecheckThreads(Options.instance(context));
+    }
+
+    /**
+     * The number of threads given with {@code -typecheck-threads},
+     * which are used to parse and typecheck the Ceylon sources.
+     */
+    static int getTypecheckThreads(Options options) {
+        String threads = options.get(Option.CEYLONTYPECHECKTHREADS);
+        if(threads == null)
+            return 1;
+        try{
+            return Math.max(1, Integer.parseInt(threads));
+        }catch(NumberFormatException x){
+            return 1;
         }
     }
 
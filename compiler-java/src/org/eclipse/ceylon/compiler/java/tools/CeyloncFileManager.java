@@ -94,6 +94,15 @@ public class CeyloncFileManager extends JavacFileManager implements StandardJava
         return context;
     }
 
+    /**
+     * Records the source files of the given module that the given source file depends on,
+     * either directly or through the class files of declarations loaded from the module's
+     * previous archive, so that the module archive can keep track of them.
+     */
+    public void addSourceDependencies(Module module, File sourceFile, Set<File> sourceFiles, Set<String> classFiles) {
+        getJarRepository().addSourceDependencies(module, sourceFile, sourceFiles, classFiles);
+    }
+
     @Override
     public void setContext(Context context) {
         this.context = context;
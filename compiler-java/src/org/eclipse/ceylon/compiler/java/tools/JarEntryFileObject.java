@@ -40,12 +40,18 @@ public class JarEntryFileObject implements JavaFileObject {
     private File jarTempFolder;
     private String fileName;
     private File file;
+    private BackgroundFileWriter fileWriter;
 
     public JarEntryFileObject(File jarTempFolder, String fileName) {
+        this(jarTempFolder, fileName, null);
+    }
+
+    JarEntryFileObject(File jarTempFolder, String fileName, BackgroundFileWriter fileWriter) {
         super();
         this.jarTempFolder = jarTempFolder;
         this.fileName = fileName;
         this.file = new File(jarTempFolder, fileName);
+        this.fileWriter = fileWriter;
     }
 
     /*
@@ -55,6 +61,8 @@ public class JarEntryFileObject implements JavaFileObject {
     @Override
     public OutputStream openOutputStream() throws IOException {
         FileUtil.mkdirs(file.getParentFile());
+        if(fileWriter != null)
+            return fileWriter.openOutputStream(file);
         return new FileOutputStream(file);
     }
 
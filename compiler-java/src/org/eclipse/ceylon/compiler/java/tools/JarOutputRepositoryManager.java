@@ -32,6 +32,7 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
@@ -72,17 +73,34 @@ import org.eclipse.ceylon.langtools.classfile.ConstantPoolException;
 public class JarOutputRepositoryManager {
     
     private Map<Module,ProgressiveJar> openJars = new HashMap<Module, ProgressiveJar>();
+    private Map<Module,Map<File,SourceDependencies>> sourceDependencies = new HashMap<Module, Map<File,SourceDependencies>>();
     private Log log;
     private Options options;
     private CeyloncFileManager ceyloncFileManager;
     private MultiTaskListener taskListener;
     private boolean aptRound;
+    /** Writes the generated files in the background, or null to write them as they are produced */
+    private BackgroundFileWriter fileWriter;
     
     JarOutputRepositoryManager(Log log, Options options, CeyloncFileManager ceyloncFileManager, MultiTaskListener taskListener){
         this.log = log;
         this.options = options;
         this.ceyloncFileManager = ceyloncFileManager;
         this.taskListener = taskListener;
+        int outputThreads = getOutputThreads(options);
+        if(outputThreads > 1)
+            this.fileWriter = new BackgroundFileWriter(outputThreads);
+    }
+    
+    private static int getOutputThreads(Options options) {
+        String threads = options.get(Option.CEYLONOUTPUTTHREADS);
+        if(threads == null)
+            return 1;
+        try{
+            return Math.max(1, Integer.parseInt(threads));
+        }catch(NumberFormatException x){
+            return 1;
+        }
     }
     
     public JavaFileObject getFileObject(RepositoryManager repositoryManager, Module module, String fileName, File sourceFile) throws IOException{
@@ -93,18 +111,31 @@ public class JarOutputRepositoryManager {
     private ProgressiveJar getProgressiveJar(RepositoryManager repositoryManager, Module module) throws IOException {
         ProgressiveJar jarFile = openJars.get(module);
         if(jarFile == null){
-            jarFile = new ProgressiveJar(repositoryManager, module, log, options, ceyloncFileManager, taskListener, aptRound);
+            jarFile = new ProgressiveJar(repositoryManager, module, log, options, ceyloncFileManager, taskListener, aptRound, fileWriter);
             openJars.put(module, jarFile);
         }
         return jarFile;
     }
 
+    void addSourceDependencies(Module module, File sourceFile, Set<File> sourceFiles, Set<String> classFiles) {
+        Map<File,SourceDependencies> dependencies = sourceDependencies.get(module);
+        if(dependencies == null){
+            dependencies = new HashMap<File,SourceDependencies>();
+            sourceDependencies.put(module, dependencies);
+        }
+        dependencies.put(sourceFile, new SourceDependencies(sourceFiles, classFiles));
+    }
+
     public void flush() throws IOException {
         Exception ex = null;
         try{
-            for(ProgressiveJar jarFile : openJars.values()){
+            // the jars are assembled from the files we wrote, so they must all be there
+            if(fileWriter != null)
+                fileWriter.await();
+            for(Map.Entry<Module,ProgressiveJar> entry : openJars.entrySet()){
+                ProgressiveJar jarFile = entry.getValue();
                 try {
-                    jarFile.close();
+                    jarFile.close(sourceDependencies.get(entry.getKey()));
                 } catch (Exception e) {
                     ex = e;
                 }
@@ -112,6 +143,9 @@ public class JarOutputRepositoryManager {
         }finally{
             // make sure we clear on return and throw, so we don't try to flush again on throw
             openJars.clear();
+            sourceDependencies.clear();
+            if(fileWriter != null)
+                fileWriter.shutdown();
         }
         // Not the most elegant solution, we close all JAR files but we only
         // rethrow the last exception (if any)
@@ -122,6 +156,21 @@ public class JarOutputRepositoryManager {
         }
     }
     
+    /**
+     * The source files of its own module that a source file depends on.
+     */
+    static class SourceDependencies {
+        /** Source files of declarations compiled along with it */
+        final Set<File> sourceFiles;
+        /** Class files of declarations loaded from the previous module archive */
+        final Set<String> classFiles;
+
+        SourceDependencies(Set<File> sourceFiles, Set<String> classFiles) {
+            this.sourceFiles = sourceFiles;
+            this.classFiles = classFiles;
+        }
+    }
+    
     /***
      * Manages "updating" an existing jar file with the output from 
      * a compilation.*/
@@ -146,6 +195,7 @@ public class JarOutputRepositoryManager {
         private static final String FILE_MAPPING = META_INF + "/mapping.txt";
         private static final String FILE_ERRORS = META_INF + "/errors.txt";
         private static final String FILE_HASHES = META_INF + "/hashes.txt";
+        private static final String FILE_DEPENDENCIES = META_INF + "/dependencies.txt";
         private static final String QUOTED_MODULE_DESCRIPTOR = NamingBase.MODULE_DESCRIPTOR_CLASS_NAME + ".class";
 
         private static final String ANNOTATION_COMPILE_ERROR = "org.eclipse.ceylon.compiler.java.metadata.CompileTimeError";
@@ -184,10 +234,13 @@ public class JarOutputRepositoryManager {
         private JdkProvider jdkProvider;
         private Map<ClassOrInterface, Set<Class>> services;
         private boolean validModule;
+        private BackgroundFileWriter fileWriter;
 
         public ProgressiveJar(RepositoryManager repoManager, Module module, Log log, 
                 Options options, CeyloncFileManager ceyloncFileManager, 
-                MultiTaskListener taskListener, boolean aptRound) throws IOException{
+                MultiTaskListener taskListener, boolean aptRound,
+                BackgroundFileWriter fileWriter) throws IOException{
+            this.fileWriter = fileWriter;
             this.options = options;
             this.repoManager = repoManager;
             this.carContext = new ArtifactContext(null, module.getNameAsString(), module.getVersion(), ArtifactContext.CAR);
@@ -254,6 +307,10 @@ public class JarOutputRepositoryManager {
             return JarUtils.getMetaInfProperties(originalJarFile, FILE_HASHES);
         }
 
+        private Properties getPreviousDependencies() throws IOException {
+            return JarUtils.getMetaInfProperties(originalJarFile, FILE_DEPENDENCIES);
+        }
+
         private Manifest getPreviousManifest() throws IOException {
             JarFile jarFile = JarUtils.validJar(originalJarFile);
             if (jarFile != null) {
@@ -266,7 +323,7 @@ public class JarOutputRepositoryManager {
             return null;
         }
 
-        public void close() throws IOException {
+        public void close(Map<File,SourceDependencies> sourceDependencies) throws IOException {
             try {
                 // Create the .src archive
                 Set<String> copiedSourceFiles = srcCreator.copy(modifiedSourceFiles);
@@ -309,6 +366,9 @@ public class JarOutputRepositoryManager {
                 // Add META-INF/hashes.txt
                 writeHashesJarEntry(outputJarTempFolder);
                 
+                // Add META-INF/dependencies.txt
+                writeDependenciesJarEntry(outputJarTempFolder, previousMapping, sourceDependencies);
+                
                 // Now add the old jar remains
                 if (originalJarFile != null && JarUtils.isValidJar(originalJarFile)) {
                     addOriginalJarFiles(outputJarTempFolder, originalJarFile, jarFilter);
@@ -394,6 +454,7 @@ public class JarOutputRepositoryManager {
                             || entryFullName.equals(FILE_MAPPING)
                             || entryFullName.equals(FILE_ERRORS)
                             || entryFullName.equals(FILE_HASHES)
+                            || entryFullName.equals(FILE_DEPENDENCIES)
                             || (writeOsgiManifest && OsgiUtil.OsgiManifest.isManifestFileName(entryFullName))
                             || (writeMavenManifest && MavenPomUtil.isMavenDescriptor(entryFullName, module));
                     }
@@ -563,6 +624,71 @@ public class JarOutputRepositoryManager {
             }
         }
         
+        /** 
+         * Add a {@code META-INF/dependencies.txt} entry
+         * which records, for each source file, the other source files
+         * of the module that it depends on, separated by commas
+         */
+        private void writeDependenciesJarEntry(File outputFolder, Properties previousMapping, 
+                Map<File,SourceDependencies> sourceDependencies) throws IOException {
+            Properties newDependencies = new Properties();
+            if (sourceDependencies != null) {
+                for (Map.Entry<File,SourceDependencies> entry : sourceDependencies.entrySet()) {
+                    String sourcePath = toSourcePath(entry.getKey());
+                    Set<String> dependencies = new TreeSet<String>();
+                    for (File sourceFile : entry.getValue().sourceFiles) {
+                        dependencies.add(toSourcePath(sourceFile));
+                    }
+                    for (String classFile : entry.getValue().classFiles) {
+                        // the class was either just compiled or comes from the original jar
+                        String dependency = writtenClassesMapping.getProperty(classFile);
+                        if (dependency == null && previousMapping != null) {
+                            dependency = previousMapping.getProperty(classFile);
+                        }
+                        if (dependency != null) {
+                            dependencies.add(dependency);
+                        }
+                    }
+                    dependencies.remove(sourcePath);
+                    StringBuilder value = new StringBuilder();
+                    for (String dependency : dependencies) {
+                        if (value.length() > 0) {
+                            value.append(',');
+                        }
+                        value.append(dependency);
+                    }
+                    newDependencies.setProperty(sourcePath, value.toString());
+                }
+            }
+            Properties previousDependencies = getPreviousDependencies();
+            if (previousDependencies != null) {
+                // Add the previous entries of the source files we did not compile
+                for (String sourcePath : previousDependencies.stringPropertyNames()) {
+                    if (!newDependencies.containsKey(sourcePath)
+                            && !entrySourceMapping.containsKey(sourcePath)) {
+                        newDependencies.setProperty(sourcePath, previousDependencies.getProperty(sourcePath));
+                    }
+                }
+            }
+            // Write the dependencies file to the Jar
+            FileUtil.mkdirs(new File(outputFolder, META_INF));
+            File dependenciesFile = new File(outputFolder, FILE_DEPENDENCIES);
+            try (OutputStream os = new FileOutputStream(dependenciesFile)) {
+                newDependencies.store(os, "List of source files and the source files they depend on");
+            } catch(IOException e) {
+                // better no graph than a truncated one: without it --incremental
+                // only compiles the changed files
+                FileUtil.deleteQuietly(dependenciesFile);
+                cmrLog.warning("Failed to write " + FILE_DEPENDENCIES + " for module " 
+                        + module.getNameAsString() + ", --incremental will not recompile "
+                        + "the files depending on a changed file: " + e);
+            }
+        }
+        
+        private String toSourcePath(File sourceFile) {
+            return JarUtils.toPlatformIndependentPath(srcCreator.getPaths(), sourceFile.getPath());
+        }
+        
         public JavaFileObject getJavaFileObject(String fileName, File sourceFile) {
             String quotedFileName = JVMModuleUtil.quoteJavaKeywordsInFilename(fileName);
             String entryName = handleResourceRoot(quotedFileName);
@@ -594,7 +720,7 @@ public class JarOutputRepositoryManager {
                     return manifest;
                 }
             }
-            return new JarEntryFileObject(outputJarTempFolder, entryName);
+            return new JarEntryFileObject(outputJarTempFolder, entryName, fileWriter);
         }
 
         private String handleResourceRoot(String entryName) {
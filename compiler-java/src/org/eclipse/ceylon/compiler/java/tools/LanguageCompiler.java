@@ -37,16 +37,21 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import org.antlr.runtime.ANTLRStringStream;
 import org.antlr.runtime.CommonTokenStream;
+import org.antlr.runtime.RecognitionException;
 import org.eclipse.ceylon.cmr.api.ArtifactContext;
 import org.eclipse.ceylon.cmr.api.RepositoryManager;
 import org.eclipse.ceylon.cmr.util.JarUtils;
@@ -63,6 +68,7 @@ import org.eclipse.ceylon.compiler.java.loader.CeylonModelLoader;
 import org.eclipse.ceylon.compiler.java.util.Timer;
 import org.eclipse.ceylon.compiler.typechecker.analyzer.ModuleSourceMapper;
 import org.eclipse.ceylon.compiler.typechecker.analyzer.Warning;
+import org.eclipse.ceylon.compiler.typechecker.context.PhaseExecutor;
 import org.eclipse.ceylon.compiler.typechecker.context.PhasedUnit;
 import org.eclipse.ceylon.compiler.typechecker.context.PhasedUnits;
 import org.eclipse.ceylon.compiler.typechecker.io.VFS;
@@ -71,6 +77,7 @@ import org.eclipse.ceylon.compiler.typechecker.parser.CeylonInterpolatingLexer;
 import org.eclipse.ceylon.compiler.typechecker.parser.CeylonLexer;
 import org.eclipse.ceylon.compiler.typechecker.parser.CeylonParser;
 import org.eclipse.ceylon.compiler.typechecker.parser.LexError;
+import org.eclipse.ceylon.compiler.typechecker.parser.ParseCache;
 import org.eclipse.ceylon.compiler.typechecker.parser.ParseError;
 import org.eclipse.ceylon.compiler.typechecker.parser.RecognitionError;
 import org.eclipse.ceylon.compiler.typechecker.tree.Tree.CompilationUnit;
@@ -153,6 +160,10 @@ public class LanguageCompiler extends JavaCompiler {
     private boolean addModuleTrees = true;
     private boolean hadRunTwiceException;
     private StatusPrinter sp;
+    /** The Ceylon sources parsed ahead of {@link #ceylonParse} by {@link #preParseCeylonFiles} */
+    private Map<JavaFileObject,ParsedCeylonSource> preParsedSources = new HashMap<JavaFileObject,ParsedCeylonSource>();
+    /** The cache of parsed Ceylon sources, if any */
+    private ParseCache parseCache;
 
     /** Get the PhasedUnits instance for this context. */
     public static PhasedUnits getPhasedUnitsInstance(final Context context) {
@@ -237,6 +248,8 @@ public class LanguageCompiler extends JavaCompiler {
         ceylonEnter = CeylonEnter.instance(context);
         options = Options.instance(context);
         isBootstrap = options.get(Option.BOOTSTRAPCEYLON) != null;
+        String parseCacheDir = options.get(Option.CEYLONPARSECACHE);
+        parseCache = parseCacheDir != null ? new ParseCache(new File(parseCacheDir)) : null;
         timer = Timer.instance(context);
         sourceLanguage = SourceLanguage.instance(context);
         boolean isProgressPrinted = options.get(Option.CEYLONPROGRESS) != null && StatusPrinter.canPrint();
@@ -373,7 +386,7 @@ public class LanguageCompiler extends JavaCompiler {
 
                 t = parse(filename, readSource(filename));
             } else {
-                t = ceylonParse(filename, readSource(filename));
+                t = ceylonParse(filename, readCeylonSource(filename));
                 t.endPositions = new JavacParser.EmptyEndPosTable(null);
             }
             if (t.endPositions != null)
@@ -384,6 +397,20 @@ public class LanguageCompiler extends JavaCompiler {
         }
     }
 
+    /**
+     * Returns the source of the given Ceylon file, which we 
+     * already read if {@link #preParseCeylonFiles} parsed it.
+     */
+    private CharSequence readCeylonSource(JavaFileObject filename) {
+        ParsedCeylonSource parsed = preParsedSources.get(filename);
+        if (parsed == null) {
+            return readSource(filename);
+        }
+        // what readSource() would have done besides reading
+        inputFiles.add(filename);
+        return parsed.source;
+    }
+
     protected JCCompilationUnit parse(JavaFileObject filename, CharSequence readSource) {
         // FIXME
         if (filename instanceof CeylonFileObject)
@@ -462,20 +489,19 @@ public class LanguageCompiler extends JavaCompiler {
                 return gen.makeJCCompilationUnitPlaceholder(phasedUnit.getCompilationUnit(), filename, pkgName, phasedUnit);
             }
             if (phasedUnit == null) {
-                ANTLRStringStream input = new NewlineFixingStringStream(source);
-                CeylonLexer lexer = new CeylonLexer(input);
-
-                CommonTokenStream tokens = new CommonTokenStream(new CeylonInterpolatingLexer(lexer));
-
-                CeylonParser parser = new CeylonParser(tokens);
-                CompilationUnit cu = parser.compilationUnit();
+                ParsedCeylonSource parsed = preParsedSources.remove(filename);
+                if (parsed == null
+                        || !parsed.source.equals(source)) {
+                    parsed = new ParsedCeylonSource(source, parseCache);
+                }
+                CompilationUnit cu = parsed.cu;
 
-                java.util.List<LexError> lexerErrors = lexer.getErrors();
+                java.util.List<LexError> lexerErrors = parsed.lexerErrors;
                 for (LexError le : lexerErrors) {
                     printError(le, le.getMessage(), "ceylon.lexer", map);
                 }
 
-                java.util.List<ParseError> parserErrors = parser.getErrors();
+                java.util.List<ParseError> parserErrors = parsed.parserErrors;
                 for (ParseError pe : parserErrors) {
                     printError(pe, pe.getMessage(), "ceylon.parser", map);
                 }
@@ -520,7 +546,13 @@ public class LanguageCompiler extends JavaCompiler {
          * Stef: see javadoc for fixDefaultPackage() for why this is here.
          */
         modelLoader.fixDefaultPackage();
-        List<JCCompilationUnit> trees = super.parseFiles(fileObjects);
+        preParseCeylonFiles(fileObjects);
+        List<JCCompilationUnit> trees;
+        try {
+            trees = super.parseFiles(fileObjects);
+        } finally {
+            preParsedSources.clear();
+        }
         timer.startTask("loadCompiledModules");
         LinkedList<JCCompilationUnit> moduleTrees = new LinkedList<JCCompilationUnit>();
         // now load modules and associate their moduleless packages with the corresponding modules
@@ -533,6 +565,99 @@ public class LanguageCompiler extends JavaCompiler {
         return trees;
     }
 
+    /**
+     * When we have several typechecking threads, lexes and parses 
+     * the Ceylon files concurrently, before javac parses every file 
+     * in turn, at which point {@link #ceylonParse} picks up the 
+     * parsed trees and reports their errors in order. The sources 
+     * are read on this thread, since the file manager is not thread 
+     * safe, and are not read again by {@link #parse(JavaFileObject)}.
+     */
+    private void preParseCeylonFiles(Iterable<JavaFileObject> fileObjects) {
+        int threads = CeyloncCompilerDelegate.getTypecheckThreads(options);
+        if (threads < 2) {
+            return;
+        }
+        Set<JavaFileObject> files = new LinkedHashSet<JavaFileObject>();
+        java.util.List<Callable<ParsedCeylonSource>> tasks = new java.util.ArrayList<Callable<ParsedCeylonSource>>();
+        for (JavaFileObject fileObject : fileObjects) {
+            if (fileObject instanceof CeylonFileObject
+                    && !files.contains(fileObject)) {
+                final String source;
+                try {
+                    source = fileObject.getCharContent(false).toString();
+                } catch (IOException e) {
+                    // leave it to readSource() to report
+                    continue;
+                }
+                files.add(fileObject);
+                tasks.add(new Callable<ParsedCeylonSource>() {
+                    @Override
+                    public ParsedCeylonSource call() throws RecognitionException {
+                        return new ParsedCeylonSource(source, parseCache);
+                    }
+                });
+            }
+        }
+        PhaseExecutor executor = new PhaseExecutor(threads);
+        try {
+            Iterator<ParsedCeylonSource> parsed = executor.invokeAll(tasks).iterator();
+            for (JavaFileObject file : files) {
+                preParsedSources.put(file, parsed.next());
+            }
+        } catch (RecognitionException e) {
+            // just parse them one at a time in ceylonParse(),
+            // which reports it for the right file
+            preParsedSources.clear();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            preParsedSources.clear();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * The result of lexing and parsing a Ceylon source file, which
+     * does not depend on any compiler state, or of reading it back
+     * from the parse cache.
+     */
+    private static final class ParsedCeylonSource {
+        final String source;
+        final CompilationUnit cu;
+        final java.util.List<LexError> lexerErrors;
+        final java.util.List<ParseError> parserErrors;
+
+        ParsedCeylonSource(String source, ParseCache parseCache) throws RecognitionException {
+            this.source = source;
+            ANTLRStringStream input = new NewlineFixingStringStream(source);
+            ParseCache.Entry cached = parseCache != null ? parseCache.lookup(input) : null;
+            if (cached != null && cached.getCompilationUnit() != null) {
+                cu = cached.getCompilationUnit();
+                lexerErrors = Collections.<LexError>emptyList();
+                parserErrors = Collections.<ParseError>emptyList();
+                return;
+            }
+            CeylonLexer lexer = new CeylonLexer(input);
+
+            CommonTokenStream tokens = new CommonTokenStream(new CeylonInterpolatingLexer(lexer));
+
+            CeylonParser parser = new CeylonParser(tokens);
+            cu = parser.compilationUnit();
+            lexerErrors = lexer.getErrors();
+            parserErrors = parser.getErrors();
+            if (cached != null 
+                    && lexerErrors.isEmpty() 
+                    && parserErrors.isEmpty()) {
+                cached.store(cu, tokens.getTokens());
+            }
+        }
+    }
+
     private List<JCCompilationUnit> loadCompiledModules(List<JCCompilationUnit> trees, LinkedList<JCCompilationUnit> moduleTrees) {
         compilerDelegate.visitModules(phasedUnits);
         Modules modules = ceylonContext.getModules();
@@ -806,6 +931,9 @@ public class LanguageCompiler extends JavaCompiler {
     private JavaFileObject genCodeUnlessError(Env<AttrContext> env, JCClassDecl cdef) throws IOException {
         CeylonFileObject sourcefile = (CeylonFileObject) env.toplevel.sourcefile;
         try {
+            // this always runs on the compiler thread, even with -output-threads, since
+            // Gen and ClassWriter are not thread-safe: only the writing is done
+            // concurrently, see BackgroundFileWriter
             // do not look at the global number of errors but only those for this file
             if (super.gen.genClass(env, cdef)){
                 String packageName = cdef.sym.packge().getQualifiedName().toString();
@@ -0,0 +1,149 @@
+/*
+ * Copyright Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the authors tag. All rights reserved.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License version 2.
+ *
+ * This particular file is subject to the "Classpath" exception as provided in the
+ * LICENSE file that accompanied this code.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License,
+ * along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+
+package org.eclipse.ceylon.compiler.java.tools;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.ceylon.compiler.typechecker.tree.Tree;
+import org.eclipse.ceylon.compiler.typechecker.tree.Visitor;
+import org.eclipse.ceylon.model.loader.mirror.ClassMirror;
+import org.eclipse.ceylon.model.loader.model.LazyClass;
+import org.eclipse.ceylon.model.loader.model.LazyClassAlias;
+import org.eclipse.ceylon.model.loader.model.LazyFunction;
+import org.eclipse.ceylon.model.loader.model.LazyInterface;
+import org.eclipse.ceylon.model.loader.model.LazyInterfaceAlias;
+import org.eclipse.ceylon.model.loader.model.LazyTypeAlias;
+import org.eclipse.ceylon.model.loader.model.LazyValue;
+import org.eclipse.ceylon.model.typechecker.model.Declaration;
+import org.eclipse.ceylon.model.typechecker.model.Module;
+import org.eclipse.ceylon.model.typechecker.model.Package;
+import org.eclipse.ceylon.model.typechecker.model.Scope;
+import org.eclipse.ceylon.model.typechecker.model.Unit;
+
+/**
+ * Collects the toplevel declarations of its own module that a
+ * compilation unit refers to, so that the module archive can record
+ * which source files depend on which others, and incremental
+ * compilation can recompile the dependents of a changed file.
+ *
+ * Declarations that come from source are recorded by source file,
+ * while those loaded from the previous module archive are recorded
+ * by class file, which the archive's {@code META-INF/mapping.txt}
+ * maps back to their source file.
+ */
+public class SourceDependencyCollector extends Visitor {
+
+    private final Module module;
+    private final Set<File> sourceFiles = new HashSet<File>();
+    private final Set<String> classFiles = new HashSet<String>();
+
+    public SourceDependencyCollector(Module module) {
+        this.module = module;
+    }
+
+    /**
+     * The source files of declarations we depend on
+     */
+    public Set<File> getSourceFiles() {
+        return sourceFiles;
+    }
+
+    /**
+     * The class files of the binary declarations we depend on
+     */
+    public Set<String> getClassFiles() {
+        return classFiles;
+    }
+
+    @Override
+    public void visit(Tree.MemberOrTypeExpression that) {
+        super.visit(that);
+        addDependency(that.getDeclaration());
+    }
+
+    @Override
+    public void visit(Tree.SimpleType that) {
+        super.visit(that);
+        addDependency(that.getDeclarationModel());
+    }
+
+    @Override
+    public void visit(Tree.ImportMemberOrType that) {
+        super.visit(that);
+        addDependency(that.getDeclarationModel());
+    }
+
+    @Override
+    public void visit(Tree.MetaLiteral that) {
+        super.visit(that);
+        addDependency(that.getDeclaration());
+    }
+
+    private void addDependency(Declaration declaration) {
+        Declaration toplevel = getToplevel(declaration);
+        if(toplevel == null)
+            return;
+        Unit unit = toplevel.getUnit();
+        if(unit == null
+                || unit.getPackage() == null
+                || !module.equals(unit.getPackage().getModule()))
+            return;
+        if(unit.getFullPath() != null){
+            sourceFiles.add(new File(unit.getFullPath()));
+        }else{
+            ClassMirror classMirror = getClassMirror(toplevel);
+            if(classMirror != null)
+                classFiles.add(classMirror.getQualifiedName().replace('.', '/') + ".class");
+        }
+    }
+
+    private static Declaration getToplevel(Declaration declaration) {
+        while(declaration != null && !declaration.isToplevel()){
+            Scope scope = declaration.getContainer();
+            while(scope != null
+                    && !(scope instanceof Declaration)
+                    && !(scope instanceof Package))
+                scope = scope.getContainer();
+            declaration = scope instanceof Declaration ? (Declaration) scope : null;
+        }
+        return declaration;
+    }
+
+    private static ClassMirror getClassMirror(Declaration declaration) {
+        if(declaration instanceof LazyClass)
+            return ((LazyClass) declaration).classMirror;
+        if(declaration instanceof LazyInterface)
+            return ((LazyInterface) declaration).classMirror;
+        if(declaration instanceof LazyValue)
+            return ((LazyValue) declaration).classMirror;
+        if(declaration instanceof LazyFunction)
+            return ((LazyFunction) declaration).classMirror;
+        if(declaration instanceof LazyClassAlias)
+            return ((LazyClassAlias) declaration).classMirror;
+        if(declaration instanceof LazyInterfaceAlias)
+            return ((LazyInterfaceAlias) declaration).classMirror;
+        if(declaration instanceof LazyTypeAlias)
+            return ((LazyTypeAlias) declaration).classMirror;
+        return null;
+    }
+}
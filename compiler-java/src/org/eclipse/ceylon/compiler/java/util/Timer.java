@@ -19,10 +19,18 @@
  */
 package org.eclipse.ceylon.compiler.java.util;
 
+import java.io.File;
+import java.io.IOException;
+
+import org.eclipse.ceylon.common.Profile;
+import org.eclipse.ceylon.compiler.java.tools.LanguageCompiler;
 import org.eclipse.ceylon.langtools.tools.javac.main.Option;
 import org.eclipse.ceylon.langtools.tools.javac.util.Context;
 import org.eclipse.ceylon.langtools.tools.javac.util.Log;
 import org.eclipse.ceylon.langtools.tools.javac.util.Options;
+import org.eclipse.ceylon.model.loader.AbstractModelLoader;
+import org.eclipse.ceylon.model.typechecker.context.TypeCache;
+import org.eclipse.ceylon.model.typechecker.model.Module;
 
 public class Timer extends org.eclipse.ceylon.model.loader.Timer {
 
@@ -37,10 +45,52 @@ public class Timer extends org.eclipse.ceylon.model.loader.Timer {
         return instance;
     }
     
+    private final Context context;
+    private final String profileOutput;
+
     private Timer(Context context) {
+        this.context = context;
         Options options = Options.instance(context);
         verbose = options.get(Option.VERBOSE) != null 
                 || options.get(Option.VERBOSE + ":benchmark" ) != null;
         out = context.get(Log.outKey);
+        profileOutput = options.get(Option.CEYLONPROFILEOUTPUT);
+        if(profileOutput != null)
+            profile = new Profile("compile");
+    }
+
+    @Override
+    public void end() {
+        super.end();
+        if(profile == null)
+            return;
+        addCounters();
+        try{
+            profile.write(new File(profileOutput));
+        }catch(IOException x){
+            Log.instance(context).error("ceylon", "Failed to write profile to "+profileOutput+": "+x.getMessage());
+        }
+    }
+
+    private void addCounters() {
+        AbstractModelLoader modelLoader = context.get(AbstractModelLoader.class);
+        if(modelLoader != null)
+            profile.counter("classMirrorLoads", modelLoader.getClassMirrorLoads());
+        org.eclipse.ceylon.compiler.typechecker.context.Context ceylonContext = 
+                context.get(LanguageCompiler.ceylonContextKey);
+        if(ceylonContext == null || ceylonContext.getModules() == null)
+            return;
+        // relations are cached in the cache of the language module
+        long hits = 0;
+        long misses = 0;
+        for(Module module : ceylonContext.getModules().getListOfModules()){
+            TypeCache cache = module.getCache();
+            hits += cache.getRelationHits();
+            misses += cache.getRelationMisses();
+        }
+        profile.counter("typeCache.relationHits", hits);
+        profile.counter("typeCache.relationMisses", misses);
+        if(hits + misses != 0)
+            profile.counter("typeCache.relationHitRatio", hits / (double)(hits + misses));
     }
 }
@@ -823,6 +823,55 @@ public class CeylonDocToolTests {
         tool.run();
     }
 
+    @Test
+    public void threads() throws Exception {
+        String moduleName = "org.eclipse.ceylon.ceylondoc.test.modules.single";
+
+        File sequentialDir = getOutputDir(documentWithThreads(moduleName, 1), moduleName, "3.1.4");
+        File parallelDir = getOutputDir(documentWithThreads(moduleName, 4), moduleName, "3.1.4");
+
+        Map<String, String> sequentialFiles = readFiles(sequentialDir);
+        Map<String, String> parallelFiles = readFiles(parallelDir);
+        Assert.assertFalse(sequentialFiles.isEmpty());
+        Assert.assertEquals(sequentialFiles.keySet(), parallelFiles.keySet());
+        for (String path : sequentialFiles.keySet()) {
+            Assert.assertEquals(path, sequentialFiles.get(path), parallelFiles.get(path));
+        }
+    }
+
+    private CeylonDocTool documentWithThreads(String moduleName, int threads) throws Exception {
+        CeylonDocTool tool = new CeylonDocTool();
+        tool.setSystemRepository("../dist/dist/repo");
+        tool.setSourceFolders(Arrays.asList(new File("test/ceylondoc")));
+        tool.setRepositoryAsStrings(Collections.<String>emptyList());
+        tool.setModuleSpecs(Arrays.asList(moduleName));
+        tool.setDocFolders(Arrays.asList(new File("test/ceylondoc-doc")));
+        tool.setIncludeNonShared(true);
+        tool.setIncludeSourceCode(true);
+        tool.setThreads(threads);
+        File dir = new File("build", "CeylonDocToolTest/" + name.getMethodName() + threads);
+        if (dir.exists()) {
+            FileUtil.delete(dir);
+        }
+        tool.setOut(dir.getAbsolutePath());
+        tool.initialize(new CeylonTool());
+        tool.run();
+        return tool;
+    }
+
+    private Map<String, String> readFiles(final File dir) throws IOException {
+        final Map<String, String> files = new HashMap<String, String>();
+        Files.walkFileTree(dir.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                files.put(dir.toPath().relativize(file).toString(),
+                        new String(Files.readAllBytes(file), "UTF-8"));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return files;
+    }
+
     private void assertFileExists(File destDir, boolean includeNonShared) {
         assertFileExists(destDir, "index.html");
         assertFileExists(destDir, "api-index.html");
@@ -37,6 +37,8 @@ import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -45,6 +47,8 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Properties;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.jar.Attributes;
@@ -63,7 +67,9 @@ import org.eclipse.ceylon.cmr.api.RepositoryManager;
 import org.eclipse.ceylon.cmr.ceylon.CeylonUtils;
 import org.eclipse.ceylon.cmr.ceylon.CeylonUtils.CeylonRepoManagerBuilder;
 import org.eclipse.ceylon.cmr.maven.MavenDependencyResolver;
+import org.eclipse.ceylon.cmr.util.JarUtils;
 import org.eclipse.ceylon.common.FileUtil;
+import org.eclipse.ceylon.common.IOUtil;
 import org.eclipse.ceylon.common.ModuleSpec;
 import org.eclipse.ceylon.common.Versions;
 import org.eclipse.ceylon.common.config.Repositories;
@@ -75,6 +81,7 @@ import org.eclipse.ceylon.compiler.java.tools.CeyloncTaskImpl;
 import org.eclipse.ceylon.compiler.java.tools.LanguageCompiler;
 import org.eclipse.ceylon.compiler.java.util.Util;
 import org.eclipse.ceylon.compiler.typechecker.context.Context;
+import org.eclipse.ceylon.compiler.typechecker.parser.ParseCache;
 import org.eclipse.ceylon.javax.tools.Diagnostic;
 import org.eclipse.ceylon.javax.tools.DiagnosticListener;
 import org.eclipse.ceylon.javax.tools.FileObject;
@@ -196,6 +203,27 @@ public class CMRTests extends CompilerTests {
         compile("modules/incremental/A.ceylon", "modules/incremental/UsesB.ceylon");
     }
 
+    @Test
+    public void testMdlSourceDependencies() throws IOException{
+        String pkg = "org/eclipse/ceylon/compiler/java/test/cmr/modules/incremental/";
+        compile("modules/incremental/A.ceylon", "modules/incremental/BUsesA.ceylon", "modules/incremental/UsesB.ceylon");
+        File carFile = getModuleArchive("default", null);
+        
+        Properties dependencies = JarUtils.getMetaInfProperties(carFile, "META-INF/dependencies.txt");
+        assertNotNull(dependencies);
+        assertEquals("", dependencies.getProperty(pkg+"A.ceylon"));
+        assertEquals(pkg+"A.ceylon", dependencies.getProperty(pkg+"BUsesA.ceylon"));
+        assertEquals(pkg+"BUsesA.ceylon", dependencies.getProperty(pkg+"UsesB.ceylon"));
+        
+        // now BUsesA is loaded from the car, and we find its source file from its class
+        compile("modules/incremental/UsesB.ceylon");
+        dependencies = JarUtils.getMetaInfProperties(carFile, "META-INF/dependencies.txt");
+        assertNotNull(dependencies);
+        assertEquals("", dependencies.getProperty(pkg+"A.ceylon"));
+        assertEquals(pkg+"A.ceylon", dependencies.getProperty(pkg+"BUsesA.ceylon"));
+        assertEquals(pkg+"BUsesA.ceylon", dependencies.getProperty(pkg+"UsesB.ceylon"));
+    }
+
     @Test
     public void testMdlModuleDefaultIncrementalNoPackage() throws IOException{
         List<String> options = new LinkedList<String>();
@@ -426,6 +454,131 @@ public class CMRTests extends CompilerTests {
         compile("modules/interdep/a/module.ceylon", "modules/interdep/a/b.ceylon", "modules/interdep/a/A.ceylon");
     }
 
+    @Test
+    public void testMdlOutputThreads() throws IOException{
+        String[] files = {"modules/interdep/a/module.ceylon", "modules/interdep/a/package.ceylon", "modules/interdep/a/b.ceylon", "modules/interdep/a/A.ceylon",
+                "modules/interdep/b/module.ceylon", "modules/interdep/b/package.ceylon", "modules/interdep/b/a.ceylon", "modules/interdep/b/B.ceylon"};
+        String moduleA = "org.eclipse.ceylon.compiler.java.test.cmr.modules.interdep.a";
+        String moduleB = "org.eclipse.ceylon.compiler.java.test.cmr.modules.interdep.b";
+        compile(files);
+        Map<String, byte[]> classesA = readClassEntries(getModuleArchive(moduleA, "6.6.6"));
+        Map<String, byte[]> classesB = readClassEntries(getModuleArchive(moduleB, "6.6.6"));
+        
+        // writing the class files in the background must produce the very same classes
+        List<String> options = new LinkedList<String>();
+        options.add("-output-threads");
+        options.add("4");
+        options.addAll(defaultOptions);
+        compile(options, files);
+        assertSameClassEntries(classesA, readClassEntries(getModuleArchive(moduleA, "6.6.6")));
+        assertSameClassEntries(classesB, readClassEntries(getModuleArchive(moduleB, "6.6.6")));
+    }
+
+    @Test
+    public void testMdlProfileOutput() throws IOException{
+        File profile = new File(destDir, "profile.json");
+        List<String> options = new LinkedList<String>();
+        options.add("-profile-output");
+        options.add(profile.getPath());
+        options.addAll(defaultOptions);
+        compile(options, "modules/interdep/a/module.ceylon", "modules/interdep/a/package.ceylon", 
+                "modules/interdep/a/b.ceylon", "modules/interdep/a/A.ceylon",
+                "modules/interdep/b/module.ceylon", "modules/interdep/b/package.ceylon", 
+                "modules/interdep/b/a.ceylon", "modules/interdep/b/B.ceylon");
+        assertTrue(profile.exists());
+        String json = new String(Files.readAllBytes(profile.toPath()), StandardCharsets.UTF_8);
+        assertTrue(json, json.contains("\"tool\": \"compile\""));
+        assertTrue(json, json.contains("{\"phase\": \"analyseTypes\", \"millis\""));
+        assertTrue(json, json.contains("{\"phase\": \"analyseTypes\", \"unit\": \"org/eclipse/ceylon/compiler/java/test/cmr/modules/interdep/a/A.ceylon\""));
+        assertTrue(json, json.contains("{\"phase\": \"Ceylon code generation\", \"millis\""));
+        assertTrue(json, json.contains("\"classMirrorLoads\": "));
+        assertTrue(json, json.contains("\"typeCache.relationHitRatio\": "));
+    }
+
+    @Test
+    public void testMdlParseCache() throws IOException{
+        String[] files = {"modules/interdep/a/module.ceylon", "modules/interdep/a/package.ceylon", "modules/interdep/a/b.ceylon", "modules/interdep/a/A.ceylon",
+                "modules/interdep/b/module.ceylon", "modules/interdep/b/package.ceylon", "modules/interdep/b/a.ceylon", "modules/interdep/b/B.ceylon"};
+        String moduleA = "org.eclipse.ceylon.compiler.java.test.cmr.modules.interdep.a";
+        String moduleB = "org.eclipse.ceylon.compiler.java.test.cmr.modules.interdep.b";
+        compile(files);
+        Map<String, byte[]> classesA = readClassEntries(getModuleArchive(moduleA, "6.6.6"));
+        Map<String, byte[]> classesB = readClassEntries(getModuleArchive(moduleB, "6.6.6"));
+
+        File cache = new File(destDir, "parse-cache");
+        List<String> options = new LinkedList<String>();
+        options.add("-parse-cache");
+        options.add(cache.getPath());
+        options.addAll(defaultOptions);
+        // the first compilation fills the cache
+        compile(options, files);
+        int entries = 0;
+        for(File dir : cache.listFiles()){
+            entries += dir.list().length;
+        }
+        assertEquals(files.length, entries);
+        // and the second one reads from it, giving the very same classes
+        compile(options, files);
+        assertSameClassEntries(classesA, readClassEntries(getModuleArchive(moduleA, "6.6.6")));
+        assertSameClassEntries(classesB, readClassEntries(getModuleArchive(moduleB, "6.6.6")));
+    }
+
+    @Test
+    public void testMdlParseCacheEviction() throws IOException{
+        String[] files = {"modules/single/module.ceylon", "modules/single/Correct.ceylon", "modules/single/subpackage/Subpackage.ceylon"};
+        File cache = new File(destDir, "parse-cache");
+        List<String> options = new LinkedList<String>();
+        options.add("-parse-cache");
+        options.add(cache.getPath());
+        options.addAll(defaultOptions);
+        compile(options, files);
+        List<File> entries = new ArrayList<File>();
+        long size = 0;
+        for(File dir : cache.listFiles()){
+            for(File entry : dir.listFiles()){
+                entries.add(entry);
+                size += entry.length();
+            }
+        }
+        assertEquals(files.length, entries.size());
+        // the least recently used entry goes first
+        File oldest = entries.get(1);
+        assertTrue(oldest.setLastModified(oldest.lastModified() - 3600000));
+        new ParseCache(cache, size - 1);
+        for(File entry : entries){
+            assertEquals(entry != oldest, entry.exists());
+        }
+        // and the cache only ever shrinks down to its bound
+        new ParseCache(cache, 0);
+        for(File entry : entries){
+            assertFalse(entry.exists());
+        }
+    }
+
+    private Map<String, byte[]> readClassEntries(File carFile) throws IOException {
+        Map<String, byte[]> classes = new HashMap<String, byte[]>();
+        try (JarFile car = new JarFile(carFile)) {
+            Enumeration<JarEntry> entries = car.entries();
+            while(entries.hasMoreElements()){
+                JarEntry entry = entries.nextElement();
+                if(entry.getName().endsWith(".class")){
+                    try (InputStream in = car.getInputStream(entry)) {
+                        classes.put(entry.getName(), IOUtil.readStream(in));
+                    }
+                }
+            }
+        }
+        return classes;
+    }
+
+    private void assertSameClassEntries(Map<String, byte[]> expected, Map<String, byte[]> actual) {
+        assertFalse(expected.isEmpty());
+        assertEquals(expected.keySet(), actual.keySet());
+        for(Map.Entry<String, byte[]> entry : expected.entrySet()){
+            assertTrue(entry.getKey(), Arrays.equals(entry.getValue(), actual.get(entry.getKey())));
+        }
+    }
+
     @Test
     public void testMdlDependentModule(){
         // Compile only the first module 
@@ -20,12 +20,14 @@
 package org.eclipse.ceylon.compiler.java.test.expression;
 
 import java.io.File;
+import java.lang.management.ManagementFactory;
 
 import org.eclipse.ceylon.compiler.java.test.CompilerError;
 import org.eclipse.ceylon.compiler.java.test.CompilerTests;
 import org.eclipse.ceylon.javax.tools.Diagnostic.Kind;
 import org.eclipse.ceylon.model.cmr.JDKUtils;
 import org.junit.Assume;
+import org.junit.Ignore;
 import org.junit.Test;
 
 public class ExpressionTests extends CompilerTests {
@@ -155,6 +157,34 @@ public class ExpressionTests extends CompilerTests {
     public void testBoxVoidBoxing(){
         compareWithJavaSource("boxing/VoidBoxing");
     }
+    @Test
+    @Ignore("For benchmarking only")
+    public void testBoxIntegerBoxingBench(){
+        compile("boxing/IntegerBoxingBench.ceylon");
+        com.sun.management.ThreadMXBean threads = 
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        for (int i = 0; i < 3; i++) {
+            long allocated = threads.getThreadAllocatedBytes(thread);
+            long time = (Long)run("org.eclipse.ceylon.compiler.java.test.expression.boxing.integerBoxingBench");
+            allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+            System.out.println("Folding took " + time/1_000_000 + "ms and allocated " + allocated/1_000_000 + "MB");
+        }
+    }
+    @Test
+    @Ignore("For benchmarking only")
+    public void testBoxCharacterBoxingBench(){
+        compile("boxing/CharacterBoxingBench.ceylon");
+        com.sun.management.ThreadMXBean threads = 
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        for (int i = 0; i < 3; i++) {
+            long allocated = threads.getThreadAllocatedBytes(thread);
+            long time = (Long)run("org.eclipse.ceylon.compiler.java.test.expression.boxing.characterBoxingBench");
+            allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+            System.out.println("Counting took " + time/1_000_000 + "ms and allocated " + allocated/1_000_000 + "MB");
+        }
+    }
 
     // Erasure
     
@@ -404,6 +434,17 @@ public class ExpressionTests extends CompilerTests {
         compareWithJavaSource("operator/IndexingAlias");
     }
     @Test
+    @Ignore("For benchmarking only")
+    public void testOprStringIndexingBench(){
+        compile("operator/StringIndexingBench.ceylon");
+        for (String input : new String[]{"Ascii", "Bmp", "Astral"}) {
+            for (int i = 0; i < 3; i++) {
+                long time = (Long)run("org.eclipse.ceylon.compiler.java.test.expression.operator.stringIndexingBench" + input);
+                System.out.println("Indexing " + input + " took " + time/1_000_000 + "ms");
+            }
+        }
+    }
+    @Test
     public void testOprEntryOp(){
         compareWithJavaSource("operator/EntryOp");
     }
@@ -26,6 +26,7 @@ import org.eclipse.ceylon.compiler.java.test.CompilerError;
 import org.eclipse.ceylon.compiler.java.test.CompilerTests;
 import org.eclipse.ceylon.compiler.java.test.CompilerTests.ModuleWithArtifact;
 import org.eclipse.ceylon.model.typechecker.model.Module;
+import org.junit.Ignore;
 import org.junit.Test;
 
 public class MetamodelTests extends CompilerTests {
@@ -177,5 +178,31 @@ public class MetamodelTests extends CompilerTests {
         compile("Bug6882.ceylon");
         run("org.eclipse.ceylon.compiler.java.test.metamodel.bug6882");
     }
+    
+    @Test
+    @Ignore("For benchmarking only")
+    public void testReifiedIsBench() {
+        compile("ReifiedIsBench.ceylon");
+        long single = (Long)run("org.eclipse.ceylon.compiler.java.test.metamodel.reifiedIsBench1");
+        single = (Long)run("org.eclipse.ceylon.compiler.java.test.metamodel.reifiedIsBench1");
+        System.gc();
+        long contended = (Long)run("org.eclipse.ceylon.compiler.java.test.metamodel.reifiedIsBench64");
+        contended = (Long)run("org.eclipse.ceylon.compiler.java.test.metamodel.reifiedIsBench64");
+        System.gc();
+        
+        System.out.println("1 thread took " + single/1_000_000 + "ms");
+        System.out.println("64 threads took " + contended/1_000_000 + "ms");
+    }
+    
+    @Test
+    @Ignore("For benchmarking only")
+    public void testMetamodelCallBench() {
+        compile("MetamodelCallBench.ceylon");
+        for (int i = 0; i < 3; i++) {
+            long direct = (Long)run("org.eclipse.ceylon.compiler.java.test.metamodel.metamodelCallBenchDirect");
+            long metamodel = (Long)run("org.eclipse.ceylon.compiler.java.test.metamodel.metamodelCallBenchMetamodel");
+            System.out.println("Direct calls took " + direct/1_000_000 + "ms");
+            System.out.println("Metamodel calls took " + metamodel/1_000_000 + "ms");
+        }
+    }
 }
-
@@ -23,18 +23,54 @@ import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
 import java.lang.ProcessBuilder.Redirect;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
 
+import org.antlr.runtime.ANTLRStringStream;
+import org.antlr.runtime.CommonToken;
+import org.antlr.runtime.Token;
+
+import org.eclipse.ceylon.cmr.api.RepositoryManager;
+import org.eclipse.ceylon.cmr.ceylon.CeylonUtils;
+import org.eclipse.ceylon.common.FileUtil;
 import org.eclipse.ceylon.common.OSUtil;
 import org.eclipse.ceylon.compiler.java.test.CompilerTests;
 import org.eclipse.ceylon.compiler.java.test.ErrorCollector;
 import org.eclipse.ceylon.compiler.java.tools.CeyloncFileManager;
 import org.eclipse.ceylon.compiler.java.tools.CeyloncTaskImpl;
 import org.eclipse.ceylon.compiler.java.tools.CeyloncTool;
+import org.eclipse.ceylon.compiler.java.tools.LanguageCompiler;
+import org.eclipse.ceylon.compiler.typechecker.TypeChecker;
+import org.eclipse.ceylon.compiler.typechecker.TypeCheckerBuilder;
+import org.eclipse.ceylon.compiler.typechecker.context.PhaseExecutor;
+import org.eclipse.ceylon.compiler.typechecker.context.PhasedUnit;
+import org.eclipse.ceylon.compiler.typechecker.context.TokenRetention;
+import org.eclipse.ceylon.compiler.typechecker.io.cmr.impl.LeakingLogger;
+import org.eclipse.ceylon.compiler.typechecker.parser.CeylonLexer;
+import org.eclipse.ceylon.compiler.typechecker.parser.CompactTokenList;
+import org.eclipse.ceylon.compiler.typechecker.tree.Message;
+import org.eclipse.ceylon.compiler.typechecker.tree.Node;
+import org.eclipse.ceylon.compiler.typechecker.tree.Visitor;
+import org.eclipse.ceylon.javax.tools.Diagnostic;
+import org.eclipse.ceylon.javax.tools.DiagnosticListener;
+import org.eclipse.ceylon.javax.tools.FileObject;
 import org.eclipse.ceylon.javax.tools.JavaFileObject;
+import org.eclipse.ceylon.langtools.tools.javac.util.Context;
 import org.eclipse.ceylon.model.cmr.JDKUtils;
+import org.eclipse.ceylon.model.typechecker.context.TypeCache;
+import org.eclipse.ceylon.model.typechecker.model.Declaration;
+import org.eclipse.ceylon.model.typechecker.model.ModelUtil;
+import org.eclipse.ceylon.model.typechecker.model.Type;
+import org.eclipse.ceylon.model.typechecker.model.TypeDeclaration;
+import org.eclipse.ceylon.model.typechecker.model.TypedDeclaration;
+import org.eclipse.ceylon.model.typechecker.model.Unit;
 import org.junit.Assert;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -526,4 +562,359 @@ public class MiscTests extends CompilerTests {
             Assert.fail("Ceylon script execution failed");
         }
     }
+
+    @Test
+    public void testParallelTypechecking() throws Exception {
+        // the typechecker samples have many packages, errors and warnings
+        List<String> sequential = typecheckSamples(1);
+        List<String> parallel = typecheckSamples(4);
+        Assert.assertTrue(sequential.size() > 1000);
+        Assert.assertEquals(sequential, parallel);
+    }
+    
+    @Test
+    public void testCompactTokens() throws IOException {
+        // the typechecker samples have string templates, comments
+        // and incomplete member references
+        Map<String,List<CommonToken>> full = parseSamples(TokenRetention.FULL);
+        Map<String,List<CommonToken>> compact = parseSamples(TokenRetention.COMPACT);
+        Assert.assertTrue(full.size() > 100);
+        Assert.assertEquals(full.keySet(), compact.keySet());
+        for (Map.Entry<String,List<CommonToken>> entry : full.entrySet()) {
+            String path = entry.getKey();
+            List<CommonToken> expected = entry.getValue();
+            List<CommonToken> actual = compact.get(path);
+            Assert.assertEquals(path, expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                CommonToken e = expected.get(i);
+                CommonToken a = actual.get(i);
+                String where = path + ": token " + i;
+                Assert.assertEquals(where, e.getType(), a.getType());
+                Assert.assertEquals(where, e.getChannel(), a.getChannel());
+                Assert.assertEquals(where, e.getText(), a.getText());
+                Assert.assertEquals(where, e.getLine(), a.getLine());
+                Assert.assertEquals(where, e.getCharPositionInLine(), a.getCharPositionInLine());
+                Assert.assertEquals(where, e.getTokenIndex(), a.getTokenIndex());
+                Assert.assertEquals(where, e.getStartIndex(), a.getStartIndex());
+                Assert.assertEquals(where, e.getStopIndex(), a.getStopIndex());
+            }
+        }
+    }
+    
+    @Test
+    public void testCompactTokensRewrittenText() {
+        ANTLRStringStream input = new ANTLRStringStream("value x = y;");
+        CommonToken lexed = new CommonToken(input, CeylonLexer.LIDENTIFIER, Token.DEFAULT_CHANNEL, 6, 6);
+        CommonToken rewritten = new CommonToken(input, CeylonLexer.LIDENTIFIER, Token.DEFAULT_CHANNEL, 10, 10);
+        rewritten.setText("");
+        List<CommonToken> tokens = new CompactTokenList(input, Arrays.asList(lexed, rewritten));
+        Assert.assertEquals("x", tokens.get(0).getText());
+        Assert.assertEquals("", tokens.get(1).getText());
+    }
+    
+    @Test
+    public void testParallelParsing() throws IOException {
+        File dir = Files.createTempDirectory("ceylon-parse").toFile();
+        try {
+            List<File> files = new ArrayList<File>();
+            for (int i = 0; i < 24; i++) {
+                File file = new File(dir, "unit" + i + ".ceylon");
+                switch (i % 6) {
+                case 2:
+                    write(file, "shared void f" + i + "() {", "    value x = ;", "}");
+                    break;
+                case 4:
+                    write(file, "shared void f" + i + "() {", "    print(\"" + i + ");", "}");
+                    break;
+                default:
+                    write(file, "shared void f" + i + "() {", "    print(" + i + ");", "}");
+                }
+                files.add(file);
+            }
+            List<String> sequential = compileAndList(dir, files, 1);
+            List<String> parallel = compileAndList(dir, files, 4);
+            Assert.assertEquals(sequential, parallel);
+            int errors = 0;
+            for (String line : sequential) {
+                if (line.startsWith("ERROR")) {
+                    errors++;
+                }
+            }
+            Assert.assertTrue(errors >= 8);
+        } finally {
+            FileUtil.delete(dir);
+        }
+    }
+    
+    /**
+     * Compiles the given files, and lists the diagnostics in the 
+     * order they were reported, followed by the units in the 
+     * order they were added, with their declarations
+     */
+    private List<String> compileAndList(File dir, List<File> files, int threads) {
+        final List<String> result = new ArrayList<String>();
+        DiagnosticListener<FileObject> listener = new DiagnosticListener<FileObject>() {
+            @Override
+            public void report(Diagnostic<? extends FileObject> diagnostic) {
+                result.add(diagnostic.getKind() + " " 
+                        + (diagnostic.getSource() == null ? null : new File(diagnostic.getSource().getName()).getName()) 
+                        + ":" + diagnostic.getLineNumber() + ":" + diagnostic.getColumnNumber() 
+                        + " " + diagnostic.getMessage(null));
+            }
+        };
+        CeyloncTool compiler = makeCompiler();
+        CeyloncFileManager fileManager = makeFileManager(compiler, listener);
+        List<String> options = Arrays.asList(
+                "-out", destDir, 
+                "-src", dir.getPath(), 
+                "-sysrep", getSysRepPath(), 
+                "-cp", getClassPathAsPath(),
+                "-typecheck-threads", String.valueOf(threads));
+        CeyloncTaskImpl task = (CeyloncTaskImpl) compiler.getTask(null, fileManager, listener, 
+                options, null, fileManager.getJavaFileObjectsFromFiles(files));
+        // the task forgets its context once it is done
+        Context context = task.getContext();
+        task.call();
+        for (PhasedUnit unit : LanguageCompiler.getPhasedUnitsInstance(context).getPhasedUnits()) {
+            StringBuilder line = new StringBuilder("unit " + unit.getUnitFile().getName());
+            for (Declaration declaration : unit.getDeclarations()) {
+                line.append(' ').append(declaration.getQualifiedNameString());
+            }
+            result.add(line.toString());
+        }
+        return result;
+    }
+    
+    @Test
+    public void testParallelTypecheckingKeepsTypeCacheSetting() throws Exception {
+        final PhaseExecutor executor = new PhaseExecutor(4);
+        try {
+            final List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+            for (int i = 0; i < 8; i++) {
+                tasks.add(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        return TypeCache.isEnabled();
+                    }
+                });
+            }
+            List<Boolean> enabled = TypeCache.doWithoutCaching(new Callable<List<Boolean>>() {
+                @Override
+                public List<Boolean> call() throws Exception {
+                    return executor.invokeAll(tasks);
+                }
+            });
+            Assert.assertEquals(Collections.nCopies(8, false), enabled);
+            Assert.assertEquals(Collections.nCopies(8, true), executor.invokeAll(tasks));
+        } finally {
+            executor.shutdown();
+        }
+    }
+    
+    @Test
+    public void testRelationCacheAcrossModules() throws Exception {
+        TypeChecker typeChecker = typecheckRelations();
+        TypeDeclaration i = (TypeDeclaration) findDeclaration(typeChecker, "a::I");
+        TypeDeclaration a = (TypeDeclaration) findDeclaration(typeChecker, "a::A");
+        TypeDeclaration b = (TypeDeclaration) findDeclaration(typeChecker, "b::B");
+        Unit unit = b.getUnit();
+        Type iString = ModelUtil.appliedType(i, unit.getStringType());
+        Type iInteger = ModelUtil.appliedType(i, unit.getIntegerType());
+        TypeCache cache = unit.getPackage().getModule().getRelationCache();
+        
+        Assert.assertTrue(b.getType().isSubtypeOf(iString));
+        Assert.assertFalse(b.getType().isSubtypeOf(iInteger));
+        long hits = cache.getRelationHits();
+        Assert.assertTrue(b.getType().isSubtypeOf(iString));
+        Assert.assertEquals(hits + 1, cache.getRelationHits());
+        
+        // A, of another module, now satisfies I<Integer>, as after an edit
+        a.setSatisfiedTypes(Collections.singletonList(iInteger));
+        a.clearProducedTypeCache();
+        Assert.assertFalse(b.getType().isSubtypeOf(iString));
+        Assert.assertTrue(b.getType().isSubtypeOf(iInteger));
+    }
+    
+    @Test
+    public void testRelationCacheExclusions() throws Exception {
+        TypeChecker typeChecker = typecheckRelations();
+        TypeDeclaration i = (TypeDeclaration) findDeclaration(typeChecker, "a::I");
+        TypeDeclaration c = (TypeDeclaration) findDeclaration(typeChecker, "a::C");
+        TypeDeclaration stringOrInteger = (TypeDeclaration) findDeclaration(typeChecker, "a::StringOrInteger");
+        TypeDeclaration b = (TypeDeclaration) findDeclaration(typeChecker, "b::B");
+        Unit unit = b.getUnit();
+        Type iString = ModelUtil.appliedType(i, unit.getStringType());
+        TypeCache cache = unit.getPackage().getModule().getRelationCache();
+        
+        long misses = cache.getRelationMisses();
+        Type typeParameter = c.getTypeParameters().get(0).getType();
+        Assert.assertTrue(typeParameter.isSubtypeOf(iString));
+        Assert.assertEquals(misses, cache.getRelationMisses());
+        // but relations between classes and interfaces are cached
+        Assert.assertTrue(b.getType().isSubtypeOf(iString));
+        Assert.assertTrue(cache.getRelationMisses() > misses);
+    }
+    
+    @Test
+    public void testRelationCacheUnions() throws Exception {
+        TypeChecker typeChecker = typecheckRelations();
+        TypeDeclaration stringOrInteger = (TypeDeclaration) findDeclaration(typeChecker, "a::StringOrInteger");
+        TypeDeclaration b = (TypeDeclaration) findDeclaration(typeChecker, "b::B");
+        Unit unit = b.getUnit();
+        Type union = stringOrInteger.getType().resolveAliases();
+        Type optional = ModelUtil.unionType(union, unit.getNullType(), unit);
+        TypeCache cache = unit.getPackage().getModule().getRelationCache();
+        
+        Assert.assertTrue(union.isSubtypeOf(optional));
+        long hits = cache.getRelationHits();
+        Assert.assertTrue(union.isSubtypeOf(optional));
+        Assert.assertEquals(hits + 1, cache.getRelationHits());
+        // the same union, with its types in another order
+        List<Type> caseTypes = new ArrayList<Type>(union.getCaseTypes());
+        Collections.reverse(caseTypes);
+        Type reversed = ModelUtil.union(caseTypes, unit);
+        Assert.assertTrue(reversed.isSubtypeOf(optional));
+        Assert.assertEquals(hits + 2, cache.getRelationHits());
+        Assert.assertFalse(optional.isSubtypeOf(reversed));
+        hits = cache.getRelationHits();
+        Assert.assertFalse(optional.isSubtypeOf(union));
+        Assert.assertEquals(hits + 1, cache.getRelationHits());
+        // but not a union with a type parameter
+        TypeDeclaration c = (TypeDeclaration) findDeclaration(typeChecker, "a::C");
+        Type typeParameterOrNull = ModelUtil.unionType(
+                c.getTypeParameters().get(0).getType(), unit.getNullType(), unit);
+        long misses = cache.getRelationMisses();
+        Assert.assertFalse(typeParameterOrNull.isSubtypeOf(optional));
+        Assert.assertEquals(misses, cache.getRelationMisses());
+    }
+    
+    /**
+     * Typechecks a module b with a class extending a class of 
+     * a module a.
+     */
+    private TypeChecker typecheckRelations() throws IOException {
+        File dir = Files.createTempDirectory("relations").toFile();
+        try {
+            write(new File(dir, "a/module.ceylon"), 
+                    "module a \"1\" {}");
+            write(new File(dir, "a/package.ceylon"), 
+                    "shared package a;");
+            write(new File(dir, "a/a.ceylon"), 
+                    "shared interface I<T> {}",
+                    "shared abstract class A() satisfies I<String> {}",
+                    "shared class C<T>() given T satisfies I<String> {}",
+                    "shared alias StringOrInteger => String|Integer;");
+            write(new File(dir, "b/module.ceylon"), 
+                    "module b \"1\" { shared import a \"1\"; }");
+            write(new File(dir, "b/b.ceylon"), 
+                    "import a { A }",
+                    "shared class B() extends A() {}");
+            RepositoryManager repositoryManager = CeylonUtils.repoManager()
+                    .systemRepo("../dist/dist/repo")
+                    .logger(new LeakingLogger())
+                    .buildManager();
+            TypeChecker typeChecker = new TypeCheckerBuilder()
+                    .verbose(false)
+                    .addSrcDirectory(dir)
+                    .setRepositoryManager(repositoryManager)
+                    .getTypeChecker();
+            typeChecker.process();
+            Assert.assertEquals(0, typeChecker.getErrors());
+            return typeChecker;
+        } finally {
+            FileUtil.delete(dir);
+        }
+    }
+    
+    private static void write(File file, String... lines) throws IOException {
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+    }
+    
+    private static Declaration findDeclaration(TypeChecker typeChecker, String name) {
+        for (PhasedUnit pu : typeChecker.getPhasedUnits().getPhasedUnits()) {
+            for (Declaration d : pu.getDeclarations()) {
+                if (name.equals(d.getQualifiedNameString())) {
+                    return d;
+                }
+            }
+        }
+        throw new AssertionError("No declaration " + name);
+    }
+    
+    /**
+     * Returns the tokens of every typechecker sample, parsed
+     * with the given retention, by path.
+     */
+    private static Map<String,List<CommonToken>> parseSamples(TokenRetention tokenRetention) {
+        RepositoryManager repositoryManager = CeylonUtils.repoManager()
+                .systemRepo("../dist/dist/repo")
+                .logger(new LeakingLogger())
+                .buildManager();
+        TypeChecker typeChecker = new TypeCheckerBuilder()
+                .verbose(false)
+                .tokenRetention(tokenRetention)
+                .addSrcDirectory(new File("../typechecker/test/main"))
+                .setRepositoryManager(repositoryManager)
+                .getTypeChecker();
+        Map<String,List<CommonToken>> result = new TreeMap<String,List<CommonToken>>();
+        for (PhasedUnit pu : typeChecker.getPhasedUnits().getPhasedUnits()) {
+            result.put(pu.getPathRelativeToSrcDir(), pu.getTokens());
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the errors and warnings of every typechecker sample,
+     * followed by the types of its declarations.
+     */
+    private List<String> typecheckSamples(int threads) {
+        RepositoryManager repositoryManager = CeylonUtils.repoManager()
+                .systemRepo("../dist/dist/repo")
+                .logger(new LeakingLogger())
+                .buildManager();
+        TypeChecker typeChecker = new TypeCheckerBuilder()
+                .verbose(false)
+                .threads(threads)
+                .addSrcDirectory(new File("../typechecker/test/main"))
+                .setRepositoryManager(repositoryManager)
+                .getTypeChecker();
+        typeChecker.process();
+        final List<String> result = new ArrayList<String>();
+        for (final PhasedUnit pu : typeChecker.getPhasedUnits().getPhasedUnits()) {
+            pu.getCompilationUnit().visit(new Visitor() {
+                @Override
+                public void visitAny(Node that) {
+                    for (Message message : that.getErrors()) {
+                        result.add(pu.getPathRelativeToSrcDir() + ":" + message.getLine() + ": " 
+                                + message.getClass().getSimpleName() + ": " + message.getMessage());
+                    }
+                    super.visitAny(that);
+                }
+            });
+            for (Declaration d : pu.getDeclarations()) {
+                result.add(describe(d));
+            }
+        }
+        return result;
+    }
+    
+    private static String describe(Declaration d) {
+        StringBuilder sb = new StringBuilder(String.valueOf(d.getQualifiedNameString()));
+        if (d instanceof TypedDeclaration) {
+            sb.append(" : ").append(asString(((TypedDeclaration) d).getType()));
+        }
+        if (d instanceof TypeDeclaration) {
+            TypeDeclaration td = (TypeDeclaration) d;
+            sb.append(" extends ").append(asString(td.getExtendedType()));
+            for (Type satisfied : td.getSatisfiedTypes()) {
+                sb.append(" & ").append(asString(satisfied));
+            }
+        }
+        return sb.toString();
+    }
+    
+    private static String asString(Type type) {
+        return type == null ? "null" : type.asString();
+    }
 }
@@ -1815,6 +1815,13 @@ public class ModelLoaderTests extends CompilerTests {
         });
     }
     
+    @Test
+    public void concurrentRuntimeModelLoading(){
+        compile("ConcurrentModelLoading.ceylon");
+        run("org.eclipse.ceylon.compiler.java.test.model.concurrentModelLoading", 
+                new ModuleWithArtifact("org.eclipse.ceylon.compiler.java.test.model", "1"));
+    }
+    
     @Test
     public void bug6803(){
         compile("Bug6803.java");
@@ -234,6 +234,13 @@ public class OptimizationTests extends CompilerTests {
         compareWithJavaSource("loop/optim/StringIterationStatic");
     }
     
+    @Test
+    public void testLopOptimStringIterationStaticRequired() {
+        assertErrors("loop/optim/StringIterationStaticRequired",
+                new CompilerError(24, "@requireOptimization[\"StringIteration\"] assertion failed: static type of iterable in for statement is not String"),
+                new CompilerError(28, "@requireOptimization[\"StringIteration\"] assertion failed: String iterated with a step"));
+    }
+    
     @Ignore("For benchmarking only")
     @Test
     public void testLopOptimDynamicIterationBench() {
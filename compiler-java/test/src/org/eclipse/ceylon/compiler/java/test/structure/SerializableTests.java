@@ -19,7 +19,10 @@
  */
 package org.eclipse.ceylon.compiler.java.test.structure;
 
+import java.lang.management.ManagementFactory;
+
 import org.eclipse.ceylon.compiler.java.test.CompilerTests;
+import org.junit.Ignore;
 import org.junit.Test;
 
 public class SerializableTests extends CompilerTests {
@@ -74,4 +77,30 @@ public class SerializableTests extends CompilerTests {
         compareWithJavaSource("klass/SerializableMethodSpecification");
     }
     
+    @Test
+    public void testKlsSerializableStreaming() {
+        compile("serialization/SerializableStreaming.ceylon", "serialization/SerializableStreamingRoundTrip.java");
+        run("org.eclipse.ceylon.compiler.java.test.structure.serialization.serializableStreaming",
+                new ModuleWithArtifact("org.eclipse.ceylon.compiler.java.test.structure.serialization", "1"));
+    }
+    
+    @Test
+    @Ignore("For benchmarking only")
+    public void testKlsSerializableStreamingBench() {
+        compile("serialization/SerializableStreamingBench.ceylon", "serialization/SerializableStreamingRoundTrip.java");
+        ModuleWithArtifact module = new ModuleWithArtifact("org.eclipse.ceylon.compiler.java.test.structure.serialization", "1");
+        com.sun.management.ThreadMXBean threads = 
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        for (int i = 0; i < 3; i++) {
+            long allocated = threads.getThreadAllocatedBytes(thread);
+            long context = (Long)run("org.eclipse.ceylon.compiler.java.test.structure.serialization.serializableStreamingBenchContext", module);
+            allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+            System.out.println("Contexts took " + context/1_000_000 + "ms and allocated " + allocated/1_000_000 + "MB");
+            allocated = threads.getThreadAllocatedBytes(thread);
+            long streaming = (Long)run("org.eclipse.ceylon.compiler.java.test.structure.serialization.serializableStreamingBenchStreaming", module);
+            allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+            System.out.println("Streaming took " + streaming/1_000_000 + "ms and allocated " + allocated/1_000_000 + "MB");
+        }
+    }
 }
@@ -0,0 +1,120 @@
+/*
+ * Copyright Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the authors tag. All rights reserved.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License version 2.
+ * 
+ * This particular file is subject to the "Classpath" exception as provided in the 
+ * LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License,
+ * along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.eclipse.ceylon.compiler.java.test.structure.serialization;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+import org.eclipse.ceylon.compiler.java.runtime.serialization.StreamingDeserializer;
+import org.eclipse.ceylon.compiler.java.runtime.serialization.StreamingSerializer;
+
+public class SerializableStreamingRoundTrip {
+
+    /**
+     * Writes the given graph, twice, and reads both copies back,
+     * returning the second
+     */
+    public static Object roundTrip(Object root) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        // a small buffer, so that the values get split across writes
+        StreamingSerializer serializer = new StreamingSerializer(Channels.newChannel(bytes), 16);
+        serializer.write(root);
+        serializer.write(root);
+        StreamingDeserializer deserializer = new StreamingDeserializer(
+                Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())), 16);
+        deserializer.read();
+        return deserializer.read();
+    }
+
+    /** Writes the given graph, and reads it back */
+    public static Object copy(Object root) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        StreamingSerializer serializer = new StreamingSerializer(Channels.newChannel(bytes));
+        serializer.write(root);
+        return new StreamingDeserializer(
+                Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray()))).read();
+    }
+
+    /** Reads a stream with a use-site variance which does not exist */
+    public static Object readUnknownVariance() throws IOException {
+        MalformedStream stream = new MalformedStream();
+        stream.languageClass("ceylon.language.Integer");
+        stream.writeInt(0); // no type arguments
+        stream.writeInt(0); // no variances
+        stream.languageClass("ceylon.language.Sequential");
+        stream.writeInt(1); // one type argument
+        stream.writeInt(0); // Integer
+        stream.writeInt(1); // one variance
+        stream.writeInt(99);
+        return stream.read();
+    }
+
+    /** Reads a stream whose first instance has a huge id */
+    public static Object readHugeInstanceId() throws IOException {
+        MalformedStream stream = new MalformedStream();
+        stream.write(2); // INSTANCE
+        stream.writeInt(Integer.MAX_VALUE - 1);
+        stream.writeInt(0);
+        return stream.read();
+    }
+
+    /** Writes streams by hand, in the format of StreamingFormat */
+    private static class MalformedStream extends ByteArrayOutputStream {
+        MalformedStream() {
+            write(0x43); // MAGIC
+            write(0x53);
+            write(0x45);
+            write(0x52);
+            write(1); // VERSION
+        }
+
+        /** Starts a type for the given class of the language module */
+        void languageClass(String className) {
+            write(1); // TYPE
+            write(1); // CLASS
+            writeString("ceylon.language");
+            writeString(ceylon.language.language_.get_().getVersion());
+            writeString(className);
+        }
+
+        void writeString(String string) {
+            writeInt(string.length());
+            for (int ii = 0; ii < string.length(); ii++) {
+                writeInt(string.charAt(ii));
+            }
+        }
+
+        void writeInt(int value) {
+            long l = value & 0xffffffffL;
+            while ((l & ~0x7fL) != 0) {
+                write((int)((l & 0x7f) | 0x80));
+                l >>>= 7;
+            }
+            write((int)l);
+        }
+
+        Object read() throws IOException {
+            return new StreamingDeserializer(
+                    Channels.newChannel(new ByteArrayInputStream(toByteArray()))).read();
+        }
+    }
+}
@@ -19,16 +19,22 @@
  */
 package org.eclipse.ceylon.tools.test;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.List;
 import java.util.jar.JarFile;
 import java.util.zip.ZipEntry;
 
 import org.eclipse.ceylon.common.FileUtil;
+import org.eclipse.ceylon.common.IOUtil;
 import org.eclipse.ceylon.common.tool.NonFatalToolMessage;
 import org.eclipse.ceylon.common.tool.OptionArgumentException;
 import org.eclipse.ceylon.common.tool.ToolModel;
@@ -118,6 +124,57 @@ public class CompilerToolTests extends AbstractToolTests {
         car.close();
     }
     
+    @Test
+    public void testCompileIncrementalDependents()  throws Exception {
+        File destDir = destFile("incrementaltest");
+        FileUtil.delete(destDir);
+        File srcDir = new File(destDir, "src/inc");
+        srcDir.mkdirs();
+        write(new File(srcDir, "module.ceylon"), "module inc \"1\" {}");
+        write(new File(srcDir, "a.ceylon"), "shared Integer a = 1;");
+        write(new File(srcDir, "b.ceylon"), "shared void b() { print(a); }");
+        write(new File(srcDir, "c.ceylon"), "shared void c() { print(1); }");
+        
+        compileIncremental(destDir);
+        File carFile = getModuleArchive("inc", "1", (new File(destDir, "mod")).getPath());
+        assertFalse(classUses(carFile, "inc/b_.class", "ceylon/language/String"));
+        
+        // b() must be compiled again to box a String rather than an Integer
+        write(new File(srcDir, "a.ceylon"), "shared String a = \"1\";");
+        compileIncremental(destDir);
+        assertTrue(classUses(carFile, "inc/b_.class", "ceylon/language/String"));
+    }
+    
+    private void compileIncremental(File destDir) throws Exception {
+        ToolModel<CeylonCompileTool> model = pluginLoader.loadToolModel("compile");
+        Assert.assertNotNull(model);
+        CeylonCompileTool tool = pluginFactory.bindArguments(model, getMainTool(),
+                Arrays.asList(
+                        "--cwd", destDir.getPath(),
+                        "--sysrep", getSysRepPath(),
+                        "--src=src",
+                        "--out=mod",
+                        "--incremental",
+                        "--javac=-cp=" + getClassPathAsPath(),
+                        "inc"));
+        tool.run();
+    }
+    
+    private static void write(File file, String contents) throws IOException {
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static boolean classUses(File carFile, String entryName, String className) throws IOException {
+        try (JarFile car = new JarFile(carFile)) {
+            ZipEntry entry = car.getEntry(entryName);
+            assertNotNull(entry);
+            try (InputStream in = car.getInputStream(entry)) {
+                byte[] bytes = IOUtil.readStream(in);
+                return new String(bytes, StandardCharsets.ISO_8859_1).contains(className);
+            }
+        }
+    }
+
     @Test
     public void testCompileVerbose()  throws Exception {
         ToolModel<CeylonCompileTool> model = pluginLoader.loadToolModel("compile");
@@ -20,20 +20,25 @@
 package org.eclipse.ceylon.tools.test;
 
 import java.io.File;
+import java.io.InputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Enumeration;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
+import org.eclipse.ceylon.common.IOUtil;
 import org.eclipse.ceylon.common.Versions;
 import org.eclipse.ceylon.common.tool.OptionArgumentException;
 import org.eclipse.ceylon.common.tool.ToolModel;
+import org.eclipse.ceylon.common.tool.ToolUsageError;
+import org.eclipse.ceylon.common.tools.ClassDataSharing;
 import org.eclipse.ceylon.tools.fatjar.CeylonFatJarTool;
 import org.junit.Assert;
 import org.junit.Test;
@@ -82,6 +87,74 @@ public class FatJarToolTests extends AbstractToolTests {
         }
     }
 
+    @Test
+    public void testJarEntriesCopiedAsIs() throws Exception {
+        ToolModel<CeylonFatJarTool> model = pluginLoader.loadToolModel("fat-jar");
+        Assert.assertNotNull(model);
+        File out = new File(getOutPath(), "fatjar.jar");
+        CeylonFatJarTool tool = pluginFactory.bindArguments(model, getMainTool(),
+                Arrays.asList(
+                        "--rep", "../dist/dist/repo",
+                        "--out", out.getAbsolutePath(),
+                        "ceylon.language/"+Versions.CEYLON_VERSION_NUMBER));
+        tool.run();
+
+        File car = new File("../dist/dist/repo/ceylon/language/"+Versions.CEYLON_VERSION_NUMBER
+                +"/ceylon.language-"+Versions.CEYLON_VERSION_NUMBER+".car");
+        try(ZipFile zf = new ZipFile(out);
+            ZipFile src = new ZipFile(car)){
+            int entries = 0;
+            Enumeration<? extends ZipEntry> srcEntries = src.entries();
+            while(srcEntries.hasMoreElements()){
+                ZipEntry srcEntry = srcEntries.nextElement();
+                if(!srcEntry.getName().endsWith(".class"))
+                    continue;
+                ZipEntry entry = zf.getEntry(srcEntry.getName());
+                Assert.assertNotNull(srcEntry.getName(), entry);
+                // not deflated again
+                Assert.assertEquals(srcEntry.getName(), srcEntry.getMethod(), entry.getMethod());
+                Assert.assertEquals(srcEntry.getName(), srcEntry.getCompressedSize(), entry.getCompressedSize());
+                Assert.assertEquals(srcEntry.getName(), srcEntry.getCrc(), entry.getCrc());
+                try(InputStream expected = src.getInputStream(srcEntry);
+                    InputStream actual = zf.getInputStream(entry)){
+                    Assert.assertArrayEquals(srcEntry.getName(),
+                            IOUtil.readStream(expected), IOUtil.readStream(actual));
+                }
+                entries++;
+            }
+            Assert.assertTrue(entries > 0);
+            Assert.assertNotNull(zf.getEntry("META-INF/ceylon/metamodel"));
+            Assert.assertNotNull(zf.getEntry("META-INF/ceylon/annotations"));
+        }
+    }
+
+    @Test
+    public void testCds() throws Exception {
+        compile("fatjar/source/def/hello.ceylon");
+
+        ToolModel<CeylonFatJarTool> model = pluginLoader.loadToolModel("fat-jar");
+        Assert.assertNotNull(model);
+        File out = new File(getOutPath(), "fatjar.jar");
+        File archive = new File(getOutPath(), "fatjar.jsa");
+        CeylonFatJarTool tool = pluginFactory.bindArguments(model, getMainTool(),
+                Arrays.asList(
+                        "--rep", "../dist/dist/repo",
+                        "--rep", getOutPath(),
+                        "--out", out.getAbsolutePath(),
+                        "--run", "org.eclipse.ceylon.tools.test.fatjar.source.def::hello",
+                        "--cds",
+                        "default"));
+        try {
+            tool.run();
+            Assert.assertTrue(ClassDataSharing.isSupported());
+            Assert.assertTrue(archive.isFile());
+        } catch (ToolUsageError e) {
+            Assert.assertFalse(ClassDataSharing.isSupported());
+            Assert.assertFalse(archive.exists());
+        }
+        Assert.assertTrue(out.exists());
+    }
+
     @Test
     public void testDefaultJar() throws Exception {
         compile("fatjar/source/def/hello.ceylon");
@@ -25,6 +25,7 @@ import org.eclipse.ceylon.cmr.api.RepositoryManager;
 import org.eclipse.ceylon.common.Backend;
 import org.eclipse.ceylon.common.Backends;
 import org.eclipse.ceylon.common.Constants;
+import org.eclipse.ceylon.common.Profile;
 import org.eclipse.ceylon.common.config.DefaultToolOptions;
 import org.eclipse.ceylon.common.tool.Argument;
 import org.eclipse.ceylon.common.tool.Description;
@@ -46,6 +47,7 @@ import org.eclipse.ceylon.common.tools.SourceDependencyResolver;
 import org.eclipse.ceylon.compiler.typechecker.TypeChecker;
 import org.eclipse.ceylon.compiler.typechecker.TypeCheckerBuilder;
 import org.eclipse.ceylon.compiler.typechecker.analyzer.Warning;
+import org.eclipse.ceylon.compiler.typechecker.context.TokenRetention;
 import org.eclipse.ceylon.compiler.typechecker.io.VirtualFile;
 import org.eclipse.ceylon.model.typechecker.context.TypeCache;
 
@@ -90,6 +92,8 @@ public class CeylonCompileJsTool extends OutputRepoUsingTool {
     }
 
     private boolean profile = false;
+    private File profileOutput;
+    private File parseCache;
     private boolean optimize = true;
     private boolean modulify = true;
     private boolean comments = false;
@@ -149,6 +153,23 @@ public class CeylonCompileJsTool extends OutputRepoUsingTool {
         this.profile = profile;
     }
 
+    @OptionArgument(longName="profile-output", argumentName="file")
+    @Description("Writes the time and memory taken by each compilation phase and source file, " +
+            "as JSON, to the given file")
+    public void setProfileOutput(File profileOutput) {
+        this.profileOutput = profileOutput;
+    }
+
+    @OptionArgument(longName="parse-cache", argumentName="dir")
+    @Description("Caches the parsed source files in the given directory, so that " +
+            "the source files which did not change are not parsed again. " +
+            "The least recently used entries are deleted once the directory " +
+            "holds more than 128MB, or the number of bytes given by the " +
+            "`ceylon.parse.cache.size` system property.")
+    public void setParseCache(File parseCache) {
+        this.parseCache = parseCache;
+    }
+
     @Option
     @Description("Create lexical scope-style JS code")
     public void setLexicalScopeStyle(boolean flag) {
@@ -291,6 +312,7 @@ public class CeylonCompileJsTool extends OutputRepoUsingTool {
         }
         final RepositoryManager repoman = getRepositoryManager();
         long t0, t1, t2, t3, t4;
+        final Profile phaseProfile = profileOutput != null ? new Profile("compile-js") : null;
         final TypeCheckerBuilder tcb;
         List<File> onlySources = null;
         List<File> onlyResources = null;
@@ -400,7 +422,12 @@ public class CeylonCompileJsTool extends OutputRepoUsingTool {
         }
         //getting the type checker does process all types in the source directory
         tcb.verbose(opts.hasVerboseFlag("ast")).setRepositoryManager(repoman);
-        tcb.usageWarnings(false).encoding(encoding);
+        tcb.usageWarnings(false).encoding(encoding).profile(phaseProfile);
+        // the tokens are only read back for assertion messages
+        tcb.tokenRetention(TokenRetention.COMPACT);
+        if (parseCache != null) {
+            tcb.parseCache(applyCwd(parseCache));
+        }
 
         typeChecker = tcb.getTypeChecker();
         t1=System.nanoTime();
@@ -412,7 +439,8 @@ public class CeylonCompileJsTool extends OutputRepoUsingTool {
         });
         
         t2=System.nanoTime();
-        JsCompiler jsc = new JsCompiler(typeChecker, opts);
+        //the tokens are only read back while generating each unit
+        JsCompiler jsc = new JsCompiler(typeChecker, opts).releaseTokens(true);
         if (onlySources != null) {
             if (opts.isVerbose()) {
                 append("Only these files will be compiled: " + onlySources).newline();
@@ -423,6 +451,7 @@ public class CeylonCompileJsTool extends OutputRepoUsingTool {
             jsc.setResourceFiles(onlyResources);
         }
         t3=System.nanoTime();
+        Profile.Mark generateStart = phaseProfile != null ? phaseProfile.mark() : null;
         if (!jsc.generate()) {
             if (jsc.getExitCode() != 0) {
                 if(throwOnError)
@@ -441,6 +470,10 @@ public class CeylonCompileJsTool extends OutputRepoUsingTool {
             jsc.printErrorsAndCount(writer);
         }
         t4=System.nanoTime();
+        if (phaseProfile != null) {
+            phaseProfile.phase("generate", generateStart);
+            phaseProfile.write(applyCwd(profileOutput));
+        }
         if (opts.isProfile() || opts.hasVerboseFlag("benchmark")) {
             System.err.println("PROFILING INFORMATION");
             System.err.printf("TypeChecker creation:   %6d nanos%n", t1-t0);
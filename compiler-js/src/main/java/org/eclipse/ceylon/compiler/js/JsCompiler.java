@@ -74,6 +74,7 @@ public class JsCompiler {
     private final ErrorCollectingVisitor errorVisitor;
 
     private boolean stopOnErrors = true;
+    private boolean releaseTokens = false;
     private int errCount = 0;
 
     protected final List<VirtualFile> srcDirectories;
@@ -161,6 +162,13 @@ public class JsCompiler {
         return this;
     }
 
+    /** Specifies whether the tokens of each compilation unit are dropped once its code has been generated
+     * (default false), for tools which do not need them afterwards. */
+    public JsCompiler releaseTokens(boolean flag) {
+        releaseTokens = flag;
+        return this;
+    }
+
     /** Sets the names of the files to compile. By default this is null, which means all units from the typechecker
      * will be compiled. */
     public JsCompiler setSourceFiles(List<File> files) {
@@ -187,6 +195,10 @@ public class JsCompiler {
         GenerateJsVisitor jsv = new GenerateJsVisitor(this, jsout, opts, names, pu.getTokens());
         pu.getCompilationUnit().visit(jsv);
         pu.getCompilationUnit().visit(errorVisitor);
+        if (releaseTokens) {
+            //assertion messages were the last thing to need them
+            pu.releaseTokens();
+        }
         return jsv.getExitCode();
     }
 
@@ -17,7 +17,6 @@ import java.io.InputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Arrays;
-import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -63,6 +62,7 @@ import org.eclipse.ceylon.model.cmr.PathFilter;
 import org.eclipse.ceylon.model.cmr.RepositoryException;
 import org.eclipse.ceylon.model.cmr.JDKUtils.JDK;
 import org.eclipse.ceylon.model.loader.ClassFileUtil;
+import org.eclipse.ceylon.model.loader.JarTOC;
 import org.eclipse.ceylon.model.loader.Java9ModuleReader;
 import org.eclipse.ceylon.model.loader.NamingBase;
 import org.eclipse.ceylon.model.loader.OsgiUtil;
@@ -421,13 +421,11 @@ public class Main {
             initJars();
         }
         
-        private List<ZipEntry> findEntries(ZipFile zipFile, String startFolder, String entryName) {
+        private List<ZipEntry> findEntries(JarTOC toc, ZipFile zipFile, String startFolder, String entryName) {
             List<ZipEntry> result = new LinkedList<ZipEntry>();
-            Enumeration<? extends ZipEntry> entries = zipFile.entries();
-            while (entries.hasMoreElements()) {
-                ZipEntry entry = entries.nextElement();
-                String name = entry.getName();
-                if (name.startsWith(startFolder) && name.endsWith(entryName)) {
+            for (String name : toc.find(startFolder, entryName)) {
+                ZipEntry entry = zipFile.getEntry(name);
+                if (entry != null) {
                     result.add(entry);
                 }
             }
@@ -565,10 +563,11 @@ public class Main {
         }
         
         private Module initJar(File file) throws IOException {
+            JarTOC toc = JarTOC.forJar(file);
             ZipFile zipFile = new ZipFile(file);
             try{
                 // Try Ceylon module first
-                List<ZipEntry> moduleDescriptors = findEntries(zipFile, "", NamingBase.MODULE_DESCRIPTOR_CLASS_NAME+".class");
+                List<ZipEntry> moduleDescriptors = findEntries(toc, zipFile, "", NamingBase.MODULE_DESCRIPTOR_CLASS_NAME+".class");
                 if(moduleDescriptors.size() == 1) {
                     try {
                         return loadCeylonModuleCar(file, zipFile, moduleDescriptors.get(0), null, null);
@@ -578,14 +577,14 @@ public class Main {
                 }
                 
                 // Try JBoss modules next
-                List<ZipEntry> moduleXmls = findEntries(zipFile, METAINF_JBOSSMODULES, MODULE_XML);
+                List<ZipEntry> moduleXmls = findEntries(toc, zipFile, METAINF_JBOSSMODULES, MODULE_XML);
                 if(moduleXmls.size() == 1) {
                     ModuleSpec mod = moduleFromEntry(moduleXmls.get(0));
                     if (mod != null) {
                         return loadJBossModuleXmlJar(file, zipFile, moduleXmls.get(0), mod.getName(), mod.getVersion());
                     }
                 }
-                List<ZipEntry> moduleProperties = findEntries(zipFile, METAINF_JBOSSMODULES, MODULE_PROPERTIES);
+                List<ZipEntry> moduleProperties = findEntries(toc, zipFile, METAINF_JBOSSMODULES, MODULE_PROPERTIES);
                 if(moduleProperties.size() == 1) {
                     ModuleSpec mod = moduleFromEntry(moduleProperties.get(0));
                     if (mod != null) {
@@ -611,13 +610,13 @@ public class Main {
                 }
 
                 // Java 9 module
-                List<ZipEntry> java9Module = findEntries(zipFile, "", JAVA9_MODULE);
+                List<ZipEntry> java9Module = findEntries(toc, zipFile, "", JAVA9_MODULE);
                 if(java9Module.size() == 1) {
                     return loadJava9ModuleJar(file, zipFile, java9Module.get(0), null, null);
                 }
 
                 // try Maven
-                List<ZipEntry> mavenDescriptors = findEntries(zipFile, METAINF_MAVEN, POM_XML);
+                List<ZipEntry> mavenDescriptors = findEntries(toc, zipFile, METAINF_MAVEN, POM_XML);
                 if(mavenDescriptors.size() == 1 && MavenResolver != null) {
                     return loadMavenJar(file, zipFile, mavenDescriptors.get(0), null, null);
                 }
@@ -708,7 +707,7 @@ public class Main {
                 }
                 
                 // Java 9 module
-                List<ZipEntry> java9Module = findEntries(zipFile, "", JAVA9_MODULE);
+                List<ZipEntry> java9Module = findEntries(JarTOC.forJar(file), zipFile, "", JAVA9_MODULE);
                 if(java9Module.size() == 1) {
                     return loadJava9ModuleJar(file, zipFile, java9Module.get(0), name, version);
                 }
@@ -81,6 +81,9 @@ public final class Array<Element>
     private static final byte[] EMPTY_BYTE_ARRAY = new byte[0];
     private static final double[] EMPTY_DOUBLE_ARRAY = new double[0];
     private static final long[] EMPTY_LONG_ARRAY = new long[0];
+    private static final char[] EMPTY_CHAR_ARRAY = new char[0];
+    private static final short[] EMPTY_SHORT_ARRAY = new short[0];
+    private static final float[] EMPTY_FLOAT_ARRAY = new float[0];
     
     /** The array, could be Object[], int[], boolean[] etc. Never null. */
     private final java.lang.Object array;
@@ -690,6 +693,8 @@ public final class Array<Element>
             booleanArray = null;
             break;
         default:
+            if (array==EMPTY_ARRAY) 
+                array = emptyJavaArray(elementType);
             this.size = java.lang.reflect.Array.getLength(array);
             objectArray = null;
             longArray = null;
@@ -702,6 +707,37 @@ public final class Array<Element>
         this.array = array;
     }
     
+    /** 
+     * An empty array of the primitive type wrapped by an 
+     * array of the given Java element type, so that the 
+     * iterators can cast the backing array without 
+     * checking its size first
+     */
+    private static java.lang.Object emptyJavaArray(ArrayType elementType) {
+        switch (elementType) {
+        case JavaLong:
+            return EMPTY_LONG_ARRAY;
+        case JavaDouble:
+            return EMPTY_DOUBLE_ARRAY;
+        case JavaInteger:
+            return EMPTY_INT_ARRAY;
+        case JavaByte:
+            return EMPTY_BYTE_ARRAY;
+        case JavaBoolean:
+            return EMPTY_BOOLEAN_ARRAY;
+        case JavaCharacter:
+            return EMPTY_CHAR_ARRAY;
+        case JavaShort:
+            return EMPTY_SHORT_ARRAY;
+        case JavaFloat:
+            return EMPTY_FLOAT_ARRAY;
+        case JavaString:
+            return EMPTY_STRING_ARRAY;
+        default: 
+            throw new AssertionError("unknown element type");
+        }
+    }
+    
     @Ignore
     public static <T> Array<T> instance(T[] array) {
         if (array == null) {
@@ -1199,9 +1235,273 @@ public final class Array<Element>
         }
     }
     
+    /**
+     * Base class for iterators which read directly from the backing
+     * primitive array, rather than dispatching on the kind of 
+     * backing array for every element like {@link ArrayIterator}.
+     */
+    @Ignore
+    private abstract class PrimitiveArrayIterator 
+    extends BaseIterator<Element> {
+        
+        int index = 0;
+        
+        PrimitiveArrayIterator(TypeDescriptor $reified$Element) {
+            super($reified$Element);
+        }
+        
+        @Override
+        public java.lang.String toString() {
+            return Array.this.toString() + ".iterator()";
+        }
+    }
+    
+    @Ignore
+    private final class IntegerArrayIterator 
+    extends PrimitiveArrayIterator {
+        private final long[] array = longArray;
+        IntegerArrayIterator(TypeDescriptor $reified$Element) {
+            super($reified$Element);
+        }
+        @Override
+        public java.lang.Object next() {
+            return index<array.length ? 
+                    Integer.instance(array[index++]) : FIN;
+        }
+    }
+    
+    @Ignore
+    private final class FloatArrayIterator 
+    extends PrimitiveArrayIterator {
+        private final double[] array = doubleArray;
+        FloatArrayIterator(TypeDescriptor $reified$Element) {
+            super($reified$Element);
+        }
+        @Override
+        public java.lang.Object next() {
+            return index<array.length ? 
+                    Float.instance(array[index++]) : FIN;
+        }
+    }
+    
+    @Ignore
+    private final class CharacterArrayIterator 
+    extends PrimitiveArrayIterator {
+        private final int[] array = intArray;
+        CharacterArrayIterator(TypeDescriptor $reified$Element) {
+            super($reified$Element);
+        }
+        @Override
+        public java.lang.Object next() {
+            return index<array.length ? 
+                    Character.instance(array[index++]) : FIN;
+        }
+    }
+    
+    @Ignore
+    private final class ByteArrayIterator 
+    extends PrimitiveArrayIterator {
+        private final byte[] array = byteArray;
+        ByteArrayIterator(TypeDescriptor $reified$Element) {
+            super($reified$Element);
+        }
+        @Override
+        public java.lang.Object next() {
+            return index<array.length ? 
+                    Byte.instance(array[index++]) : FIN;
+        }
+    }
+    
+    @Ignore
+    private final class BooleanArrayIterator 
+    extends PrimitiveArrayIterator {
+        private final boolean[] array = booleanArray;
+        BooleanArrayIterator(TypeDescriptor $reified$Element) {
+            super($reified$Element);
+        }
+        @Override
+        public java.lang.Object next() {
+            return index<array.length ? 
+                    Boolean.instance(array[index++]) : FIN;
+        }
+    }
+    
+    @Ignore
+    private final class StringArrayIterator 
+    extends PrimitiveArrayIterator {
+        private final java.lang.String[] array = stringArray;
+        StringArrayIterator(TypeDescriptor $reified$Element) {
+            super($reified$Element);
+        }
+        @Override
+        public java.lang.Object next() {
+            return index<array.length ? 
+                    String.instance(array[index++]) : FIN;
+        }
+    }
+    
+    @Ignore
+    private final class JavaLongArrayIterator 
+    extends PrimitiveArrayIterator {
+        private final long[] array = (long[]) Array.this.array;
+        JavaLongArrayIterator(TypeDescriptor $reified$Element) {
+            super($reified$Element);
+        }
+        @Override
+        public java.lang.Object next() {
+            return index<array.length ? 
+                    java.lang.Long.valueOf(array[index++]) : FIN;
+        }
+    }
+    
+    @Ignore
+    private final class JavaDoubleArrayIterator 
+    extends PrimitiveArrayIterator {
+        private final double[] array = (double[]) Array.this.array;
+        JavaDoubleArrayIterator(TypeDescriptor $reified$Element) {
+            super($reified$Element);
+        }
+        @Override
+        public java.lang.Object next() {
+            return index<array.length ? 
+                    java.lang.Double.valueOf(array[index++]) : FIN;
+        }
+    }
+    
+    @Ignore
+    private final class JavaIntegerArrayIterator 
+    extends PrimitiveArrayIterator {
+        private final int[] array = (int[]) Array.this.array;
+        JavaIntegerArrayIterator(TypeDescriptor $reified$Element) {
+            super($reified$Element);
+        }
+        @Override
+        public java.lang.Object next() {
+            return index<array.length ? 
+                    java.lang.Integer.valueOf(array[index++]) : FIN;
+        }
+    }
+    
+    @Ignore
+    private final class JavaByteArrayIterator 
+    extends PrimitiveArrayIterator {
+        private final byte[] array = (byte[]) Array.this.array;
+        JavaByteArrayIterator(TypeDescriptor $reified$Element) {
+            super($reified$Element);
+        }
+        @Override
+        public java.lang.Object next() {
+            return index<array.length ? 
+                    java.lang.Byte.valueOf(array[index++]) : FIN;
+        }
+    }
+    
+    @Ignore
+    private final class JavaBooleanArrayIterator 
+    extends PrimitiveArrayIterator {
+        private final boolean[] array = (boolean[]) Array.this.array;
+        JavaBooleanArrayIterator(TypeDescriptor $reified$Element) {
+            super($reified$Element);
+        }
+        @Override
+        public java.lang.Object next() {
+            return index<array.length ? 
+                    java.lang.Boolean.valueOf(array[index++]) : FIN;
+        }
+    }
+    
+    @Ignore
+    private final class JavaStringArrayIterator 
+    extends PrimitiveArrayIterator {
+        private final java.lang.String[] array = (java.lang.String[]) Array.this.array;
+        JavaStringArrayIterator(TypeDescriptor $reified$Element) {
+            super($reified$Element);
+        }
+        @Override
+        public java.lang.Object next() {
+            return index<array.length ? 
+                    array[index++] : FIN;
+        }
+    }
+    
+    @Ignore
+    private final class JavaFloatArrayIterator 
+    extends PrimitiveArrayIterator {
+        private final float[] array = (float[]) Array.this.array;
+        JavaFloatArrayIterator(TypeDescriptor $reified$Element) {
+            super($reified$Element);
+        }
+        @Override
+        public java.lang.Object next() {
+            return index<array.length ? 
+                    java.lang.Float.valueOf(array[index++]) : FIN;
+        }
+    }
+    
+    @Ignore
+    private final class JavaShortArrayIterator 
+    extends PrimitiveArrayIterator {
+        private final short[] array = (short[]) Array.this.array;
+        JavaShortArrayIterator(TypeDescriptor $reified$Element) {
+            super($reified$Element);
+        }
+        @Override
+        public java.lang.Object next() {
+            return index<array.length ? 
+                    java.lang.Short.valueOf(array[index++]) : FIN;
+        }
+    }
+    
+    @Ignore
+    private final class JavaCharacterArrayIterator 
+    extends PrimitiveArrayIterator {
+        private final char[] array = (char[]) Array.this.array;
+        JavaCharacterArrayIterator(TypeDescriptor $reified$Element) {
+            super($reified$Element);
+        }
+        @Override
+        public java.lang.Object next() {
+            return index<array.length ? 
+                    java.lang.Character.valueOf(array[index++]) : FIN;
+        }
+    }
+    
     @Override
     public Iterator<Element> iterator() {
-        return new ArrayIterator($reifiedElement);
+        switch (elementType) {
+        case CeylonInteger:
+            return new IntegerArrayIterator($reifiedElement);
+        case CeylonFloat:
+            return new FloatArrayIterator($reifiedElement);
+        case CeylonCharacter:
+            return new CharacterArrayIterator($reifiedElement);
+        case CeylonByte:
+            return new ByteArrayIterator($reifiedElement);
+        case CeylonBoolean:
+            return new BooleanArrayIterator($reifiedElement);
+        case CeylonString:
+            return new StringArrayIterator($reifiedElement);
+        case JavaLong:
+            return new JavaLongArrayIterator($reifiedElement);
+        case JavaDouble:
+            return new JavaDoubleArrayIterator($reifiedElement);
+        case JavaInteger:
+            return new JavaIntegerArrayIterator($reifiedElement);
+        case JavaByte:
+            return new JavaByteArrayIterator($reifiedElement);
+        case JavaBoolean:
+            return new JavaBooleanArrayIterator($reifiedElement);
+        case JavaCharacter:
+            return new JavaCharacterArrayIterator($reifiedElement);
+        case JavaShort:
+            return new JavaShortArrayIterator($reifiedElement);
+        case JavaFloat:
+            return new JavaFloatArrayIterator($reifiedElement);
+        case JavaString:
+            return new JavaStringArrayIterator($reifiedElement);
+        default:
+            return new ArrayIterator($reifiedElement);
+        }
     }
     
 //    @Override
@@ -2074,7 +2374,7 @@ public final class Array<Element>
                         throw new AssertionError("Index out of bounds");
                     }
                     while (len-- > 0) {
-                        dst[dstIndex++] = getFromFirst(srcIndex++);
+                        dst[dstIndex++] = unsafeItem(srcIndex++);
                     }
                 }
             }
@@ -2120,8 +2420,89 @@ public final class Array<Element>
             @FunctionalParameter("!(element)")
             @TypeInfo("ceylon.language::Anything(Element)")
             Callable<? extends java.lang.Object> step) {
-        for (int i=0; i<size; i++) {
-            step.$call$(unsafeItem(i));
+        switch (elementType) {
+        case CeylonInteger:
+            for (long element: longArray) {
+                step.$call$(Integer.instance(element));
+            }
+            break;
+        case CeylonFloat:
+            for (double element: doubleArray) {
+                step.$call$(Float.instance(element));
+            }
+            break;
+        case CeylonCharacter:
+            for (int element: intArray) {
+                step.$call$(Character.instance(element));
+            }
+            break;
+        case CeylonByte:
+            for (byte element: byteArray) {
+                step.$call$(Byte.instance(element));
+            }
+            break;
+        case CeylonBoolean:
+            for (boolean element: booleanArray) {
+                step.$call$(Boolean.instance(element));
+            }
+            break;
+        case CeylonString:
+            for (java.lang.String element: stringArray) {
+                step.$call$(String.instance(element));
+            }
+            break;
+        case Other:
+            for (java.lang.Object element: objectArray) {
+                step.$call$(element);
+            }
+            break;
+        case JavaLong:
+            for (long element: (long[]) array) {
+                step.$call$(java.lang.Long.valueOf(element));
+            }
+            break;
+        case JavaDouble:
+            for (double element: (double[]) array) {
+                step.$call$(java.lang.Double.valueOf(element));
+            }
+            break;
+        case JavaInteger:
+            for (int element: (int[]) array) {
+                step.$call$(java.lang.Integer.valueOf(element));
+            }
+            break;
+        case JavaByte:
+            for (byte element: (byte[]) array) {
+                step.$call$(java.lang.Byte.valueOf(element));
+            }
+            break;
+        case JavaBoolean:
+            for (boolean element: (boolean[]) array) {
+                step.$call$(java.lang.Boolean.valueOf(element));
+            }
+            break;
+        case JavaCharacter:
+            for (char element: (char[]) array) {
+                step.$call$(java.lang.Character.valueOf(element));
+            }
+            break;
+        case JavaShort:
+            for (short element: (short[]) array) {
+                step.$call$(java.lang.Short.valueOf(element));
+            }
+            break;
+        case JavaFloat:
+            for (float element: (float[]) array) {
+                step.$call$(java.lang.Float.valueOf(element));
+            }
+            break;
+        case JavaString:
+            for (java.lang.String element: (java.lang.String[]) array) {
+                step.$call$(element);
+            }
+            break;
+        default: 
+            throw new AssertionError("unknown element type");
         }
         return null;
     }
@@ -2910,7 +3291,92 @@ public final class Array<Element>
 
     @Override @Ignore
     public <Result> Result fold(TypeDescriptor arg0, Result arg1, Callable<? extends Result> arg2) {
-        return $ceylon$language$Iterable$impl().fold(arg0, arg1, arg2);
+        Result partial = arg1;
+        switch (elementType) {
+        case CeylonInteger:
+            for (long element: longArray) {
+                partial = arg2.$call$(partial, Integer.instance(element));
+            }
+            break;
+        case CeylonFloat:
+            for (double element: doubleArray) {
+                partial = arg2.$call$(partial, Float.instance(element));
+            }
+            break;
+        case CeylonCharacter:
+            for (int element: intArray) {
+                partial = arg2.$call$(partial, Character.instance(element));
+            }
+            break;
+        case CeylonByte:
+            for (byte element: byteArray) {
+                partial = arg2.$call$(partial, Byte.instance(element));
+            }
+            break;
+        case CeylonBoolean:
+            for (boolean element: booleanArray) {
+                partial = arg2.$call$(partial, Boolean.instance(element));
+            }
+            break;
+        case CeylonString:
+            for (java.lang.String element: stringArray) {
+                partial = arg2.$call$(partial, String.instance(element));
+            }
+            break;
+        case Other:
+            for (java.lang.Object element: objectArray) {
+                partial = arg2.$call$(partial, element);
+            }
+            break;
+        case JavaLong:
+            for (long element: (long[]) array) {
+                partial = arg2.$call$(partial, java.lang.Long.valueOf(element));
+            }
+            break;
+        case JavaDouble:
+            for (double element: (double[]) array) {
+                partial = arg2.$call$(partial, java.lang.Double.valueOf(element));
+            }
+            break;
+        case JavaInteger:
+            for (int element: (int[]) array) {
+                partial = arg2.$call$(partial, java.lang.Integer.valueOf(element));
+            }
+            break;
+        case JavaByte:
+            for (byte element: (byte[]) array) {
+                partial = arg2.$call$(partial, java.lang.Byte.valueOf(element));
+            }
+            break;
+        case JavaBoolean:
+            for (boolean element: (boolean[]) array) {
+                partial = arg2.$call$(partial, java.lang.Boolean.valueOf(element));
+            }
+            break;
+        case JavaCharacter:
+            for (char element: (char[]) array) {
+                partial = arg2.$call$(partial, java.lang.Character.valueOf(element));
+            }
+            break;
+        case JavaShort:
+            for (short element: (short[]) array) {
+                partial = arg2.$call$(partial, java.lang.Short.valueOf(element));
+            }
+            break;
+        case JavaFloat:
+            for (float element: (float[]) array) {
+                partial = arg2.$call$(partial, java.lang.Float.valueOf(element));
+            }
+            break;
+        case JavaString:
+            for (java.lang.String element: (java.lang.String[]) array) {
+                partial = arg2.$call$(partial, element);
+            }
+            break;
+        default: 
+            throw new AssertionError("unknown element type");
+        }
+        return partial;
     }
 
     @Override @Ignore
@@ -62,8 +62,25 @@ public final class Character
         throw Util.makeUnimplementedMixinAccessException();
     }
 
+    /**
+     * Boxed instances of the Latin-1 characters, which make
+     * up most of the text we iterate over
+     */
+    private static final Character[] CACHE = makeCache();
+    
+    private static Character[] makeCache() {
+        Character[] cache = new Character[256];
+        for (int i = 0; i < cache.length; i++) {
+            cache[i] = new Character(i);
+        }
+        return cache;
+    }
+    
     @Ignore
     public static Character instance(int c) {
+        if (c >= 0 && c < CACHE.length) {
+            return CACHE[c];
+        }
         return new Character(c);
     }
 
@@ -321,8 +321,30 @@ public final class Float
         throw Util.makeUnimplementedMixinAccessException();
     }
     
+    /**
+     * Boxed instances of the whole numbers from -128 to 127,
+     * which are the most common values of Float in practice
+     */
+    private static final Float[] CACHE = makeCache();
+    
+    private static Float[] makeCache() {
+        Float[] cache = new Float[256];
+        for (int i = 0; i < cache.length; i++) {
+            cache[i] = new Float(i - 128);
+        }
+        return cache;
+    }
+    
     @Ignore
     public static Float instance(double d) {
+        if (d >= -128 && d <= 127) {
+            int i = (int) d;
+            // don't lose fractions, or the sign of -0.0
+            if (i == d && (i != 0 || 
+                    java.lang.Double.doubleToRawLongBits(d) == 0L)) {
+                return CACHE[i + 128];
+            }
+        }
         return new Float(d);
     }
     
@@ -346,8 +346,45 @@ public final class Integer
         throw Util.makeUnimplementedMixinAccessException();
     }
 
+    /**
+     * The smallest value for which a boxed instance is cached
+     */
+    private static final long CACHE_LOW = -128;
+    
+    /**
+     * Boxed instances of the values from {@link #CACHE_LOW}
+     * up to 127, or to the value of the system property
+     * {@code ceylon.language.Integer.cache.high}, if higher
+     */
+    private static final Integer[] CACHE = makeCache();
+    
+    private static Integer[] makeCache() {
+        long high = 127;
+        try {
+            java.lang.String property = 
+                    System.getProperty("ceylon.language.Integer.cache.high");
+            if (property != null) {
+                // leave room for the array to be indexable
+                high = Math.min(Math.max(java.lang.Long.parseLong(property), high), 
+                        java.lang.Integer.MAX_VALUE + CACHE_LOW - 1);
+            }
+        }
+        catch (SecurityException|NumberFormatException e) {
+            // use the default
+        }
+        Integer[] cache = new Integer[(int) (high - CACHE_LOW + 1)];
+        for (int i = 0; i < cache.length; i++) {
+            cache[i] = new Integer(i + CACHE_LOW);
+        }
+        return cache;
+    }
+    
     @Ignore
     public static Integer instance(long l) {
+        long index = l - CACHE_LOW;
+        if (index >= 0 && index < CACHE.length) {
+            return CACHE[(int) index];
+        }
         return new Integer(l);
     }
 
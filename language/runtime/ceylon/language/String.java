@@ -13,6 +13,7 @@ import java.util.Locale;
 
 import org.eclipse.ceylon.compiler.java.Util;
 import org.eclipse.ceylon.compiler.java.language.AbstractCallable;
+import org.eclipse.ceylon.compiler.java.language.CodePointIndex;
 import org.eclipse.ceylon.compiler.java.language.StringTokens;
 import org.eclipse.ceylon.compiler.java.metadata.Annotation;
 import org.eclipse.ceylon.compiler.java.metadata.Annotations;
@@ -261,15 +262,12 @@ public final class String
     @TypeInfo("ceylon.language::Integer")
     @AliasesAnnotation$annotation$(aliases = "length")
     public long getSize() {
-        //TODO: should we cache this value in an instvar?
-        // But remember that we'll mostly be using the static verion
-        // of this method! So an instvar won't help much.
-        return value.codePointCount(0, value.length());
+        return getSize(value);
     }
 
     @Ignore
     public static long getSize(java.lang.String value) {
-        return value.codePointCount(0, value.length());
+        return CodePointIndex.size(value);
     }
 
     @Override
@@ -336,7 +334,7 @@ public final class String
         int index = Util.toInt(key);
         int codePoint;
         try {
-            int offset = value.offsetByCodePoints(value.length(), -index-1);
+            int offset = CodePointIndex.offsetFromLast(value, index);
             codePoint = value.codePointAt(offset);
         }
         catch (IndexOutOfBoundsException e) {
@@ -356,7 +354,7 @@ public final class String
         int index = Util.toInt(key);
         int codePoint;
         try {
-            int offset = value.offsetByCodePoints(0, index);
+            int offset = CodePointIndex.offset(value, index);
             codePoint = value.codePointAt(offset);
         }
         catch (IndexOutOfBoundsException e) {
@@ -1056,8 +1054,9 @@ public final class String
                 this.to = to - from;
                 try {
                     this.start =
-                            value.offsetByCodePoints(offset, 
-                                    Util.toInt(from));
+                            CodePointIndex.offset(value, 
+                                    CodePointIndex.index(value, offset)
+                                        + Util.toInt(from));
                 }
                 catch (IndexOutOfBoundsException e) {
                     this.start = value.length();
@@ -1075,8 +1074,9 @@ public final class String
             if (index>to || index<0) return null;
             try {
                 int offset =
-                        value.offsetByCodePoints(start, 
-                                Util.toInt(index));
+                        CodePointIndex.offset(value, 
+                                CodePointIndex.index(value, start)
+                                    + Util.toInt(index));
                 return Character.instance(
                         value.codePointAt(offset));
             }
@@ -1099,7 +1099,7 @@ public final class String
         @Override
         public long getSize() {
             return Math.min(
-                    value.codePointCount(start, value.length()),
+                    CodePointIndex.sizeFrom(value, start),
                     to+1);
         }
 
@@ -1455,7 +1455,7 @@ public final class String
         } else if (length >= getSize(value)) {
             return value;
         } else {
-            int offset = value.offsetByCodePoints(0, Util.toInt(length));
+            int offset = CodePointIndex.offset(value, Util.toInt(length));
             return value.substring(0, offset);
         }
     }
@@ -1470,11 +1470,13 @@ public final class String
             long length) {
         if (length <= 0) {
             return "";
-        } else if (length >= getSize(value)) {
+        }
+        long size = getSize(value);
+        if (length >= size) {
             return value;
         } else {
-            int offset = value.offsetByCodePoints(0, 
-                    Util.toInt(value.length()-length));
+            int offset = CodePointIndex.offset(value, 
+                    Util.toInt(size-length));
             return value.substring(offset, value.length());
         }
     }
@@ -1536,7 +1538,7 @@ public final class String
         }
         int start;
         try {
-            start = value.offsetByCodePoints(0, Util.toInt(from));
+            start = CodePointIndex.offset(value, Util.toInt(from));
         }
         catch (IndexOutOfBoundsException ioobe) {
             return "";
@@ -1546,7 +1548,7 @@ public final class String
         }
         int end;
         try {
-            end = value.offsetByCodePoints(start, Util.toInt(length));
+            end = CodePointIndex.offset(value, Util.toInt(from+length));
         }
         catch (IndexOutOfBoundsException ioobe) {
             return value.substring(start);
@@ -1603,7 +1605,7 @@ public final class String
         }
         int start;
         try {
-            start = value.offsetByCodePoints(0, Util.toInt(from));
+            start = CodePointIndex.offset(value, Util.toInt(from));
         }
         catch (IndexOutOfBoundsException ioobe) {
             return "";
@@ -1666,7 +1668,7 @@ public final class String
         }
         int end;
         try {
-            end = value.offsetByCodePoints(0, Util.toInt(to+1));
+            end = CodePointIndex.offset(value, Util.toInt(to+1));
         }
         catch (IndexOutOfBoundsException ioobe) {
             return value;
@@ -1694,7 +1696,7 @@ public final class String
         long begin = from < 0 ? 0 : from;
         int start;
         try {
-            start = value.offsetByCodePoints(0, Util.toInt(begin));
+            start = CodePointIndex.offset(value, Util.toInt(begin));
         }
         catch (IndexOutOfBoundsException ioobe) {
             return "";
@@ -1706,7 +1708,7 @@ public final class String
         else {
             int end;
             try {
-                end = value.offsetByCodePoints(start, Util.toInt(to+1 - begin));
+                end = CodePointIndex.offset(value, Util.toInt(to+1));
             }
             catch (IndexOutOfBoundsException ioobe) {
                 return value.substring(start);
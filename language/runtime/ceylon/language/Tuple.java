@@ -292,16 +292,30 @@ public final class Tuple<Element, First extends Element,
     @Override
     @TypeInfo("ceylon.language::Null|Element")
     public final Element getFromFirst(@Name("index") final long index) {
-        if (index < 0) {
+        if (index >= 0 && index < array.length) {
+            return (Element)array[(int)index];
+        } else if (index < 0) {
             return null;
-        } else if (index >= array.length) {
-            return (Element)rest.getFromFirst(index-array.length);
         }
         else {
-            return (Element)array[toInt(index)];
+            return (Element)rest.getFromFirst(index-array.length);
         }
     }
     
+    /** 
+     * Gets the element at the given non-negative index, without 
+     * boxing it. Used for destructuring and spreading tuples, 
+     * where the index is known to be within the tuple.
+     */
+    @Ignore
+    public final java.lang.Object $getElement$(int index) {
+        java.lang.Object[] array = this.array;
+        if (index < array.length) {
+            return array[index];
+        }
+        return rest.getFromFirst(index-array.length);
+    }
+    
     @SuppressWarnings("unchecked")
     @Ignore
     @Override
@@ -522,27 +536,52 @@ public final class Tuple<Element, First extends Element,
         return rest.contains(element);
     }
     
+    /** 
+     * Tuples with at most this many elements, and nothing in 
+     * their rest, hold on to their type strongly, since it's 
+     * small. Larger tuples only hold it softly.
+     */
+    @Ignore
+    private static final int STRONG_TYPE_LIMIT = 8;
+    
+    /** 
+     * The type, either as a {@link TypeDescriptor} or a 
+     * {@link SoftReference} to one
+     */
     @Ignore
-    private volatile SoftReference<TypeDescriptor> $cachedType = null;
+    private transient volatile java.lang.Object $cachedType = null;
     
     @Override
     @Ignore
     public TypeDescriptor $getType$() {
-        SoftReference<TypeDescriptor> cachedType = $cachedType;
-        TypeDescriptor type = cachedType!=null ? cachedType.get() : null;
+        TypeDescriptor type = cachedType($cachedType);
         if (type==null) {
             synchronized (this) {
-                cachedType = $cachedType;
-                type = cachedType!=null ? cachedType.get() : null;
+                type = cachedType($cachedType);
                 if (type==null) {
                     type = computeType();
-                    $cachedType = new SoftReference<TypeDescriptor>(type);
+                    if (array.length <= STRONG_TYPE_LIMIT 
+                            && rest instanceof Empty) {
+                        $cachedType = type;
+                    }
+                    else {
+                        $cachedType = new SoftReference<TypeDescriptor>(type);
+                    }
                 }
             }
         }
         return type;
     }
     
+    @SuppressWarnings("unchecked")
+    private static TypeDescriptor cachedType(java.lang.Object cachedType) {
+        if (cachedType instanceof TypeDescriptor) {
+            return (TypeDescriptor)cachedType;
+        }
+        return cachedType!=null ? 
+                ((SoftReference<TypeDescriptor>)cachedType).get() : null;
+    }
+    
     @Annotations({
         @Annotation("shared"),
         @Annotation("actual")})
@@ -628,18 +667,23 @@ public final class Tuple<Element, First extends Element,
             super($getReifiedElement$());
         }
         
-        private long idx = 0;
+        private int idx = 0;
         
-        private Iterator<? extends Element> restIter = rest.iterator(); 
+        /** Only created once the array is exhausted */
+        private Iterator<? extends Element> restIter; 
         
         @Override
         public java.lang.Object next() {
             if (idx < array.length) {
-                return array[Util.toInt(idx++)];
+                return array[idx++];
             }
-            else {
-                return restIter.next();
+            else if (restIter == null) {
+                if (rest instanceof Empty) {
+                    return finished_.get_();
+                }
+                restIter = rest.iterator();
             }
+            return restIter.next();
         }
         
         @Override
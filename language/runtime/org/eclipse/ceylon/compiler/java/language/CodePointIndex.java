@@ -0,0 +1,308 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.compiler.java.language;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Maps the code point indexes of a {@link java.lang.String}
+ * to {@code char} offsets, and back, without scanning the
+ * string every time, so that indexing a
+ * {@code ceylon.language::String} in a loop is not
+ * quadratic.
+ *
+ * The index of a string is built, in a single scan, the
+ * first time a code point is looked up by index or by
+ * offset. If the string has no surrogate pairs, code point
+ * indexes are just {@code char} offsets, otherwise we
+ * record the offset of every {@link #STRIDE}th code point,
+ * and walk from there. Short strings are never indexed,
+ * since scanning them is as fast as looking them up.
+ *
+ * Indexes are kept in a fixed size table, keyed by the
+ * identity of the string, which only holds on to the
+ * string weakly. Looking an index up takes no lock: the
+ * index of a string may be in any of {@link #WAYS} slots,
+ * and a new index replaces the index of a string which is
+ * gone, or else a random one of those slots. Asking for the
+ * size never looks an index up.
+ */
+public final class CodePointIndex {
+
+    /** Strings shorter than this are simply scanned */
+    private static final int MIN_LENGTH = 64;
+
+    private static final int STRIDE_SHIFT = 5;
+
+    /** We record the offset of every STRIDEth code point */
+    private static final int STRIDE = 1 << STRIDE_SHIFT;
+
+    /** The number of slots of the table, a power of two */
+    private static final int SLOTS = 1024;
+
+    /** The number of slots the index of a string may be in */
+    private static final int WAYS = 4;
+
+    /**
+     * An entry of the table of indexes, which is removed
+     * once its string is garbage collected
+     */
+    private static final class Entry extends WeakReference<java.lang.String> {
+        final int slot;
+        final CodePointIndex index;
+
+        Entry(java.lang.String value, int slot, CodePointIndex index) {
+            super(value, queue);
+            this.slot = slot;
+            this.index = index;
+        }
+    }
+
+    private static final ReferenceQueue<java.lang.String> queue =
+            new ReferenceQueue<java.lang.String>();
+
+    private static final AtomicReferenceArray<Entry> table =
+            new AtomicReferenceArray<Entry>(SLOTS);
+
+    /** The number of code points in the string */
+    private final int size;
+
+    /**
+     * The offset of every STRIDEth code point, or null if
+     * the string has no surrogate pairs
+     */
+    private final int[] offsets;
+
+    private CodePointIndex(java.lang.String value) {
+        int length = value.length();
+        int[] offsets = null;
+        int size = 0;
+        int offset = 0;
+        while (offset < length) {
+            if (offsets != null && (size & (STRIDE-1)) == 0) {
+                offsets[size >>> STRIDE_SHIFT] = offset;
+            }
+            if (java.lang.Character.isHighSurrogate(value.charAt(offset))
+                    && offset + 1 < length
+                    && java.lang.Character.isLowSurrogate(value.charAt(offset + 1))) {
+                if (offsets == null) {
+                    //so far every code point was a single char
+                    offsets = new int[(length >>> STRIDE_SHIFT) + 1];
+                    for (int i = 0; i << STRIDE_SHIFT <= size; i++) {
+                        offsets[i] = i << STRIDE_SHIFT;
+                    }
+                }
+                offset += 2;
+            }
+            else {
+                offset++;
+            }
+            size++;
+        }
+        if (offsets != null) {
+            if ((size & (STRIDE-1)) == 0) {
+                offsets[size >>> STRIDE_SHIFT] = length;
+            }
+            offsets = Arrays.copyOf(offsets, (size >>> STRIDE_SHIFT) + 1);
+        }
+        this.size = size;
+        this.offsets = offsets;
+    }
+
+    private static int firstSlot(java.lang.String value) {
+        int hash = System.identityHashCode(value);
+        return (hash ^ hash >>> 16) & (SLOTS-1);
+    }
+
+    private static Entry find(java.lang.String value) {
+        int first = firstSlot(value);
+        for (int i = 0; i < WAYS; i++) {
+            Entry entry = table.get((first + i) & (SLOTS-1));
+            if (entry != null && entry.get() == value) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The index of the given string, which is built if it
+     * is not in the table
+     */
+    private static CodePointIndex of(java.lang.String value) {
+        Entry entry = find(value);
+        if (entry != null) {
+            return entry.index;
+        }
+        expungeStaleEntries();
+        CodePointIndex index = new CodePointIndex(value);
+        int first = firstSlot(value);
+        int slot = -1;
+        for (int i = 0; i < WAYS; i++) {
+            int candidate = (first + i) & (SLOTS-1);
+            Entry existing = table.get(candidate);
+            if (existing == null || existing.get() == null) {
+                slot = candidate;
+                break;
+            }
+        }
+        if (slot < 0) {
+            slot = (first + ThreadLocalRandom.current().nextInt(WAYS)) 
+                    & (SLOTS-1);
+        }
+        //another thread may replace it at once, which
+        //at worst means scanning the string again
+        table.set(slot, new Entry(value, slot, index));
+        return index;
+    }
+
+    /**
+     * Frees the slots of the strings which are gone, along
+     * with their indexes
+     */
+    private static void expungeStaleEntries() {
+        for (Reference<? extends java.lang.String> stale; 
+                (stale = queue.poll()) != null;) {
+            Entry entry = (Entry) stale;
+            table.compareAndSet(entry.slot, entry, null);
+        }
+    }
+
+    /**
+     * Whether the given string has been indexed, and its
+     * index is still in the table
+     */
+    public static boolean isIndexed(java.lang.String value) {
+        return value.length() >= MIN_LENGTH 
+                && find(value) != null;
+    }
+
+    /**
+     * The number of code points in the given string, the
+     * same as {@code value.codePointCount(0, value.length())}
+     */
+    public static int size(java.lang.String value) {
+        return value.codePointCount(0, value.length());
+    }
+
+    /**
+     * The number of code points from the given offset, the
+     * offset of a code point, to the end of the given
+     * string, the same as
+     * {@code value.codePointCount(offset, value.length())},
+     * using the index of the string, since the callers also
+     * index it
+     *
+     * @throws IndexOutOfBoundsException if the offset is
+     *         negative or greater than the length of the
+     *         string
+     */
+    public static int sizeFrom(java.lang.String value, int offset) {
+        if (value.length() < MIN_LENGTH) {
+            return value.codePointCount(offset, value.length());
+        }
+        CodePointIndex codePoints = of(value);
+        return codePoints.size - index(value, codePoints, offset);
+    }
+
+    /**
+     * The offset of the code point at the given index from
+     * the end, the same as
+     * {@code value.offsetByCodePoints(value.length(), -index-1)}
+     *
+     * @throws IndexOutOfBoundsException if the index is
+     *         negative or not less than the number of code
+     *         points in the string
+     */
+    public static int offsetFromLast(java.lang.String value, int index) {
+        if (value.length() < MIN_LENGTH) {
+            if (index < 0) {
+                throw new IndexOutOfBoundsException();
+            }
+            return value.offsetByCodePoints(value.length(), -index-1);
+        }
+        CodePointIndex codePoints = of(value);
+        return offset(value, codePoints, codePoints.size-index-1);
+    }
+
+    /**
+     * The offset of the code point at the given index, the
+     * same as {@code value.offsetByCodePoints(0, index)}
+     *
+     * @throws IndexOutOfBoundsException if the index is
+     *         negative or greater than the number of code
+     *         points in the string
+     */
+    public static int offset(java.lang.String value, int index) {
+        if (value.length() < MIN_LENGTH) {
+            return value.offsetByCodePoints(0, index);
+        }
+        return offset(value, of(value), index);
+    }
+
+    private static int offset(java.lang.String value, 
+            CodePointIndex codePoints, int index) {
+        if (index < 0 || index > codePoints.size) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (codePoints.offsets == null) {
+            return index;
+        }
+        int offset = codePoints.offsets[index >>> STRIDE_SHIFT];
+        int rest = index & (STRIDE-1);
+        return rest == 0 ? offset :
+            value.offsetByCodePoints(offset, rest);
+    }
+
+    /**
+     * The index of the code point at the given offset, the
+     * same as {@code value.codePointCount(0, offset)}
+     *
+     * @throws IndexOutOfBoundsException if the offset is
+     *         negative or greater than the length of the
+     *         string
+     */
+    public static int index(java.lang.String value, int offset) {
+        if (value.length() < MIN_LENGTH) {
+            return value.codePointCount(0, offset);
+        }
+        return index(value, of(value), offset);
+    }
+
+    private static int index(java.lang.String value, 
+            CodePointIndex codePoints, int offset) {
+        if (offset < 0 || offset > value.length()) {
+            throw new IndexOutOfBoundsException();
+        }
+        int[] offsets = codePoints.offsets;
+        if (offsets == null) {
+            return offset;
+        }
+        //find the last recorded offset before the given one
+        int low = 0;
+        int high = offsets.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (offsets[mid] <= offset) {
+                low = mid;
+            }
+            else {
+                high = mid - 1;
+            }
+        }
+        return (low << STRIDE_SHIFT) +
+                value.codePointCount(offsets[low], offset);
+    }
+}
@@ -60,6 +60,8 @@ public class ConstructorDispatch<Type, Arguments extends Sequential<? extends Ob
     public final int firstDefaulted;
     public final int variadicIndex;
     private MethodHandle[] dispatch;
+    /** {@link #constructor} or {@link #dispatch} taking their arguments in an array, created as needed */
+    private MethodHandle[] spreaders;
     public final List<org.eclipse.ceylon.model.typechecker.model.Type> parameterProducedTypes;
     final Sequential<? extends ceylon.language.meta.model.Type<? extends Object>> parameterTypes;
     final Object instance;
@@ -687,15 +689,31 @@ public class ConstructorDispatch<Type, Arguments extends Sequential<? extends Ob
     public Type $call$(Object... args) {
         try {
             if(firstDefaulted == -1)
-                return (Type)constructor.invokeWithArguments(args);
+                return (Type)spreader(0, constructor).invokeExact(args);
             // FIXME: proper checks
-            return (Type)dispatch[args.length-firstDefaulted].invokeWithArguments(args);
+            int index = args.length-firstDefaulted;
+            return (Type)spreader(index, dispatch[index]).invokeExact(args);
         } catch (Throwable e) {
             Util.rethrow(e);
             return null;
         }
     }
     
+    private MethodHandle spreader(int index, MethodHandle method) {
+        // racy but harmless: at worst we adapt the same handle twice
+        MethodHandle[] spreaders = this.spreaders;
+        if(spreaders == null){
+            spreaders = new MethodHandle[dispatch != null ? dispatch.length : 1];
+            this.spreaders = spreaders;
+        }
+        MethodHandle spreader = spreaders[index];
+        if(spreader == null){
+            spreader = MethodHandleUtil.spreadArguments(method);
+            spreaders[index] = spreader;
+        }
+        return spreader;
+    }
+    
     @Override
     public Type $callvariadic$(Object... argsAndVarargs) {
         return $call$(argsAndVarargs);
@@ -23,6 +23,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.ceylon.common.ModuleUtil;
 import org.eclipse.ceylon.common.NonNull;
@@ -157,6 +158,64 @@ public class Metamodel {
 
     private static Map<TypeDescriptor,Type> typeDescriptorToProducedType = new WeakHashMap<TypeDescriptor,Type>();
 
+    /**
+     * Incremented whenever the module manager is reset, so that types 
+     * memoized in type descriptors by a previous module manager are
+     * ignored.
+     */
+    private static volatile int generation;
+    
+    private static final int SUBTYPE_CACHE_SIZE = 256;
+    
+    /**
+     * Memoized results of {@link #isSubtypeOf(TypeDescriptor, TypeDescriptor)},
+     * for every class of instance types, so that they go away with the class
+     * and its class loader. They only hold descriptors of classes from that
+     * same class loader or from the language module, so they never keep 
+     * another class loader alive. Each is bounded by simply starting over 
+     * once it's full, and they are all dropped when the module manager is 
+     * reset.
+     */
+    private static volatile ClassValue<ConcurrentHashMap<SubtypeKey,Boolean>> subtypeCaches
+        = newSubtypeCaches();
+    
+    private static ClassValue<ConcurrentHashMap<SubtypeKey,Boolean>> newSubtypeCaches() {
+        return new ClassValue<ConcurrentHashMap<SubtypeKey,Boolean>>() {
+            @Override
+            protected ConcurrentHashMap<SubtypeKey,Boolean> computeValue(java.lang.Class<?> type) {
+                return new ConcurrentHashMap<SubtypeKey,Boolean>();
+            }
+        };
+    }
+    
+    private static final class SubtypeKey {
+        private final TypeDescriptor instanceType;
+        private final TypeDescriptor type;
+        private final int hash;
+        
+        SubtypeKey(TypeDescriptor instanceType, TypeDescriptor type) {
+            this.instanceType = instanceType;
+            this.type = type;
+            this.hash = 31 * instanceType.hashCode() + type.hashCode();
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this)
+                return true;
+            if (!(obj instanceof SubtypeKey))
+                return false;
+            SubtypeKey other = (SubtypeKey) obj;
+            return instanceType.equals(other.instanceType)
+                    && type.equals(other.type);
+        }
+        
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
     private static final TypeDescriptor TD_ClosedTypeOfAnything
         = TypeDescriptor.klass(ceylon.language.meta.model.Type.class, ceylon.language.Anything.$TypeDescriptor$);
     private static final TypeDescriptor TD_ClosedTypeArgumentElement
@@ -195,6 +254,8 @@ public class Metamodel {
         typeCheckModulesToRuntimeModel.clear();
         typeCheckPackagesToRuntimeModel.clear();
         typeDescriptorToProducedType.clear();
+        generation++;
+        subtypeCaches = newSubtypeCaches();
     }
     
     // This is only used in tests
@@ -362,17 +423,93 @@ public class Metamodel {
     }
 
     public static Type getProducedType(TypeDescriptor reifiedType) {
-        Type producedType;
+        int generation = Metamodel.generation;
+        // fast path: no need for the model loader lock when this
+        // descriptor was already resolved
+        Type producedType = reifiedType.getResolvedType(generation);
+        if(producedType != null)
+            return producedType;
         synchronized(getLock()){
             producedType = typeDescriptorToProducedType.get(reifiedType);
             if(producedType == null){
                 producedType = reifiedType.toType(moduleManager);
                 typeDescriptorToProducedType.put(reifiedType, producedType);
             }
+            reifiedType.setResolvedType(generation, producedType);
         }
         return producedType;
     }
 
+    /**
+     * Returns true if the type described by instanceType is a subtype of
+     * the type described by type, memoizing the result.
+     */
+    public static boolean isSubtypeOf(TypeDescriptor instanceType, TypeDescriptor type) {
+        java.lang.Class<?> klass = getSubtypeCacheClass(instanceType);
+        if(klass == null)
+            return getProducedType(instanceType).isSubtypeOf(getProducedType(type));
+        ConcurrentHashMap<SubtypeKey,Boolean> subtypeCache = subtypeCaches.get(klass);
+        SubtypeKey key = new SubtypeKey(instanceType, type);
+        Boolean result = subtypeCache.get(key);
+        if(result == null){
+            result = getProducedType(instanceType).isSubtypeOf(getProducedType(type));
+            ClassLoader loader = klass.getClassLoader();
+            if(isFromLoader(instanceType, loader)
+                    && isFromLoader(type, loader)){
+                if(subtypeCache.size() >= SUBTYPE_CACHE_SIZE)
+                    subtypeCache.clear();
+                subtypeCache.put(key, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns true if every class the given descriptor refers to comes from
+     * the given class loader, the language module or the bootstrap class 
+     * loader.
+     */
+    private static boolean isFromLoader(TypeDescriptor type, ClassLoader loader) {
+        if(type instanceof TypeDescriptor.Class){
+            ClassLoader classLoader = ((TypeDescriptor.Class) type).getKlass().getClassLoader();
+            if(classLoader != null
+                    && classLoader != loader
+                    && classLoader != Metamodel.class.getClassLoader())
+                return false;
+            for(TypeDescriptor typeArgument : ((TypeDescriptor.Class) type).getTypeArguments()){
+                if(!isFromLoader(typeArgument, loader))
+                    return false;
+            }
+            return true;
+        }
+        if(type instanceof TypeDescriptor.Member){
+            TypeDescriptor.Member member = (TypeDescriptor.Member) type;
+            return isFromLoader(member.getContainer(), loader)
+                    && isFromLoader(member.getMember(), loader);
+        }
+        if(type instanceof TypeDescriptor.Composite){
+            for(TypeDescriptor member : ((TypeDescriptor.Composite) type).getMembers()){
+                if(!isFromLoader(member, loader))
+                    return false;
+            }
+            return true;
+        }
+        // we can't tell for the rest, except Nothing
+        return type instanceof TypeDescriptor.Nothing;
+    }
+
+    /**
+     * Returns the class whose subtype cache holds the results for the
+     * given instance type, or null if we don't memoize them.
+     */
+    private static java.lang.Class<?> getSubtypeCacheClass(TypeDescriptor instanceType) {
+        while(instanceType instanceof TypeDescriptor.Member)
+            instanceType = ((TypeDescriptor.Member) instanceType).getMember();
+        if(instanceType instanceof TypeDescriptor.Class)
+            return ((TypeDescriptor.Class) instanceType).getKlass();
+        return null;
+    }
+
     @NonNull
     public static ceylon.language.meta.model.Type<?> getAppliedMetamodel(TypeDescriptor typeDescriptor) {
         if(typeDescriptor == null)
@@ -52,6 +52,22 @@ public class MethodHandleUtil {
         return MethodHandles.insertArguments(constructor, insertAt, new Object[]{null});
     }
 
+    /**
+     * Adapts a method handle whose arguments are all unboxed from
+     * {@link Object}, as those of our functions and constructors are,
+     * so that it takes them in an {@code Object[]} and can be called
+     * with {@link MethodHandle#invokeExact(Object...)} from
+     * {@code $call$(Object...)}. Unlike
+     * {@link MethodHandle#invokeWithArguments(Object...)}, which
+     * adapts the handle to its arguments on every call, this is only
+     * done once, and the resulting handle has a fixed arity.
+     */
+    public static MethodHandle spreadArguments(MethodHandle method) {
+        int arity = method.type().parameterCount();
+        return method.asType(MethodType.genericMethodType(arity))
+                .asSpreader(java.lang.Object[].class, arity);
+    }
+
     public static MethodHandle unboxArguments(MethodHandle method, int skippedParameters, int filterIndex, 
             java.lang.Class<?>[] parameterTypes,
             List<Type> producedTypes) {
@@ -107,7 +107,9 @@ public abstract class ClassOrInterfaceDeclarationImpl
 
         this.typeParameters = Metamodel.getTypeParameters(declaration);
         
-        List<org.eclipse.ceylon.model.typechecker.model.Declaration> memberModelDeclarations = declaration.getMembers();
+        // iterate over a copy, since creating the metamodel of a member may lazy-load more members
+        List<org.eclipse.ceylon.model.typechecker.model.Declaration> memberModelDeclarations = 
+                new ArrayList<org.eclipse.ceylon.model.typechecker.model.Declaration>(declaration.getMembers());
         this.declaredDeclarations = new LinkedList<ceylon.language.meta.declaration.NestableDeclaration>();
         for(org.eclipse.ceylon.model.typechecker.model.Declaration memberModelDeclaration : memberModelDeclarations){
             addDeclarationTo(memberModelDeclaration, declaredDeclarations);
@@ -63,6 +63,8 @@ public class FunctionImpl<Type, Arguments extends Sequential<? extends Object>>
     protected final FunctionDeclarationImpl declaration;
     private MethodHandle method;
     private MethodHandle[] dispatch;
+    /** {@link #method} or {@link #dispatch} taking their arguments in an array, created as needed */
+    private MethodHandle[] spreaders;
     private int firstDefaulted = -1;
     private int variadicIndex = -1;
     private ceylon.language.Map<? extends ceylon.language.meta.declaration.TypeParameter, ? extends ceylon.language.meta.model.Type<?>> typeArguments;
@@ -372,17 +374,32 @@ public class FunctionImpl<Type, Arguments extends Sequential<? extends Object>>
     public Type $call$(Object... args) {
         checkMethod();
         try {
-            // FIXME: this does not do invokeExact and does boxing/widening
             if(firstDefaulted == -1)
-                return (Type)method.invokeWithArguments(args);
+                return (Type)spreader(0, method).invokeExact(args);
             // FIXME: proper checks
-            return (Type)dispatch[args.length-firstDefaulted].invokeWithArguments(args);
+            int index = args.length-firstDefaulted;
+            return (Type)spreader(index, dispatch[index]).invokeExact(args);
         } catch (Throwable e) {
             Util.rethrow(e);
             return null;
         }
     }
 
+    private MethodHandle spreader(int index, MethodHandle method) {
+        // racy but harmless: at worst we adapt the same handle twice
+        MethodHandle[] spreaders = this.spreaders;
+        if(spreaders == null){
+            spreaders = new MethodHandle[dispatch != null ? dispatch.length : 1];
+            this.spreaders = spreaders;
+        }
+        MethodHandle spreader = spreaders[index];
+        if(spreader == null){
+            spreader = MethodHandleUtil.spreadArguments(method);
+            spreaders[index] = spreader;
+        }
+        return spreader;
+    }
+
     @Ignore
     @Override
     public short $getVariadicParameterIndex$() {
@@ -14,6 +14,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.ceylon.model.cmr.ArtifactResult;
 import org.eclipse.ceylon.model.cmr.JDKUtils;
@@ -46,7 +47,7 @@ public class RuntimeModelLoader extends ReflectionModelLoader {
     public static final int MAX_JBOSS_MODULES_WAITS = 4;
     public static final int JBOSS_MODULES_TIMEOUT = 5000;
     
-    private Map<Module,ClassLoader> classLoaders = new HashMap<Module,ClassLoader>();
+    private Map<Module,ClassLoader> classLoaders = new ConcurrentHashMap<Module,ClassLoader>();
     private Map<String, Module> moduleCache = new HashMap<String, Module>();
     private CachedTOCJars jars = new CachedTOCJars();
     private ClassLoader defaultClassLoader;
@@ -104,6 +105,12 @@ public class RuntimeModelLoader extends ReflectionModelLoader {
         this.defaultClassLoader = cl;
     }
 
+    @Override
+    protected boolean isClassMirrorLookupConcurrent() {
+        // we only ask class loaders, which are thread-safe
+        return true;
+    }
+
     @Override
     protected Class<?> loadClass(Module module, String name) {
         ClassLoader classLoader = classLoaders.get(module);
@@ -155,7 +162,10 @@ public class RuntimeModelLoader extends ReflectionModelLoader {
     }
 
     public void addModuleClassLoader(Module module, ClassLoader classLoader) {
-        classLoaders.put(module, classLoader);
+        if(classLoader != null)
+            classLoaders.put(module, classLoader);
+        else
+            classLoaders.remove(module);
     }
 
     @Override
@@ -23,6 +23,7 @@ import org.eclipse.ceylon.model.cmr.RuntimeResolver;
 import org.eclipse.ceylon.model.loader.AbstractModelLoader;
 import org.eclipse.ceylon.model.loader.JvmBackendUtil;
 import org.eclipse.ceylon.model.loader.StaticMetamodelLoader;
+import org.eclipse.ceylon.model.loader.impl.reflect.mirror.AnnotationSnapshot;
 import org.eclipse.ceylon.model.loader.impl.reflect.model.ReflectionModule;
 import org.eclipse.ceylon.model.loader.impl.reflect.model.ReflectionModuleManager;
 import org.eclipse.ceylon.model.loader.model.LazyModule;
@@ -244,6 +245,10 @@ public class RuntimeModuleManager extends ReflectionModuleManager implements Sta
         InputStream is = JvmBackendUtil.getStaticMetamodelInputStream(getClass());
         if(is != null){
             List<String> dexEntries = AndroidUtil.isRunningAndroid() ? AndroidUtil.getDexEntries() : JvmBackendUtil.getCurrentJarEntries();
+            if(dexEntries.contains(AnnotationSnapshot.ENTRY)){
+                // the fat jar we run from describes the annotations of its classes
+                AnnotationSnapshot.enable(JvmBackendUtil.class);
+            }
             JvmBackendUtil.loadStaticMetamodel(is, dexEntries, this);
         }
     }
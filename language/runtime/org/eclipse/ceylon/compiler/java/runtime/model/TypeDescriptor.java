@@ -11,7 +11,6 @@ package org.eclipse.ceylon.compiler.java.runtime.model;
 
 import static org.eclipse.ceylon.compiler.java.Util.isBasic;
 import static org.eclipse.ceylon.compiler.java.Util.isIdentifiable;
-import static org.eclipse.ceylon.compiler.java.runtime.metamodel.Metamodel.getProducedType;
 
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
@@ -67,6 +66,36 @@ public abstract class TypeDescriptor
     public static final TypeDescriptor NothingType = new Nothing();
     private static final Variance[] NO_VARIANCE = new Variance[0];
 
+    /**
+     * The type this descriptor was last resolved to by 
+     * {@link Metamodel#getProducedType(TypeDescriptor)}, so
+     * that later lookups don't need the model loader lock.
+     */
+    private transient volatile ResolvedType resolvedType;
+    
+    private static final class ResolvedType {
+        final int generation;
+        final Type type;
+        ResolvedType(int generation, Type type) {
+            this.generation = generation;
+            this.type = type;
+        }
+    }
+    
+    /**
+     * Returns the memoized type for this descriptor, or null
+     * if it was not resolved in the given metamodel generation
+     */
+    public Type getResolvedType(int generation) {
+        ResolvedType resolved = resolvedType;
+        return resolved != null && resolved.generation == generation ? 
+                resolved.type : null;
+    }
+    
+    public void setResolvedType(int generation, Type type) {
+        resolvedType = new ResolvedType(generation, type);
+    }
+
     //
     // Methods
 
@@ -144,7 +173,12 @@ public abstract class TypeDescriptor
         public TypeDescriptor getTypeArgument(int index) {
             return typeArguments[index];
         }
-        
+
+        /** The use-site variance of each type argument, or an empty array if there is none */
+        public Variance[] getUseSiteVariance() {
+            return useSiteVariance;
+        }
+
         public boolean isGeneric() {
             return getNumTypeArguments()>0;
         }
@@ -1525,6 +1559,6 @@ public abstract class TypeDescriptor
 
     public boolean is(TypeDescriptor instanceType) {
         return this==instanceType ||
-                getProducedType(instanceType).isSubtypeOf(getProducedType(this));
+                Metamodel.isSubtypeOf(instanceType, this);
     }
 }
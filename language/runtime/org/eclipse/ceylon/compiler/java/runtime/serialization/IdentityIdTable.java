@@ -0,0 +1,103 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.compiler.java.runtime.serialization;
+
+import java.util.Arrays;
+
+/**
+ * Assigns consecutive {@code int} ids to instances, by identity,
+ * using open addressing so that neither the ids nor the entries
+ * need boxing.
+ */
+final class IdentityIdTable {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private Object[] keys = new Object[INITIAL_CAPACITY];
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private int size;
+
+    /** The number of ids assigned so far */
+    int size() {
+        return size;
+    }
+
+    /**
+     * The id of the given instance, or -1 if it doesn't have one
+     */
+    int get(Object instance) {
+        Object[] keys = this.keys;
+        int mask = keys.length - 1;
+        for (int i = hash(instance) & mask;; i = (i + 1) & mask) {
+            Object key = keys[i];
+            if (key == instance) {
+                return ids[i];
+            }
+            if (key == null) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Assigns the next id to the given instance, which must not
+     * already have one
+     */
+    int add(Object instance) {
+        if ((size + 1) * 2 > keys.length) {
+            grow();
+        }
+        int id = size++;
+        insert(keys, ids, instance, id);
+        return id;
+    }
+
+    void clear() {
+        if (keys.length > INITIAL_CAPACITY) {
+            keys = new Object[INITIAL_CAPACITY];
+            ids = new int[INITIAL_CAPACITY];
+        }
+        else {
+            Arrays.fill(keys, null);
+        }
+        size = 0;
+    }
+
+    private void grow() {
+        Object[] oldKeys = keys;
+        int[] oldIds = ids;
+        Object[] newKeys = new Object[oldKeys.length * 2];
+        int[] newIds = new int[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                insert(newKeys, newIds, oldKeys[i], oldIds[i]);
+            }
+        }
+        keys = newKeys;
+        ids = newIds;
+    }
+
+    private static void insert(Object[] keys, int[] ids, Object instance, int id) {
+        int mask = keys.length - 1;
+        int i = hash(instance) & mask;
+        while (keys[i] != null) {
+            i = (i + 1) & mask;
+        }
+        keys[i] = instance;
+        ids[i] = id;
+    }
+
+    private static int hash(Object instance) {
+        // spread the identity hash, since linear probing
+        // suffers from clustering
+        int h = System.identityHashCode(instance);
+        return (h << 1) - (h << 8);
+    }
+}
@@ -0,0 +1,760 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.compiler.java.runtime.serialization;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+
+import org.eclipse.ceylon.compiler.java.metadata.Variance;
+import org.eclipse.ceylon.compiler.java.runtime.metamodel.Metamodel;
+import org.eclipse.ceylon.compiler.java.runtime.model.TypeDescriptor;
+import org.eclipse.ceylon.model.typechecker.model.FunctionOrValue;
+import org.eclipse.ceylon.model.typechecker.model.Module;
+import org.eclipse.ceylon.model.typechecker.model.Type;
+import org.eclipse.ceylon.model.typechecker.model.TypeDeclaration;
+
+import ceylon.language.Array;
+import ceylon.language.Tuple;
+import ceylon.language.impl.rethrow_;
+import ceylon.language.meta.declaration.ClassDeclaration;
+import ceylon.language.serialization.DeserializationException;
+import ceylon.language.serialization.Member;
+import ceylon.language.serialization.Outer;
+import ceylon.language.serialization.ReachableReference;
+
+/**
+ * <p>Reads the graphs written by a {@link StreamingSerializer} from a
+ * {@link ReadableByteChannel}.</p>
+ *
+ * <p>Each instance is instantiated as soon as its record is read,
+ * using the same constructor as
+ * {@code ceylon.language.serialization::DeserializationContext},
+ * while the values of its references are kept in flat arrays,
+ * with references to other instances kept as {@code int} ids, rather
+ * than in a map of {@code Partial}s. Once the whole graph is read
+ * those ids are resolved against a table of the instances, and the
+ * state of each instance is set, with the same checks as
+ * {@code DeserializationContext}.</p>
+ *
+ * <p>A deserializer is not thread safe.</p>
+ */
+public final class StreamingDeserializer {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+    private static final int MIN_BUFFER_SIZE = 16;
+
+    // the states of instances
+    private static final byte UNDEFINED = 0;
+    private static final byte INSTANTIATED = 1;
+    private static final byte INITIALIZING = 2;
+    private static final byte INITIALIZED = 3;
+
+    private static final Variance[] VARIANCES = Variance.values();
+
+    /**
+     * How many more ids than instances and values read so far an
+     * instance id may be
+     */
+    private static final int MAX_UNSEEN_IDS = 1024;
+
+    /** Stands for the value of a {@code late} attribute which wasn't initialized */
+    private static final Object UNINITIALIZED = new Object();
+
+    /**
+     * What we need to know about a type of the graph: how to
+     * instantiate it, its references and the types they're
+     * checked against
+     */
+    private static final class Shape {
+        final TypeDescriptor type;
+        Constructor<?> constructor;
+        Object[] arguments;
+        ReachableReference[] references;
+        Type[] referenceTypes;
+        /** The last type of instance each reference was found to accept */
+        TypeDescriptor[] accepted;
+        /** Toplevel objects have no state, only a value */
+        Object object;
+
+        Shape(TypeDescriptor type) {
+            this.type = type;
+        }
+    }
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer;
+    private boolean started;
+    private char[] chars = new char[64];
+
+    // the types of the graph being read
+    private Shape[] types = new Shape[16];
+    private int typeCount;
+
+    // the instances of the graph being read, by id
+    private Object[] instances = new Object[64];
+    private byte[] states = new byte[64];
+    private int[] instanceTypes = new int[64];
+    private int[] firstValues = new int[64];
+    private int[] valueCounts = new int[64];
+    private int idCount;
+
+    // the values of the references of all the instances, where
+    // references to instances are ids rather than values
+    private Object[] values = new Object[256];
+    private int[] ids = new int[256];
+    private int valueCount;
+
+    private int[] tuples = new int[16];
+
+    // these don't depend on the graph
+    private final HashMap<java.lang.String,java.lang.Class<?>> classes =
+            new HashMap<java.lang.String,java.lang.Class<?>>();
+    private final HashMap<TypeDescriptor,Shape> shapes =
+            new HashMap<TypeDescriptor,Shape>();
+
+    public StreamingDeserializer(ReadableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    public StreamingDeserializer(ReadableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(Math.max(bufferSize, MIN_BUFFER_SIZE));
+        this.buffer.flip();
+    }
+
+    /**
+     * Reads the next graph, and returns its root
+     *
+     * @throws DeserializationException if the graph is malformed, or
+     *         its instances are not assignable to their references
+     * @throws EOFException if the channel has no more graphs, or ends
+     *         in the middle of one
+     */
+    public Object read() throws IOException {
+        if (!started) {
+            require(5);
+            if (buffer.getInt() != StreamingFormat.MAGIC) {
+                throw new DeserializationException("not a serialization stream");
+            }
+            byte version = buffer.get();
+            if (version != StreamingFormat.VERSION) {
+                throw new DeserializationException("unsupported serialization stream version " + version);
+            }
+            started = true;
+        }
+        try {
+            while (true) {
+                require(1);
+                byte tag = buffer.get();
+                switch (tag) {
+                case StreamingFormat.TYPE:
+                    readType();
+                    break;
+                case StreamingFormat.INSTANCE:
+                    readInstance();
+                    break;
+                case StreamingFormat.END:
+                    int root = readValue();
+                    initialize();
+                    return resolve(root);
+                default:
+                    throw new DeserializationException("unexpected tag " + tag);
+                }
+            }
+        } finally {
+            Arrays.fill(types, 0, typeCount, null);
+            typeCount = 0;
+            Arrays.fill(instances, 0, idCount, null);
+            Arrays.fill(states, 0, idCount, UNDEFINED);
+            idCount = 0;
+            Arrays.fill(values, 0, valueCount, null);
+            valueCount = 0;
+        }
+    }
+
+    private void readType() throws IOException {
+        require(1);
+        byte kind = buffer.get();
+        TypeDescriptor type;
+        switch (kind) {
+        case StreamingFormat.CLASS:
+            java.lang.Class<?> klass = loadClass(readString(), readString(), readString());
+            TypeDescriptor[] arguments = readTypes();
+            int numVariances = readInt();
+            if (numVariances == 0) {
+                type = TypeDescriptor.klass(klass, arguments);
+            } else {
+                if (numVariances != arguments.length) {
+                    throw new DeserializationException("expected " + arguments.length 
+                            + " use-site variances but got " + numVariances);
+                }
+                Variance[] variance = new Variance[numVariances];
+                for (int ii = 0; ii < numVariances; ii++) {
+                    int ordinal = readInt();
+                    if (ordinal < 0 || ordinal >= VARIANCES.length) {
+                        throw new DeserializationException("unknown variance " + ordinal);
+                    }
+                    variance[ii] = VARIANCES[ordinal];
+                }
+                type = TypeDescriptor.klass(klass, variance, arguments);
+            }
+            break;
+        case StreamingFormat.MEMBER:
+            TypeDescriptor container = type(readInt()).type;
+            type = TypeDescriptor.member(container, type(readInt()).type);
+            break;
+        case StreamingFormat.UNION:
+            type = TypeDescriptor.union(readTypes());
+            break;
+        case StreamingFormat.INTERSECTION:
+            type = TypeDescriptor.intersection(readTypes());
+            break;
+        case StreamingFormat.NOTHING:
+            type = TypeDescriptor.NothingType;
+            break;
+        default:
+            throw new DeserializationException("unexpected type kind " + kind);
+        }
+        Shape shape = shapes.get(type);
+        if (shape == null) {
+            shape = new Shape(type);
+            shapes.put(type, shape);
+        }
+        if (typeCount == types.length) {
+            types = Arrays.copyOf(types, typeCount * 2);
+        }
+        types[typeCount++] = shape;
+    }
+
+    private TypeDescriptor[] readTypes() throws IOException {
+        TypeDescriptor[] result = new TypeDescriptor[readInt()];
+        for (int ii = 0; ii < result.length; ii++) {
+            result[ii] = type(readInt()).type;
+        }
+        return result;
+    }
+
+    private Shape type(int typeId) {
+        if (typeId < 0 || typeId >= typeCount) {
+            throw new DeserializationException("unknown type " + typeId);
+        }
+        return types[typeId];
+    }
+
+    private java.lang.Class<?> loadClass(java.lang.String moduleName, java.lang.String version,
+            java.lang.String className) {
+        if (version.equals(StreamingFormat.NO_VERSION)) {
+            version = null;
+        }
+        java.lang.String key = moduleName + "/" + version + "/" + className;
+        java.lang.Class<?> klass = classes.get(key);
+        if (klass == null) {
+            Module module = Metamodel.getModuleManager().findLoadedModule(moduleName, version);
+            if (module == null) {
+                // this loads it, if it's available at all
+                Metamodel.findLoadedModule(moduleName, version);
+                module = Metamodel.getModuleManager().findLoadedModule(moduleName, version);
+            }
+            if (module == null) {
+                throw new DeserializationException("module not available: " + moduleName + "/" + version);
+            }
+            ClassLoader loader = Metamodel.getClassLoader(module);
+            if (loader == null) {
+                loader = Thread.currentThread().getContextClassLoader();
+            }
+            try {
+                klass = java.lang.Class.forName(className, false, loader);
+            } catch (ClassNotFoundException e) {
+                throw new DeserializationException("class " + className + " not found in module "
+                        + moduleName + "/" + version);
+            }
+            classes.put(key, klass);
+        }
+        return klass;
+    }
+
+    private void readInstance() throws IOException {
+        int id = readInt();
+        // ids are given out in the order instances are found, so each
+        // one was first seen as a reference we read, except for the
+        // root and for the outer instances of members
+        if (id < 0 || id - MAX_UNSEEN_IDS > idCount + valueCount) {
+            throw new DeserializationException("invalid id " + id);
+        }
+        int typeId = readInt();
+        Shape shape = type(typeId);
+        if (id >= instances.length) {
+            int length = Math.max(instances.length * 2, id + 1);
+            instances = Arrays.copyOf(instances, length);
+            states = Arrays.copyOf(states, length);
+            instanceTypes = Arrays.copyOf(instanceTypes, length);
+            firstValues = Arrays.copyOf(firstValues, length);
+            valueCounts = Arrays.copyOf(valueCounts, length);
+        }
+        if (states[id] != UNDEFINED) {
+            throw new DeserializationException("instance with id " + id + " already defined");
+        }
+        idCount = Math.max(idCount, id + 1);
+        Object outer = null;
+        if (shape.type instanceof TypeDescriptor.Member) {
+            int outerValue = readValue();
+            int outerId = ids[outerValue];
+            if (outerId < 0 || outerId >= idCount || states[outerId] == UNDEFINED) {
+                throw new DeserializationException("no containing instance specified for member instance with id " + id);
+            }
+            outer = instances[outerId];
+            // that slot was only needed while reading
+            valueCount--;
+        }
+        instances[id] = instantiate(id, shape, outer);
+        states[id] = INSTANTIATED;
+        instanceTypes[id] = typeId;
+        int count = readInt();
+        firstValues[id] = valueCount;
+        valueCounts[id] = count;
+        for (int ii = 0; ii < count; ii++) {
+            readValue();
+        }
+    }
+
+    private Object instantiate(int id, Shape shape, Object outer) {
+        if (shape.constructor == null) {
+            TypeDescriptor.Class type;
+            java.lang.Class<?> outerClass;
+            if (shape.type instanceof TypeDescriptor.Member) {
+                TypeDescriptor.Member member = (TypeDescriptor.Member)shape.type;
+                type = (TypeDescriptor.Class)member.getMember();
+                outerClass = ((TypeDescriptor.Class)member.getContainer()).getKlass();
+            } else if (shape.type instanceof TypeDescriptor.Class) {
+                type = (TypeDescriptor.Class)shape.type;
+                outerClass = null;
+            } else {
+                throw new DeserializationException("instance with id " + id + " has a type that is not a class: " + shape.type);
+            }
+            if (!Serializable.class.isAssignableFrom(type.getKlass())) {
+                throw new DeserializationException("instance class " + shape.type + " is not serializable for instance with id " + id);
+            }
+            TypeDescriptor[] typeArguments = type.getTypeArguments();
+            int offset = outerClass != null ? 2 : 1;
+            java.lang.Class<?>[] parameterTypes = new java.lang.Class<?>[offset + typeArguments.length];
+            Object[] arguments = new Object[offset + typeArguments.length];
+            if (outerClass != null) {
+                parameterTypes[0] = outerClass;
+            }
+            parameterTypes[offset-1] = $Serialization$.class;
+            for (int ii = 0; ii < typeArguments.length; ii++) {
+                parameterTypes[offset + ii] = TypeDescriptor.class;
+                arguments[offset + ii] = typeArguments[ii];
+            }
+            try {
+                Constructor<?> constructor = type.getKlass().getDeclaredConstructor(parameterTypes);
+                constructor.setAccessible(true);
+                shape.constructor = constructor;
+                shape.arguments = arguments;
+            } catch (NoSuchMethodException e) {
+                throw new DeserializationException("instance class " + shape.type + " is not serializable for instance with id " + id);
+            }
+        }
+        Object[] arguments = shape.arguments;
+        if (outer != null) {
+            arguments[0] = outer;
+        }
+        try {
+            return shape.constructor.newInstance(arguments);
+        } catch (InvocationTargetException e) {
+            // Should never happen: it's a compiler-generate constructor
+            rethrow_.rethrow(e);
+        } catch (InstantiationException|IllegalAccessException|IllegalArgumentException e) {
+            // Should never happen: it's a compiler-generate constructor
+            rethrow_.rethrow(e);
+        } finally {
+            arguments[0] = null;
+        }
+        return null;
+    }
+
+    /**
+     * Reads a value into the next slot of {@link #values} and
+     * {@link #ids}, skipping any type records in front of it, and
+     * returns the slot
+     */
+    private int readValue() throws IOException {
+        Object value = null;
+        int id = -1;
+        byte tag;
+        while (true) {
+            require(1);
+            tag = buffer.get();
+            if (tag != StreamingFormat.TYPE) {
+                break;
+            }
+            readType();
+        }
+        switch (tag) {
+        case StreamingFormat.NULL:
+            break;
+        case StreamingFormat.REFERENCE:
+            id = readInt();
+            if (id < 0) {
+                throw new DeserializationException("invalid id " + id);
+            }
+            break;
+        case StreamingFormat.OBJECT:
+            value = object(type(readInt()));
+            break;
+        case StreamingFormat.INTEGER:
+            long l = readLong();
+            value = ceylon.language.Integer.instance((l >>> 1) ^ -(l & 1));
+            break;
+        case StreamingFormat.FLOAT:
+            require(8);
+            value = ceylon.language.Float.instance(buffer.getDouble());
+            break;
+        case StreamingFormat.STRING:
+            value = ceylon.language.String.instance(readString());
+            break;
+        case StreamingFormat.CHARACTER:
+            value = ceylon.language.Character.instance(readInt());
+            break;
+        case StreamingFormat.BYTE:
+            require(1);
+            value = ceylon.language.Byte.instance(buffer.get());
+            break;
+        case StreamingFormat.TRUE:
+            value = ceylon.language.Boolean.instance(true);
+            break;
+        case StreamingFormat.FALSE:
+            value = ceylon.language.Boolean.instance(false);
+            break;
+        case StreamingFormat.UNINITIALIZED:
+            value = UNINITIALIZED;
+            break;
+        default:
+            throw new DeserializationException("unexpected tag " + tag);
+        }
+        if (valueCount == values.length) {
+            values = Arrays.copyOf(values, valueCount * 2);
+            ids = Arrays.copyOf(ids, valueCount * 2);
+        }
+        values[valueCount] = value;
+        ids[valueCount] = id;
+        return valueCount++;
+    }
+
+    private Object object(Shape shape) {
+        if (shape.object == null) {
+            if (!(shape.type instanceof TypeDescriptor.Class)) {
+                throw new DeserializationException("not a toplevel object: " + shape.type);
+            }
+            java.lang.Class<?> klass = ((TypeDescriptor.Class)shape.type).getKlass();
+            if (!klass.isAnnotationPresent(org.eclipse.ceylon.compiler.java.metadata.Object.class)) {
+                throw new DeserializationException("not a toplevel object: " + shape.type);
+            }
+            try {
+                shape.object = klass.getMethod("get_").invoke(null);
+            } catch (NoSuchMethodException e) {
+                throw new DeserializationException("not a toplevel object: " + shape.type);
+            } catch (InvocationTargetException e) {
+                rethrow_.rethrow(e.getCause());
+            } catch (IllegalAccessException e) {
+                rethrow_.rethrow(e);
+            }
+        }
+        return shape.object;
+    }
+
+    /** The value in the given slot, with ids resolved to their instances */
+    private Object resolve(int slot) {
+        int id = ids[slot];
+        if (id < 0) {
+            return values[slot];
+        }
+        if (id >= idCount || states[id] == UNDEFINED) {
+            throw new DeserializationException("unknown id: " + id);
+        }
+        return instances[id];
+    }
+
+    /**
+     * Sets the state of every instance of the graph, tuples first
+     * when something refers to them, because their types, which
+     * are checked, depend on their state.
+     */
+    private void initialize() {
+        for (int id = 0; id < idCount; id++) {
+            switch (states[id]) {
+            case INSTANTIATED:
+                Object instance = instances[id];
+                if (instance instanceof Tuple) {
+                    initializeTuple(id);
+                } else if (instance instanceof Array) {
+                    initializeArray(id, (Array<?>)instance);
+                } else {
+                    initializeObject(id, (Serializable)instance);
+                }
+                break;
+            case UNDEFINED:
+                throw new DeserializationException("unknown id: " + id);
+            }
+        }
+    }
+
+    private void initializeObject(int id, Serializable instance) {
+        Shape shape = types[instanceTypes[id]];
+        ReachableReference[] references = references(shape, instance);
+        int first = firstValues[id];
+        if (valueCounts[id] != references.length) {
+            throw new DeserializationException("lacking sufficient state for instance with id " + id);
+        }
+        for (int ii = 0; ii < references.length; ii++) {
+            Member member = (Member)references[ii];
+            Object value = referred(first + ii);
+            if (value == UNINITIALIZED) {
+                if (member.getAttribute().getLate()) {
+                    continue;
+                }
+                throw new DeserializationException("lacking sufficient state for instance with id "
+                        + id + ": " + member.getAttribute());
+            }
+            if (!isAssignable(shape, ii, value)) {
+                throw notAssignable(id, java.lang.String.valueOf(member.getAttribute()),
+                        shape.referenceTypes[ii], value);
+            }
+            instance.$set$(member, value);
+        }
+        states[id] = INITIALIZED;
+    }
+
+    private void initializeArray(int id, Array<?> instance) {
+        Shape shape = types[instanceTypes[id]];
+        ReachableReference size = references(shape, instance)[0];
+        int first = firstValues[id];
+        int count = valueCounts[id];
+        instance.$set$(size, ceylon.language.Integer.instance(count));
+        @SuppressWarnings("unchecked")
+        Array<Object> array = (Array<Object>)instance;
+        for (int ii = 0; ii < count; ii++) {
+            Object element = referred(first + ii);
+            if (element == UNINITIALIZED) {
+                throw new DeserializationException("lacking sufficient state for instance with id "
+                        + id + ": index " + ii);
+            }
+            if (!isAssignable(shape, 0, element)) {
+                throw notAssignable(id, "index " + ii, shape.referenceTypes[0], element);
+            }
+            array.set(ii, element);
+        }
+        states[id] = INITIALIZED;
+    }
+
+    /**
+     * Initializes the given tuple, after any tuples it refers to,
+     * since a tuple copies the elements of its rest, and the type
+     * of a tuple depends on its elements.
+     */
+    private void initializeTuple(int id) {
+        int[] stack = tuples;
+        int top = 0;
+        stack[top++] = id;
+        states[id] = INITIALIZING;
+        while (top > 0) {
+            int tuple = stack[top-1];
+            int dependency = uninitializedTuple(tuple);
+            if (dependency >= 0) {
+                if (top == stack.length) {
+                    stack = tuples = Arrays.copyOf(stack, top * 2);
+                }
+                stack[top++] = dependency;
+                states[dependency] = INITIALIZING;
+                continue;
+            }
+            completeTuple(tuple);
+            states[tuple] = INITIALIZED;
+            top--;
+        }
+    }
+
+    private int uninitializedTuple(int tuple) {
+        int first = firstValues[tuple];
+        for (int ii = 0; ii < valueCounts[tuple]; ii++) {
+            int id = ids[first + ii];
+            if (id >= 0 && id < idCount && instances[id] instanceof Tuple) {
+                if (states[id] == INSTANTIATED) {
+                    return id;
+                } else if (states[id] == INITIALIZING) {
+                    throw new DeserializationException("tuple with id " + tuple + " contains itself");
+                }
+            }
+        }
+        return -1;
+    }
+
+    private void completeTuple(int id) {
+        Shape shape = types[instanceTypes[id]];
+        Tuple<?,?,?> instance = (Tuple<?,?,?>)instances[id];
+        ReachableReference[] references = references(shape, instance);
+        if (valueCounts[id] != 2) {
+            throw new DeserializationException("lacking sufficient state for instance with id " + id);
+        }
+        int first = firstValues[id];
+        Object firstValue = referred(first);
+        Object restValue = referred(first + 1);
+        if (firstValue == UNINITIALIZED || restValue == UNINITIALIZED) {
+            throw new DeserializationException("lacking sufficient state for instance with id " + id);
+        }
+        if (!(restValue instanceof ceylon.language.Sequential)) {
+            throw new DeserializationException("instance not assignable to "
+                    + ((Member)references[1]).getAttribute() + " of id " + id + ": not a sequence");
+        }
+        instance.$completeInit$(firstValue, restValue);
+        // now check compatibility (do this after initialization
+        // because Tuple$getType$ requires the tuple is initialized!
+        TypeDescriptor.Class type = (TypeDescriptor.Class)shape.type;
+        checkAssignable(id, (Member)references[0], firstValue, type.getTypeArgument(1));
+        checkAssignable(id, (Member)references[1], restValue, type.getTypeArgument(2));
+    }
+
+    private void checkAssignable(int id, Member member, Object value, TypeDescriptor type) {
+        Type referenceType = Metamodel.getModuleManager().getCachedType(type);
+        Type instanceType = Metamodel.getModuleManager().getCachedType(
+                Metamodel.getTypeDescriptor(value));
+        if (!instanceType.isSubtypeOf(referenceType)) {
+            throw notAssignable(id, java.lang.String.valueOf(member.getAttribute()), referenceType, value);
+        }
+    }
+
+    /** The value in the given slot, which must be initialized if it's a tuple */
+    private Object referred(int slot) {
+        Object value = resolve(slot);
+        int id = ids[slot];
+        if (id >= 0 && value instanceof Tuple && states[id] == INSTANTIATED) {
+            initializeTuple(id);
+        }
+        return value;
+    }
+
+    /**
+     * Whether the given value can be assigned to the given
+     * reference of an instance of the given type. We remember the
+     * type of the last value that could, since it's usually the
+     * same type every time.
+     */
+    private boolean isAssignable(Shape shape, int index, Object value) {
+        TypeDescriptor instanceType = Metamodel.getTypeDescriptor(value);
+        if (instanceType.equals(shape.accepted[index])) {
+            return true;
+        }
+        if (shape.referenceTypes[index] == null) {
+            shape.referenceTypes[index] = referenceType(shape, index);
+        }
+        if (!Metamodel.getModuleManager().getCachedType(instanceType)
+                .isSubtypeOf(shape.referenceTypes[index])) {
+            return false;
+        }
+        shape.accepted[index] = instanceType;
+        return true;
+    }
+
+    private Type referenceType(Shape shape, int index) {
+        TypeDescriptor.Class classTypeDescriptor = shape.type instanceof TypeDescriptor.Member ?
+                (TypeDescriptor.Class)((TypeDescriptor.Member)shape.type).getMember() :
+                (TypeDescriptor.Class)shape.type;
+        if (Array.class.equals(classTypeDescriptor.getKlass())) {
+            return Metamodel.getModuleManager().getCachedType(classTypeDescriptor.getTypeArgument(0));
+        }
+        Member member = (Member)shape.references[index];
+        Type pt = Metamodel.getModuleManager().getCachedType(classTypeDescriptor);
+        while (!pt.getDeclaration().getQualifiedNameString().equals(((ClassDeclaration)member.getAttribute().getContainer()).getQualifiedName())) {
+            pt = pt.getExtendedType();
+        }
+        FunctionOrValue attributeDeclaration = (FunctionOrValue)((TypeDeclaration)pt.getDeclaration()).getMember(
+                member.getAttribute().getName(), null, false);
+        return pt.getTypedMember(attributeDeclaration, Collections.<Type>emptyList(), true).getType();
+    }
+
+    /**
+     * The references of the instances of the given type, minus
+     * the one to the outer instance
+     */
+    private ReachableReference[] references(Shape shape, Serializable instance) {
+        if (shape.references == null) {
+            ArrayList<ReachableReference> references = new ArrayList<ReachableReference>();
+            for (ReachableReference reference : instance.$references$()) {
+                if (!(reference instanceof Outer)) {
+                    references.add(reference);
+                }
+            }
+            shape.references = references.toArray(new ReachableReference[references.size()]);
+            shape.referenceTypes = new Type[shape.references.length];
+            shape.accepted = new TypeDescriptor[shape.references.length];
+        }
+        return shape.references;
+    }
+
+    private DeserializationException notAssignable(int id, java.lang.String descriptor, Type referenceType, Object value) {
+        Type instanceType = Metamodel.getModuleManager().getCachedType(
+                Metamodel.getTypeDescriptor(value));
+        return new DeserializationException("instance not assignable to " + descriptor + " of id " + id + ": "
+                + instanceType.asString() + " is not assignable to " + referenceType.asString());
+    }
+
+    private java.lang.String readString() throws IOException {
+        int length = readInt();
+        if (length > chars.length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        for (int ii = 0; ii < length; ii++) {
+            chars[ii] = (char)readInt();
+        }
+        return new java.lang.String(chars, 0, length);
+    }
+
+    private int readInt() throws IOException {
+        long value = readLong();
+        if (value > 0xffffffffL) {
+            throw new DeserializationException("malformed serialization stream");
+        }
+        return (int)value;
+    }
+
+    private long readLong() throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            require(1);
+            byte b = buffer.get();
+            result |= (long)(b & 0x7f) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new DeserializationException("malformed serialization stream");
+    }
+
+    private void require(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+    }
+}
@@ -0,0 +1,71 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.compiler.java.runtime.serialization;
+
+/**
+ * <p>The tags of the binary format written by {@link StreamingSerializer}
+ * and read by {@link StreamingDeserializer}.</p>
+ *
+ * <p>A stream starts with {@link #MAGIC} and {@link #VERSION}, followed
+ * by any number of graphs. A graph is a sequence of records, each
+ * starting with a tag:</p>
+ * <ul>
+ * <li>{@link #TYPE} defines the next type id of the graph,
+ *     in terms of the types defined before it,</li>
+ * <li>{@link #INSTANCE} gives the type of the instance with the given id,
+ *     its outer instance if it's a member class, and then the values of
+ *     its {@link Serializable#$references$() references}, in order,
+ *     (for an array, its size and then its elements),</li>
+ * <li>{@link #END} ends the graph and is followed by its root value.</li>
+ * </ul>
+ *
+ * <p>Integers are written as variable length quantities, seven bits at a
+ * time, and signed integers are zig-zag encoded first, so that small
+ * ids, sizes and {@code Integer}s take a single byte.</p>
+ *
+ * <p>Ids and types only mean something within their graph.</p>
+ */
+final class StreamingFormat {
+
+    private StreamingFormat() {}
+
+    /** "CSER" */
+    static final int MAGIC = 0x43534552;
+    static final byte VERSION = 1;
+
+    // record tags
+    static final byte TYPE = 1;
+    static final byte INSTANCE = 2;
+    static final byte END = 3;
+
+    // type kinds
+    static final byte CLASS = 1;
+    static final byte MEMBER = 2;
+    static final byte UNION = 3;
+    static final byte INTERSECTION = 4;
+    static final byte NOTHING = 5;
+
+    // value tags, which must not clash with the record tags,
+    // since a value may be preceded by the types it needs
+    static final byte NULL = 16;
+    static final byte REFERENCE = 17;
+    static final byte OBJECT = 18;
+    static final byte INTEGER = 19;
+    static final byte FLOAT = 20;
+    static final byte STRING = 21;
+    static final byte CHARACTER = 22;
+    static final byte BYTE = 23;
+    static final byte TRUE = 24;
+    static final byte FALSE = 25;
+    static final byte UNINITIALIZED = 26;
+
+    /** The version of a module without one, like the default module */
+    static final String NO_VERSION = "";
+}
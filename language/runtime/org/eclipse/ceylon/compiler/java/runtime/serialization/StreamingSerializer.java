@@ -0,0 +1,394 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.compiler.java.runtime.serialization;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+
+import org.eclipse.ceylon.compiler.java.metadata.Variance;
+import org.eclipse.ceylon.compiler.java.runtime.metamodel.Metamodel;
+import org.eclipse.ceylon.compiler.java.runtime.model.TypeDescriptor;
+import org.eclipse.ceylon.model.typechecker.model.Module;
+
+import ceylon.language.Array;
+import ceylon.language.serialization.Outer;
+import ceylon.language.serialization.ReachableReference;
+import ceylon.language.serialization.SerializationException;
+import ceylon.language.serialization.uninitializedLateValue_;
+
+/**
+ * <p>Writes graphs of {@code serializable} instances to a
+ * {@link WritableByteChannel}, to be read back by a
+ * {@link StreamingDeserializer}.</p>
+ *
+ * <p>Unlike {@code ceylon.language.serialization::SerializationContext},
+ * which hands out the references of one instance at a time and leaves
+ * the bookkeeping of ids to its client, this walks the whole graph
+ * reachable from a root itself, with an explicit stack rather than
+ * recursion, and writes each instance as soon as it's visited,
+ * in the compact format described by {@link StreamingFormat}. Only
+ * the ids of the instances and a buffer are held on to while
+ * writing.</p>
+ *
+ * <p>Besides {@code serializable} instances (including arrays and
+ * tuples), a graph may contain {@code null}, {@code Integer}s,
+ * {@code Float}s, {@code String}s, {@code Character}s,
+ * {@code Byte}s, {@code Boolean}s and toplevel {@code object}s.</p>
+ *
+ * <p>A serializer is not thread safe. If writing a graph fails the
+ * stream is left incomplete, and should be discarded.</p>
+ */
+public final class StreamingSerializer {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+    /** Enough for the longest single write: a tag and a varint */
+    private static final int MIN_BUFFER_SIZE = 16;
+
+    /**
+     * What we need to know about the instances of a class:
+     * its references, minus the one to its outer instance
+     */
+    private static final class Shape {
+        final ReachableReference[] references;
+        final ReachableReference outer;
+
+        Shape(ReachableReference[] references, ReachableReference outer) {
+            this.references = references;
+            this.outer = outer;
+        }
+    }
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private boolean started;
+
+    // the state of the graph being written
+    private final IdentityIdTable ids = new IdentityIdTable();
+    private final BitSet written = new BitSet();
+    private final ArrayDeque<Object> pending = new ArrayDeque<Object>();
+    private final HashMap<TypeDescriptor,Integer> types = new HashMap<TypeDescriptor,Integer>();
+
+    // these only depend on the classes, so are kept from one graph to the next
+    private final HashMap<java.lang.Class<?>,Shape> shapes = new HashMap<java.lang.Class<?>,Shape>();
+    private final HashMap<java.lang.Class<?>,Boolean> toplevelObjects = new HashMap<java.lang.Class<?>,Boolean>();
+
+    public StreamingSerializer(WritableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    public StreamingSerializer(WritableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(Math.max(bufferSize, MIN_BUFFER_SIZE));
+    }
+
+    /**
+     * Writes the graph reachable from the given root, and flushes
+     * it to the channel.
+     *
+     * @throws SerializationException if the graph contains an instance
+     *         which cannot be serialized
+     */
+    public void write(Object root) throws IOException {
+        if (!started) {
+            ensure(5);
+            buffer.putInt(StreamingFormat.MAGIC);
+            buffer.put(StreamingFormat.VERSION);
+            started = true;
+        }
+        try {
+            // the root instance, if any, is written first, and we
+            // say which value is the root once the graph is complete
+            walk(root);
+            ensure(1);
+            buffer.put(StreamingFormat.END);
+            writeValue(root);
+        } finally {
+            ids.clear();
+            written.clear();
+            pending.clear();
+            types.clear();
+        }
+        flush();
+    }
+
+    /**
+     * Writes the instances reachable from the given root, each one
+     * before the instances it refers to, except for the outer
+     * instance of a member, which is written before the member.
+     */
+    private void walk(Object root) throws IOException {
+        if (!isInstance(root)) {
+            return;
+        }
+        ids.add(root);
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Object instance = pending.peek();
+            int id = ids.get(instance);
+            if (written.get(id)) {
+                pending.pop();
+                continue;
+            }
+            Shape shape = shape((Serializable)instance);
+            if (shape.outer != null) {
+                Object outer = ((Serializable)instance).$get$(shape.outer);
+                if (isInstance(outer)) {
+                    int outerId = ids.get(outer);
+                    if (outerId < 0) {
+                        ids.add(outer);
+                        pending.push(outer);
+                        continue;
+                    } else if (!written.get(outerId)) {
+                        pending.push(outer);
+                        continue;
+                    }
+                }
+            }
+            pending.pop();
+            written.set(id);
+            writeInstance((Serializable)instance, id, shape);
+        }
+    }
+
+    private void writeInstance(Serializable instance, int id, Shape shape) throws IOException {
+        int type = type(Metamodel.getTypeDescriptor(instance));
+        ensure(1);
+        buffer.put(StreamingFormat.INSTANCE);
+        writeInt(id);
+        writeInt(type);
+        if (shape.outer != null) {
+            writeValue(instance.$get$(shape.outer));
+        }
+        if (instance instanceof Array) {
+            Array<?> array = (Array<?>)instance;
+            int size = (int)array.getSize();
+            writeInt(size);
+            for (int ii = 0; ii < size; ii++) {
+                writeValue(array.getFromFirst(ii));
+            }
+        } else {
+            ReachableReference[] references = shape.references;
+            writeInt(references.length);
+            for (ReachableReference reference : references) {
+                writeValue(instance.$get$(reference));
+            }
+        }
+    }
+
+    private void writeValue(Object value) throws IOException {
+        if (value == null) {
+            ensure(1);
+            buffer.put(StreamingFormat.NULL);
+        } else if (value instanceof ceylon.language.Integer) {
+            ensure(1);
+            buffer.put(StreamingFormat.INTEGER);
+            long l = ((ceylon.language.Integer)value).longValue();
+            writeLong((l << 1) ^ (l >> 63));
+        } else if (value instanceof ceylon.language.String) {
+            ensure(1);
+            buffer.put(StreamingFormat.STRING);
+            writeString(((ceylon.language.String)value).value);
+        } else if (value instanceof ceylon.language.Float) {
+            ensure(9);
+            buffer.put(StreamingFormat.FLOAT);
+            buffer.putDouble(((ceylon.language.Float)value).doubleValue());
+        } else if (value instanceof ceylon.language.Character) {
+            ensure(1);
+            buffer.put(StreamingFormat.CHARACTER);
+            writeInt(((ceylon.language.Character)value).codePoint);
+        } else if (value instanceof ceylon.language.Byte) {
+            ensure(2);
+            buffer.put(StreamingFormat.BYTE);
+            buffer.put(((ceylon.language.Byte)value).byteValue());
+        } else if (value instanceof ceylon.language.Boolean) {
+            ensure(1);
+            buffer.put(((ceylon.language.Boolean)value).booleanValue() ?
+                    StreamingFormat.TRUE : StreamingFormat.FALSE);
+        } else if (value == uninitializedLateValue_.get_()) {
+            ensure(1);
+            buffer.put(StreamingFormat.UNINITIALIZED);
+        } else if (isToplevelObject(value.getClass())) {
+            int type = type(TypeDescriptor.klass(value.getClass()));
+            ensure(1);
+            buffer.put(StreamingFormat.OBJECT);
+            writeInt(type);
+        } else if (value instanceof Serializable) {
+            int id = ids.get(value);
+            if (id < 0) {
+                id = ids.add(value);
+                pending.push(value);
+            }
+            ensure(1);
+            buffer.put(StreamingFormat.REFERENCE);
+            writeInt(id);
+        } else {
+            throw new SerializationException("instance of non-serializable class: "
+                    + Metamodel.getTypeDescriptor(value));
+        }
+    }
+
+    /**
+     * Whether the given value is an instance with state,
+     * which gets an id of its own
+     */
+    private boolean isInstance(Object value) {
+        return value instanceof Serializable
+                && !isToplevelObject(value.getClass());
+    }
+
+    private boolean isToplevelObject(java.lang.Class<?> klass) {
+        Boolean result = toplevelObjects.get(klass);
+        if (result == null) {
+            result = klass.isAnnotationPresent(org.eclipse.ceylon.compiler.java.metadata.Object.class)
+                    && klass.getEnclosingClass() == null;
+            toplevelObjects.put(klass, result);
+        }
+        return result;
+    }
+
+    private Shape shape(Serializable instance) {
+        Shape shape = shapes.get(instance.getClass());
+        if (shape == null) {
+            ArrayList<ReachableReference> references = new ArrayList<ReachableReference>();
+            ReachableReference outer = null;
+            for (ReachableReference reference : instance.$references$()) {
+                if (reference instanceof Outer) {
+                    outer = reference;
+                } else {
+                    references.add(reference);
+                }
+            }
+            shape = new Shape(references.toArray(new ReachableReference[references.size()]), outer);
+            shapes.put(instance.getClass(), shape);
+        }
+        return shape;
+    }
+
+    /**
+     * Returns the id of the given type, writing it, and the types
+     * it is made of, if this is the first time we see it.
+     */
+    private int type(TypeDescriptor type) throws IOException {
+        Integer id = types.get(type);
+        if (id != null) {
+            return id;
+        }
+        if (type instanceof TypeDescriptor.Class) {
+            TypeDescriptor.Class klass = (TypeDescriptor.Class)type;
+            int[] arguments = types(klass.getTypeArguments());
+            Variance[] variance = klass.getUseSiteVariance();
+            ensure(2);
+            buffer.put(StreamingFormat.TYPE);
+            buffer.put(StreamingFormat.CLASS);
+            Module module = Metamodel.getModuleManager().findModuleForClass(klass.getKlass());
+            if (module == null) {
+                throw new SerializationException("no module for class " + klass.getKlass().getName());
+            }
+            writeString(module.getNameAsString());
+            writeString(module.getVersion() != null ?
+                    module.getVersion() : StreamingFormat.NO_VERSION);
+            writeString(klass.getKlass().getName());
+            writeInts(arguments);
+            writeInt(variance.length);
+            for (Variance v : variance) {
+                writeInt(v.ordinal());
+            }
+        } else if (type instanceof TypeDescriptor.Member) {
+            TypeDescriptor.Member member = (TypeDescriptor.Member)type;
+            int container = type(member.getContainer());
+            int memberType = type(member.getMember());
+            ensure(2);
+            buffer.put(StreamingFormat.TYPE);
+            buffer.put(StreamingFormat.MEMBER);
+            writeInt(container);
+            writeInt(memberType);
+        } else if (type instanceof TypeDescriptor.Union
+                || type instanceof TypeDescriptor.Intersection) {
+            int[] members = types(((TypeDescriptor.Composite)type).getMembers());
+            ensure(2);
+            buffer.put(StreamingFormat.TYPE);
+            buffer.put(type instanceof TypeDescriptor.Union ?
+                    StreamingFormat.UNION : StreamingFormat.INTERSECTION);
+            writeInts(members);
+        } else if (type instanceof TypeDescriptor.Nothing) {
+            ensure(2);
+            buffer.put(StreamingFormat.TYPE);
+            buffer.put(StreamingFormat.NOTHING);
+        } else {
+            throw new SerializationException("cannot serialize type " + type);
+        }
+        // the types this one is made of have been given their ids by now
+        int result = types.size();
+        types.put(type, result);
+        return result;
+    }
+
+    private int[] types(TypeDescriptor[] types) throws IOException {
+        int[] result = new int[types.length];
+        for (int ii = 0; ii < types.length; ii++) {
+            result[ii] = type(types[ii]);
+        }
+        return result;
+    }
+
+    private void writeInts(int[] values) throws IOException {
+        writeInt(values.length);
+        for (int value : values) {
+            writeInt(value);
+        }
+    }
+
+    private void writeString(java.lang.String string) throws IOException {
+        int length = string.length();
+        writeInt(length);
+        for (int ii = 0; ii < length; ii++) {
+            writeInt(string.charAt(ii));
+        }
+    }
+
+    private void writeInt(int value) throws IOException {
+        writeLong(value & 0xffffffffL);
+    }
+
+    private void writeLong(long value) throws IOException {
+        ensure(10);
+        while ((value & ~0x7fL) != 0) {
+            buffer.put((byte)((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte)value);
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Writes whatever is buffered to the channel
+     */
+    public void flush() throws IOException {
+        drain();
+    }
+}
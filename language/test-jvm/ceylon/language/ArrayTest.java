@@ -0,0 +1,104 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package ceylon.language;
+
+import java.util.ArrayList;
+
+import org.eclipse.ceylon.compiler.java.language.AbstractCallable;
+import org.eclipse.ceylon.compiler.java.runtime.model.TypeDescriptor;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ArrayTest {
+
+    private static final Array<?>[] JAVA_ARRAYS = {
+        Array.instance(new long[]{1, -2, 3}),
+        Array.instance(new double[]{1.5, -2.5}),
+        Array.instance(new int[]{1, 2, 3, 4}),
+        Array.instance(new byte[]{1, -1}),
+        Array.instance(new boolean[]{true, false, true}),
+        Array.instance(new char[]{'a', 'é'}),
+        Array.instance(new short[]{7, -7}),
+        Array.instance(new float[]{0.5f, 1.5f}),
+        Array.instance(new java.lang.String[]{"a", null, "c"}),
+    };
+
+    private static java.util.List<java.lang.Object> expected(Array<?> array) {
+        java.util.List<java.lang.Object> result = new ArrayList<java.lang.Object>();
+        for (int i = 0; i < array.getSize(); i++) {
+            result.add(array.getFromFirst(i));
+        }
+        return result;
+    }
+
+    private static java.util.List<java.lang.Object> iterated(Array<?> array) {
+        java.util.List<java.lang.Object> result = new ArrayList<java.lang.Object>();
+        Iterator<?> it = array.iterator();
+        java.lang.Object element;
+        while ((element = it.next()) != finished_.get_()) {
+            result.add(element);
+        }
+        return result;
+    }
+
+    private static java.util.List<java.lang.Object> eached(Array<?> array) {
+        final java.util.List<java.lang.Object> result = new ArrayList<java.lang.Object>();
+        array.each(new AbstractCallable<java.lang.Object>(
+                Anything.$TypeDescriptor$, TypeDescriptor.NothingType,
+                "Anything(Element)", (short)-1) {
+            @Override
+            public java.lang.Object $call$(java.lang.Object element) {
+                result.add(element);
+                return null;
+            }
+        });
+        return result;
+    }
+
+    private static java.util.List<java.lang.Object> folded(Array<?> array) {
+        @SuppressWarnings("unchecked")
+        java.util.List<java.lang.Object> result =
+            (java.util.List<java.lang.Object>) array.fold(TypeDescriptor.NothingType,
+                new ArrayList<java.lang.Object>(),
+                new AbstractCallable<java.lang.Object>(
+                        Anything.$TypeDescriptor$, TypeDescriptor.NothingType,
+                        "Anything(Anything,Element)", (short)-1) {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public java.lang.Object $call$(java.lang.Object partial, java.lang.Object element) {
+                        ((java.util.List<java.lang.Object>) partial).add(element);
+                        return partial;
+                    }
+                });
+        return result;
+    }
+
+    @Test
+    public void testJavaArrayIteration() {
+        for (Array<?> array: JAVA_ARRAYS) {
+            java.util.List<java.lang.Object> expected = expected(array);
+            Assert.assertEquals(array.getSize(), expected.size());
+            Assert.assertEquals(expected, iterated(array));
+            Assert.assertEquals(expected, eached(array));
+            Assert.assertEquals(expected, folded(array));
+        }
+    }
+
+    @Test
+    public void testEmptyJavaArrayIteration() {
+        for (Array<?> array: JAVA_ARRAYS) {
+            Array<?> empty = array.span(Integer.instance(10), Integer.instance(20));
+            Assert.assertEquals(0, empty.getSize());
+            Assert.assertTrue(iterated(empty).isEmpty());
+            Assert.assertTrue(eached(empty).isEmpty());
+            Assert.assertTrue(folded(empty).isEmpty());
+        }
+    }
+}
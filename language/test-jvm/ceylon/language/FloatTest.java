@@ -14,7 +14,9 @@ import static java.lang.Double.NEGATIVE_INFINITY;
 import static java.lang.Double.NaN;
 import static java.lang.Double.POSITIVE_INFINITY;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -289,4 +291,18 @@ public class FloatTest {
         }
     }
 
+
+    @Test
+    public void testInstanceCache() {
+        assertSame(Float.instance(0.0), Float.instance(0.0));
+        assertSame(Float.instance(1.0), Float.instance(1.0));
+        assertSame(Float.instance(-128.0), Float.instance(-128.0));
+        assertNotSame(Float.instance(0.5), Float.instance(0.5));
+        assertEquals(0.5, Float.instance(0.5).value, 0.0);
+        assertEquals(127.0, Float.instance(127.0).value, 0.0);
+        assertEquals(128.0, Float.instance(128.0).value, 0.0);
+        assertTrue("preserve negative 0", 1 / Float.instance(-0.0).value < 0);
+        assertTrue("preserve positive 0", 1 / Float.instance(+0.0).value > 0);
+        assertTrue(Double.isNaN(Float.instance(NaN).value));
+    }
 }
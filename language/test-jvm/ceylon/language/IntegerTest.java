@@ -10,6 +10,8 @@
 package ceylon.language;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 import org.junit.Test;
@@ -37,4 +39,16 @@ public class IntegerTest {
             // Checking that this is thrown
         }
     }
+
+    @Test
+    public void testInstanceCache() {
+        assertSame(Integer.instance(0), Integer.instance(0));
+        assertSame(Integer.instance(-128), Integer.instance(-128));
+        assertSame(Integer.instance(127), Integer.instance(127));
+        assertNotSame(Integer.instance(-129), Integer.instance(-129));
+        assertEquals(-129, Integer.instance(-129).longValue());
+        assertEquals(127, Integer.instance(127).longValue());
+        assertEquals(Long.MIN_VALUE, Integer.instance(Long.MIN_VALUE).longValue());
+        assertEquals(Long.MAX_VALUE, Integer.instance(Long.MAX_VALUE).longValue());
+    }
 }
@@ -19,9 +19,11 @@ import org.junit.runners.Suite.SuiteClasses;
 @SuiteClasses({
     FloatTest.class,
     IntegerTest.class,
+    StringTest.class,
     ArrayBuilderTest.class,
     TypeDescriptorTest.class,
-    PrimitiveArrayIterableTest.class
+    PrimitiveArrayIterableTest.class,
+    ArrayTest.class
 })
 public class LanguageUnitTestSuite {
 
@@ -0,0 +1,181 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package ceylon.language;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.eclipse.ceylon.compiler.java.language.CodePointIndex;
+import org.junit.Test;
+
+public class StringTest {
+
+    private static java.lang.String repeat(java.lang.String s, int times) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            sb.append(s);
+        }
+        return sb.toString();
+    }
+
+    private static int[] codePoints(java.lang.String s) {
+        int[] codePoints = new int[s.codePointCount(0, s.length())];
+        for (int i = 0, offset = 0; i < codePoints.length; i++) {
+            codePoints[i] = s.codePointAt(offset);
+            offset += java.lang.Character.charCount(codePoints[i]);
+        }
+        return codePoints;
+    }
+
+    private static final java.lang.String[] STRINGS = {
+        "",
+        "hello",
+        repeat("ascii", 40),
+        repeat("été 中文", 30),
+        repeat("a😀b", 50),
+        repeat("😀", 70),
+        // a multiple of the stride of the index
+        repeat("a😀", 48),
+        // unpaired surrogates count as code points
+        repeat("x\ud800y\udc00", 40),
+    };
+
+    @Test
+    public void testCodePointIndex() {
+        for (java.lang.String s: STRINGS) {
+            int size = s.codePointCount(0, s.length());
+            assertEquals(size, CodePointIndex.size(s));
+            for (int i = 0; i <= size; i++) {
+                assertEquals(s.offsetByCodePoints(0, i), CodePointIndex.offset(s, i));
+            }
+            for (int offset = 0; offset <= s.length(); offset++) {
+                assertEquals(s.codePointCount(0, offset), CodePointIndex.index(s, offset));
+            }
+            for (int i = 0; i < size; i++) {
+                assertEquals(s.offsetByCodePoints(s.length(), -i-1), CodePointIndex.offsetFromLast(s, i));
+            }
+            for (int i = 0; i <= size; i++) {
+                int offset = s.offsetByCodePoints(0, i);
+                assertEquals(size-i, CodePointIndex.sizeFrom(s, offset));
+            }
+            try {
+                CodePointIndex.offset(s, size+1);
+                throw new java.lang.AssertionError("IndexOutOfBoundsException expected");
+            } catch (IndexOutOfBoundsException e) {
+                // Checking that this is thrown
+            }
+        }
+    }
+
+    @Test
+    public void testCodePointIndexCollisions() {
+        // far more strings than there are slots in the table
+        java.lang.String[] strings = new java.lang.String[5000];
+        for (int i = 0; i < strings.length; i++) {
+            java.lang.String s = repeat("a😀", 40) + i;
+            strings[i] = s;
+            assertEquals(s.codePointCount(0, s.length()), CodePointIndex.size(s));
+            assertFalse("size() should not index the string", CodePointIndex.isIndexed(s));
+            assertEquals(s.offsetByCodePoints(0, 1), CodePointIndex.offset(s, 1));
+            assertTrue(CodePointIndex.isIndexed(s));
+        }
+        int indexed = 0;
+        for (java.lang.String s: strings) {
+            if (CodePointIndex.isIndexed(s)) {
+                indexed++;
+            }
+            // evicted indexes are simply built again
+            int size = s.codePointCount(0, s.length());
+            for (int i = 0; i <= size; i++) {
+                assertEquals(s.offsetByCodePoints(0, i), CodePointIndex.offset(s, i));
+            }
+        }
+        assertTrue("the table should be bounded", indexed < strings.length);
+        // equal strings do not share an index
+        java.lang.String copy = new java.lang.String(strings[0]);
+        assertFalse(CodePointIndex.isIndexed(copy));
+    }
+
+    @Test
+    public void testIndexedAccess() {
+        for (java.lang.String s: STRINGS) {
+            int[] codePoints = codePoints(s);
+            int size = codePoints.length;
+            assertEquals(size, String.getSize(s));
+            for (int i = 0; i < size; i++) {
+                assertEquals(codePoints[i], String.getFromFirst(s, i).codePoint);
+                assertEquals(codePoints[size-1-i], String.getFromLast(s, i).codePoint);
+            }
+            assertNull(String.getFromFirst(s, size));
+            assertNull(String.getFromFirst(s, -1));
+            assertNull(String.getFromLast(s, size));
+            assertNull(String.getFromLast(s, -1));
+        }
+    }
+
+    @Test
+    public void testIteration() {
+        for (java.lang.String s: STRINGS) {
+            int[] codePoints = codePoints(s);
+            Iterator<? extends Character> it = String.iterator(s);
+            for (int i = 0; i < codePoints.length; i++) {
+                assertEquals(codePoints[i], ((Character) it.next()).codePoint);
+            }
+            assertSame(finished_.get_(), it.next());
+        }
+    }
+
+    @Test
+    public void testCharacterInstanceCache() {
+        assertSame(Character.instance(0), Character.instance(0));
+        assertSame(Character.instance('a'), String.iterator("a").next());
+        assertSame(Character.instance(255), Character.instance(255));
+        assertNotSame(Character.instance(256), Character.instance(256));
+        assertEquals(256, Character.instance(256).codePoint);
+        assertEquals(0x1F600, Character.instance(0x1F600).codePoint);
+    }
+
+    @Test
+    public void testSubranges() {
+        for (java.lang.String s: STRINGS) {
+            int[] codePoints = codePoints(s);
+            int size = codePoints.length;
+            for (int from = -1; from <= size + 1; from += 7) {
+                for (int length = 0; length <= size + 1; length += 5) {
+                    int start = Math.max(0, Math.min(from, size));
+                    int end = Math.max(start, Math.min(from + length, size));
+                    java.lang.String expected = new java.lang.String(codePoints, start, end - start);
+                    assertEquals(expected, String.measure(s, from, length));
+                    if (length > 0) {
+                        assertEquals(expected, String.span(s, from, from + length - 1));
+                        List<? extends Character> sublist = String.sublist(s, from, from + length - 1);
+                        assertEquals(end - start, sublist.getSize());
+                        for (int i = 0; i < end - start; i++) {
+                            assertEquals(codePoints[start + i], sublist.getFromFirst(i).codePoint);
+                        }
+                    }
+                }
+                int start = Math.max(0, Math.min(from, size));
+                assertEquals(new java.lang.String(codePoints, start, size - start),
+                        String.spanFrom(s, from));
+                assertEquals(new java.lang.String(codePoints, 0, Math.min(Math.max(from + 1, 0), size)),
+                        String.spanTo(s, from));
+                assertEquals(new java.lang.String(codePoints, 0, start),
+                        String.initial(s, from));
+                assertEquals(new java.lang.String(codePoints, size - start, start),
+                        String.terminal(s, from));
+            }
+        }
+    }
+}
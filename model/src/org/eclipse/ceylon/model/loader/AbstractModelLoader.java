@@ -28,6 +28,9 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.ceylon.common.Backend;
 import org.eclipse.ceylon.common.Backends;
@@ -360,8 +363,8 @@ public abstract class AbstractModelLoader implements ModelCompleter, ModelLoader
         return new SimpleReflType(name, SimpleReflType.Module.CEYLON, TypeKind.DECLARED);
     }
 
-    protected Map<String, Declaration> valueDeclarationsByName = new HashMap<String, Declaration>();
-    protected Map<String, Declaration> typeDeclarationsByName = new HashMap<String, Declaration>();
+    protected Map<String, Declaration> valueDeclarationsByName = new ConcurrentHashMap<String, Declaration>();
+    protected Map<String, Declaration> typeDeclarationsByName = new ConcurrentHashMap<String, Declaration>();
     protected Map<String, Unit> unitsByPackage = new HashMap<String, Unit>();
     protected TypeParser typeParser;
     /** 
@@ -370,12 +373,27 @@ public abstract class AbstractModelLoader implements ModelCompleter, ModelLoader
      */
     protected Unit typeFactory;
     protected final Set<String> loadedPackages = new HashSet<String>();
-    protected final Map<String,LazyPackage> packagesByName = new HashMap<String,LazyPackage>();
-    protected boolean packageDescriptorsNeedLoading = false;
+    protected final Map<String,LazyPackage> packagesByName = new ConcurrentHashMap<String,LazyPackage>();
+    protected volatile boolean packageDescriptorsNeedLoading = false;
     protected boolean isBootstrap;
     private ModuleManager moduleManager;
     protected Modules modules;
-    protected Map<String, ClassMirror> classMirrorCache = new HashMap<String, ClassMirror>();
+    protected Map<String, ClassMirror> classMirrorCache = new ConcurrentHashMap<String, ClassMirror>();
+    /** The keys of the class mirrors we looked up and did not find, since we can't cache nulls */
+    private Set<String> missingClassMirrors = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    /** The number of class mirrors we had to look up, rather than finding them in our cache */
+    private final AtomicLong classMirrorLoads = new AtomicLong();
+    /** Guards the loading of class mirrors by loaders which support it, see {@link #isClassMirrorLookupConcurrent()} */
+    private final Object[] classMirrorLocks = makeClassMirrorLocks();
+    /** 
+     * Declarations and packages which are fully loaded, and which can be returned without
+     * taking the lock. See {@link #publish()}.
+     */
+    private final ConcurrentMap<String, Declaration> publishedDeclarations = new ConcurrentHashMap<String, Declaration>();
+    private final ConcurrentMap<String, LazyPackage> publishedPackages = new ConcurrentHashMap<String, LazyPackage>();
+    /** Guarded by the lock */
+    private final Map<String, Declaration> pendingDeclarations = new HashMap<String, Declaration>();
+    private final Map<String, LazyPackage> pendingPackages = new HashMap<String, LazyPackage>();
     protected boolean binaryCompatibilityErrorRaised = false;
     protected Timer timer;
     private Map<String,LazyPackage> modulelessPackages = new HashMap<String,LazyPackage>();
@@ -442,6 +460,72 @@ public abstract class AbstractModelLoader implements ModelCompleter, ModelLoader
         });
     }
 
+    /**
+     * Makes what we loaded under the lock visible to the lock-free lookups. Things we load
+     * can refer to things that are still being set up further up the stack of whoever holds
+     * the lock, so they are only published by a thread which acquires the lock afresh, at
+     * which point everything that was loaded before is complete.
+     */
+    private void publish() {
+        if(!Thread.holdsLock(getLock())){
+            synchronizedRun(new Runnable() {
+                @Override
+                public void run() {
+                    publishPending();
+                }
+            });
+        }
+    }
+
+    private void publishPending() {
+        publishedDeclarations.putAll(pendingDeclarations);
+        pendingDeclarations.clear();
+        publishedPackages.putAll(pendingPackages);
+        pendingPackages.clear();
+    }
+
+    private void publishDeclaration(final String key, final Declaration declaration) {
+        final boolean fresh = !Thread.holdsLock(getLock());
+        synchronizedRun(new Runnable() {
+            @Override
+            public void run() {
+                pendingDeclarations.put(key, declaration);
+                if(fresh)
+                    publishPending();
+            }
+        });
+    }
+
+    /**
+     * Forgets about everything that was published so far, must be called with the lock
+     * held whenever we remove things from our caches.
+     */
+    private void unpublish() {
+        pendingDeclarations.clear();
+        pendingPackages.clear();
+        publishedDeclarations.clear();
+        publishedPackages.clear();
+    }
+
+    private static Object[] makeClassMirrorLocks() {
+        Object[] locks = new Object[64];
+        for(int i=0;i<locks.length;i++){
+            locks[i] = new Object();
+        }
+        return locks;
+    }
+
+    /**
+     * To be redefined by subclasses whose {@link #lookupNewClassMirror(Module, String)} can be 
+     * called concurrently for different classes without holding the lock. In that case class
+     * mirrors are loaded under a lock striped by class name, which is only taken when the
+     * current thread does not already hold the lock. Such implementations must never call
+     * {@link #lookupClassMirror(Module, String)} themselves without holding the lock.
+     */
+    protected boolean isClassMirrorLookupConcurrent() {
+        return false;
+    }
+
     /**
      * To be redefined by subclasses if they compile a mix of Java + Ceylon files at the same go
      */
@@ -479,54 +563,57 @@ public abstract class AbstractModelLoader implements ModelCompleter, ModelLoader
      * @param name the name of the Class to load
      * @return a ClassMirror for the specified class, or null if not found.
      */
-    public final ClassMirror lookupClassMirror(final Module theModule, final String theName) {
+    public final ClassMirror lookupClassMirror(Module module, String name) {
+        // Java array classes are not where we expect them
+        if (JAVA_LANG_OBJECT_ARRAY.equals(name)
+                || JAVA_LANG_BOOLEAN_ARRAY.equals(name)
+                || JAVA_LANG_BYTE_ARRAY.equals(name)
+                || JAVA_LANG_SHORT_ARRAY.equals(name)
+                || JAVA_LANG_INT_ARRAY.equals(name)
+                || JAVA_LANG_LONG_ARRAY.equals(name)
+                || JAVA_LANG_FLOAT_ARRAY.equals(name)
+                || JAVA_LANG_DOUBLE_ARRAY.equals(name)
+                || JAVA_LANG_CHAR_ARRAY.equals(name)) {
+            // turn them into their real class location (get rid of the "java.lang" prefix)
+            name = "org.eclipse.ceylon.compiler.java.language" + name.substring(9);
+            module = getLanguageModule();
+        }
+        if (JAVA_LANG_TRANSIENT_ANNOTATION.equals(name)
+                || JAVA_LANG_VOLATILE_ANNOTATION.equals(name)
+                || JAVA_LANG_SYNCHRONIZED_ANNOTATION.equals(name)
+                || JAVA_LANG_NATIVE_ANNOTATION.equals(name)
+                || JAVA_LANG_STRICTFP_ANNOTATION.equals(name)
+                || JAVA_LANG_OVERLOADED_ANNOTATION.equals(name)
+                || JAVA_LANG_NONBEAN_ANNOTATION.equals(name)) {
+            name = "org.eclipse.ceylon.compiler.java.language" + name.substring(9);
+            module = getLanguageModule();
+        }
+        if (JAVA_INTEROP_UTILS.equals(name)) {
+            name = "org.eclipse.ceylon.compiler.java.language" + name.substring(9);
+            module = getLanguageModule();
+        }
+        final String cacheKey = cacheKeyByModule(module, name);
+        // the cache is safe to read without the lock
+        ClassMirror cachedMirror = classMirrorCache.get(cacheKey);
+        if(cachedMirror != null || missingClassMirrors.contains(cacheKey)) {
+            if (! searchAgain(cachedMirror, module, name)) {
+                return cachedMirror;
+            }
+        }
+        final Module theModule = module;
+        final String theName = name;
+        if(isClassMirrorLookupConcurrent() && !Thread.holdsLock(getLock())){
+            Object lock = classMirrorLocks[(cacheKey.hashCode() & Integer.MAX_VALUE) % classMirrorLocks.length];
+            synchronized(lock){
+                return lookupAndCacheClassMirror(theModule, theName, cacheKey);
+            }
+        }
         return synchronizedCall(new Callable<ClassMirror>(){
             @Override
             public ClassMirror call() throws Exception {
-                Module module = theModule;
-                String name = theName;
                 timer.startIgnore(TIMER_MODEL_LOADER_CATEGORY);
                 try{
-                    // Java array classes are not where we expect them
-                    if (JAVA_LANG_OBJECT_ARRAY.equals(name)
-                            || JAVA_LANG_BOOLEAN_ARRAY.equals(name)
-                            || JAVA_LANG_BYTE_ARRAY.equals(name)
-                            || JAVA_LANG_SHORT_ARRAY.equals(name)
-                            || JAVA_LANG_INT_ARRAY.equals(name)
-                            || JAVA_LANG_LONG_ARRAY.equals(name)
-                            || JAVA_LANG_FLOAT_ARRAY.equals(name)
-                            || JAVA_LANG_DOUBLE_ARRAY.equals(name)
-                            || JAVA_LANG_CHAR_ARRAY.equals(name)) {
-                        // turn them into their real class location (get rid of the "java.lang" prefix)
-                        name = "org.eclipse.ceylon.compiler.java.language" + name.substring(9);
-                        module = getLanguageModule();
-                    }
-                    if (JAVA_LANG_TRANSIENT_ANNOTATION.equals(name)
-                            || JAVA_LANG_VOLATILE_ANNOTATION.equals(name)
-                            || JAVA_LANG_SYNCHRONIZED_ANNOTATION.equals(name)
-                            || JAVA_LANG_NATIVE_ANNOTATION.equals(name)
-                            || JAVA_LANG_STRICTFP_ANNOTATION.equals(name)
-                            || JAVA_LANG_OVERLOADED_ANNOTATION.equals(name)
-                            || JAVA_LANG_NONBEAN_ANNOTATION.equals(name)) {
-                        name = "org.eclipse.ceylon.compiler.java.language" + name.substring(9);
-                        module = getLanguageModule();
-                    }
-                    if (JAVA_INTEROP_UTILS.equals(name)) {
-                        name = "org.eclipse.ceylon.compiler.java.language" + name.substring(9);
-                        module = getLanguageModule();
-                    }
-                    String cacheKey = cacheKeyByModule(module, name);
-                    // we use containsKey to be able to cache null results
-                    if(classMirrorCache.containsKey(cacheKey)) {
-                        ClassMirror cachedMirror = classMirrorCache.get(cacheKey);
-                        if (! searchAgain(cachedMirror, module, name)) {
-                            return cachedMirror;
-                        }
-                    }
-                    ClassMirror mirror = lookupNewClassMirror(module, name);
-                    // we even cache null results
-                    classMirrorCache.put(cacheKey, mirror);
-                    return mirror;
+                    return lookupAndCacheClassMirror(theModule, theName, cacheKey);
                 }finally{
                     timer.stopIgnore(TIMER_MODEL_LOADER_CATEGORY);
                 }
@@ -534,6 +621,35 @@ public abstract class AbstractModelLoader implements ModelCompleter, ModelLoader
         });
     }
 
+    private ClassMirror lookupAndCacheClassMirror(Module module, String name, String cacheKey) {
+        // someone may have loaded it while we were waiting for the lock
+        ClassMirror cachedMirror = classMirrorCache.get(cacheKey);
+        if(cachedMirror != null || missingClassMirrors.contains(cacheKey)) {
+            if (! searchAgain(cachedMirror, module, name)) {
+                return cachedMirror;
+            }
+        }
+        classMirrorLoads.incrementAndGet();
+        ClassMirror mirror = lookupNewClassMirror(module, name);
+        // we even cache null results
+        if(mirror != null){
+            classMirrorCache.put(cacheKey, mirror);
+            missingClassMirrors.remove(cacheKey);
+        }else{
+            missingClassMirrors.add(cacheKey);
+            classMirrorCache.remove(cacheKey);
+        }
+        return mirror;
+    }
+
+    /**
+     * Returns the number of class mirrors we looked up so far, not counting
+     * those we found in our cache.
+     */
+    public long getClassMirrorLoads() {
+        return classMirrorLoads.get();
+    }
+
     protected String cacheKeyByModule(Module module, String name) {
         return getCacheKeyByModule(module, name);
     }
@@ -1235,14 +1351,22 @@ public abstract class AbstractModelLoader implements ModelCompleter, ModelLoader
             key = key + "$header";
         }
         if(type == ClassType.OBJECT){
-            typeDeclarationsByName.put(key, getByType(decls, Class.class));
-            valueDeclarationsByName.put(key, getByType(decls, Value.class));
+            cacheDeclaration(typeDeclarationsByName, key, getByType(decls, Class.class));
+            cacheDeclaration(valueDeclarationsByName, key, getByType(decls, Value.class));
         }else {
             Map<String, Declaration> declarationCache = getCacheByType(type, declarationType);
-            declarationCache.put(key, decl);
+            cacheDeclaration(declarationCache, key, decl);
         }
     }
     
+    private static void cacheDeclaration(Map<String, Declaration> declarationCache, String key, Declaration decl) {
+        // our caches can't hold nulls, but not having an entry amounts to the same
+        if(decl != null)
+            declarationCache.put(key, decl);
+        else
+            declarationCache.remove(key);
+    }
+    
     private Map<String, Declaration> getCacheByType(ClassType type, DeclarationType declarationType) {
         Map<String, Declaration> declarationCache = null;
         switch(type){
@@ -1911,7 +2035,17 @@ public abstract class AbstractModelLoader implements ModelCompleter, ModelLoader
 
     @Nullable
     public Declaration convertToDeclaration(Module module, String typeName, DeclarationType declarationType)  {
-        return convertToDeclaration(module, null, typeName, declarationType);
+        if(module == null)
+            return convertToDeclaration(module, null, typeName, declarationType);
+        String key = cacheKeyByModule(module, typeName) + "/" + declarationType;
+        Declaration decl = publishedDeclarations.get(key);
+        if(decl != null)
+            return decl;
+        decl = convertToDeclaration(module, null, typeName, declarationType);
+        // only publish what we loaded ourselves, which is what we'd find in our caches next time
+        if(decl instanceof LazyElement)
+            publishDeclaration(key, decl);
+        return decl;
     }
 
     @Nullable
@@ -2124,6 +2258,9 @@ public abstract class AbstractModelLoader implements ModelCompleter, ModelLoader
     // Packages
     
     public LazyPackage findExistingPackage(final Module theModule, final String thePkgName) {
+        LazyPackage published = findPublishedPackage(theModule, thePkgName);
+        if(published != null)
+            return published;
         return synchronizedCall(new Callable<LazyPackage>() {
             @Override
             public LazyPackage call() throws Exception {
@@ -2169,14 +2306,23 @@ public abstract class AbstractModelLoader implements ModelCompleter, ModelLoader
         return null;
     }
 
+    private LazyPackage findPublishedPackage(Module module, String pkgName) {
+        if(module == null)
+            return null;
+        return publishedPackages.get(cacheKeyByModule(module, JVMModuleUtil.quoteJavaKeywords(pkgName)));
+    }
+
     public LazyPackage findOrCreatePackage(final Module module, final String pkgName)  {
-        return synchronizedCall(new Callable<LazyPackage>() {
+        LazyPackage published = findPublishedPackage(module, pkgName);
+        if(published != null)
+            return published;
+        LazyPackage loaded = synchronizedCall(new Callable<LazyPackage>() {
             @Override
             public LazyPackage call() throws Exception {
                 String quotedPkgName = JVMModuleUtil.quoteJavaKeywords(pkgName);
                 LazyPackage pkg = findCachedPackage(module, quotedPkgName);
                 if(pkg != null){
-                    return loadPackage(pkg);
+                    return publishLoadedPackage(module, quotedPkgName, loadPackage(pkg));
                 }
                 // try to find it from the module, perhaps it already got created and we didn't catch it
                 if(module instanceof LazyModule){
@@ -2205,9 +2351,18 @@ public abstract class AbstractModelLoader implements ModelCompleter, ModelLoader
                 if(packageDescriptorsNeedLoading)
                     loadPackageDescriptor(pkg);
 
-                return pkg;
+                return publishLoadedPackage(module, quotedPkgName, pkg);
             }
         });
+        publish();
+        return loaded;
+    }
+
+    private LazyPackage publishLoadedPackage(Module module, String quotedPkgName, LazyPackage pkg) {
+        // before that phase its descriptor still has to be loaded on its next lookup
+        if(module != null && packageDescriptorsNeedLoading)
+            pendingPackages.put(cacheKeyByModule(module, quotedPkgName), pkg);
+        return pkg;
     }
 
     public void loadPackageDescriptors()  {
@@ -6341,8 +6496,7 @@ public abstract class AbstractModelLoader implements ModelCompleter, ModelLoader
                 List<String> keysToRemove = new ArrayList<>(qualifiedNames.size());
                 for (Map.Entry<String, ClassMirror> entry : classMirrorCache.entrySet()) {
                     ClassMirror mirror = entry.getValue();
-                    if (mirror == null 
-                            || qualifiedNames.contains(mirror.getQualifiedName())) {
+                    if (qualifiedNames.contains(mirror.getQualifiedName())) {
                         keysToRemove.add(entry.getKey());
                     }
                 }
@@ -6350,6 +6504,8 @@ public abstract class AbstractModelLoader implements ModelCompleter, ModelLoader
                 for (String keyToRemove : keysToRemove) {
                     classMirrorCache.remove(keyToRemove);
                 }
+                missingClassMirrors.clear();
+                unpublish();
             }
         });
     }
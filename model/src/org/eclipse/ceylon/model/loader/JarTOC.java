@@ -0,0 +1,451 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.model.loader;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The table of contents of a jar: the names of its entries, and the
+ * paths of the packages its class files define, each kept in a table
+ * of strings sorted by their UTF-8 bytes, so that lookups are binary
+ * searches and listing a folder is a range scan.
+ *
+ * The table of contents of a jar which lives in a module repository,
+ * next to its <code>.sha1</code> file, is stored in a <code>.toc</code>
+ * file beside it, and read back (mapped in memory) as long as the jar
+ * keeps the same size, modification time and SHA-1. The index is just
+ * an optimization: when it cannot be read or written the jar is read
+ * again. Set the <code>ceylon.toc.cache</code> system property to
+ * <code>false</code> to never read or write index files.
+ */
+public final class JarTOC {
+
+    public static final String SUFFIX = ".toc";
+
+    private static final int MAGIC = 0x43544f43; // CTOC
+    private static final int VERSION = 1;
+
+    private static final boolean PERSISTENT =
+            !"false".equals(System.getProperty("ceylon.toc.cache"));
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final Comparator<byte[]> BYTES = new Comparator<byte[]>() {
+        @Override
+        public int compare(byte[] a, byte[] b) {
+            int length = Math.min(a.length, b.length);
+            for (int i = 0; i < length; i++) {
+                int cmp = (a[i] & 0xff) - (b[i] & 0xff);
+                if (cmp != 0)
+                    return cmp;
+            }
+            return a.length - b.length;
+        }
+    };
+
+    // the count and offsets of the entries then the packages, then their bytes
+    private final ByteBuffer buffer;
+    private final int entryCount;
+    private final int packageCount;
+    private final int strings;
+
+    private JarTOC(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        this.entryCount = buffer.getInt(0);
+        this.packageCount = buffer.getInt(4);
+        if (entryCount < 0 || packageCount < 0)
+            throw new IOException("Invalid jar index");
+        if (8 + (entryCount + packageCount + 1L) * 4 > buffer.limit())
+            throw new IOException("Invalid jar index");
+        this.strings = 8 + (entryCount + packageCount + 1) * 4;
+        int offset = 0;
+        for (int i = 0; i <= entryCount + packageCount; i++) {
+            int next = buffer.getInt(8 + i * 4);
+            if (next < offset)
+                throw new IOException("Invalid jar index");
+            offset = next;
+        }
+        if (strings + offset != buffer.limit())
+            throw new IOException("Invalid jar index");
+    }
+
+    /**
+     * Builds the table of contents of the given entries and package
+     * paths, such as those of a {@link ContentAwareArtifactResult}.
+     */
+    public static JarTOC of(Collection<String> entries, Collection<String> packagePaths) {
+        try {
+            return new JarTOC(ByteBuffer.wrap(encode(entries, packagePaths)));
+        } catch (IOException e) {
+            // can't happen
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Reads the table of contents of the given jar from its index
+     * file if there is a valid one, or else from the jar itself,
+     * writing the index file if the jar is in a module repository.
+     */
+    public static JarTOC forJar(File jar) throws IOException {
+        if (!PERSISTENT)
+            return read(jar);
+        String sha = readSha1(jar);
+        if (sha == null)
+            return read(jar);
+        File index = new File(jar.getPath() + SUFFIX);
+        long size = jar.length();
+        long lastModified = jar.lastModified();
+        if (index.isFile()) {
+            JarTOC toc = load(index, size, lastModified, sha);
+            if (toc != null)
+                return toc;
+        }
+        JarTOC toc = read(jar);
+        // don't store the index of a jar that was just replaced
+        if (jar.length() == size && jar.lastModified() == lastModified)
+            store(index, size, lastModified, sha, toc);
+        return toc;
+    }
+
+    /**
+     * Reads the table of contents of the given jar, without looking
+     * for its index file.
+     */
+    public static JarTOC read(File jar) throws IOException {
+        List<String> entries = new ArrayList<String>();
+        List<String> packagePaths = new ArrayList<String>();
+        ZipFile zf = new ZipFile(jar);
+        try {
+            Enumeration<? extends ZipEntry> e = zf.entries();
+            while (e.hasMoreElements()) {
+                String name = e.nextElement().getName();
+                entries.add(name);
+                if (!isFolder(name) && JvmBackendUtil.definesPackage(name))
+                    packagePaths.add(getPackagePath(name));
+            }
+        } finally {
+            zf.close();
+        }
+        return of(entries, packagePaths);
+    }
+
+    private static String readSha1(File jar) {
+        File file = new File(jar.getPath() + ".sha1");
+        if (!file.isFile())
+            return null;
+        try {
+            InputStream is = new FileInputStream(file);
+            try {
+                byte[] sha = new byte[40];
+                int offset = 0;
+                int read;
+                while (offset < sha.length
+                        && (read = is.read(sha, offset, sha.length - offset)) != -1)
+                    offset += read;
+                return offset == sha.length ? new String(sha, UTF8) : null;
+            } finally {
+                is.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static JarTOC load(File index, long size, long lastModified, String sha) {
+        try {
+            RandomAccessFile file = new RandomAccessFile(index, "r");
+            try {
+                FileChannel channel = file.getChannel();
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (buffer.getInt() != MAGIC
+                        || buffer.getShort() != VERSION
+                        || buffer.getLong() != size
+                        || buffer.getLong() != lastModified)
+                    return null;
+                byte[] bytes = new byte[buffer.getShort()];
+                buffer.get(bytes);
+                if (!sha.equals(new String(bytes, UTF8)))
+                    return null;
+                return new JarTOC(buffer.slice());
+            } finally {
+                // the mapping remains valid after closing
+                file.close();
+            }
+        } catch (IOException|RuntimeException e) {
+            // an index we can't read is just ignored
+            return null;
+        }
+    }
+
+    private static void store(File index, long size, long lastModified, String sha, JarTOC toc) {
+        File temp = null;
+        try {
+            temp = File.createTempFile(index.getName(), ".tmp", index.getParentFile());
+            DataOutputStream out = new DataOutputStream(new FileOutputStream(temp));
+            try {
+                out.writeInt(MAGIC);
+                out.writeShort(VERSION);
+                out.writeLong(size);
+                out.writeLong(lastModified);
+                byte[] bytes = sha.getBytes(UTF8);
+                out.writeShort(bytes.length);
+                out.write(bytes);
+                toc.write(out);
+            } finally {
+                out.close();
+            }
+            if (temp.renameTo(index)) {
+                temp = null;
+            }
+        } catch (IOException|SecurityException e) {
+            // read-only repositories are fine
+        } finally {
+            if (temp != null)
+                temp.delete();
+        }
+    }
+
+    private static byte[] encode(Collection<String> entries, Collection<String> packagePaths) {
+        byte[][] sortedEntries = sort(entries);
+        byte[][] sortedPackages = sort(packagePaths);
+        int count = sortedEntries.length + sortedPackages.length;
+        int length = 0;
+        for (byte[] bytes : sortedEntries)
+            length += bytes.length;
+        for (byte[] bytes : sortedPackages)
+            length += bytes.length;
+        ByteBuffer buffer = ByteBuffer.allocate(8 + (count + 1) * 4 + length);
+        buffer.putInt(sortedEntries.length);
+        buffer.putInt(sortedPackages.length);
+        int offset = 0;
+        for (byte[] bytes : sortedEntries) {
+            buffer.putInt(offset);
+            offset += bytes.length;
+        }
+        for (byte[] bytes : sortedPackages) {
+            buffer.putInt(offset);
+            offset += bytes.length;
+        }
+        buffer.putInt(offset);
+        for (byte[] bytes : sortedEntries)
+            buffer.put(bytes);
+        for (byte[] bytes : sortedPackages)
+            buffer.put(bytes);
+        return buffer.array();
+    }
+
+    private static byte[][] sort(Collection<String> strings) {
+        TreeSet<byte[]> sorted = new TreeSet<byte[]>(BYTES);
+        for (String string : strings)
+            sorted.add(string.getBytes(UTF8));
+        return sorted.toArray(new byte[sorted.size()][]);
+    }
+
+    private void write(OutputStream out) throws IOException {
+        ByteBuffer buffer = this.buffer.duplicate();
+        buffer.clear();
+        if (buffer.hasArray()) {
+            out.write(buffer.array(), buffer.arrayOffset(), buffer.limit());
+        } else {
+            byte[] bytes = new byte[buffer.limit()];
+            buffer.get(bytes);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Returns the package path, with slashes, of the given entry,
+     * which is the empty string for the default package.
+     */
+    public static String getPackagePath(String name) {
+        int sep = name.lastIndexOf('/');
+        return sep != -1 ? name.substring(0, sep) : "";
+    }
+
+    /**
+     * Returns true if the given entry name is that of a folder.
+     */
+    public static boolean isFolder(String name) {
+        return name.endsWith("/");
+    }
+
+    private int start(int index) {
+        return strings + buffer.getInt(8 + index * 4);
+    }
+
+    private int end(int index) {
+        return strings + buffer.getInt(12 + index * 4);
+    }
+
+    private String string(int index) {
+        int start = start(index);
+        byte[] bytes = new byte[end(index) - start];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = buffer.get(start + i);
+        return new String(bytes, UTF8);
+    }
+
+    private int compare(int index, byte[] key, boolean prefix) {
+        int start = start(index);
+        int length = end(index) - start;
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = (buffer.get(start + i) & 0xff) - (key[i] & 0xff);
+            if (cmp != 0)
+                return cmp;
+        }
+        if (prefix && length >= key.length)
+            return 0;
+        return length - key.length;
+    }
+
+    // the first index in [from, to) whose string is not less than the key
+    private int lowerBound(int from, int to, byte[] key) {
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (compare(mid, key, false) < 0)
+                from = mid + 1;
+            else
+                to = mid;
+        }
+        return from;
+    }
+
+    private boolean contains(int from, int to, byte[] key) {
+        int index = lowerBound(from, to, key);
+        return index < to && compare(index, key, false) == 0;
+    }
+
+    private boolean endsWith(int index, byte[] suffix) {
+        int end = end(index);
+        if (end - start(index) < suffix.length)
+            return false;
+        for (int i = 0; i < suffix.length; i++) {
+            if (buffer.get(end - suffix.length + i) != suffix[i])
+                return false;
+        }
+        return true;
+    }
+
+    private int indexOfSlash(int index, int from) {
+        int end = end(index);
+        for (int i = start(index) + from; i < end; i++) {
+            if (buffer.get(i) == '/')
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the number of entries.
+     */
+    public int size() {
+        return entryCount;
+    }
+
+    /**
+     * Returns the names of all entries, sorted.
+     */
+    public List<String> getEntries() {
+        List<String> ret = new ArrayList<String>(entryCount);
+        for (int i = 0; i < entryCount; i++)
+            ret.add(string(i));
+        return ret;
+    }
+
+    /**
+     * Returns true if there is an entry, file or folder, with the
+     * given name.
+     */
+    public boolean contains(String name) {
+        return contains(0, entryCount, name.getBytes(UTF8));
+    }
+
+    /**
+     * Returns true if there is a class file in the package with the
+     * given path.
+     */
+    public boolean containsPackage(String path) {
+        return contains(entryCount, entryCount + packageCount, path.getBytes(UTF8));
+    }
+
+    /**
+     * Returns the paths, with slashes, of the packages with class
+     * files.
+     */
+    public List<String> getPackagePaths() {
+        List<String> ret = new ArrayList<String>(packageCount);
+        for (int i = entryCount; i < entryCount + packageCount; i++)
+            ret.add(string(i));
+        return ret;
+    }
+
+    /**
+     * Returns the names of the files (not folders) directly in the
+     * given folder, which is the empty string for the root of the
+     * jar and has no trailing slash otherwise.
+     */
+    public List<String> list(String folder) {
+        byte[] prefix = folder.isEmpty() ? new byte[0] : (folder + "/").getBytes(UTF8);
+        List<String> ret = new ArrayList<String>();
+        for (int i = lowerBound(0, entryCount, prefix);
+                i < entryCount && compare(i, prefix, true) == 0; i++) {
+            // skip the folder itself and what is in subfolders
+            if (end(i) - start(i) > prefix.length
+                    && indexOfSlash(i, prefix.length) == -1)
+                ret.add(string(i));
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the names of the entries which start with the given
+     * prefix and end with the given suffix.
+     */
+    public List<String> find(String prefix, String suffix) {
+        byte[] start = prefix.getBytes(UTF8);
+        byte[] end = suffix.getBytes(UTF8);
+        List<String> ret = Collections.emptyList();
+        for (int i = lowerBound(0, entryCount, start);
+                i < entryCount && compare(i, start, true) == 0; i++) {
+            if (endsWith(i, end)) {
+                if (ret.isEmpty())
+                    ret = new ArrayList<String>(1);
+                ret.add(string(i));
+            }
+        }
+        return ret;
+    }
+
+    @Override
+    public String toString() {
+        return "JarTOC[entries=" + entryCount + ", packages=" + packageCount + "]";
+    }
+}
@@ -60,6 +60,8 @@ import org.eclipse.ceylon.model.cmr.PathFilter;
 import org.eclipse.ceylon.model.cmr.Repository;
 import org.eclipse.ceylon.model.cmr.RepositoryException;
 import org.eclipse.ceylon.model.cmr.VisibilityType;
+import org.eclipse.ceylon.model.loader.impl.reflect.mirror.AnnotationSnapshot;
+import org.eclipse.ceylon.model.loader.impl.reflect.mirror.AnnotationSnapshotWriter;
 import org.eclipse.ceylon.model.loader.mirror.AnnotatedMirror;
 import org.eclipse.ceylon.model.loader.mirror.AnnotationMirror;
 import org.eclipse.ceylon.model.loader.mirror.ClassMirror;
@@ -498,6 +500,22 @@ public class JvmBackendUtil {
         writeStaticMetamodel(ret, entries, jdkProvider, providedModules);
     }
 
+    /**
+     * Writes the {@link AnnotationSnapshot} of the classes of the given
+     * modules, in the order their jars were copied to the output zip.
+     */
+    public static void writeAnnotationSnapshot(ZipOutputStream outputZip, List<ArtifactResult> entries) throws IOException {
+        AnnotationSnapshotWriter writer = new AnnotationSnapshotWriter();
+        for(ArtifactResult entry : entries){
+            File artifact = entry.artifact();
+            if(artifact != null)
+                writer.addArchive(artifact);
+        }
+        outputZip.putNextEntry(new ZipEntry(AnnotationSnapshot.ENTRY));
+        writer.write(outputZip);
+        outputZip.closeEntry();
+    }
+
     private static void writeStaticMetamodel(Writer ret, List<ArtifactResult> entries, JdkProvider jdkProvider, Set<String> providedModules) throws IOException {
         if(jdkProvider.isAlternateJdk()){
             for (String jdkModule : jdkProvider.getJDKModuleNames()) {
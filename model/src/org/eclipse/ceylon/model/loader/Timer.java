@@ -13,6 +13,8 @@ import java.io.PrintWriter;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.eclipse.ceylon.common.Profile;
+
 public class Timer {
     private long programStart;
     private String currentTask;
@@ -20,19 +22,31 @@ public class Timer {
     protected boolean verbose;
     private final Map<String,IgnoredCategory> ignoredCategories;
     protected PrintWriter out;
+    /**
+     * When set, every task is recorded in this profile, whether we
+     * are verbose or not
+     */
+    protected Profile profile;
+    private Profile.Mark currentTaskMark;
+    private final String outerTask;
 
     protected Timer(){
+        outerTask = null;
         ignoredCategories = new HashMap<String,IgnoredCategory>();
     }
     
-    private Timer(PrintWriter out, long programStart, boolean verbose, Map<String,IgnoredCategory> ignoredCategories) {
+    private Timer(PrintWriter out, long programStart, boolean verbose, Map<String,IgnoredCategory> ignoredCategories,
+            Profile profile, String outerTask) {
         this.programStart = programStart;
+        this.profile = profile;
+        this.outerTask = outerTask;
         this.verbose = verbose;
         this.ignoredCategories = ignoredCategories;
         this.out = out;
     }
     
     public Timer(boolean verbose) {
+        outerTask = null;
         ignoredCategories = new HashMap<String,IgnoredCategory>();
         setup(verbose);
     }
@@ -42,6 +56,10 @@ public class Timer {
         // that time, so we fake it later on with the correct time
     }
 
+    public Profile getProfile() {
+        return profile;
+    }
+
     /**
      * Initializes this timer and {@linkplain #log(String) logs} a 
      * "program start" message.
@@ -68,13 +86,16 @@ public class Timer {
      * @see #nestedTimer()
      */
     public void startTask(String name){
-        if(!verbose)
+        if(!verbose && profile == null)
             return;
         if(currentTask != null)
             endTask();
         currentTask = name;
         currentTaskStart = System.nanoTime();
-        log("Task "+currentTask+" start");
+        if(profile != null)
+            currentTaskMark = profile.mark();
+        if(verbose)
+            log("Task "+currentTask+" start");
     }
     
     /**
@@ -116,8 +137,18 @@ public class Timer {
      * @see #startTask(String)
      */
     public void endTask() {
-        if(!verbose)
+        if(profile != null && currentTask != null){
+            // the tasks of a nested timer are the units of the outer task
+            if(outerTask != null)
+                profile.unit(outerTask, currentTask, currentTaskMark);
+            else
+                profile.phase(currentTask, currentTaskMark);
+            currentTaskMark = null;
+        }
+        if(!verbose){
+            currentTask = null;
             return;
+        }
         long time = System.nanoTime();
         long delta = (time - currentTaskStart)/1_000_000L;
         log("Task "+currentTask+" end: "+delta+"ms");
@@ -186,10 +217,11 @@ public class Timer {
     /**
      * Creates and returns a new timer suitable for timing sub-tasks 
      * without stopping the 'outer' timer. Necessary because 
-     * {@link #startTask(String)} stops the current timer. 
+     * {@link #startTask(String)} stops the current timer. When 
+     * profiling, its tasks are recorded as units of the current task.
      * @return The new timer
      */
     public Timer nestedTimer() {
-        return new Timer(out, programStart, verbose, ignoredCategories);
+        return new Timer(out, programStart, verbose, ignoredCategories, profile, currentTask);
     }
 }
@@ -16,7 +16,6 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -29,6 +28,7 @@ import org.eclipse.ceylon.common.FileUtil;
 import org.eclipse.ceylon.model.cmr.ArtifactResult;
 import org.eclipse.ceylon.model.cmr.PathFilter;
 import org.eclipse.ceylon.model.loader.ContentAwareArtifactResult;
+import org.eclipse.ceylon.model.loader.JarTOC;
 import org.eclipse.ceylon.model.loader.JvmBackendUtil;
 import org.eclipse.ceylon.model.typechecker.model.Module;
 
@@ -39,14 +39,11 @@ public class CachedTOCJars {
      */
     static class CachedTOCJar {
         ArtifactResult artifact;
-        // contents, folders and packages are lazy-loaded
-        private boolean loaded = false;
-        // stores class file names with slashes
-        Set<String> contents = new HashSet<String>();
-        // stores folder names with slashes
-        Set<String> folders = new HashSet<String>();
-        // stores package paths with slashes but not last one
-        Set<String> packagePaths = new HashSet<String>();
+        // the TOC and packages are lazy-loaded, and published together
+        // since jars are shared by the threads of the model loader
+        private volatile Contents contents;
+        // all the packages of the TOC, when it is not filtered
+        private volatile Set<String> tocPackagePaths;
         // not not attempt to load contents from this jar, just its TOC
         boolean skipContents;
         
@@ -55,68 +52,72 @@ public class CachedTOCJars {
             this.skipContents = skipContents;
         }
 
-        private void load(){
-            if(loaded)
-                return;
+        private Contents load(){
+            Contents contents = this.contents;
+            if(contents == null){
+                synchronized(this){
+                    contents = this.contents;
+                    if(contents == null){
+                        contents = read();
+                        this.contents = contents;
+                    }
+                }
+            }
+            return contents;
+        }
+
+        private Contents read(){
             if (artifact instanceof ContentAwareArtifactResult) {
                 // make sure we turn package names into paths
+                Set<String> packagePaths = new HashSet<String>();
                 for(String pkg : ((ContentAwareArtifactResult) artifact).getPackages()){
                     packagePaths.add(pkg.replace('.', '/'));
                 }
-                contents.addAll(((ContentAwareArtifactResult) artifact).getEntries());
+                return new Contents(JarTOC.of(((ContentAwareArtifactResult) artifact).getEntries(), packagePaths), 
+                        packagePaths);
             } else {
                 if (artifact.artifact() != null) {
+                    JarTOC toc;
                     try {
-                        ZipFile zf = new ZipFile(artifact.artifact());
-                        try{
-                            Enumeration<? extends ZipEntry> entries = zf.entries();
-                            while(entries.hasMoreElements()){
-                                ZipEntry entry = entries.nextElement();
-                                // only cache class files
-                                String name = entry.getName();
-                                if(accept(name)){
-                                    if(entry.isDirectory()){
-                                        folders.add(name);
-                                    }else{
-                                        if(JvmBackendUtil.definesPackage(name))
-                                            packagePaths.add(getPackageName(name));
-                                        contents.add(name);
-                                    }
-                                }
-                            }
-                        }finally{
-                            zf.close();
-                        }
+                        toc = JarTOC.forJar(artifact.artifact());
                     } catch (IOException e) {
                         throw new RuntimeException(e);
                     }
+                    Set<String> packagePaths = null;
+                    if(artifact.filter() != null){
+                        // the packages of the accepted class files only
+                        packagePaths = new HashSet<String>();
+                        for(String name : toc.getEntries()){
+                            if(accept(name)
+                                    && !JarTOC.isFolder(name)
+                                    && JvmBackendUtil.definesPackage(name))
+                                packagePaths.add(JarTOC.getPackagePath(name));
+                        }
+                    }
+                    return new Contents(toc, packagePaths);
+                } else {
+                    return new Contents(JarTOC.of(Collections.<String>emptyList(), Collections.<String>emptyList()), 
+                            null);
                 }
             }
-            loaded = true;
         }
         
         private boolean accept(String path) {
+            if (artifact instanceof ContentAwareArtifactResult)
+                return true;
             PathFilter filter = artifact.filter();
             return filter == null || filter.accept(path);
         }
 
-        private String getPackageName(String path) {
-            int sep = path.lastIndexOf('/');
-            if(sep != -1)
-                path = path.substring(0, sep);
-            else
-                path = "";// default package
-            return path;
-        }
-
         boolean containsFile(String path){
-            load();
-            return contents.contains(path);
+            return !JarTOC.isFolder(path) && accept(path) && load().toc.contains(path);
         }
 
         boolean containsPackage(String path) {
-            load();
-            return packagePaths.contains(path);
+            Contents contents = load();
+            return contents.packagePaths != null ? 
+                    contents.packagePaths.contains(path) : 
+                    contents.toc.containsPackage(path);
         }
 
         byte[] getContents(String path){
@@ -148,9 +149,9 @@ public class CachedTOCJars {
             }
             File jar = artifact.artifact();
             if (jar != null) {
-                load();
+                JarTOC toc = load().toc;
                 try{
-                    if(contents.contains(path) || folders.contains(path)){
+                    if(accept(path) && toc.contains(path)){
                         String uripath = FileUtil.absoluteFile(jar).toURI().getSchemeSpecificPart();
                         return new URI("classpath", uripath + "!" + path, null);
                     }
@@ -183,23 +184,9 @@ public class CachedTOCJars {
             
             File jar = artifact.artifact();
             if (jar != null) {
-                load();
-                // add a trailing / to only list members
-                boolean emptyPackage = path.isEmpty();
-                // only used for non-empty packages
-                path += "/";
                 List<String> ret = new ArrayList<String>();
-                for(String name : contents){
-                    String part = null;
-                    if(!emptyPackage && name.startsWith(path)){
-                        // keep only the part after the package name
-                        part = name.substring(path.length());
-                    }else if(emptyPackage){
-                        // keep it all, we'll filter later those in subfolders
-                        part = name;
-                    }
-                    // only keep those not in subfolders
-                    if(part != null && part.indexOf('/') == -1)
+                for(String name : load().toc.list(path)){
+                    if(accept(name))
                         ret.add(name);
                 }
                 return ret;
@@ -209,7 +196,15 @@ public class CachedTOCJars {
         }
 
         public Set<String> getPackagePaths() {
-            load();
+            Contents contents = load();
+            if(contents.packagePaths != null)
+                return contents.packagePaths;
+            Set<String> packagePaths = tocPackagePaths;
+            if(packagePaths == null){
+                // at worst built twice, and only ever published complete
+                packagePaths = new HashSet<String>(contents.toc.getPackagePaths());
+                tocPackagePaths = packagePaths;
+            }
             return packagePaths;
         }
 
@@ -219,6 +214,22 @@ public class CachedTOCJars {
         }
     }
     
+    /**
+     * What a {@link CachedTOCJar} loads, never modified once
+     * published
+     */
+    static class Contents {
+        final JarTOC toc;
+        // stores package paths with slashes but not last one,
+        // null when they are those of the TOC
+        final Set<String> packagePaths;
+        
+        Contents(JarTOC toc, Set<String> packagePaths){
+            this.toc = toc;
+            this.packagePaths = packagePaths;
+        }
+    }
+    
     private Map<Module, CachedTOCJar> jars = new HashMap<Module, CachedTOCJar>();
     
     public void addJar(ArtifactResult artifact, Module module) {
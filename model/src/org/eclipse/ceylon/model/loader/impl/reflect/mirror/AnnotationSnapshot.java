@@ -0,0 +1,597 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.model.loader.impl.reflect.mirror;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.eclipse.ceylon.model.loader.mirror.AnnotationMirror;
+
+/**
+ * The runtime-visible annotations of the classes of a jar,
+ * as {@link AnnotationSnapshotWriter} wrote them to the
+ * {@link #ENTRY} entry of that jar, so that the reflection
+ * mirrors can read the Ceylon metadata of these classes
+ * without having the JVM parse their annotations and create
+ * proxies for them.
+ *
+ * The snapshot is only used for classes loaded from a jar
+ * the fat-jar launcher found it in, see {@link #enable(Class)},
+ * and is decoded lazily, one class at a time. No other jar is
+ * ever opened to look for one. Classes it does not describe are read by reflection
+ * as usual, and so are all classes if the system property
+ * {@code ceylon.annotations.snapshot} is {@code false}.
+ */
+public class AnnotationSnapshot {
+
+    public static final String ENTRY = "META-INF/ceylon/annotations";
+
+    static final int MAGIC = 0x43455941;
+    static final int VERSION = 1;
+
+    static final char ANNOTATION = '@';
+    static final char ARRAY = '[';
+    static final char CLASS = 'c';
+    static final char ENUM = 'e';
+    static final char STRING = 's';
+
+    private static final boolean ENABLED =
+            !"false".equals(System.getProperty("ceylon.annotations.snapshot"));
+
+    private static final AnnotationSnapshot NONE = new AnnotationSnapshot();
+
+    /** the locations of the jars known to have a snapshot */
+    private static final Set<String> locations =
+            Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /** by the location of the jar they were read from, {@link #NONE} if it could not be */
+    private static final Map<String, AnnotationSnapshot> snapshots =
+            new ConcurrentHashMap<String, AnnotationSnapshot>();
+
+    private final byte[] data;
+    private final int[] stringOffsets;
+    private final String[] strings;
+    private final Set<String> externalTypes;
+    private final Map<String, Integer> defaultOffsets;
+    private final Map<String, Map<String, Object>> defaults;
+    private final Map<String, Integer> classOffsets;
+    private final Map<String, Map<String, Integer>> memberOffsets;
+
+    private AnnotationSnapshot() {
+        data = null;
+        stringOffsets = null;
+        strings = null;
+        externalTypes = null;
+        defaultOffsets = null;
+        defaults = null;
+        classOffsets = null;
+        memberOffsets = null;
+    }
+
+    /**
+     * Reads the index of a snapshot, leaving the annotations
+     * themselves to be decoded when they are asked for.
+     */
+    public AnnotationSnapshot(byte[] data) throws IOException {
+        this.data = data;
+        Reader reader = new Reader(0);
+        if (reader.readInt() != MAGIC || reader.readShort() != VERSION)
+            throw new IOException("Invalid annotation snapshot");
+        int count = reader.readVarint();
+        stringOffsets = new int[count];
+        strings = new String[count];
+        for (int i = 0; i < count; i++) {
+            stringOffsets[i] = reader.position;
+            reader.position += 2 + reader.readShort();
+        }
+        count = reader.readVarint();
+        externalTypes = new HashSet<String>(count * 2);
+        for (int i = 0; i < count; i++) {
+            externalTypes.add(reader.readString());
+        }
+        count = reader.readVarint();
+        defaultOffsets = new HashMap<String, Integer>(count * 2);
+        defaults = new ConcurrentHashMap<String, Map<String, Object>>();
+        for (int i = 0; i < count; i++) {
+            String type = reader.readString();
+            defaultOffsets.put(type, reader.position);
+            reader.skipValues();
+        }
+        count = reader.readVarint();
+        classOffsets = new HashMap<String, Integer>(count * 2);
+        for (int i = 0; i < count; i++) {
+            String name = reader.readString();
+            classOffsets.put(name, reader.readInt());
+        }
+        int base = reader.position;
+        for (Map.Entry<String, Integer> entry : classOffsets.entrySet()) {
+            entry.setValue(base + entry.getValue());
+        }
+        memberOffsets = new ConcurrentHashMap<String, Map<String, Integer>>();
+    }
+
+    /**
+     * Lets the classes loaded from the jar of the given class
+     * read their annotations from the snapshot of that jar,
+     * which the caller found in its list of entries.
+     */
+    public static void enable(Class<?> fromClass) {
+        if (!ENABLED)
+            return;
+        String location = location(fromClass);
+        if (location != null)
+            locations.add(location);
+    }
+
+    private static String location(Class<?> klass) {
+        try {
+            CodeSource codeSource = klass.getProtectionDomain().getCodeSource();
+            URL url = codeSource != null ? codeSource.getLocation() : null;
+            if (url == null || !url.getProtocol().equals("file"))
+                return null;
+            return url.toString();
+        } catch (SecurityException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The snapshot describing the given class, or null if
+     * its annotations must be read by reflection.
+     */
+    public static AnnotationSnapshot forClass(Class<?> klass) {
+        if (locations.isEmpty())
+            return null;
+        String location = location(klass);
+        if (location == null || !locations.contains(location))
+            return null;
+        AnnotationSnapshot snapshot = snapshots.get(location);
+        if (snapshot == null) {
+            snapshot = read(location);
+            snapshots.put(location, snapshot);
+        }
+        return snapshot != NONE && snapshot.classOffsets.containsKey(klass.getName())
+                ? snapshot : null;
+    }
+
+    private static AnnotationSnapshot read(String location) {
+        File file;
+        try {
+            file = new File(new URL(location).toURI());
+        } catch (URISyntaxException | IOException | IllegalArgumentException e) {
+            return NONE;
+        }
+        if (!file.isFile())
+            return NONE;
+        try (ZipFile zip = new ZipFile(file)) {
+            ZipEntry entry = zip.getEntry(ENTRY);
+            if (entry == null || entry.getSize() < 0)
+                return NONE;
+            byte[] data = new byte[(int) entry.getSize()];
+            try (InputStream is = zip.getInputStream(entry)) {
+                int read = 0;
+                while (read < data.length) {
+                    int n = is.read(data, read, data.length - read);
+                    if (n < 0)
+                        return NONE;
+                    read += n;
+                }
+            }
+            return new AnnotationSnapshot(data);
+        } catch (IOException e) {
+            // not a jar, or an unreadable snapshot: use reflection
+            return NONE;
+        }
+    }
+
+    /**
+     * The annotations of the given class or member, in the form
+     * {@link ReflectionUtils#getAnnotations(AnnotatedElement)}
+     * returns them, or null if they are not in a snapshot.
+     */
+    public static Map<String, AnnotationMirror> getAnnotations(AnnotatedElement annotated) {
+        if (annotated instanceof Class) {
+            Class<?> klass = (Class<?>) annotated;
+            AnnotationSnapshot snapshot = forClass(klass);
+            if (snapshot == null)
+                return null;
+            return snapshot.readAnnotations(snapshot.new Reader(snapshot.classOffsets.get(klass.getName())), klass);
+        }
+        if (annotated instanceof Member) {
+            Member member = (Member) annotated;
+            Class<?> klass = member.getDeclaringClass();
+            AnnotationSnapshot snapshot = forClass(klass);
+            if (snapshot == null)
+                return null;
+            Integer offset = snapshot.getMemberOffset(klass, memberKey(member));
+            if (offset == null)
+                return Collections.<String, AnnotationMirror>emptyMap();
+            return snapshot.readAnnotations(snapshot.new Reader(offset), klass);
+        }
+        return null;
+    }
+
+    /**
+     * The parameter annotations of the given method or
+     * constructor, as many as reflection would return, or null
+     * if they are not in a snapshot.
+     */
+    public static List<Map<String, AnnotationMirror>> getParameterAnnotations(Member method) {
+        Class<?> klass = method.getDeclaringClass();
+        AnnotationSnapshot snapshot = forClass(klass);
+        if (snapshot == null)
+            return null;
+        int count;
+        Integer offset = snapshot.getMemberOffset(klass, memberKey(method));
+        Reader reader = null;
+        if (offset != null) {
+            reader = snapshot.new Reader(offset);
+            reader.skipAnnotations();
+            // zero if there is no attribute, else one more than its length
+            count = reader.readVarint() - 1;
+        } else {
+            count = -1;
+        }
+        if (count < 0) {
+            count = method instanceof Method
+                    ? ((Method) method).getParameterTypes().length
+                    : ((Constructor<?>) method).getParameterTypes().length;
+            return Collections.nCopies(count, Collections.<String, AnnotationMirror>emptyMap());
+        }
+        List<Map<String, AnnotationMirror>> parameters = new ArrayList<Map<String, AnnotationMirror>>(count);
+        for (int i = 0; i < count; i++) {
+            parameters.add(snapshot.readAnnotations(reader, klass));
+        }
+        return parameters;
+    }
+
+    private Integer getMemberOffset(Class<?> klass, String key) {
+        String name = klass.getName();
+        Map<String, Integer> members = memberOffsets.get(name);
+        if (members == null) {
+            Reader reader = new Reader(classOffsets.get(name));
+            reader.skipAnnotations();
+            int count = reader.readVarint();
+            members = new HashMap<String, Integer>(count * 2);
+            for (int i = 0; i < count; i++) {
+                String member = reader.readString();
+                int length = reader.readVarint();
+                members.put(member, reader.position);
+                reader.position += length;
+            }
+            memberOffsets.put(name, members);
+        }
+        return members.get(key);
+    }
+
+    static String memberKey(Member member) {
+        StringBuilder key = new StringBuilder();
+        if (member instanceof Field) {
+            key.append(member.getName()).append(':');
+            appendDescriptor(key, ((Field) member).getType());
+            return key.toString();
+        }
+        Class<?>[] parameterTypes;
+        Class<?> returnType;
+        if (member instanceof Method) {
+            key.append(member.getName());
+            parameterTypes = ((Method) member).getParameterTypes();
+            returnType = ((Method) member).getReturnType();
+        } else {
+            key.append("<init>");
+            parameterTypes = ((Constructor<?>) member).getParameterTypes();
+            returnType = void.class;
+        }
+        key.append('(');
+        for (Class<?> parameterType : parameterTypes) {
+            appendDescriptor(key, parameterType);
+        }
+        key.append(')');
+        appendDescriptor(key, returnType);
+        return key.toString();
+    }
+
+    private static void appendDescriptor(StringBuilder descriptor, Class<?> type) {
+        if (type.isArray()) {
+            descriptor.append(type.getName().replace('.', '/'));
+        } else if (type.isPrimitive()) {
+            if (type == boolean.class)
+                descriptor.append('Z');
+            else if (type == byte.class)
+                descriptor.append('B');
+            else if (type == char.class)
+                descriptor.append('C');
+            else if (type == short.class)
+                descriptor.append('S');
+            else if (type == int.class)
+                descriptor.append('I');
+            else if (type == long.class)
+                descriptor.append('J');
+            else if (type == float.class)
+                descriptor.append('F');
+            else if (type == double.class)
+                descriptor.append('D');
+            else
+                descriptor.append('V');
+        } else {
+            descriptor.append('L').append(type.getName().replace('.', '/')).append(';');
+        }
+    }
+
+    private Map<String, AnnotationMirror> readAnnotations(Reader reader, Class<?> owner) {
+        int count = reader.readVarint();
+        if (count == 0)
+            return Collections.<String, AnnotationMirror>emptyMap();
+        SnapshotAnnotation[] annotations = new SnapshotAnnotation[count];
+        for (int i = 0; i < count; i++) {
+            annotations[i] = reader.readAnnotation(owner);
+        }
+        Map<String, AnnotationMirror> map = new HashMap<String, AnnotationMirror>();
+        // same order as ReflectionUtils.getAnnotations(Annotation[])
+        for (int i = count - 1; i >= 0; i--) {
+            SnapshotAnnotation annotation = annotations[i];
+            if (isPresent(annotation.type, owner))
+                map.put(annotation.type, annotation);
+        }
+        return map;
+    }
+
+    /**
+     * Reflection drops the annotations whose type it cannot
+     * load, which the snapshot can only know about for the
+     * types which are not in the same jar.
+     */
+    private boolean isPresent(String type, Class<?> owner) {
+        if (!externalTypes.contains(type))
+            return true;
+        try {
+            Class.forName(type, false, owner.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    private String getString(int index) {
+        String string = strings[index];
+        if (string == null) {
+            int offset = stringOffsets[index];
+            int length = ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+            try {
+                string = new DataInputStream(new ByteArrayInputStream(data, offset, length + 2)).readUTF();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            strings[index] = string;
+        }
+        return string;
+    }
+
+    Object getDefaultValue(String type, String name, Class<?> owner) {
+        Map<String, Object> values = defaults.get(type);
+        if (values == null) {
+            Integer offset = defaultOffsets.get(type);
+            if (offset == null)
+                return getReflectionDefaultValue(type, name, owner);
+            values = new Reader(offset).readValues(owner);
+            defaults.put(type, values);
+        }
+        return values.get(name);
+    }
+
+    private static Object getReflectionDefaultValue(String type, String name, Class<?> owner) {
+        try {
+            Class<?> annotationType = Class.forName(type, false, owner.getClassLoader());
+            Object value = annotationType.getMethod(name).getDefaultValue();
+            return value != null ? ReflectionAnnotation.convertValue(value) : null;
+        } catch (Throwable e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * A class in an annotation value, only loaded if that value
+     * is asked for.
+     */
+    static class ClassValue {
+        final String descriptor;
+        final Class<?> owner;
+
+        ClassValue(String descriptor, Class<?> owner) {
+            this.descriptor = descriptor;
+            this.owner = owner;
+        }
+
+        ReflectionType resolve() {
+            Class<?> type;
+            switch (descriptor.charAt(0)) {
+            case 'Z': type = boolean.class; break;
+            case 'B': type = byte.class; break;
+            case 'C': type = char.class; break;
+            case 'S': type = short.class; break;
+            case 'I': type = int.class; break;
+            case 'J': type = long.class; break;
+            case 'F': type = float.class; break;
+            case 'D': type = double.class; break;
+            case 'V': type = void.class; break;
+            default:
+                String name = descriptor.charAt(0) == 'L'
+                        ? descriptor.substring(1, descriptor.length() - 1)
+                        : descriptor;
+                try {
+                    type = Class.forName(name.replace('/', '.'), false, owner.getClassLoader());
+                } catch (ClassNotFoundException e) {
+                    throw new TypeNotPresentException(name.replace('/', '.'), e);
+                }
+            }
+            return new ReflectionType(type);
+        }
+    }
+
+    private class Reader {
+        int position;
+
+        Reader(int position) {
+            this.position = position;
+        }
+
+        int readInt() {
+            int value = ((data[position] & 0xFF) << 24)
+                    | ((data[position + 1] & 0xFF) << 16)
+                    | ((data[position + 2] & 0xFF) << 8)
+                    | (data[position + 3] & 0xFF);
+            position += 4;
+            return value;
+        }
+
+        long readLong() {
+            long high = readInt() & 0xFFFFFFFFL;
+            return (high << 32) | (readInt() & 0xFFFFFFFFL);
+        }
+
+        int readShort() {
+            int value = ((data[position] & 0xFF) << 8) | (data[position + 1] & 0xFF);
+            position += 2;
+            return value;
+        }
+
+        int readVarint() {
+            int value = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = data[position++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        int readSignedVarint() {
+            int value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        String readString() {
+            return getString(readVarint());
+        }
+
+        SnapshotAnnotation readAnnotation(Class<?> owner) {
+            String type = readString();
+            return new SnapshotAnnotation(AnnotationSnapshot.this, type, readValues(owner), owner);
+        }
+
+        Map<String, Object> readValues(Class<?> owner) {
+            int count = readVarint();
+            if (count == 0)
+                return Collections.<String, Object>emptyMap();
+            Map<String, Object> values = new HashMap<String, Object>(count * 2);
+            for (int i = 0; i < count; i++) {
+                String name = readString();
+                values.put(name, readValue(owner));
+            }
+            return values;
+        }
+
+        Object readValue(Class<?> owner) {
+            char tag = (char) data[position++];
+            switch (tag) {
+            case 'B': return (byte) readSignedVarint();
+            case 'C': return (char) readVarint();
+            case 'S': return (short) readSignedVarint();
+            case 'I': return readSignedVarint();
+            case 'Z': return readVarint() != 0;
+            case 'J': return readLong();
+            case 'F': return Float.intBitsToFloat(readInt());
+            case 'D': return Double.longBitsToDouble(readLong());
+            case STRING:
+            case ENUM:
+                return readString();
+            case CLASS:
+                return new ClassValue(readString(), owner);
+            case ANNOTATION:
+                return readAnnotation(owner);
+            case ARRAY:
+                int count = readVarint();
+                List<Object> values = new ArrayList<Object>(count);
+                for (int i = 0; i < count; i++) {
+                    values.add(readValue(owner));
+                }
+                return values;
+            default:
+                throw new IllegalStateException("Invalid annotation snapshot tag: " + tag);
+            }
+        }
+
+        void skipAnnotations() {
+            int count = readVarint();
+            for (int i = 0; i < count; i++) {
+                readVarint();
+                skipValues();
+            }
+        }
+
+        void skipValues() {
+            int count = readVarint();
+            for (int i = 0; i < count; i++) {
+                readVarint();
+                skipValue();
+            }
+        }
+
+        void skipValue() {
+            char tag = (char) data[position++];
+            switch (tag) {
+            case 'J':
+            case 'D':
+                position += 8;
+                break;
+            case 'F':
+                position += 4;
+                break;
+            case ANNOTATION:
+                readVarint();
+                skipValues();
+                break;
+            case ARRAY:
+                int count = readVarint();
+                for (int i = 0; i < count; i++) {
+                    skipValue();
+                }
+                break;
+            default:
+                readVarint();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,359 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.model.loader.impl.reflect.mirror;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.eclipse.ceylon.langtools.classfile.AccessFlags;
+import org.eclipse.ceylon.langtools.classfile.Annotation;
+import org.eclipse.ceylon.langtools.classfile.Annotation.Annotation_element_value;
+import org.eclipse.ceylon.langtools.classfile.Annotation.Array_element_value;
+import org.eclipse.ceylon.langtools.classfile.Annotation.Class_element_value;
+import org.eclipse.ceylon.langtools.classfile.Annotation.Enum_element_value;
+import org.eclipse.ceylon.langtools.classfile.Annotation.Primitive_element_value;
+import org.eclipse.ceylon.langtools.classfile.Annotation.element_value;
+import org.eclipse.ceylon.langtools.classfile.Annotation.element_value_pair;
+import org.eclipse.ceylon.langtools.classfile.AnnotationDefault_attribute;
+import org.eclipse.ceylon.langtools.classfile.Attribute;
+import org.eclipse.ceylon.langtools.classfile.Attributes;
+import org.eclipse.ceylon.langtools.classfile.ClassFile;
+import org.eclipse.ceylon.langtools.classfile.ConstantPool;
+import org.eclipse.ceylon.langtools.classfile.ConstantPool.CONSTANT_Double_info;
+import org.eclipse.ceylon.langtools.classfile.ConstantPool.CONSTANT_Float_info;
+import org.eclipse.ceylon.langtools.classfile.ConstantPool.CONSTANT_Integer_info;
+import org.eclipse.ceylon.langtools.classfile.ConstantPool.CONSTANT_Long_info;
+import org.eclipse.ceylon.langtools.classfile.ConstantPool.CPInfo;
+import org.eclipse.ceylon.langtools.classfile.ConstantPoolException;
+import org.eclipse.ceylon.langtools.classfile.Field;
+import org.eclipse.ceylon.langtools.classfile.Method;
+import org.eclipse.ceylon.langtools.classfile.RuntimeAnnotations_attribute;
+import org.eclipse.ceylon.langtools.classfile.RuntimeParameterAnnotations_attribute;
+
+/**
+ * Writes the {@link AnnotationSnapshot} of the classes of a
+ * jar. Classes are added in the order the jar is written in,
+ * and only the first class of a given name is kept, as only
+ * that one will be loaded from the jar. Classes without any
+ * runtime-visible annotations are left out, since reflection
+ * reads them quickly enough.
+ */
+public class AnnotationSnapshotWriter {
+
+    private final Map<String, Integer> strings = new LinkedHashMap<String, Integer>();
+    private final Set<String> classes = new HashSet<String>();
+    private final Set<String> annotationTypes = new HashSet<String>();
+    private final Map<String, byte[]> defaults = new LinkedHashMap<String, byte[]>();
+    private final Map<String, byte[]> bodies = new LinkedHashMap<String, byte[]>();
+
+    /**
+     * Adds the classes of the given jar, skipping those
+     * already added.
+     */
+    public void addArchive(File file) throws IOException {
+        try (ZipFile zip = new ZipFile(file)) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if (entry.isDirectory()
+                        || !name.endsWith(".class")
+                        // never loaded as classes
+                        || name.startsWith("META-INF/")
+                        || name.equals("module-info.class"))
+                    continue;
+                try (InputStream is = zip.getInputStream(entry)) {
+                    addClass(is);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a class, unless one of the same name was already
+     * added. Class files this writer cannot read are left out
+     * of the snapshot.
+     */
+    public void addClass(InputStream classFile) throws IOException {
+        ClassFile cf;
+        String name;
+        try {
+            cf = ClassFile.read(classFile);
+            name = cf.getName().replace('/', '.');
+        } catch (ConstantPoolException | RuntimeException e) {
+            return;
+        }
+        if (!classes.add(name))
+            return;
+        try {
+            if (cf.access_flags.is(AccessFlags.ACC_ANNOTATION))
+                addDefaults(name, cf);
+            byte[] body = writeClass(cf);
+            if (body != null)
+                bodies.put(name, body);
+        } catch (ConstantPoolException | RuntimeException e) {
+            // leave it to reflection
+        }
+    }
+
+    private void addDefaults(String name, ClassFile cf) throws IOException, ConstantPoolException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        List<Method> methods = new ArrayList<Method>();
+        for (Method method : cf.methods) {
+            if (method.attributes.get(Attribute.AnnotationDefault) != null)
+                methods.add(method);
+        }
+        writeVarint(out, methods.size());
+        for (Method method : methods) {
+            AnnotationDefault_attribute attribute =
+                    (AnnotationDefault_attribute) method.attributes.get(Attribute.AnnotationDefault);
+            writeString(out, method.getName(cf.constant_pool));
+            writeValue(out, attribute.default_value, cf.constant_pool);
+        }
+        out.flush();
+        defaults.put(name, bytes.toByteArray());
+    }
+
+    private byte[] writeClass(ClassFile cf) throws IOException, ConstantPoolException {
+        ConstantPool cp = cf.constant_pool;
+        boolean annotated = false;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        annotated |= writeAnnotations(out, cf.attributes, cp);
+        List<String> keys = new ArrayList<String>();
+        List<byte[]> members = new ArrayList<byte[]>();
+        for (Field field : cf.fields) {
+            if (hasAnnotations(field.attributes)) {
+                keys.add(field.getName(cp) + ":" + field.descriptor.getValue(cp));
+                members.add(writeMember(field.attributes, null, cp));
+            }
+        }
+        for (Method method : cf.methods) {
+            if (hasAnnotations(method.attributes)) {
+                String descriptor = method.descriptor.getValue(cp);
+                keys.add(method.getName(cp) + descriptor);
+                members.add(writeMember(method.attributes, descriptor, cp));
+            }
+        }
+        writeVarint(out, keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            writeString(out, keys.get(i));
+            writeVarint(out, members.get(i).length);
+            out.write(members.get(i));
+        }
+        out.flush();
+        return annotated || !keys.isEmpty() ? bytes.toByteArray() : null;
+    }
+
+    private static boolean hasAnnotations(Attributes attributes) {
+        return attributes.get(Attribute.RuntimeVisibleAnnotations) != null
+                || attributes.get(Attribute.RuntimeVisibleParameterAnnotations) != null;
+    }
+
+    private byte[] writeMember(Attributes attributes, String descriptor, ConstantPool cp)
+            throws IOException, ConstantPoolException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeAnnotations(out, attributes, cp);
+        if (descriptor != null) {
+            RuntimeParameterAnnotations_attribute parameters = (RuntimeParameterAnnotations_attribute)
+                    attributes.get(Attribute.RuntimeVisibleParameterAnnotations);
+            if (parameters == null) {
+                writeVarint(out, 0);
+            } else {
+                // as many as in the attribute, which is what reflection returns
+                writeVarint(out, parameters.parameter_annotations.length + 1);
+                for (Annotation[] annotations : parameters.parameter_annotations) {
+                    writeAnnotations(out, annotations, cp);
+                }
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private boolean writeAnnotations(DataOutputStream out, Attributes attributes, ConstantPool cp)
+            throws IOException, ConstantPoolException {
+        RuntimeAnnotations_attribute attribute =
+                (RuntimeAnnotations_attribute) attributes.get(Attribute.RuntimeVisibleAnnotations);
+        Annotation[] annotations = attribute != null ? attribute.annotations : new Annotation[0];
+        writeAnnotations(out, annotations, cp);
+        return annotations.length > 0;
+    }
+
+    private void writeAnnotations(DataOutputStream out, Annotation[] annotations, ConstantPool cp)
+            throws IOException, ConstantPoolException {
+        writeVarint(out, annotations.length);
+        for (Annotation annotation : annotations) {
+            writeAnnotation(out, annotation, cp);
+        }
+    }
+
+    private void writeAnnotation(DataOutputStream out, Annotation annotation, ConstantPool cp)
+            throws IOException, ConstantPoolException {
+        String type = typeName(cp.getUTF8Value(annotation.type_index));
+        annotationTypes.add(type);
+        writeString(out, type);
+        writeVarint(out, annotation.element_value_pairs.length);
+        for (element_value_pair pair : annotation.element_value_pairs) {
+            writeString(out, cp.getUTF8Value(pair.element_name_index));
+            writeValue(out, pair.value, cp);
+        }
+    }
+
+    private void writeValue(DataOutputStream out, element_value value, ConstantPool cp)
+            throws IOException, ConstantPoolException {
+        char tag = (char) value.tag;
+        if (value instanceof Primitive_element_value) {
+            CPInfo info = cp.get(((Primitive_element_value) value).const_value_index);
+            switch (tag) {
+            case 'B':
+            case 'S':
+            case 'I':
+                out.write(tag);
+                writeSignedVarint(out, ((CONSTANT_Integer_info) info).value);
+                return;
+            case 'C':
+            case 'Z':
+                out.write(tag);
+                writeVarint(out, ((CONSTANT_Integer_info) info).value & 0xFFFF);
+                return;
+            case 'J':
+                out.write(tag);
+                out.writeLong(((CONSTANT_Long_info) info).value);
+                return;
+            case 'F':
+                out.write(tag);
+                out.writeInt(Float.floatToRawIntBits(((CONSTANT_Float_info) info).value));
+                return;
+            case 'D':
+                out.write(tag);
+                out.writeLong(Double.doubleToRawLongBits(((CONSTANT_Double_info) info).value));
+                return;
+            case 's':
+                out.write(AnnotationSnapshot.STRING);
+                writeString(out, cp.getUTF8Value(((Primitive_element_value) value).const_value_index));
+                return;
+            }
+        } else if (value instanceof Enum_element_value) {
+            out.write(AnnotationSnapshot.ENUM);
+            writeString(out, cp.getUTF8Value(((Enum_element_value) value).const_name_index));
+            return;
+        } else if (value instanceof Class_element_value) {
+            out.write(AnnotationSnapshot.CLASS);
+            writeString(out, cp.getUTF8Value(((Class_element_value) value).class_info_index));
+            return;
+        } else if (value instanceof Annotation_element_value) {
+            out.write(AnnotationSnapshot.ANNOTATION);
+            Annotation annotation = ((Annotation_element_value) value).annotation_value;
+            writeString(out, typeName(cp.getUTF8Value(annotation.type_index)));
+            writeVarint(out, annotation.element_value_pairs.length);
+            for (element_value_pair pair : annotation.element_value_pairs) {
+                writeString(out, cp.getUTF8Value(pair.element_name_index));
+                writeValue(out, pair.value, cp);
+            }
+            return;
+        } else if (value instanceof Array_element_value) {
+            out.write(AnnotationSnapshot.ARRAY);
+            element_value[] values = ((Array_element_value) value).values;
+            writeVarint(out, values.length);
+            for (element_value val : values) {
+                writeValue(out, val, cp);
+            }
+            return;
+        }
+        throw new IllegalArgumentException("Unknown annotation value tag: " + tag);
+    }
+
+    private static String typeName(String descriptor) {
+        return descriptor.substring(1, descriptor.length() - 1).replace('/', '.');
+    }
+
+    private void writeString(DataOutputStream out, String string) throws IOException {
+        Integer index = strings.get(string);
+        if (index == null) {
+            index = strings.size();
+            strings.put(string, index);
+        }
+        writeVarint(out, index);
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static void writeSignedVarint(DataOutputStream out, int value) throws IOException {
+        writeVarint(out, (value << 1) ^ (value >> 31));
+    }
+
+    /**
+     * Writes the snapshot of all the classes added so far.
+     */
+    public void write(OutputStream os) throws IOException {
+        // the index refers to strings by number too, so build it first
+        ByteArrayOutputStream index = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(index);
+        // annotation types not in the jar may be missing at runtime
+        List<String> external = new ArrayList<String>();
+        for (String type : annotationTypes) {
+            if (!classes.contains(type))
+                external.add(type);
+        }
+        writeVarint(out, external.size());
+        for (String type : external) {
+            writeString(out, type);
+        }
+        writeVarint(out, defaults.size());
+        for (Map.Entry<String, byte[]> entry : defaults.entrySet()) {
+            writeString(out, entry.getKey());
+            out.write(entry.getValue());
+        }
+        writeVarint(out, bodies.size());
+        int offset = 0;
+        for (Map.Entry<String, byte[]> entry : bodies.entrySet()) {
+            writeString(out, entry.getKey());
+            out.writeInt(offset);
+            offset += entry.getValue().length;
+        }
+        out.flush();
+
+        DataOutputStream data = new DataOutputStream(os);
+        data.writeInt(AnnotationSnapshot.MAGIC);
+        data.writeShort(AnnotationSnapshot.VERSION);
+        writeVarint(data, strings.size());
+        for (String string : strings.keySet()) {
+            data.writeUTF(string);
+        }
+        index.writeTo(data);
+        for (byte[] body : bodies.values()) {
+            data.write(body);
+        }
+        data.flush();
+    }
+
+}
@@ -35,7 +35,7 @@ public class ReflectionAnnotation implements AnnotationMirror {
         }
     }
 
-    private Object convertValue(Object value) {
+    static Object convertValue(Object value) {
         Class<? extends Object> valueClass = value.getClass();
         if(valueClass.isArray()){
             if (valueClass.getComponentType().isPrimitive()) {
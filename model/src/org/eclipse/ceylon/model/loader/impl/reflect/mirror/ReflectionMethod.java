@@ -129,19 +129,24 @@ public class ReflectionMethod implements MethodMirror {
         if(parameters != null)
             return parameters;
         Type[] javaParameters;
-        Annotation[][] annotations;
+        Annotation[][] annotations = null;
         int parameterCount;
+        // fat jars come with the parameter annotations already parsed
+        List<Map<String, AnnotationMirror>> snapshotAnnotations = AnnotationSnapshot.getParameterAnnotations(method);
         if(method instanceof Method){
             javaParameters = ((Method)method).getGenericParameterTypes();
-            annotations = ((Method)method).getParameterAnnotations();
+            if(snapshotAnnotations == null)
+                annotations = ((Method)method).getParameterAnnotations();
             // only getParameterTypes always reliably include synthetic parameters for constructors
             parameterCount = ((Method)method).getParameterTypes().length;
         }else{
             javaParameters = ((Constructor<?>)method).getGenericParameterTypes();
-            annotations = ((Constructor<?>)method).getParameterAnnotations();
+            if(snapshotAnnotations == null)
+                annotations = ((Constructor<?>)method).getParameterAnnotations();
             // only getParameterTypes always reliably include synthetic parameters for constructors
             parameterCount = ((Constructor<?>)method).getParameterTypes().length;
         }
+        int annotationsLength = snapshotAnnotations != null ? snapshotAnnotations.size() : annotations.length;
         parameters = new ArrayList<VariableMirror>(parameterCount);
         int start = 0;
         if(method instanceof Constructor){
@@ -164,7 +169,7 @@ public class ReflectionMethod implements MethodMirror {
         int parametersOffset = javaParameters.length != parameterCount ? -start : 0;
         // if at least one parameter is annotated, java reflection will only include non-synthetic parameters in 
         // getParameterAnnotations(), so we need to know if we have less, we should subtract synthetic parameters
-        int annotationsOffset = annotations.length != parameterCount ? -start : 0;
+        int annotationsOffset = annotationsLength != parameterCount ? -start : 0;
         
         // we have synthetic parameters first (skipped with start), then regular params, then synthetic captured params
         
@@ -172,13 +177,16 @@ public class ReflectionMethod implements MethodMirror {
         // this makes sure we don't consider synthetic captured params
         if(javaParameters.length != parameterCount)
             parameterCount = javaParameters.length + start;
-        else if(annotations.length != parameterCount) // better luck with annotations?
-            parameterCount = annotations.length + start;
+        else if(annotationsLength != parameterCount) // better luck with annotations?
+            parameterCount = annotationsLength + start;
 
         // skip synthetic parameters
         for(int i=start;i<parameterCount;i++){
             // apply offsets for parameters and annotations if synthetic parameters are not included
-            parameters.add(new ReflectionVariable(javaParameters[i+parametersOffset], annotations[i+annotationsOffset]));
+            if(snapshotAnnotations != null)
+                parameters.add(new ReflectionVariable(javaParameters[i+parametersOffset], snapshotAnnotations.get(i+annotationsOffset)));
+            else
+                parameters.add(new ReflectionVariable(javaParameters[i+parametersOffset], annotations[i+annotationsOffset]));
         }
         return parameters;
     }
@@ -35,6 +35,10 @@ public class ReflectionUtils {
     static final Class<? extends Annotation> IGNORE_ANNOTATION = ReflectionUtils.getClass(AbstractModelLoader.CEYLON_IGNORE_ANNOTATION);
     
     public static Map<String, AnnotationMirror> getAnnotations(AnnotatedElement annotated) {
+        // fat jars come with the annotations of their classes already parsed
+        Map<String, AnnotationMirror> annotations = AnnotationSnapshot.getAnnotations(annotated);
+        if(annotations != null)
+            return annotations;
         return getAnnotations(annotated.getDeclaredAnnotations());
     }
 
@@ -169,7 +173,7 @@ public class ReflectionUtils {
             Method m = lookupClass.getDeclaredMethod(name, parameterTypes);
             // present
             return !m.isBridge() && !m.isSynthetic() && !Modifier.isPrivate(m.getModifiers())
-                    && !m.isAnnotationPresent(IGNORE_ANNOTATION)
+                    && !isIgnored(m)
                     && !isHiddenMethod(m);
         } catch (Exception e) {
             // not present
@@ -179,7 +183,7 @@ public class ReflectionUtils {
             if(!m.getName().equals(name)
                     || m.isBridge()
                     || m.isSynthetic()
-                    || m.isAnnotationPresent(IGNORE_ANNOTATION)
+                    || isIgnored(m)
                     || Modifier.isFinal(m.getModifiers())
                     || Modifier.isPrivate(m.getModifiers())
                     || isHiddenMethod(m))
@@ -215,7 +219,7 @@ public class ReflectionUtils {
             if(!m.getName().equals(name)
                     || m.isBridge()
                     || m.isSynthetic()
-                    || m.isAnnotationPresent(IGNORE_ANNOTATION)
+                    || isIgnored(m)
                     || Modifier.isPrivate(m.getModifiers())
                     || isHiddenMethod(m))
                 continue;
@@ -245,6 +249,13 @@ public class ReflectionUtils {
         return false;
     }
 
+    private static boolean isIgnored(Method m) {
+        Map<String, AnnotationMirror> annotations = AnnotationSnapshot.getAnnotations(m);
+        if(annotations != null)
+            return annotations.containsKey(AbstractModelLoader.CEYLON_IGNORE_ANNOTATION);
+        return m.isAnnotationPresent(IGNORE_ANNOTATION);
+    }
+
     private static boolean isHiddenMethod(Method m) {
         return m.getDeclaringClass() == Object.class
                 && (m.getName().equals("finalize")
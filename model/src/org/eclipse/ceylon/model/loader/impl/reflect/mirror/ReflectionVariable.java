@@ -29,6 +29,11 @@ public class ReflectionVariable implements VariableMirror {
         this.annotations = ReflectionUtils.getAnnotations(annotations);
     }
 
+    public ReflectionVariable(Type type, Map<String, AnnotationMirror> annotations) {
+        this.type = type;
+        this.annotations = annotations;
+    }
+
     @Override
     public AnnotationMirror getAnnotation(String type) {
         return annotations.get(type);
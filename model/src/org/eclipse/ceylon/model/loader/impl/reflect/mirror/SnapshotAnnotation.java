@@ -0,0 +1,68 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.model.loader.impl.reflect.mirror;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.ceylon.model.loader.mirror.AnnotationMirror;
+
+/**
+ * An annotation read from an {@link AnnotationSnapshot}, whose
+ * values are the same as those of the {@link ReflectionAnnotation}
+ * of the annotation itself.
+ */
+public class SnapshotAnnotation implements AnnotationMirror {
+
+    private final AnnotationSnapshot snapshot;
+    final String type;
+    private final Map<String, Object> values;
+    private final Class<?> owner;
+
+    SnapshotAnnotation(AnnotationSnapshot snapshot, String type, Map<String, Object> values, Class<?> owner) {
+        this.snapshot = snapshot;
+        this.type = type;
+        this.values = values;
+        this.owner = owner;
+    }
+
+    @Override
+    public Object getValue(String fieldName) {
+        Object value = values.get(fieldName);
+        if (value == null)
+            value = snapshot.getDefaultValue(type, fieldName, owner);
+        return convertValue(value);
+    }
+
+    private static Object convertValue(Object value) {
+        if (value instanceof AnnotationSnapshot.ClassValue) {
+            return ((AnnotationSnapshot.ClassValue) value).resolve();
+        }
+        if (value instanceof List) {
+            List<?> array = (List<?>) value;
+            List<Object> values = new ArrayList<Object>(array.size());
+            for (Object val : array)
+                values.add(convertValue(val));
+            return values;
+        }
+        return value;
+    }
+
+    @Override
+    public Object getValue() {
+        return getValue("value");
+    }
+
+    @Override
+    public String toString() {
+        return "[SnapshotAnnotation: " + type + "]";
+    }
+}
@@ -16,6 +16,8 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.ceylon.model.typechecker.model.Type;
 import org.eclipse.ceylon.model.typechecker.model.TypeDeclaration;
@@ -93,9 +95,152 @@ public class TypeCache {
     public final static Type NULL_VALUE = new UnknownType(null).getType();
     // need ConcurrentHashMap even for the cache, otherwise get/put/containsKey can get info infinite loops
     // on concurrent operations
-    private final Map<Type, Map<TypeDeclaration, Type>> superTypes = 
+    private final ConcurrentMap<Type, Map<TypeDeclaration, Type>> superTypes = 
             new ConcurrentHashMap<Type, Map<TypeDeclaration, Type>>();
     
+    /**
+     * The maximum number of subtyping and type equivalence
+     * relations held by the cache before it is flushed
+     */
+    public static final int RELATION_CACHE_SIZE = 16384;
+    
+    private final ConcurrentMap<Relation, Boolean> relations = 
+            new ConcurrentHashMap<Relation, Boolean>();
+    private final AtomicLong relationHits = new AtomicLong();
+    private final AtomicLong relationMisses = new AtomicLong();
+    
+    /**
+     * A pair of canonicalized types, and whether we're
+     * asking if the first is a subtype of the second, or
+     * if it is exactly the same type. Unions and 
+     * intersections are the same regardless of the order 
+     * of their types.
+     */
+    private static final class Relation {
+        private final Type type;
+        private final Type otherType;
+        private final boolean exactly;
+        private final int hashCode;
+        
+        Relation(Type type, Type otherType, boolean exactly) {
+            this.type = type;
+            this.otherType = otherType;
+            this.exactly = exactly;
+            int hash = 31*hash(type) + hash(otherType);
+            this.hashCode = exactly ? ~hash : hash;
+        }
+        
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            if (this==obj) {
+                return true;
+            }
+            if (!(obj instanceof Relation)) {
+                return false;
+            }
+            Relation other = (Relation) obj;
+            return hashCode == other.hashCode
+                && exactly == other.exactly
+                && same(type, other.type)
+                && same(otherType, other.otherType);
+        }
+        
+        boolean involves(Type producedType) {
+            return involves(type, producedType)
+                || involves(otherType, producedType);
+        }
+        
+        private static int hash(Type type) {
+            if (type.isUnion()) {
+                return 0x55555555 ^ hash(type.getCaseTypes());
+            }
+            else if (type.isIntersection()) {
+                return 0x33333333 ^ hash(type.getSatisfiedTypes());
+            }
+            else {
+                return type.hashCode();
+            }
+        }
+        
+        private static int hash(List<Type> types) {
+            int hash = 0;
+            for (Type t: types) {
+                hash += hash(t);
+            }
+            return hash;
+        }
+        
+        private static boolean same(Type type, Type otherType) {
+            if (type==otherType) {
+                return true;
+            }
+            else if (type.isUnion()) {
+                return otherType.isUnion()
+                    && same(type.getCaseTypes(), 
+                            otherType.getCaseTypes());
+            }
+            else if (type.isIntersection()) {
+                return otherType.isIntersection()
+                    && same(type.getSatisfiedTypes(), 
+                            otherType.getSatisfiedTypes());
+            }
+            else {
+                return type.equals(otherType);
+            }
+        }
+        
+        private static boolean same(List<Type> types, 
+                List<Type> otherTypes) {
+            return types.size() == otherTypes.size()
+                && containsAll(types, otherTypes)
+                && containsAll(otherTypes, types);
+        }
+        
+        private static boolean containsAll(List<Type> types, 
+                List<Type> otherTypes) {
+            for (Type otherType: otherTypes) {
+                boolean found = false;
+                for (Type t: types) {
+                    if (same(t, otherType)) {
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private static boolean involves(Type type, 
+                Type producedType) {
+            if (type.equals(producedType)) {
+                return true;
+            }
+            else if (type.isUnion()) {
+                for (Type t: type.getCaseTypes()) {
+                    if (involves(t, producedType)) {
+                        return true;
+                    }
+                }
+            }
+            else if (type.isIntersection()) {
+                for (Type t: type.getSatisfiedTypes()) {
+                    if (involves(t, producedType)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+    
     public boolean containsKey(Type producedType, TypeDeclaration dec) {
         Map<TypeDeclaration, Type> cache = superTypes.get(producedType);
         if (cache == null) {
@@ -130,13 +275,68 @@ public class TypeCache {
             // need ConcurrentHashMap even for the cache, otherwise get/put/containsKey can get info infinite loops
             // on concurrent operations
             cache = new ConcurrentHashMap<TypeDeclaration, Type>();
-            superTypes.put(producedType, cache);
+            // another thread may have got there first
+            Map<TypeDeclaration, Type> existing = 
+                    superTypes.putIfAbsent(producedType, cache);
+            if (existing != null) {
+                cache = existing;
+            }
         }
         cache.put(dec, superType);
     }
 
+    /**
+     * Returns the cached result of a subtyping or type 
+     * equivalence check, or null if it was never cached
+     * @param type the canonicalized subtype
+     * @param otherType the canonicalized supertype
+     * @param exactly true for {@link Type#isExactly(Type)}, 
+     *        false for {@link Type#isSubtypeOf(Type)}
+     */
+    public Boolean getRelation(Type type, Type otherType, boolean exactly) {
+        Boolean result = 
+                relations.get(new Relation(type, otherType, exactly));
+        if (result == null) {
+            relationMisses.incrementAndGet();
+        }
+        else {
+            relationHits.incrementAndGet();
+        }
+        return result;
+    }
+    
+    /**
+     * Caches the result of a subtyping or type equivalence
+     * check. The cache is flushed when it grows beyond
+     * {@link #RELATION_CACHE_SIZE} entries.
+     */
+    public void putRelation(Type type, Type otherType, boolean exactly, 
+            boolean result) {
+        if (relations.size() >= RELATION_CACHE_SIZE) {
+            relations.clear();
+        }
+        relations.put(new Relation(type, otherType, exactly), result);
+    }
+    
+    public long getRelationHits() {
+        return relationHits.get();
+    }
+    
+    public long getRelationMisses() {
+        return relationMisses.get();
+    }
+    
     public void clear(){
         superTypes.clear();
+        relations.clear();
+    }
+    
+    /**
+     * Clears every cached subtyping and type equivalence
+     * relation, but not the cached supertypes
+     */
+    public void clearRelations() {
+        relations.clear();
     }
 
     /**
@@ -163,6 +363,12 @@ public class TypeCache {
                     iterator.remove();
             }
         }
+        // and any relation it is involved in
+        Iterator<Relation> relationIterator = relations.keySet().iterator();
+        while(relationIterator.hasNext()){
+            if(relationIterator.next().involves(producedType))
+                relationIterator.remove();
+        }
     }
 
     public void clearForDeclaration(TypeDeclaration decl) {
@@ -23,6 +23,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.eclipse.ceylon.common.Backends;
 import org.eclipse.ceylon.model.typechecker.context.TypeCache;
@@ -40,8 +41,10 @@ public class Module
     private int jvmMinor;
     private int jsMajor;
     private int jsMinor;
+    //packages may be added by the model loader while
+    //units are being typechecked concurrently
     private List<Package> packages = 
-            new ArrayList<Package>();
+            new CopyOnWriteArrayList<Package>();
     private List<ModuleImport> imports = 
             new ArrayList<ModuleImport>();
     private Module languageModule;
@@ -63,7 +66,7 @@ public class Module
 
     public Module() {}
     
-    public LanguageModuleCache getLanguageModuleCache() {
+    public synchronized LanguageModuleCache getLanguageModuleCache() {
         if (languageModuleCache == null) {
             assert(isLanguageModule());
             languageModuleCache = new LanguageModuleCache(this);
@@ -438,11 +441,29 @@ public class Module
         return cache;
     }
 
+    /**
+     * The cache of subtyping and type equivalence relations,
+     * which is the cache of the language module, shared by
+     * every module that imports it, since a relation between 
+     * two types may depend on declarations of any module.
+     */
+    public TypeCache getRelationCache() {
+        Module languageModule = getLanguageModule();
+        return languageModule != null ? 
+                languageModule.getCache() : getCache();
+    }
+
     public void clearCache(TypeDeclaration declaration) {
         TypeCache cache = getCache();
         if (cache != null){
             cache.clearForDeclaration(declaration);
         }
+        // the relations of types of other modules may
+        // depend on this declaration
+        TypeCache relationCache = getRelationCache();
+        if (relationCache != null && relationCache != cache) {
+            relationCache.clearRelations();
+        }
         // FIXME: propagate to modules that import this 
         // module transitively 
         // Done in the IDE JDTModule
@@ -530,7 +551,7 @@ public class Module
         this.jsMinor = jsMinor;
     }
     
-    public void addService(ClassOrInterface serviceIface, Class serviceImpl) {
+    public synchronized void addService(ClassOrInterface serviceIface, Class serviceImpl) {
         if (services == null) {
             services = new HashMap<ClassOrInterface, Set<Class>>();
         }
@@ -542,7 +563,7 @@ public class Module
         impls.add(serviceImpl);
     }
     
-    public Map<ClassOrInterface, Set<Class>> getServices() {
+    public synchronized Map<ClassOrInterface, Set<Class>> getServices() {
         return services != null ? services : Collections.<ClassOrInterface, Set<Class>>emptyMap();
     }
 
@@ -130,7 +130,9 @@ public class Package
     
     @Override
     public void addMember(Declaration declaration) {
-        members=null;
+        synchronized (units) {
+            members=null;
+        }
     }
     
     private List<Declaration> getMembersInternal() {
@@ -68,6 +68,7 @@ public class Type extends Reference {
     
     // cache
     private int hashCode;
+    private Boolean relationCacheable;
 //    private List<Type> typeArgumentList;
     
     private Map<TypeParameter,SiteVariance> varianceOverrides = 
@@ -157,6 +158,7 @@ public class Type extends Reference {
     
     public void setVariance(TypeParameter param, 
             SiteVariance variance) {
+        relationCacheable = null;
         if (varianceOverrides.isEmpty()) {
             varianceOverrides = 
                     new HashMap<TypeParameter,SiteVariance>();
@@ -167,6 +169,7 @@ public class Type extends Reference {
     public void setVarianceOverrides(
             Map<TypeParameter,SiteVariance> varianceOverrides) {
         this.varianceOverrides = varianceOverrides;
+        relationCacheable = null;
     }
     
     Type() {}
@@ -178,6 +181,20 @@ public class Type extends Reference {
     
     void setDeclaration(TypeDeclaration declaration) {
         this.declaration = declaration;
+        relationCacheable = null;
+    }
+    
+    @Override
+    void setQualifyingType(Type qualifyingType) {
+        super.setQualifyingType(qualifyingType);
+        relationCacheable = null;
+    }
+    
+    @Override
+    void setTypeArguments
+        (Map<TypeParameter,Type> typeArguments) {
+        super.setTypeArguments(typeArguments);
+        relationCacheable = null;
     }
     
     /**
@@ -210,6 +227,7 @@ public class Type extends Reference {
     
     public void setTypeConstructor(boolean typeConstructor) {
         this.typeConstructor = typeConstructor;
+        relationCacheable = null;
     }
     
     public void setTypeConstructorParameter
@@ -355,10 +373,24 @@ public class Type extends Reference {
         
         //otherwise we need to resolve aliases
         //and canonicalize the types
-        return type!=null && 
-                resolveAliases()
-                    .isExactlyInternal(
-                            type.resolveAliases());
+        return resolveAliases()
+                .isExactlyCached(type.resolveAliases());
+    }
+    
+    private boolean isExactlyCached(Type type) {
+        TypeCache cache = getRelationCache(type);
+        if (cache!=null) {
+            Boolean cached = 
+                    cache.getRelation(this, type, true);
+            if (cached!=null) {
+                return cached;
+            }
+        }
+        boolean result = isExactlyInternal(type);
+        if (cache!=null) {
+            cache.putRelation(this, type, true, result);
+        }
+        return result;
     }
 
     private static boolean isNotGeneric(TypeDeclaration dec) {
@@ -866,8 +898,90 @@ public class Type extends Reference {
         //otherwise we need to resolve aliases
         //and canonicalize the types
         return resolveAliases()
-                    .isSubtypeOfInternal(
-                            type.resolveAliases());
+                .isSubtypeOfCached(type.resolveAliases());
+    }
+    
+    private boolean isSubtypeOfCached(Type type) {
+        TypeCache cache = getRelationCache(type);
+        if (cache!=null) {
+            Boolean cached = 
+                    cache.getRelation(this, type, false);
+            if (cached!=null) {
+                return cached;
+            }
+        }
+        boolean result = isSubtypeOfInternal(type);
+        if (cache!=null) {
+            cache.putRelation(this, type, false, result);
+        }
+        return result;
+    }
+    
+    /**
+     * The cache for the relation between this type and the
+     * given type, both already canonicalized, or null if 
+     * the relation should not be cached. Relations are 
+     * cached in a cache shared by every module, since they 
+     * may depend on declarations of any module.
+     */
+    private TypeCache getRelationCache(Type type) {
+        if (!TypeCache.isEnabled()
+                || !canCacheRelation() 
+                || !type.canCacheRelation()) {
+            return null;
+        }
+        Unit unit = getDeclaration().getUnit();
+        if (unit==null || unit.getPackage()==null) {
+            return null;
+        }
+        Module module = unit.getPackage().getModule();
+        return module==null ? null : module.getRelationCache();
+    }
+    
+    /**
+     * Unknown types are only ever related to themselves, by 
+     * identity, so they are never cached, and neither are 
+     * type constructors, nor the types we never cache the
+     * supertypes of: type parameters, types with underlying 
+     * types, and types with use-site variance. A union or
+     * intersection is cached if all its types are, and is
+     * looked up regardless of the order of its types. This 
+     * is worked out once, and again only if the type 
+     * changes.
+     */
+    private boolean canCacheRelation() {
+        Boolean cacheable = relationCacheable;
+        if (cacheable==null) {
+            cacheable = canCacheRelationInternal();
+            relationCacheable = cacheable;
+        }
+        return cacheable;
+    }
+    
+    private boolean canCacheRelationInternal() {
+        if (hasUnderlyingType()) {
+            return false;
+        }
+        if (isUnion()) {
+            for (Type ct: getCaseTypes()) {
+                if (!ct.canCacheRelation()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (isIntersection()) {
+            for (Type st: getSatisfiedTypes()) {
+                if (!st.canCacheRelation()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return !isTypeConstructor() 
+            && !containsUnknowns() 
+            && !isTypeParameter() 
+            && collectVarianceOverrides().isEmpty();
     }
 
     private static TypeDeclaration eliminateAlias(
@@ -4170,6 +4284,7 @@ public class Type extends Reference {
             throw new IllegalArgumentException("Type.setUnderlyingType() called on a cached type.");
         }
         this.underlyingType = underlyingType;
+        relationCacheable = null;
         // if we have a resolvedAliases cache, update it too
         if (resolvedAliases != null && 
             resolvedAliases != this) {
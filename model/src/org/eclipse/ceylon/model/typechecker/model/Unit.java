@@ -45,8 +45,10 @@ public class Unit implements LanguageModuleProvider, ImportScope {
     private List<Declaration> declarations = new ArrayList<Declaration>();
     private String filename;
     private List<ImportList> importLists = new ArrayList<ImportList>();
-    private Set<Declaration> duplicateDeclarations = new HashSet<Declaration>();
-    private final Set<String> dependentsOf = new HashSet<String>();
+    private Set<Declaration> duplicateDeclarations = 
+            Collections.synchronizedSet(new HashSet<Declaration>());
+    private final Set<String> dependentsOf = 
+            Collections.synchronizedSet(new HashSet<String>());
     private String fullPath;
     private String relativePath;
     private Backends supportedBackends = Backends.ANY;
@@ -316,8 +318,10 @@ public class Unit implements LanguageModuleProvider, ImportScope {
         return getFullPath().hashCode();
     }
     
-    private Module languageModule;
-    private Package languagePackage;
+    //volatile since units of other packages may look
+    //up language declarations concurrently
+    private volatile Module languageModule;
+    private volatile Package languagePackage;
 
     /**
      * Search for a declaration in the language module. 
@@ -28,6 +28,10 @@ import org.eclipse.ceylon.model.typechecker.model.Package;
 
 /**
  * Manager modules and packages (build, retrieve, handle errors etc)
+ * 
+ * Modules and packages may be created and looked up while
+ * units are typechecked concurrently, so doing that is
+ * synchronized.
  *
  * @author Emmanuel Bernard <emmanuel@hibernate.org>
  */
@@ -40,7 +44,7 @@ public class ModuleManager {
 
     public ModuleManager() {}
     
-    public Package createPackage(String pkgName, Module module) {
+    public synchronized Package createPackage(String pkgName, Module module) {
         Package pkg = new Package();
         List<String> name = 
                 pkgName.isEmpty() ? 
@@ -86,7 +90,7 @@ public class ModuleManager {
         }
     }
 
-    public void bindPackageToModule(Package pkg, Module module) {
+    public synchronized void bindPackageToModule(Package pkg, Module module) {
         //undo nomodule setting if necessary
         if (pkg.getModule() != null) {
             pkg.getModule().getPackages().remove(pkg);
@@ -108,7 +112,7 @@ public class ModuleManager {
      * version == null is considered equal to any version.
      * Likewise a module with no version will match any version passed
      */
-    public Module getOrCreateModule(List<String> moduleName, String version) {
+    public synchronized Module getOrCreateModule(List<String> moduleName, String version) {
         if (moduleName.isEmpty()) {
             return null;
         }
@@ -196,7 +200,7 @@ public class ModuleManager {
         return null;
     }
 
-    public Module findLoadedModule(String moduleName, String searchedVersion) {
+    public synchronized Module findLoadedModule(String moduleName, String searchedVersion) {
         return findLoadedModule(moduleName, searchedVersion, modules);
     }
     
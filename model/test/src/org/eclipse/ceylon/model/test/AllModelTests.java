@@ -9,6 +9,7 @@
  ********************************************************************************/
 package org.eclipse.ceylon.model.test;
 
+import org.eclipse.ceylon.model.test.loader.impl.reflect.AnnotationSnapshotTest;
 import org.eclipse.ceylon.model.test.loader.impl.reflect.CachedTOCJarsTest;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
@@ -16,8 +17,10 @@ import org.junit.runners.Suite.SuiteClasses;
 
 @RunWith(Suite.class) 
 @SuiteClasses({
+    AnnotationSnapshotTest.class,
     CachedTOCJarsTest.class,
     ClassFileUtilTest.class,
+    JarTOCTest.class,
     OsgiVersionTests.class
 })
 public class AllModelTests {
@@ -0,0 +1,148 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.model.test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.eclipse.ceylon.model.loader.JarTOC;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JarTOCTest {
+
+    private static final String[] ENTRIES = {
+        "META-INF/",
+        "META-INF/MANIFEST.MF",
+        "com/",
+        "com/foo/",
+        "com/foo/$module_.class",
+        "com/foo/Bar.class",
+        "com/foo/bar.txt",
+        "com/foo/baz/",
+        "com/foo/baz/Qux.class",
+        "com/fooé/Café.class",
+        "Default.class",
+        "module-info.class"
+    };
+
+    @Test
+    public void testLookups() throws IOException {
+        File jar = File.createTempFile("toc", ".jar");
+        try {
+            writeJar(jar, ENTRIES);
+            check(JarTOC.read(jar));
+            check(JarTOC.of(Arrays.asList(ENTRIES),
+                    Arrays.asList("", "com/foo", "com/foo/baz", "com/fooé")));
+        } finally {
+            jar.delete();
+        }
+    }
+
+    private void check(JarTOC toc) {
+        Assert.assertEquals(ENTRIES.length, toc.size());
+        for (String entry : ENTRIES) {
+            Assert.assertTrue(entry, toc.contains(entry));
+        }
+        Assert.assertFalse(toc.contains("com/foo"));
+        Assert.assertFalse(toc.contains("com/foo/Bar"));
+        Assert.assertFalse(toc.contains("com/foo/Bar.class2"));
+
+        Assert.assertTrue(toc.containsPackage(""));
+        Assert.assertTrue(toc.containsPackage("com/foo"));
+        Assert.assertTrue(toc.containsPackage("com/foo/baz"));
+        Assert.assertTrue(toc.containsPackage("com/fooé"));
+        Assert.assertFalse(toc.containsPackage("com"));
+        Assert.assertFalse(toc.containsPackage("META-INF"));
+        Assert.assertEquals(Arrays.asList("", "com/foo", "com/foo/baz", "com/fooé"),
+                toc.getPackagePaths());
+
+        Assert.assertEquals(Arrays.asList("Default.class", "module-info.class"), toc.list(""));
+        Assert.assertEquals(Arrays.asList("com/foo/$module_.class", "com/foo/Bar.class", "com/foo/bar.txt"),
+                toc.list("com/foo"));
+        Assert.assertEquals(Collections.emptyList(), toc.list("com"));
+        Assert.assertEquals(Collections.emptyList(), toc.list("org"));
+
+        Assert.assertEquals(Arrays.asList("com/foo/$module_.class"), toc.find("", "$module_.class"));
+        Assert.assertEquals(Arrays.asList("com/foo/baz/Qux.class"), toc.find("com/foo/b", "x.class"));
+        Assert.assertEquals(Arrays.asList("META-INF/MANIFEST.MF"), toc.find("META-INF/", ".MF"));
+        Assert.assertEquals(Collections.emptyList(), toc.find("org/", ".class"));
+    }
+
+    @Test
+    public void testIndexFile() throws IOException {
+        File jar = File.createTempFile("toc", ".jar");
+        File sha1 = new File(jar.getPath() + ".sha1");
+        File index = new File(jar.getPath() + JarTOC.SUFFIX);
+        try {
+            writeJar(jar, ENTRIES);
+            // not in a repository
+            JarTOC.forJar(jar);
+            Assert.assertFalse(index.exists());
+
+            writeSha1(sha1, "0123456789012345678901234567890123456789");
+            check(JarTOC.forJar(jar));
+            Assert.assertTrue(index.isFile());
+            long written = index.lastModified();
+            // read back from the index
+            check(JarTOC.forJar(jar));
+            Assert.assertEquals(written, index.lastModified());
+
+            // a different jar invalidates the index
+            writeJar(jar, "com/foo/Other.class");
+            jar.setLastModified(jar.lastModified() + 2000);
+            Assert.assertEquals(Arrays.asList("com/foo/Other.class"), JarTOC.forJar(jar).getEntries());
+            Assert.assertEquals(Arrays.asList("com/foo/Other.class"), JarTOC.forJar(jar).getEntries());
+
+            // so does a different checksum, with the same size and date
+            writeJar(jar, "com/foo/AAA.class");
+            JarTOC.forJar(jar);
+            long size = jar.length();
+            long lastModified = jar.lastModified();
+            writeJar(jar, "com/foo/BBB.class");
+            Assert.assertTrue(jar.setLastModified(lastModified));
+            Assert.assertEquals(size, jar.length());
+            // only the checksum tells them apart
+            Assert.assertEquals(Arrays.asList("com/foo/AAA.class"), JarTOC.forJar(jar).getEntries());
+            writeSha1(sha1, "9876543210987654321098765432109876543210");
+            Assert.assertEquals(Arrays.asList("com/foo/BBB.class"), JarTOC.forJar(jar).getEntries());
+
+            // a broken index is ignored
+            try (OutputStream out = new FileOutputStream(index)) {
+                out.write(new byte[]{ 1, 2, 3 });
+            }
+            Assert.assertEquals(Arrays.asList("com/foo/BBB.class"), JarTOC.forJar(jar).getEntries());
+        } finally {
+            jar.delete();
+            sha1.delete();
+            index.delete();
+        }
+    }
+
+    private static void writeJar(File file, String... entries) throws IOException {
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+            for (String entry : entries) {
+                out.putNextEntry(new ZipEntry(entry));
+            }
+        }
+    }
+
+    private static void writeSha1(File file, String sha1) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(sha1.getBytes("ASCII"));
+        }
+    }
+}
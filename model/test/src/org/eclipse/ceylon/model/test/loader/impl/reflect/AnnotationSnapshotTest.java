@@ -0,0 +1,231 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.model.test.loader.impl.reflect;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.eclipse.ceylon.model.loader.impl.reflect.mirror.AnnotationSnapshot;
+import org.eclipse.ceylon.model.loader.impl.reflect.mirror.AnnotationSnapshotWriter;
+import org.eclipse.ceylon.model.loader.impl.reflect.mirror.ReflectionUtils;
+import org.eclipse.ceylon.model.loader.impl.reflect.mirror.SnapshotAnnotation;
+import org.eclipse.ceylon.model.loader.mirror.AnnotationMirror;
+import org.eclipse.ceylon.model.loader.mirror.TypeMirror;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AnnotationSnapshotTest {
+
+    @Retention(RetentionPolicy.RUNTIME)
+    public static @interface SnapshotNested {
+        String value() default "nested";
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    public static @interface SnapshotValues {
+        boolean bool() default true;
+        char c() default 'c';
+        byte b() default -1;
+        short s() default -2;
+        int i() default Integer.MIN_VALUE;
+        long l() default Long.MAX_VALUE;
+        float f() default 5.5f;
+        double d() default -6.5;
+        String string() default "default";
+        String[] array() default {};
+        int[] ints() default {1, 2};
+        ElementType element() default ElementType.FIELD;
+        Class<?> type() default void.class;
+        Class<?>[] types() default {};
+        SnapshotNested nested() default @SnapshotNested;
+        SnapshotNested[] nesteds() default {};
+    }
+
+    @SnapshotValues(
+            bool = false,
+            c = '\u00e9',
+            b = 1,
+            s = 2,
+            i = 3,
+            l = -4,
+            f = Float.NaN,
+            d = 6.0,
+            string = "str\u0000\ud83d\ude00",
+            array = {"a", "b"},
+            element = ElementType.TYPE,
+            type = String[].class,
+            types = {int.class, List.class},
+            nested = @SnapshotNested("annot"),
+            nesteds = {@SnapshotNested, @SnapshotNested("second")})
+    @Deprecated
+    public static class SnapshotFixture {
+        @SnapshotValues
+        int field;
+
+        int plain;
+
+        @SnapshotValues(i = 1)
+        SnapshotFixture(@SnapshotNested String a, int b) {}
+
+        SnapshotFixture() {}
+
+        @SnapshotValues(type = Object.class)
+        long method(int a, @SnapshotNested("p") @SnapshotValues String[] b) { return 0; }
+
+        long method(long a) { return 0; }
+
+        void unannotated(int a) {}
+
+        class Inner {
+            Inner(@SnapshotNested String a) {}
+        }
+    }
+
+    private static final Class<?>[] CLASSES = {
+        AnnotationSnapshotTest.class, SnapshotNested.class, SnapshotValues.class,
+        SnapshotFixture.class, SnapshotFixture.Inner.class
+    };
+
+    @Test
+    public void snapshotMatchesReflection() throws Exception {
+        File classes = File.createTempFile("snapshot-classes", ".jar");
+        File jar = File.createTempFile("snapshot", ".jar");
+        try {
+            writeJar(classes, null);
+            AnnotationSnapshotWriter writer = new AnnotationSnapshotWriter();
+            writer.addArchive(classes);
+            writeJar(jar, writer);
+
+            try (URLClassLoader loader = new URLClassLoader(new URL[]{ jar.toURI().toURL() }, null)) {
+                Class<?> fixture = loader.loadClass(SnapshotFixture.class.getName());
+                // only looked for in the jars the launcher points to
+                Assert.assertNull(AnnotationSnapshot.forClass(fixture));
+                AnnotationSnapshot.enable(fixture);
+                Assert.assertNotNull(AnnotationSnapshot.forClass(fixture));
+                // not in the jar
+                Assert.assertNull(AnnotationSnapshot.forClass(getClass()));
+
+                AnnotationMirror values = ReflectionUtils.getAnnotations(fixture).get(SnapshotValues.class.getName());
+                Assert.assertTrue(values instanceof SnapshotAnnotation);
+                Assert.assertEquals(Boolean.FALSE, values.getValue("bool"));
+                Assert.assertEquals('\u00e9', values.getValue("c"));
+                Assert.assertEquals((byte) 1, values.getValue("b"));
+                Assert.assertEquals((long) -4, values.getValue("l"));
+                Assert.assertEquals("str\u0000\ud83d\ude00", values.getValue("string"));
+                Assert.assertEquals(Arrays.asList("a", "b"), values.getValue("array"));
+                Assert.assertEquals(Arrays.asList(1, 2), values.getValue("ints"));
+                Assert.assertEquals("TYPE", values.getValue("element"));
+                Assert.assertEquals("[Ljava.lang.String;", ((TypeMirror) values.getValue("type")).getQualifiedName());
+                Assert.assertEquals("annot", ((AnnotationMirror) values.getValue("nested")).getValue());
+
+                List<AnnotatedElement> elements = new ArrayList<AnnotatedElement>();
+                for (Class<?> klass : new Class<?>[]{ fixture, loader.loadClass(SnapshotFixture.Inner.class.getName()) }) {
+                    elements.add(klass);
+                    elements.addAll(Arrays.asList(klass.getDeclaredFields()));
+                    elements.addAll(Arrays.asList(klass.getDeclaredMethods()));
+                    elements.addAll(Arrays.asList(klass.getDeclaredConstructors()));
+                }
+                for (AnnotatedElement element : elements) {
+                    Map<String, AnnotationMirror> snapshot = AnnotationSnapshot.getAnnotations(element);
+                    Assert.assertNotNull(element.toString(), snapshot);
+                    assertSame(element.toString(), snapshot,
+                            ReflectionUtils.getAnnotations(element.getDeclaredAnnotations()), loader);
+                    if (element instanceof Method || element instanceof Constructor) {
+                        java.lang.annotation.Annotation[][] parameters = element instanceof Method
+                                ? ((Method) element).getParameterAnnotations()
+                                : ((Constructor<?>) element).getParameterAnnotations();
+                        List<Map<String, AnnotationMirror>> snapshotParameters =
+                                AnnotationSnapshot.getParameterAnnotations((Member) element);
+                        Assert.assertEquals(element.toString(), parameters.length, snapshotParameters.size());
+                        for (int i = 0; i < parameters.length; i++) {
+                            assertSame(element + " #" + i, snapshotParameters.get(i),
+                                    ReflectionUtils.getAnnotations(parameters[i]), loader);
+                        }
+                    }
+                }
+            }
+        } finally {
+            classes.delete();
+            jar.delete();
+        }
+    }
+
+    private void writeJar(File file, AnnotationSnapshotWriter writer) throws IOException {
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+            for (Class<?> klass : CLASSES) {
+                String name = klass.getName().replace('.', '/') + ".class";
+                out.putNextEntry(new ZipEntry(name));
+                try (InputStream is = getClass().getClassLoader().getResourceAsStream(name)) {
+                    byte[] buffer = new byte[4096];
+                    int read;
+                    while ((read = is.read(buffer)) != -1)
+                        out.write(buffer, 0, read);
+                }
+            }
+            if (writer != null) {
+                out.putNextEntry(new ZipEntry(AnnotationSnapshot.ENTRY));
+                writer.write(out);
+            }
+        }
+    }
+
+    private static void assertSame(String where, Map<String, AnnotationMirror> snapshot,
+            Map<String, AnnotationMirror> reflection, ClassLoader loader) throws Exception {
+        Assert.assertEquals(where, reflection.keySet(), snapshot.keySet());
+        for (String type : reflection.keySet()) {
+            Class<?> annotationType = Class.forName(type, false, loader);
+            Assert.assertEquals(where, normalize(reflection.get(type), annotationType),
+                    normalize(snapshot.get(type), annotationType));
+        }
+    }
+
+    private static Object normalize(AnnotationMirror annotation, Class<?> annotationType) {
+        Map<String, Object> values = new TreeMap<String, Object>();
+        for (Method method : annotationType.getDeclaredMethods()) {
+            Class<?> type = method.getReturnType();
+            values.put(method.getName(), normalize(annotation.getValue(method.getName()),
+                    type.isArray() ? type.getComponentType() : type));
+        }
+        return values;
+    }
+
+    private static Object normalize(Object value, Class<?> type) {
+        if (value instanceof List) {
+            List<Object> values = new ArrayList<Object>();
+            for (Object val : (List<?>) value)
+                values.add(normalize(val, type));
+            return values;
+        }
+        if (value instanceof AnnotationMirror)
+            return normalize((AnnotationMirror) value, type);
+        if (value instanceof TypeMirror)
+            return ((TypeMirror) value).getQualifiedName();
+        // tell 1 from 1L
+        return value == null ? null : value.getClass().getName() + ":" + value;
+    }
+}
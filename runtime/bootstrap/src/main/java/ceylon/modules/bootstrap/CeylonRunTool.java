@@ -35,7 +35,9 @@ import org.eclipse.ceylon.common.tool.OptionArgument;
 import org.eclipse.ceylon.common.tool.RemainingSections;
 import org.eclipse.ceylon.common.tool.Rest;
 import org.eclipse.ceylon.common.tool.Summary;
+import org.eclipse.ceylon.common.tool.ToolUsageError;
 import org.eclipse.ceylon.common.tools.CeylonTool;
+import org.eclipse.ceylon.common.tools.ClassDataSharing;
 import org.eclipse.ceylon.common.tools.RepoUsingTool;
 import org.eclipse.ceylon.compiler.java.runtime.tools.Backend;
 import org.eclipse.ceylon.compiler.java.runtime.tools.CeylonToolProvider;
@@ -75,6 +77,7 @@ import ceylon.modules.bootstrap.loader.InitialModuleLoader;
 )
 public class CeylonRunTool extends RepoUsingTool {
     private static final String CEYLON_RUNTIME = "ceylon.runtime";
+    private static final String CEYLON_BOOTSTRAP = "org.eclipse.ceylon.launcher.Bootstrap";
     
     private static volatile Module runtimeModule;
 
@@ -88,6 +91,9 @@ public class CeylonRunTool extends RepoUsingTool {
     private boolean autoExportMavenDependencies = DefaultToolOptions.getDefaultAutoExportMavenDependencies();
     private boolean upgradeDist = DefaultToolOptions.getLinkWithCurrentDistribution();
     private Map<String,String> extraModules = new HashMap<String,String>();
+    private boolean cdsArchive;
+    /** The arguments this tool was invoked with, for a training run */
+    private List<String> toolArguments;
 
     public CeylonRunTool() {
         super(CeylonMessages.RESOURCE_BUNDLE);
@@ -172,6 +178,17 @@ public class CeylonRunTool extends RepoUsingTool {
         this.upgradeDist = !downgradeDist;
     }
     
+    @Option(longName="cds-archive")
+    @Description("Instead of running the module once, creates the class data sharing archive " +
+            "of the `ceylon` command from a training run of the module. Later `ceylon` commands " +
+            "started with the same Java installation (given by `JAVA_HOME`) map the classes this " +
+            "run loaded from the archive instead of loading them again, which makes them start faster. " +
+            "Programs which do not exit on their own are stopped after 60 seconds. " +
+            "Requires Java 10 or later.")
+    public void setCdsArchive(boolean cdsArchive) {
+        this.cdsArchive = cdsArchive;
+    }
+
     public void addExtraModule(String module, String version) {
         this.extraModules.put(module, version);
     }
@@ -189,6 +206,9 @@ public class CeylonRunTool extends RepoUsingTool {
     @Override
     public void initialize(CeylonTool mainTool) throws Exception {
         super.initialize(mainTool);
+        if (mainTool != null) {
+            toolArguments = mainTool.getToolArguments();
+        }
         
         if (assembly != null) {
             // The --compile flag makes no sense in combination with --assembly
@@ -277,6 +297,11 @@ public class CeylonRunTool extends RepoUsingTool {
             moduleNameOptVersion = ModuleUtil.makeModuleName(module, version);
         }
         
+        if (cdsArchive) {
+            createArchive();
+            return;
+        }
+
         if (flatClasspath) {
             startInFlatClasspath(module, version);
             return;
@@ -380,6 +405,40 @@ public class CeylonRunTool extends RepoUsingTool {
         }
     }
 
+    private void createArchive() throws IOException {
+        if (!ClassDataSharing.isSupported()) {
+            throw new ToolUsageError(CeylonMessages.msg("cds.unsupported"));
+        }
+        if (toolArguments == null) {
+            throw new ToolUsageError(CeylonMessages.msg("cds.no.launcher"));
+        }
+        // the same command line, as run by the ceylon command
+        List<String> trainingArgs = new ArrayList<String>();
+        trainingArgs.add("run");
+        for (String arg : toolArguments) {
+            if (!arg.equals("--cds-archive") && !arg.startsWith("--cds-archive=")) {
+                trainingArgs.add(arg);
+            }
+        }
+        String bootstrap = System.getProperty("java.class.path");
+        File archive = ClassDataSharing.getLauncherArchive();
+        StringBuilder output = new StringBuilder();
+        try {
+            ClassDataSharing.createArchive(archive, ClassDataSharing.getJvmOptions(), bootstrap, CEYLON_BOOTSTRAP,
+                    trainingArgs, output);
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        } finally {
+            append(output);
+        }
+        ClassDataSharing.writeLauncherFile(archive, bootstrap);
+        msg("cds.created", archive).newline();
+        if (System.getenv("JAVA_HOME") == null) {
+            msg("cds.no.java.home").newline();
+        }
+        flush();
+    }
+
     private static String prependModuleName(String module, String run) {
         if (run==null) return null;
         if (!org.eclipse.ceylon.model.typechecker.model.Module.DEFAULT_MODULE_NAME
@@ -9,12 +9,15 @@
  ********************************************************************************/
 package ceylon.modules.jboss.runtime;
 
+import java.io.File;
+
 import org.eclipse.ceylon.cmr.api.RepositoryManager;
 import org.eclipse.ceylon.cmr.api.RepositoryManagerBuilder;
 import org.eclipse.ceylon.cmr.ceylon.CeylonUtils;
 import org.eclipse.ceylon.cmr.impl.CMRJULLogger;
 import org.eclipse.ceylon.cmr.spi.ContentTransformer;
 import org.eclipse.ceylon.cmr.spi.MergeStrategy;
+import org.eclipse.ceylon.common.FileUtil;
 import org.eclipse.ceylon.common.log.Logger;
 import org.jboss.modules.Module;
 import org.jboss.modules.ModuleIdentifier;
@@ -34,6 +37,11 @@ import ceylon.modules.spi.runtime.ClassLoaderHolder;
  * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
  */
 public abstract class AbstractJBossRuntime extends AbstractRuntime {
+    /**
+     * Set to false to resolve the module graph from the repositories on every run
+     */
+    public static final String GRAPH_CACHE_PROPERTY = "ceylon.runtime.graph.cache";
+
     public ClassLoaderHolder createClassLoader(String name, String version, Configuration conf) throws Exception {
         if (RepositoryManager.DEFAULT_MODULE.equals(name)) {
             if (version != null) {
@@ -60,6 +68,10 @@ public abstract class AbstractJBossRuntime extends AbstractRuntime {
         try {
             ModuleLoader moduleLoader = createModuleLoader(conf);
             Module module = moduleLoader.loadModule(moduleIdentifier);
+            if (moduleLoader instanceof CeylonModuleLoader) {
+                // the module and its imports are all resolved now
+                ((CeylonModuleLoader) moduleLoader).storeGraph();
+            }
             return new ClassLoaderHolderImpl(module);
         } catch (ModuleNotFoundException e) {
             String spec = e.getMessage();
@@ -120,6 +132,20 @@ public abstract class AbstractJBossRuntime extends AbstractRuntime {
         return createRepository(conf, false);
     }
 
+    /**
+     * Get the cache of the artifacts resolved for the module to run.
+     *
+     * @param conf       the configuration
+     * @param repository the repository
+     * @return the graph cache or null if it is disabled
+     */
+    ModuleGraphCache createGraphCache(Configuration conf, RepositoryManager repository) {
+        if ("false".equals(System.getProperty(GRAPH_CACHE_PROPERTY)) || conf.module == null)
+            return null;
+        String key = ModuleGraphCache.key(conf.module, repository, conf.overrides, conf.autoExportMavenDependencies);
+        return new ModuleGraphCache(new File(FileUtil.getUserDir(), "graphs"), key, repository);
+    }
+
     /**
      * Get repository service.
      *
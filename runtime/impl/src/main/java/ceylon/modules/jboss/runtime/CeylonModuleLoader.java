@@ -157,19 +157,34 @@ public class CeylonModuleLoader extends ModuleLoader
     private Map<ModuleIdentifier, List<DependencySpec>> dependencies = new ConcurrentHashMap<>();
     private Graph<ModuleIdentifier, ModuleIdentifier, Boolean> graph = new Graph<>();
     private boolean exportMavenImports = false;
+    private ModuleGraphCache graphCache;
     // Stef: enable back when we upgrade jboss modules
 //    private Map<String,Object> classNamesToModules = new ConcurrentHashMap<>();
     
 
     public CeylonModuleLoader(RepositoryManager repository, boolean autoExportMavenDependencies) throws Exception {
+        this(repository, autoExportMavenDependencies, null);
+    }
+
+    CeylonModuleLoader(RepositoryManager repository, boolean autoExportMavenDependencies, ModuleGraphCache graphCache) throws Exception {
         if (repository == null)
             throw new IllegalArgumentException("Null repository adapter");
         this.repository = repository;
         this.exportMavenImports = autoExportMavenDependencies;
+        this.graphCache = graphCache;
         // initialise runtime modules
         init();
     }
 
+    /**
+     * Stores the artifacts resolved so far in the graph cache, if
+     * there is one.
+     */
+    void storeGraph() {
+        if (graphCache != null)
+            graphCache.store();
+    }
+
     protected void init() throws Exception {
         // The runtime model needs knowledge of these modules existing at runtime, since the language module
         // implementation contains types from these modules
@@ -258,11 +273,27 @@ public class CeylonModuleLoader extends ModuleLoader
         unloadModuleLocal(module);
     }
 
+    /**
+     * Finds the artifact of the given module, from the graph cache if
+     * there is one, else from the repositories. Only the artifacts are
+     * cached: the module specs built from them refer to this loader, to
+     * resource loaders holding open jars and to class file transformers,
+     * none of which outlive the run, and building them again from cached
+     * artifacts is cheap next to resolving those artifacts.
+     */
     protected ArtifactResult findArtifact(ModuleIdentifier mi) {
+        if (graphCache != null) {
+            ArtifactResult result = graphCache.get(mi);
+            if (result != null)
+                return result;
+        }
         String namespace = ModuleUtil.getNamespaceFromUri(mi.getName());
         String name = ModuleUtil.getModuleNameFromUri(mi.getName());
         final ArtifactContext context = new ArtifactContext(namespace, name, mi.getSlot(), ArtifactContext.CAR, ArtifactContext.JAR);
-        return repository.getArtifactResult(context);
+        ArtifactResult result = repository.getArtifactResult(context);
+        if (graphCache != null && result != null)
+            graphCache.put(mi, result);
+        return result;
     }
     
     protected ModuleIdentifier findOverride(ModuleIdentifier mi) {
@@ -0,0 +1,545 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package ceylon.modules.jboss.runtime;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.ceylon.cmr.api.ArtifactContext;
+import org.eclipse.ceylon.cmr.api.CmrRepository;
+import org.eclipse.ceylon.cmr.api.PathFilterParser;
+import org.eclipse.ceylon.cmr.api.RepositoryManager;
+import org.eclipse.ceylon.cmr.impl.AbstractArtifactResult;
+import org.eclipse.ceylon.cmr.impl.DefaultRepository;
+import org.eclipse.ceylon.common.ModuleUtil;
+import org.eclipse.ceylon.common.Versions;
+import org.eclipse.ceylon.model.cmr.ArtifactResult;
+import org.eclipse.ceylon.model.cmr.ArtifactResultType;
+import org.eclipse.ceylon.model.cmr.Exclusion;
+import org.eclipse.ceylon.model.cmr.ModuleScope;
+import org.eclipse.ceylon.model.cmr.PathFilter;
+import org.eclipse.ceylon.model.cmr.Repository;
+import org.eclipse.ceylon.model.cmr.RepositoryException;
+import org.jboss.modules.ModuleIdentifier;
+
+/**
+ * A cache, in a file, of the artifacts the module loader resolved
+ * for a run: their files, types, path filters and dependencies, by
+ * the module identifiers they were resolved for. The file is named
+ * after a hash of the module which was run and of the repository
+ * configuration, so a later run of the same module with the same
+ * configuration gets its artifacts from the cache instead of from
+ * the repositories.
+ *
+ * The whole cache is dropped as soon as one of its artifact files
+ * is missing or changed size or modification time, or as soon as
+ * one of its modules appears in a local repository which comes
+ * before the one it was resolved from, and would now shadow it.
+ * Each entry records which of those local repositories did not
+ * have the module when it was resolved. Modules which
+ * are not in the cache are resolved from the repositories, after
+ * which the cache is written again. The cache is just an
+ * optimization: a cache file which cannot be read or written is
+ * ignored.
+ */
+class ModuleGraphCache {
+
+    private static final int MAGIC = 0x43454752; // CEGR
+    private static final int VERSION = 2;
+    // how many cache files to keep in the directory
+    private static final int MAX_FILES = 64;
+
+    private final RepositoryManager manager;
+    private final List<CmrRepository> repositories;
+    private final File file;
+    private final String key;
+    // by module identifier, those read from the file
+    private final Map<String, Entry> entries = new HashMap<>();
+    // by module identifier, those resolved during this run
+    private final Map<String, ArtifactResult> results = new ConcurrentHashMap<>();
+    private volatile boolean dirty;
+
+    ModuleGraphCache(File directory, String key, RepositoryManager repository) {
+        this.manager = repository;
+        this.repositories = repository.getRepositories();
+        this.key = key;
+        this.file = new File(directory, hash(key));
+        read();
+    }
+
+    // the key is checked when reading, so a cheap hash will do
+    private static String hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return Long.toHexString(hash);
+    }
+
+    private static String id(String name, String version) {
+        return name + "/" + version;
+    }
+
+    private static String id(ModuleIdentifier mi) {
+        return id(mi.getName(), mi.getSlot());
+    }
+
+    /**
+     * Returns the artifact resolved for the given module by a
+     * previous run, or null if there is none.
+     */
+    ArtifactResult get(ModuleIdentifier mi) {
+        Entry entry = entries.get(id(mi));
+        if (entry != null)
+            results.put(id(mi), entry);
+        return entry;
+    }
+
+    /**
+     * Records the artifact resolved from the repositories for the
+     * given module.
+     */
+    void put(ModuleIdentifier mi, ArtifactResult result) {
+        results.put(id(mi), result);
+        dirty = true;
+    }
+
+    /**
+     * Writes the artifacts resolved during this run, if some were
+     * not in the cache already.
+     */
+    void store() {
+        if (!dirty)
+            return;
+        dirty = false;
+        File temp = null;
+        try {
+            file.getParentFile().mkdirs();
+            temp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeShort(VERSION);
+                out.writeUTF(key);
+                Map<String, ArtifactResult> results = new HashMap<>(this.results);
+                out.writeInt(results.size());
+                for (Map.Entry<String, ArtifactResult> result : results.entrySet()) {
+                    out.writeUTF(result.getKey());
+                    writeEntry(out, result.getValue());
+                }
+            } finally {
+                out.close();
+            }
+            if (temp.renameTo(file)) {
+                temp = null;
+            }
+        } catch (IOException | RuntimeException e) {
+            // the cache is just an optimization
+        } finally {
+            if (temp != null)
+                temp.delete();
+        }
+        prune();
+    }
+
+    // drop the oldest cache files, such as those of temporary repositories
+    private void prune() {
+        File[] files = file.getParentFile().listFiles();
+        if (files == null || files.length <= MAX_FILES)
+            return;
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(b.lastModified(), a.lastModified());
+            }
+        });
+        for (int i = MAX_FILES; i < files.length; i++) {
+            if (!files[i].equals(file))
+                files[i].delete();
+        }
+    }
+
+    private void read() {
+        if (!file.isFile())
+            return;
+        Map<String, Entry> entries = new HashMap<>();
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (in.readInt() != MAGIC
+                        || in.readShort() != VERSION
+                        || !key.equals(in.readUTF()))
+                    return;
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    String id = in.readUTF();
+                    Entry entry = readEntry(in);
+                    if (!entry.isUpToDate() || entry.isShadowed())
+                        return;
+                    entries.put(id, entry);
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException | RuntimeException e) {
+            // an entry we can't read is just ignored
+            return;
+        }
+        this.entries.putAll(entries);
+    }
+
+    private void writeEntry(DataOutputStream out, ArtifactResult result) throws IOException {
+        writeImport(out, result);
+        ArtifactResultType type = result.type();
+        writeString(out, type != null ? type.name() : null);
+        File artifact = result.artifact();
+        writeString(out, artifact != null ? artifact.getAbsolutePath() : null);
+        out.writeLong(artifact != null ? artifact.length() : 0);
+        out.writeLong(artifact != null ? artifact.lastModified() : 0);
+        PathFilter filter = result.filter();
+        String source = PathFilterParser.getSource(filter);
+        if (filter != null && source == null)
+            throw new IOException("Cannot store path filter of " + result);
+        writeString(out, source);
+        writeString(out, result.repositoryDisplayString());
+        writeString(out, result.groupId());
+        writeString(out, result.artifactId());
+        writeString(out, result.classifier());
+        List<ArtifactResult> dependencies = result.dependencies();
+        out.writeInt(dependencies.size());
+        for (ArtifactResult dependency : dependencies) {
+            writeImport(out, dependency);
+        }
+        int[] shadowing = result instanceof Entry
+                ? ((Entry) result).shadowing : shadowing(result);
+        out.writeInt(shadowing.length);
+        for (int index : shadowing) {
+            out.writeInt(index);
+        }
+    }
+
+    /**
+     * The indexes of the local repositories looked up before the
+     * one the given artifact was resolved from, which don't have
+     * that module.
+     */
+    private int[] shadowing(ArtifactResult result) {
+        int resolvedFrom = repositories.indexOf(result.repository());
+        if (resolvedFrom < 0)
+            resolvedFrom = repositories.size();
+        ArtifactContext context = context(result.namespace(), result.name(), result.version());
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < resolvedFrom; i++) {
+            CmrRepository repository = repositories.get(i);
+            if (isLocal(repository) && repository.findParent(context) == null)
+                indexes.add(i);
+        }
+        int[] shadowing = new int[indexes.size()];
+        for (int i = 0; i < shadowing.length; i++)
+            shadowing[i] = indexes.get(i);
+        return shadowing;
+    }
+
+    // only repositories whose lookups stay on this machine
+    private static boolean isLocal(CmrRepository repository) {
+        return repository instanceof DefaultRepository
+                && !repository.getRoot().isRemote();
+    }
+
+    private static ArtifactContext context(String namespace, String name, String version) {
+        return new ArtifactContext(namespace, name, version, ArtifactContext.CAR, ArtifactContext.JAR);
+    }
+
+    private Entry readEntry(DataInputStream in) throws IOException {
+        Entry entry = new Entry(in);
+        String type = readString(in);
+        entry.type = type != null ? ArtifactResultType.valueOf(type) : null;
+        String artifact = readString(in);
+        entry.file = artifact != null ? new File(artifact) : null;
+        entry.size = in.readLong();
+        entry.lastModified = in.readLong();
+        String filter = readString(in);
+        if (filter != null)
+            entry.setFilter(PathFilterParser.parse(filter));
+        entry.repositoryDisplayString = readString(in);
+        entry.groupId = readString(in);
+        entry.artifactId = readString(in);
+        entry.classifier = readString(in);
+        int count = in.readInt();
+        List<ArtifactResult> dependencies = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            dependencies.add(new Dependency(in));
+        entry.dependencies = Collections.unmodifiableList(dependencies);
+        count = in.readInt();
+        entry.shadowing = new int[count];
+        for (int i = 0; i < count; i++)
+            entry.shadowing[i] = in.readInt();
+        return entry;
+    }
+
+    // what a module import says of the module, without resolving it
+    private static void writeImport(DataOutputStream out, ArtifactResult result) throws IOException {
+        writeString(out, result.namespace());
+        out.writeUTF(result.name());
+        writeString(out, result.version());
+        out.writeBoolean(result.optional());
+        out.writeBoolean(result.exported());
+        ModuleScope scope = result.moduleScope();
+        writeString(out, scope != null ? scope.name() : null);
+        List<Exclusion> exclusions = result.getExclusions();
+        out.writeInt(exclusions != null ? exclusions.size() : -1);
+        if (exclusions != null) {
+            for (Exclusion exclusion : exclusions) {
+                writeString(out, exclusion.getGroupId());
+                writeString(out, exclusion.getArtifactId());
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        out.writeBoolean(string != null);
+        if (string != null)
+            out.writeUTF(string);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * An artifact as a module import describes it.
+     */
+    private abstract class Import extends AbstractArtifactResult {
+        private final boolean optional;
+        private final boolean exported;
+        private final ModuleScope scope;
+
+        Import(DataInputStream in) throws IOException {
+            super(null, readString(in), in.readUTF(), readString(in));
+            optional = in.readBoolean();
+            exported = in.readBoolean();
+            String scope = readString(in);
+            this.scope = scope != null ? ModuleScope.valueOf(scope) : null;
+            int count = in.readInt();
+            if (count >= 0) {
+                List<Exclusion> exclusions = new ArrayList<>(count);
+                for (int i = 0; i < count; i++)
+                    exclusions.add(new Exclusion(readString(in), readString(in)));
+                setExclusions(exclusions);
+            }
+        }
+
+        @Override
+        public boolean optional() {
+            return optional;
+        }
+
+        @Override
+        public boolean exported() {
+            return exported;
+        }
+
+        @Override
+        public ModuleScope moduleScope() {
+            return scope;
+        }
+    }
+
+    /**
+     * A resolved artifact.
+     */
+    private class Entry extends Import {
+        ArtifactResultType type;
+        File file;
+        long size;
+        long lastModified;
+        String repositoryDisplayString;
+        String groupId;
+        String artifactId;
+        String classifier;
+        List<ArtifactResult> dependencies;
+        int[] shadowing;
+        private ArtifactResult delegate;
+
+        Entry(DataInputStream in) throws IOException {
+            super(in);
+        }
+
+        boolean isUpToDate() {
+            return file == null
+                    || (file.length() == size && file.lastModified() == lastModified);
+        }
+
+        boolean isShadowed() {
+            ArtifactContext context = context(namespace(), name(), version());
+            for (int index : shadowing) {
+                if (index >= repositories.size()
+                        || repositories.get(index).findParent(context) != null)
+                    return true;
+            }
+            return false;
+        }
+
+        void setFilter(PathFilter filter) {
+            setFilterInternal(filter);
+        }
+
+        @Override
+        public ArtifactResultType type() {
+            return type;
+        }
+
+        @Override
+        protected File artifactInternal() {
+            return file;
+        }
+
+        @Override
+        public List<ArtifactResult> dependencies() throws RepositoryException {
+            return dependencies;
+        }
+
+        @Override
+        public String repositoryDisplayString() {
+            return repositoryDisplayString;
+        }
+
+        @Override
+        public synchronized Repository repository() {
+            // not kept, only needed by tools
+            if (delegate == null) {
+                delegate = manager.getArtifactResult(context(namespace(), name(), version()));
+            }
+            return delegate != null ? delegate.repository() : null;
+        }
+
+        @Override
+        public String groupId() {
+            return groupId;
+        }
+
+        @Override
+        public String artifactId() {
+            return artifactId;
+        }
+
+        @Override
+        public String classifier() {
+            return classifier;
+        }
+    }
+
+    /**
+     * A module import, resolved from the cache if it is there, or
+     * else from the repositories, when more than what the import
+     * says is asked of it.
+     */
+    private class Dependency extends Import {
+        private ArtifactResult delegate;
+
+        Dependency(DataInputStream in) throws IOException {
+            super(in);
+        }
+
+        private synchronized ArtifactResult getDelegate() {
+            if (delegate == null) {
+                String name = ModuleUtil.makeModuleName(namespace(), name(), null);
+                delegate = entries.get(id(name, version()));
+                if (delegate == null) {
+                    ArtifactContext context = context(namespace(), name(), version());
+                    context.setThrowErrorIfMissing(!optional());
+                    delegate = manager.getArtifactResult(context);
+                }
+            }
+            return delegate;
+        }
+
+        @Override
+        public ArtifactResultType type() {
+            return getDelegate().type();
+        }
+
+        @Override
+        protected File artifactInternal() {
+            return getDelegate().artifact();
+        }
+
+        @Override
+        public List<ArtifactResult> dependencies() throws RepositoryException {
+            return getDelegate().dependencies();
+        }
+
+        @Override
+        public PathFilter filter() {
+            return getDelegate().filter();
+        }
+
+        @Override
+        public String repositoryDisplayString() {
+            return getDelegate().repositoryDisplayString();
+        }
+
+        @Override
+        public Repository repository() {
+            return getDelegate().repository();
+        }
+
+        @Override
+        public String groupId() {
+            return getDelegate().groupId();
+        }
+
+        @Override
+        public String artifactId() {
+            return getDelegate().artifactId();
+        }
+
+        @Override
+        public String classifier() {
+            return getDelegate().classifier();
+        }
+    }
+
+    /**
+     * Returns the key of the cache of the given module run with
+     * the given repositories.
+     */
+    static String key(String module, RepositoryManager repository, String overrides,
+            boolean autoExportMavenDependencies) {
+        StringBuilder key = new StringBuilder();
+        key.append(Versions.CEYLON_VERSION).append('\n');
+        key.append(System.getProperty("java.version")).append('\n');
+        key.append(module).append('\n');
+        key.append(autoExportMavenDependencies).append('\n');
+        for (String repo : repository.getRepositoriesDisplayString()) {
+            key.append(repo).append('\n');
+        }
+        if (overrides != null) {
+            File file = new File(overrides);
+            key.append(file.getAbsolutePath()).append(' ').append(file.lastModified()).append('\n');
+        }
+        return key.toString();
+    }
+}
@@ -0,0 +1,131 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package ceylon.modules.jboss.runtime;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import org.eclipse.ceylon.cmr.api.ArtifactContext;
+import org.eclipse.ceylon.cmr.api.RepositoryManager;
+import org.eclipse.ceylon.cmr.ceylon.CeylonUtils;
+import org.eclipse.ceylon.common.FileUtil;
+import org.eclipse.ceylon.model.cmr.ArtifactResult;
+import org.jboss.modules.ModuleIdentifier;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that the resolved module graph is read back, and dropped
+ * when it no longer matches the repositories.
+ */
+public class ModuleGraphCacheTestCase {
+
+    private static final ModuleIdentifier MODULE = ModuleIdentifier.create("com.acme.graph", "1.0");
+
+    private File dir;
+    private File first;
+    private File second;
+    private File graphs;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("graph-cache").toFile();
+        first = new File(dir, "first");
+        second = new File(dir, "second");
+        graphs = new File(dir, "graphs");
+        first.mkdirs();
+        second.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        FileUtil.delete(dir);
+    }
+
+    private RepositoryManager manager() {
+        return CeylonUtils.repoManager()
+                .cwd(dir)
+                .noDefaultRepos(true)
+                .noCacheRepo(true)
+                .offline(true)
+                .userRepos(Arrays.asList(first.getPath(), second.getPath()))
+                .buildManager();
+    }
+
+    private ModuleGraphCache cache(RepositoryManager manager) {
+        String key = ModuleGraphCache.key(MODULE.getName(), manager, null, false);
+        return new ModuleGraphCache(graphs, key, manager);
+    }
+
+    private static File publish(File repository) throws IOException {
+        File folder = new File(repository, "com/acme/graph/1.0");
+        folder.mkdirs();
+        File jar = new File(folder, "com.acme.graph-1.0.jar");
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+            out.putNextEntry(new ZipEntry("com/acme/graph/Graph.txt"));
+            out.write("graph".getBytes("UTF-8"));
+            out.closeEntry();
+        }
+        return jar;
+    }
+
+    // resolves the module and writes the graph, as a first run would
+    private File resolveAndStore() {
+        RepositoryManager manager = manager();
+        ModuleGraphCache cache = cache(manager);
+        Assert.assertNull(cache.get(MODULE));
+        ArtifactResult result = manager.getArtifactResult(
+                new ArtifactContext(null, MODULE.getName(), MODULE.getSlot(), ArtifactContext.CAR, ArtifactContext.JAR));
+        Assert.assertNotNull(result);
+        cache.put(MODULE, result);
+        cache.store();
+        return result.artifact();
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        File jar = publish(second);
+        resolveAndStore();
+        ArtifactResult cached = cache(manager()).get(MODULE);
+        Assert.assertNotNull(cached);
+        Assert.assertEquals(MODULE.getName(), cached.name());
+        Assert.assertEquals(MODULE.getSlot(), cached.version());
+        Assert.assertEquals(jar.getCanonicalFile(), cached.artifact().getCanonicalFile());
+        Assert.assertTrue(cached.dependencies().isEmpty());
+    }
+
+    @Test
+    public void testArtifactChanged() throws IOException {
+        publish(second);
+        File jar = resolveAndStore();
+        Assert.assertTrue(jar.setLastModified(jar.lastModified() - 60000));
+        Assert.assertNull(cache(manager()).get(MODULE));
+    }
+
+    @Test
+    public void testArtifactShadowed() throws IOException {
+        publish(second);
+        resolveAndStore();
+        Assert.assertNotNull(cache(manager()).get(MODULE));
+        // the same module now comes first, and is what a run must use
+        File jar = publish(first);
+        Assert.assertNull(cache(manager()).get(MODULE));
+        // and the graph resolved from there is kept again
+        Assert.assertEquals(jar.getCanonicalFile(), resolveAndStore().getCanonicalFile());
+        Assert.assertNotNull(cache(manager()).get(MODULE));
+    }
+}
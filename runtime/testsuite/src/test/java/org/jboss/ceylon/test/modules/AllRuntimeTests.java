@@ -24,6 +24,8 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
+import ceylon.modules.jboss.runtime.ModuleGraphCacheTestCase;
+
 @RunWith(Suite.class)
 @SuiteClasses({
     SmokeTestCase.class,
@@ -37,6 +39,7 @@ import org.junit.runners.Suite.SuiteClasses;
     ServicesTestCase.class,
     LoggingDependencyTestCase.class,
     RunToolTestCase.class,
+    ModuleGraphCacheTestCase.class,
 })
 public class AllRuntimeTests {
 }
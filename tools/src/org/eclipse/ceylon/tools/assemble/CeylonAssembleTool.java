@@ -12,7 +12,6 @@ package org.eclipse.ceylon.tools.assemble;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
@@ -26,10 +25,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.jar.Attributes;
-import java.util.jar.JarOutputStream;
 import java.util.jar.Manifest;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 import org.eclipse.ceylon.cmr.api.ArtifactContext;
 import org.eclipse.ceylon.cmr.api.ModuleQuery;
@@ -52,6 +49,7 @@ import org.eclipse.ceylon.common.tool.Summary;
 import org.eclipse.ceylon.common.tool.ToolUsageError;
 import org.eclipse.ceylon.common.tools.CeylonTool;
 import org.eclipse.ceylon.model.cmr.ArtifactResult;
+import org.eclipse.ceylon.tools.moduleloading.ArchiveOutputStream;
 import org.eclipse.ceylon.tools.moduleloading.ModuleLoadingTool;
 
 /**
@@ -295,7 +293,8 @@ public class CeylonAssembleTool extends ModuleLoadingTool {
         added.add("META-INF/");
         added.add("META-INF/MANIFEST.MF");
 
-        try(ZipOutputStream zipFile = new JarOutputStream(new FileOutputStream(outputCas), manifest)){
+        // the artifacts are read and deflated in the background
+        try(final ArchiveOutputStream zipFile = new ArchiveOutputStream(outputCas, manifest)){
             if (ovrFile != null) {
                 // Copy the overrides.xml file to the output CAS
                 try (InputStream is = new FileInputStream(ovrFile)) {
@@ -371,7 +370,7 @@ public class CeylonAssembleTool extends ModuleLoadingTool {
                     return ModuleUtil.moduleToPath(name).getPath().replace(':', File.separatorChar);
                 }
 
-                private void addEntry(final ZipOutputStream zipFile, final File file, final String name) throws IOException {
+                private void addEntry(final ArchiveOutputStream zipFile, final File file, final String name) throws IOException {
                     if (file.isFile()) {
                         addFileEntry(zipFile, file, name);
                     } else if (file.isDirectory()) {
@@ -391,11 +390,8 @@ public class CeylonAssembleTool extends ModuleLoadingTool {
                     }
                 }
 
-                private void addFileEntry(ZipOutputStream zipFile, File file, String name) throws IOException {
-                    try (InputStream is = new FileInputStream(file)) {
-                        zipFile.putNextEntry(new ZipEntry(name));
-                        IOUtils.copyStream(is, zipFile, true, false);
-                    }
+                private void addFileEntry(ArchiveOutputStream zipFile, File file, String name) throws IOException {
+                    zipFile.addFile(name, file);
                 }
             });
             zipFile.flush();
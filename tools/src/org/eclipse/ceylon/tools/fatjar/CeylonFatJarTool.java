@@ -13,24 +13,18 @@ import static org.eclipse.ceylon.common.JVMModuleUtil.javaClassNameFromCeylon;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.jar.Attributes;
-import java.util.jar.JarOutputStream;
 import java.util.jar.Manifest;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 import org.eclipse.ceylon.cmr.api.ModuleQuery;
 import org.eclipse.ceylon.cmr.ceylon.loader.ModuleGraph;
-import org.eclipse.ceylon.cmr.impl.IOUtils;
 import org.eclipse.ceylon.common.FileUtil;
 import org.eclipse.ceylon.common.ModuleSpec;
 import org.eclipse.ceylon.common.Versions;
@@ -40,8 +34,10 @@ import org.eclipse.ceylon.common.tool.Option;
 import org.eclipse.ceylon.common.tool.OptionArgument;
 import org.eclipse.ceylon.common.tool.Summary;
 import org.eclipse.ceylon.common.tool.ToolUsageError;
+import org.eclipse.ceylon.common.tools.ClassDataSharing;
 import org.eclipse.ceylon.model.cmr.ArtifactResult;
 import org.eclipse.ceylon.model.loader.JvmBackendUtil;
+import org.eclipse.ceylon.tools.moduleloading.ArchiveOutputStream;
 import org.eclipse.ceylon.tools.moduleloading.ResourceRootTool;
 
 @Summary("Generate a Ceylon executable jar for a given module")
@@ -53,6 +49,7 @@ public class CeylonFatJarTool extends ResourceRootTool {
 
     private List<ModuleSpec> modules;
     private boolean force;
+    private boolean cds;
     private File out;
     private final List<String> excludedModules = new ArrayList<>();
     /** The (Ceylon) name of the functional to run, e.g. {@code foo.bar::baz} */
@@ -112,6 +109,16 @@ public class CeylonFatJarTool extends ResourceRootTool {
         this.force = force;
     }
 
+    @Option(longName="cds")
+    @Description("Also creates a class data sharing archive next to the fat jar (`{name}-{version}.jsa`), "
+            + "from a training run of the fat jar without arguments, with which `java` starts it faster "
+            + "when given the `-XX:SharedArchiveFile` option. Programs which do not exit on their own are "
+            + "stopped after 60 seconds. Requires Java 10 or later, and the archive only works with the "
+            + "Java installation which created it.")
+    public void setCds(boolean cds) {
+        this.cds = cds;
+    }
+
     @Override
     public void run() throws Exception {
         String firstModuleName = null, firstModuleVersion = null;
@@ -167,10 +174,9 @@ public class CeylonFatJarTool extends ResourceRootTool {
         
         addResources();
 
-        try(JarOutputStream zipFile 
-                = new JarOutputStream(
-                        new FileOutputStream(outputJar), 
-                        manifest)){
+        // the module jars are read, and their entries copied as they are, in the background
+        try(final ArchiveOutputStream zipFile 
+                = new ArchiveOutputStream(outputJar, manifest)){
             writeResources(zipFile);
             final List<ArtifactResult> staticMetamodelEntries = new ArrayList<>();
             loader.visitModules(new ModuleGraph.Visitor() {
@@ -178,7 +184,7 @@ public class CeylonFatJarTool extends ResourceRootTool {
                 @Override
                 public void visit(ModuleGraph.Module module) {
                     if(module.artifact != null){
-                        File file = module.artifact.artifact();
+                        final File file = module.artifact.artifact();
                         try{
                             if(file != null){
                                 if(isVerbose()){
@@ -187,32 +193,28 @@ public class CeylonFatJarTool extends ResourceRootTool {
                                 }
                                 staticMetamodelEntries.add(module.artifact);
 
-                                try(ZipFile src = new ZipFile(file)){
-                                    Enumeration<? extends ZipEntry> entries = src.entries();
-                                    while(entries.hasMoreElements()){
-                                        ZipEntry srcEntry = entries.nextElement();
-                                        if (srcEntry.getName().equals(runClassPath))
+                                zipFile.addArchive(file, new ArchiveOutputStream.EntryFilter() {
+                                    @Override
+                                    public boolean accept(String name, boolean directory) throws IOException {
+                                        if (name.equals(runClassPath))
                                             foundRun = true;
                                         // skip manifests
-                                        if(skipEntry(srcEntry.getName()))
-                                            continue;
-                                        if(!added.add(srcEntry.getName())){
+                                        if(skipEntry(name))
+                                            return false;
+                                        if(!added.add(name)){
                                             // multiple folders is fine
-                                            if(!srcEntry.isDirectory()){
+                                            if(!directory){
                                                 append("Warning: skipping duplicate entry ")
-                                                .append(srcEntry.getName())
+                                                .append(name)
                                                 .append(" from ")
                                                 .append(file)
                                                 .newline();
                                             }
-                                            continue;
+                                            return false;
                                         }
-                                        srcEntry.setCompressedSize(-1);
-                                        zipFile.putNextEntry(srcEntry);
-                                        if(!srcEntry.isDirectory())
-                                            IOUtils.copyStream(src.getInputStream(srcEntry), zipFile, true, false);
+                                        return true;
                                     }
-                                }
+                                });
                             }
                         }catch(IOException x){
                             // lame
@@ -221,8 +223,11 @@ public class CeylonFatJarTool extends ResourceRootTool {
                     }
                 }
             });
+            // writes the pending module entries first
             JvmBackendUtil.writeStaticMetamodel(zipFile, added, staticMetamodelEntries, jdkProvider,
                     Collections.<String>emptySet());
+            // lets the runtime metamodel skip parsing the annotations of our classes
+            JvmBackendUtil.writeAnnotationSnapshot(zipFile, staticMetamodelEntries);
             zipFile.flush();
         }
         flush();
@@ -230,6 +235,32 @@ public class CeylonFatJarTool extends ResourceRootTool {
         if (!foundRun) {
             append("Warning: missing run class ").append(className).newline();
         }
+        if (cds) {
+            createArchive(outputJar);
+        }
+    }
+
+    private void createArchive(File outputJar) throws Exception {
+        if (!ClassDataSharing.isSupported()) {
+            throw new ToolUsageError(CeylonFatJarMessages.msg("cds.unsupported"));
+        }
+        // the archive only works for the same class path, so run it as absolute
+        String jar = outputJar.getAbsolutePath();
+        String name = jar.endsWith(".jar") ? jar.substring(0, jar.length() - 4) : jar;
+        File archive = new File(name + ".jsa");
+        StringBuilder output = new StringBuilder();
+        ClassDataSharing.createArchive(archive, Collections.<String>emptyList(), jar, null,
+                Collections.<String>emptyList(), output);
+        if (isVerbose()) {
+            append(output);
+        }
+        StringBuilder command = new StringBuilder("java");
+        for (String option : ClassDataSharing.getOptions(archive)) {
+            command.append(' ').append(option);
+        }
+        command.append(" -jar ").append(jar);
+        append(CeylonFatJarMessages.msg("cds.created", archive, command)).newline();
+        flush();
     }
     
     boolean foundRun;
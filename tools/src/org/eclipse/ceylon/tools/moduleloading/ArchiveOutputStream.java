@@ -0,0 +1,718 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.tools.moduleloading;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import org.eclipse.ceylon.cmr.impl.IOUtils;
+
+/**
+ * A {@link JarOutputStream} which assembles an archive out of
+ * other archives and files on a pool of worker threads.
+ *
+ * The entries of the archives added with {@link #addArchive}
+ * are transferred as they are, still compressed and with their
+ * CRC, rather than being inflated and deflated again. The files
+ * added with {@link #addFile} and {@link #addEntry} are read and
+ * deflated by the workers. The workers run ahead of the archive
+ * being written, but entries are always written in the order
+ * they were added, and the {@link EntryFilter} of an archive is
+ * only asked about its entries on the calling thread, just
+ * before they would be written.
+ *
+ * Entries can still be written with {@link #putNextEntry}, as
+ * with any other {@link ZipOutputStream}, in which case all the
+ * entries added before it are written first. So are they by
+ * {@link #flush()}.
+ */
+public class ArchiveOutputStream extends JarOutputStream {
+
+    /**
+     * Decides which entries of an archive are copied.
+     */
+    public interface EntryFilter {
+        /**
+         * Called for every entry of the archive, in order,
+         * on the thread writing the archive.
+         *
+         * @return true if the entry should be copied
+         */
+        boolean accept(String name, boolean directory) throws IOException;
+    }
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int LOCSIG = 0x04034b50;
+    private static final int CENSIG = 0x02014b50;
+    private static final int ENDSIG = 0x06054b50;
+    private static final int ZIP64_ENDSIG = 0x06064b50;
+    private static final int ZIP64_LOCSIG = 0x07064b50;
+    private static final int LOCHDR = 30;
+    private static final int CENHDR = 46;
+    private static final int ENDHDR = 22;
+    private static final int ZIP64_ENDHDR = 56;
+    private static final int ZIP64_LOCHDR = 20;
+    private static final int ZIP64_EXTID = 0x0001;
+    private static final long ZIP64_MAGICVAL = 0xFFFFFFFFL;
+    private static final int ZIP64_MAGICCOUNT = 0xFFFF;
+    /** the entry names are UTF-8 */
+    private static final int FLAG_UTF8 = 0x800;
+    /** sizes and CRC follow the data, which we never do */
+    private static final int FLAG_DATA_DESCRIPTOR = 0x8;
+    /** the extra field {@link JarOutputStream} marks jars with */
+    private static final byte[] JAR_MAGIC = { (byte) 0xFE, (byte) 0xCA, 0, 0 };
+    private static final byte[] NO_EXTRA = {};
+
+    /** The description of an entry, as in the central directory */
+    private static final class Record {
+        String name;
+        int flags;
+        int method;
+        long time;
+        int dosTime;
+        long crc;
+        long compressedSize;
+        long size;
+        long offset;
+        byte[] extra = NO_EXTRA;
+    }
+
+    /** Something prepared by a worker, ready to be written */
+    private interface Part {
+        void write() throws IOException;
+        void release();
+    }
+
+    private final FileChannel channel;
+    private long position;
+    private final List<Record> records = new ArrayList<Record>();
+    private final Set<String> names = new HashSet<String>();
+    private final Calendar calendar = Calendar.getInstance();
+    private final ExecutorService pool;
+    private final int window;
+    private final LinkedList<Future<Part>> pending = new LinkedList<Future<Part>>();
+    private Record current;
+    private ByteArrayOutputStream currentData;
+    private int method = DEFLATED;
+    private int level = Deflater.DEFAULT_COMPRESSION;
+    private byte[] comment = NO_EXTRA;
+    private boolean closed;
+
+    /**
+     * Creates the given archive, using as many workers as there
+     * are processors.
+     *
+     * @param manifest the manifest to write first, or null
+     */
+    public ArchiveOutputStream(File file, Manifest manifest) throws IOException {
+        this(file, manifest, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates the given archive.
+     *
+     * @param manifest the manifest to write first, or null
+     * @param threads the number of workers
+     */
+    public ArchiveOutputStream(File file, Manifest manifest, int threads) throws IOException {
+        super(new FileOutputStream(file));
+        channel = ((FileOutputStream) out).getChannel();
+        pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ceylon-archive-writer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        // enough to keep the workers busy, and no more
+        window = threads * 2;
+        if(manifest != null){
+            putNextEntry(new ZipEntry(JarFile.MANIFEST_NAME));
+            manifest.write(this);
+            closeEntry();
+        }
+    }
+
+    /**
+     * Copies the entries of the given archive which the given
+     * filter accepts, without decompressing them.
+     */
+    public void addArchive(final File archive, final EntryFilter filter) throws IOException {
+        submit(new Callable<Part>() {
+            @Override
+            public Part call() throws IOException {
+                return readArchive(archive, filter);
+            }
+        });
+    }
+
+    /**
+     * Adds an entry with the contents of the given file.
+     */
+    public void addFile(String name, final File file) throws IOException {
+        final Record record = newRecord(name, System.currentTimeMillis(), method);
+        submit(new Callable<Part>() {
+            @Override
+            public Part call() throws IOException {
+                return deflate(record, new FileInputStream(file));
+            }
+        });
+    }
+
+    /**
+     * Adds an entry with the contents of the given URL.
+     */
+    public void addEntry(String name, final URL url) throws IOException {
+        final Record record = newRecord(name, System.currentTimeMillis(), method);
+        submit(new Callable<Part>() {
+            @Override
+            public Part call() throws IOException {
+                return deflate(record, url.openStream());
+            }
+        });
+    }
+
+    private void submit(Callable<Part> task) throws IOException {
+        ensureOpen();
+        closeEntry();
+        while(pending.size() >= window){
+            writeNextPart();
+        }
+        pending.add(pool.submit(task));
+    }
+
+    private void writeNextPart() throws IOException {
+        Part part;
+        try{
+            part = pending.removeFirst().get();
+        }catch(ExecutionException x){
+            Throwable cause = x.getCause();
+            if(cause instanceof IOException)
+                throw (IOException) cause;
+            throw new IOException(cause);
+        }catch(InterruptedException x){
+            Thread.currentThread().interrupt();
+            throw new IOException(x);
+        }
+        try{
+            part.write();
+        }finally{
+            part.release();
+        }
+    }
+
+    private void writePendingParts() throws IOException {
+        while(!pending.isEmpty()){
+            writeNextPart();
+        }
+    }
+
+    private Part deflate(final Record record, InputStream in) throws IOException {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        IOUtils.copyStream(in, data, true, false);
+        final byte[] bytes = compress(record, data.toByteArray());
+        return new Part() {
+            @Override
+            public void write() throws IOException {
+                writeEntry(record, ByteBuffer.wrap(bytes));
+            }
+            @Override
+            public void release() {}
+        };
+    }
+
+    /**
+     * Fills in the CRC and sizes of the given entry, and returns
+     * its data as it should be written.
+     */
+    private byte[] compress(Record record, byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        record.crc = crc.getValue();
+        record.size = data.length;
+        if(record.method == STORED){
+            record.compressedSize = data.length;
+            return data;
+        }
+        Deflater deflater = new Deflater(level, true);
+        try{
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length / 2 + 64);
+            byte[] buffer = new byte[8192];
+            while(!deflater.finished()){
+                int count = deflater.deflate(buffer);
+                compressed.write(buffer, 0, count);
+            }
+            record.compressedSize = compressed.size();
+            return compressed.toByteArray();
+        }finally{
+            deflater.end();
+        }
+    }
+
+    private Record newRecord(String name, long time, int method) {
+        Record record = new Record();
+        record.name = name;
+        record.flags = FLAG_UTF8;
+        record.method = name.endsWith("/") ? STORED : method;
+        record.time = time;
+        return record;
+    }
+
+    private Part readArchive(File archive, final EntryFilter filter) throws IOException {
+        final FileChannel in = FileChannel.open(archive.toPath(), StandardOpenOption.READ);
+        try{
+            final List<Record> entries = readCentralDirectory(in, archive);
+            return new Part() {
+                @Override
+                public void write() throws IOException {
+                    for(Record entry : entries){
+                        if(filter.accept(entry.name, entry.name.endsWith("/"))){
+                            Record record = new Record();
+                            record.name = entry.name;
+                            record.flags = entry.flags & ~FLAG_DATA_DESCRIPTOR | FLAG_UTF8;
+                            record.method = entry.method;
+                            record.dosTime = entry.dosTime;
+                            record.crc = entry.crc;
+                            record.compressedSize = entry.compressedSize;
+                            record.size = entry.size;
+                            writeHeader(record);
+                            // the offset of the data, once read from the local header
+                            long from = entry.offset;
+                            long remaining = entry.compressedSize;
+                            while(remaining > 0){
+                                long count = in.transferTo(from, remaining, channel);
+                                if(count <= 0)
+                                    throw new ZipException("truncated entry " + entry.name);
+                                from += count;
+                                remaining -= count;
+                            }
+                            position += entry.compressedSize;
+                        }
+                    }
+                }
+                @Override
+                public void release() {
+                    IOUtils.safeClose(in);
+                }
+            };
+        }catch(IOException|RuntimeException x){
+            IOUtils.safeClose(in);
+            throw x;
+        }
+    }
+
+    /**
+     * Reads the central directory of the given archive, setting
+     * the offset of every entry to the offset of its data.
+     */
+    private static List<Record> readCentralDirectory(FileChannel in, File archive) throws IOException {
+        long length = in.size();
+        int tail = (int) Math.min(length, ENDHDR + ZIP64_MAGICCOUNT);
+        ByteBuffer buffer = read(in, length - tail, tail);
+        int end = -1;
+        for(int i = tail - ENDHDR; i >= 0; i--){
+            if(buffer.getInt(i) == ENDSIG
+                    && i + ENDHDR + getShort(buffer, i + 20) <= tail){
+                end = i;
+                break;
+            }
+        }
+        if(end < 0)
+            throw new ZipException("not a zip file: " + archive);
+        long endPosition = length - tail + end;
+        long count = getShort(buffer, end + 10);
+        long size = getInt(buffer, end + 12);
+        long offset = getInt(buffer, end + 16);
+        if(count == ZIP64_MAGICCOUNT || size == ZIP64_MAGICVAL || offset == ZIP64_MAGICVAL){
+            if(end >= ZIP64_LOCHDR && buffer.getInt(end - ZIP64_LOCHDR) == ZIP64_LOCSIG){
+                long zip64End = buffer.getLong(end - ZIP64_LOCHDR + 8);
+                ByteBuffer zip64 = read(in, zip64End, ZIP64_ENDHDR);
+                if(zip64.getInt(0) != ZIP64_ENDSIG)
+                    throw new ZipException("invalid zip64 end header in " + archive);
+                count = zip64.getLong(32);
+                size = zip64.getLong(40);
+                offset = zip64.getLong(48);
+                endPosition = zip64End;
+            }
+        }
+        // whatever is prepended to the archive, such as a launcher
+        long base = endPosition - size - offset;
+        if(base < 0 || size > Integer.MAX_VALUE)
+            throw new ZipException("invalid central directory in " + archive);
+        ByteBuffer directory = read(in, base + offset, (int) size);
+        List<Record> records = new ArrayList<Record>((int) Math.min(count, 0x10000));
+        ByteBuffer local = ByteBuffer.allocate(LOCHDR).order(ByteOrder.LITTLE_ENDIAN);
+        int pos = 0;
+        while(pos + CENHDR <= size){
+            if(directory.getInt(pos) != CENSIG)
+                throw new ZipException("invalid central directory entry in " + archive);
+            Record record = new Record();
+            record.flags = getShort(directory, pos + 8);
+            record.method = getShort(directory, pos + 10);
+            record.dosTime = directory.getInt(pos + 12);
+            record.crc = getInt(directory, pos + 16);
+            record.compressedSize = getInt(directory, pos + 20);
+            record.size = getInt(directory, pos + 24);
+            int nameLength = getShort(directory, pos + 28);
+            int extraLength = getShort(directory, pos + 30);
+            int commentLength = getShort(directory, pos + 32);
+            record.offset = getInt(directory, pos + 42);
+            byte[] name = new byte[nameLength];
+            directory.position(pos + CENHDR);
+            directory.get(name);
+            record.name = new String(name, UTF8);
+            readZip64Extra(record, directory, pos + CENHDR + nameLength, extraLength);
+            pos += CENHDR + nameLength + extraLength + commentLength;
+
+            local.clear();
+            long header = base + record.offset;
+            while(local.hasRemaining()){
+                if(in.read(local, header + local.position()) < 0)
+                    throw new ZipException("truncated entry " + record.name + " in " + archive);
+            }
+            if(local.getInt(0) != LOCSIG)
+                throw new ZipException("invalid entry " + record.name + " in " + archive);
+            record.offset = header + LOCHDR + getShort(local, 26) + getShort(local, 28);
+            records.add(record);
+        }
+        return records;
+    }
+
+    private static void readZip64Extra(Record record, ByteBuffer extra, int pos, int length) {
+        int end = pos + length;
+        while(pos + 4 <= end){
+            int id = getShort(extra, pos);
+            int size = getShort(extra, pos + 2);
+            pos += 4;
+            if(id == ZIP64_EXTID){
+                int field = pos;
+                if(record.size == ZIP64_MAGICVAL && field + 8 <= pos + size){
+                    record.size = extra.getLong(field);
+                    field += 8;
+                }
+                if(record.compressedSize == ZIP64_MAGICVAL && field + 8 <= pos + size){
+                    record.compressedSize = extra.getLong(field);
+                    field += 8;
+                }
+                if(record.offset == ZIP64_MAGICVAL && field + 8 <= pos + size){
+                    record.offset = extra.getLong(field);
+                }
+                return;
+            }
+            pos += size;
+        }
+    }
+
+    private static ByteBuffer read(FileChannel in, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while(buffer.hasRemaining()){
+            if(in.read(buffer, position + buffer.position()) < 0)
+                throw new ZipException("unexpected end of zip file");
+        }
+        return buffer;
+    }
+
+    private static int getShort(ByteBuffer buffer, int index) {
+        return buffer.getShort(index) & 0xFFFF;
+    }
+
+    private static long getInt(ByteBuffer buffer, int index) {
+        return buffer.getInt(index) & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public void putNextEntry(ZipEntry entry) throws IOException {
+        ensureOpen();
+        closeEntry();
+        writePendingParts();
+        long time = entry.getTime();
+        current = newRecord(entry.getName(),
+                time == -1 ? System.currentTimeMillis() : time,
+                entry.getMethod() == -1 ? method : entry.getMethod());
+        currentData = new ByteArrayOutputStream();
+    }
+
+    @Override
+    public void closeEntry() throws IOException {
+        ensureOpen();
+        if(current != null){
+            Record record = current;
+            byte[] data = currentData.toByteArray();
+            current = null;
+            currentData = null;
+            writeEntry(record, ByteBuffer.wrap(compress(record, data)));
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{ (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        if(current == null)
+            throw new ZipException("no current ZIP entry");
+        currentData.write(b, off, len);
+    }
+
+    @Override
+    public void setMethod(int method) {
+        if(method != DEFLATED && method != STORED)
+            throw new IllegalArgumentException("invalid compression method");
+        this.method = method;
+    }
+
+    @Override
+    public void setLevel(int level) {
+        if((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION)
+            throw new IllegalArgumentException("invalid compression level");
+        this.level = level;
+    }
+
+    @Override
+    public void setComment(String comment) {
+        this.comment = comment == null ? NO_EXTRA : comment.getBytes(UTF8);
+    }
+
+    /**
+     * Writes every entry added so far.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        writePendingParts();
+    }
+
+    @Override
+    public void finish() throws IOException {
+        ensureOpen();
+        closeEntry();
+        writePendingParts();
+        writeCentralDirectory();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(closed)
+            return;
+        try{
+            finish();
+        }finally{
+            closed = true;
+            for(Future<Part> part : pending){
+                try{
+                    part.get().release();
+                }catch(ExecutionException x){
+                    // nothing to release
+                }catch(InterruptedException x){
+                    Thread.currentThread().interrupt();
+                }
+            }
+            pending.clear();
+            pool.shutdownNow();
+            def.end();
+            channel.close();
+            out.close();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if(closed)
+            throw new IOException("Stream closed");
+    }
+
+    private void writeEntry(Record record, ByteBuffer data) throws IOException {
+        writeHeader(record);
+        while(data.hasRemaining()){
+            channel.write(data);
+        }
+        position += record.compressedSize;
+    }
+
+    /**
+     * Writes the local header of the given entry, which becomes
+     * the next one of the archive.
+     */
+    private void writeHeader(Record record) throws IOException {
+        if(!names.add(record.name))
+            throw new ZipException("duplicate entry: " + record.name);
+        if(record.dosTime == 0)
+            record.dosTime = dosTime(record.time);
+        record.offset = position;
+        if(records.isEmpty())
+            record.extra = JAR_MAGIC;
+        records.add(record);
+        byte[] name = record.name.getBytes(UTF8);
+        boolean zip64 = record.size >= ZIP64_MAGICVAL
+                || record.compressedSize >= ZIP64_MAGICVAL;
+        int extraLength = record.extra.length + (zip64 ? 20 : 0);
+        ByteBuffer header = ByteBuffer.allocate(LOCHDR + name.length + extraLength)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(LOCSIG);
+        header.putShort((short) (zip64 ? 45 : 20));
+        header.putShort((short) record.flags);
+        header.putShort((short) record.method);
+        header.putInt(record.dosTime);
+        header.putInt((int) record.crc);
+        header.putInt((int) (zip64 ? ZIP64_MAGICVAL : record.compressedSize));
+        header.putInt((int) (zip64 ? ZIP64_MAGICVAL : record.size));
+        header.putShort((short) name.length);
+        header.putShort((short) extraLength);
+        header.put(name);
+        header.put(record.extra);
+        if(zip64){
+            header.putShort((short) ZIP64_EXTID);
+            header.putShort((short) 16);
+            header.putLong(record.size);
+            header.putLong(record.compressedSize);
+        }
+        header.flip();
+        while(header.hasRemaining()){
+            channel.write(header);
+        }
+        position += header.limit();
+    }
+
+    private void writeCentralDirectory() throws IOException {
+        long start = position;
+        ByteArrayOutputStream directory = new ByteArrayOutputStream(records.size() * 80);
+        ByteBuffer header = ByteBuffer.allocate(CENHDR).order(ByteOrder.LITTLE_ENDIAN);
+        for(Record record : records){
+            byte[] name = record.name.getBytes(UTF8);
+            boolean size64 = record.size >= ZIP64_MAGICVAL;
+            boolean compressedSize64 = record.compressedSize >= ZIP64_MAGICVAL;
+            boolean offset64 = record.offset >= ZIP64_MAGICVAL;
+            int zip64Length = (size64 ? 8 : 0) + (compressedSize64 ? 8 : 0) + (offset64 ? 8 : 0);
+            boolean zip64 = zip64Length > 0;
+            header.clear();
+            header.putInt(CENSIG);
+            header.putShort((short) (zip64 ? 45 : 20));
+            header.putShort((short) (zip64 ? 45 : 20));
+            header.putShort((short) record.flags);
+            header.putShort((short) record.method);
+            header.putInt(record.dosTime);
+            header.putInt((int) record.crc);
+            header.putInt((int) (compressedSize64 ? ZIP64_MAGICVAL : record.compressedSize));
+            header.putInt((int) (size64 ? ZIP64_MAGICVAL : record.size));
+            header.putShort((short) name.length);
+            header.putShort((short) (record.extra.length + (zip64 ? 4 + zip64Length : 0)));
+            // comment, disk number, internal and external attributes
+            header.putShort((short) 0);
+            header.putShort((short) 0);
+            header.putShort((short) 0);
+            header.putInt(0);
+            header.putInt((int) (offset64 ? ZIP64_MAGICVAL : record.offset));
+            directory.write(header.array(), 0, CENHDR);
+            directory.write(name);
+            directory.write(record.extra);
+            if(zip64){
+                ByteBuffer extra = ByteBuffer.allocate(4 + zip64Length).order(ByteOrder.LITTLE_ENDIAN);
+                extra.putShort((short) ZIP64_EXTID);
+                extra.putShort((short) zip64Length);
+                if(size64)
+                    extra.putLong(record.size);
+                if(compressedSize64)
+                    extra.putLong(record.compressedSize);
+                if(offset64)
+                    extra.putLong(record.offset);
+                directory.write(extra.array());
+            }
+        }
+        long size = directory.size();
+        long count = records.size();
+        ByteBuffer end = ByteBuffer.allocate(ZIP64_ENDHDR + ZIP64_LOCHDR + ENDHDR + comment.length)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        if(count >= ZIP64_MAGICCOUNT || size >= ZIP64_MAGICVAL || start >= ZIP64_MAGICVAL){
+            long zip64End = start + size;
+            end.putInt(ZIP64_ENDSIG);
+            end.putLong(ZIP64_ENDHDR - 12);
+            end.putShort((short) 45);
+            end.putShort((short) 45);
+            end.putInt(0);
+            end.putInt(0);
+            end.putLong(count);
+            end.putLong(count);
+            end.putLong(size);
+            end.putLong(start);
+            end.putInt(ZIP64_LOCSIG);
+            end.putInt(0);
+            end.putLong(zip64End);
+            end.putInt(1);
+        }
+        end.putInt(ENDSIG);
+        end.putShort((short) 0);
+        end.putShort((short) 0);
+        end.putShort((short) Math.min(count, ZIP64_MAGICCOUNT));
+        end.putShort((short) Math.min(count, ZIP64_MAGICCOUNT));
+        end.putInt((int) Math.min(size, ZIP64_MAGICVAL));
+        end.putInt((int) Math.min(start, ZIP64_MAGICVAL));
+        end.putShort((short) comment.length);
+        end.put(comment);
+        end.flip();
+        ByteBuffer data = ByteBuffer.wrap(directory.toByteArray());
+        while(data.hasRemaining()){
+            channel.write(data);
+        }
+        while(end.hasRemaining()){
+            channel.write(end);
+        }
+        position += size + end.limit();
+        records.clear();
+    }
+
+    private int dosTime(long time) {
+        calendar.setTimeInMillis(time);
+        int year = calendar.get(Calendar.YEAR);
+        if(year < 1980)
+            return (1 << 21) | (1 << 16);
+        return (year - 1980) << 25
+                | (calendar.get(Calendar.MONTH) + 1) << 21
+                | calendar.get(Calendar.DAY_OF_MONTH) << 16
+                | calendar.get(Calendar.HOUR_OF_DAY) << 11
+                | calendar.get(Calendar.MINUTE) << 5
+                | calendar.get(Calendar.SECOND) >> 1;
+    }
+}
@@ -19,7 +19,6 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
 import java.util.jar.Attributes;
-import java.util.jar.JarOutputStream;
 import java.util.zip.ZipEntry;
 
 import org.eclipse.ceylon.cmr.impl.IOUtils;
@@ -51,7 +50,7 @@ public abstract class ResourceRootTool extends ModuleLoadingTool {
         }
     }
     
-    protected void writeResources(JarOutputStream zipFile) throws IOException {
+    protected void writeResources(ArchiveOutputStream zipFile) throws IOException {
         for (EntrySpec entry : entrySpecs) {
             entry.write(zipFile);
         }
@@ -112,7 +111,7 @@ public abstract class ResourceRootTool extends ModuleLoadingTool {
             this.name = name;
         }
         
-        public void write(final JarOutputStream out) throws IOException {
+        public void write(final ArchiveOutputStream out) throws IOException {
             out.putNextEntry(new ZipEntry(this.name));
             IOUtils.copyStream(openStream(), out, true, false);
         }
@@ -128,6 +127,12 @@ public abstract class ResourceRootTool extends ModuleLoadingTool {
             this.url = url;
         }
         
+        @Override
+        public void write(final ArchiveOutputStream out) throws IOException {
+            // read and deflated in the background
+            out.addEntry(this.name, this.url);
+        }
+        
         InputStream openStream() throws IOException {
             return this.url.openStream();
         }
@@ -155,7 +160,7 @@ public abstract class ResourceRootTool extends ModuleLoadingTool {
             this.properties = properties;
         }
         
-        public void write(final JarOutputStream out) throws IOException {
+        public void write(final ArchiveOutputStream out) throws IOException {
             out.putNextEntry(new ZipEntry(this.name));
             this.properties.store(out, "");
         }
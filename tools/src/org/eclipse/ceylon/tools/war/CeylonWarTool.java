@@ -9,10 +9,8 @@
  ********************************************************************************/
 package org.eclipse.ceylon.tools.war;
 
-import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.net.MalformedURLException;
@@ -21,7 +19,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.jar.Attributes;
-import java.util.jar.JarOutputStream;
 import java.util.jar.Manifest;
 
 import org.eclipse.ceylon.cmr.api.ModuleQuery;
@@ -40,6 +37,7 @@ import org.eclipse.ceylon.common.tool.ToolUsageError;
 import org.eclipse.ceylon.model.cmr.ArtifactResult;
 import org.eclipse.ceylon.model.cmr.ModuleScope;
 import org.eclipse.ceylon.model.loader.JvmBackendUtil;
+import org.eclipse.ceylon.tools.moduleloading.ArchiveOutputStream;
 import org.eclipse.ceylon.tools.moduleloading.ResourceRootTool;
 
 @Summary("Generates a WAR file from a compiled `.car` file")
@@ -278,12 +276,10 @@ public class CeylonWarTool extends ResourceRootTool {
         Attributes mainAttributes = manifest.getMainAttributes();
         writeManifestEntries(mainAttributes);
         
-        try (BufferedOutputStream out = 
-                new BufferedOutputStream(new FileOutputStream(jarFile));
-             JarOutputStream zipFile = 
-                mainAttributes.isEmpty() 
-                        ? new JarOutputStream(out) 
-                        : new JarOutputStream(out, manifest)) {
+        // the module jars are read and deflated in the background
+        try (ArchiveOutputStream zipFile = 
+                new ArchiveOutputStream(jarFile, 
+                        mainAttributes.isEmpty() ? null : manifest)) {
             writeResources(zipFile);
             // FIXME: this is not done properly
             Set<String> added = new HashSet<>();
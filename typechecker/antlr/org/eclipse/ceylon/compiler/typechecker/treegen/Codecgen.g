@@ -0,0 +1,169 @@
+grammar Codecgen;
+
+@parser::header {
+    package org.eclipse.ceylon.compiler.typechecker.treegen;
+    import static org.eclipse.ceylon.compiler.typechecker.treegen.Util.*;
+}
+@lexer::header {
+    package org.eclipse.ceylon.compiler.typechecker.treegen;
+}
+
+@parser::members {
+    int kind = 0;
+    StringBuilder types = new StringBuilder();
+    StringBuilder creators = new StringBuilder();
+    StringBuilder writers = new StringBuilder();
+    StringBuilder readers = new StringBuilder();
+    StringBuilder signature = new StringBuilder();
+}
+
+nodeList :
+    {
+    println("package org.eclipse.ceylon.compiler.typechecker.tree;\n");
+    println("import java.io.IOException;");
+    println("import java.util.List;\n");
+    println("import org.antlr.runtime.Token;\n");
+    println("import static org.eclipse.ceylon.compiler.typechecker.tree.Tree.*;");
+    println("import static org.eclipse.ceylon.compiler.typechecker.tree.Tree.Package;\n");
+    println("public abstract class Codec {\n");
+    println("    protected abstract void writeNode(Node node) throws IOException;");
+    println("    protected abstract void writeNodes(List<? extends Node> nodes) throws IOException;");
+    println("    protected abstract void writeBoolean(boolean value) throws IOException;");
+    println("    protected abstract void writeString(String value) throws IOException;");
+    println("    protected abstract Node readNode() throws IOException;");
+    println("    protected abstract int readCount() throws IOException;");
+    println("    protected abstract boolean readBoolean() throws IOException;");
+    println("    protected abstract String readString() throws IOException;\n");
+    }
+           (DESCRIPTION? node)+
+           EOF
+    {
+    println("    /** the concrete node types, indexed by kind */");
+    println("    protected static final Class<?>[] NODE_TYPES = {");
+    print(types.toString());
+    println("    };\n");
+    println("    /** changes whenever the node types or their members change */");
+    println("    protected static final int SIGNATURE = " + signature.toString().hashCode() + ";\n");
+    println("    protected static Node newNode(int kind, Token token) {");
+    println("        switch (kind) {");
+    print(creators.toString());
+    println("        default: throw new IllegalArgumentException(\"unknown node kind: \" + kind);");
+    println("        }");
+    println("    }\n");
+    println("    protected void writeFields(int kind, Node node) throws IOException {");
+    println("        switch (kind) {");
+    print(writers.toString());
+    println("        default: throw new IllegalArgumentException(\"unknown node kind: \" + kind);");
+    println("        }");
+    println("    }\n");
+    println("    protected void readFields(int kind, Node node) throws IOException {");
+    println("        switch (kind) {");
+    print(readers.toString());
+    println("        default: throw new IllegalArgumentException(\"unknown node kind: \" + kind);");
+    println("        }");
+    println("    }\n");
+    println("}");
+    }
+           ;
+
+node : { boolean concrete = true; }
+       '^' '('
+       ('abstract' { concrete = false; })?
+       n=NODE_NAME
+       { signature.append(concrete ? "^" : "^abstract ").append($n.text); }
+       { if (concrete) {
+             types.append("        " + className($n.text) + ".class,\n");
+             creators.append("        case " + kind + ": return new " + className($n.text) + "(token);\n");
+             writers.append("        case " + kind + ": write" + className($n.text) + "((" + className($n.text) + ") node); break;\n");
+             readers.append("        case " + kind + ": read" + className($n.text) + "((" + className($n.text) + ") node); break;\n");
+             kind++;
+         } }
+       { StringBuilder write = new StringBuilder(); }
+       { StringBuilder read = new StringBuilder(); }
+       (e=extendsNode
+        { write.append("        write" + $e.name + "(node);\n"); }
+        { read.append("        read" + $e.name + "(node);\n"); }
+       )?
+       (DESCRIPTION? s=subnode
+        { write.append($s.write); }
+        { read.append($s.read); }
+       )*
+       (DESCRIPTION? f=field
+        { write.append($f.write); }
+        { read.append($f.read); }
+       )*
+       ')'
+       { signature.append(')'); }
+       { println("    protected void write" + className($n.text) +"(" + className($n.text) + " node) throws IOException {"); }
+       { print(write.toString()); }
+       { println("    }\n"); }
+       { println("    protected void read" + className($n.text) +"(" + className($n.text) + " node) throws IOException {"); }
+       { print(read.toString()); }
+       { println("    }\n"); }
+     ;
+
+extendsNode returns [String name] :
+              ':'
+              n=NODE_NAME
+              { $name = className($n.text); }
+              { signature.append(':').append($n.text); }
+            ;
+
+subnode returns [String write, String read] :
+          n=NODE_NAME '?'? f=FIELD_NAME
+          { signature.append(' ').append($n.text).append(' ').append($f.text); }
+          { $write = "        writeNode(node.get" + initialUpper($f.text) + "());\n"; }
+          { $read = "        node.set" + initialUpper($f.text) + "((" + className($n.text) + ") readNode());\n"; }
+        | n=NODE_NAME '?'?
+          { signature.append(' ').append($n.text); }
+          { $write = "        writeNode(node.get" + className($n.text) + "());\n"; }
+          { $read = "        node.set" + className($n.text) + "((" + className($n.text) + ") readNode());\n"; }
+        | mn=NODE_NAME '*'
+          { signature.append(' ').append($mn.text).append('*'); }
+          { $write = "        writeNodes(node.get" + className($mn.text) + "s());\n"; }
+          { $read = "        for (int i=0,l=readCount();i<l;i++){\n" +
+                    "            node.add" + className($mn.text) + "((" + className($mn.text) + ") readNode());\n" +
+                    "        }\n"; }
+        | mn=NODE_NAME '*' f=FIELD_NAME
+          { signature.append(' ').append($mn.text).append("* ").append($f.text); }
+          { $write = "        writeNodes(node.get" + initialUpper($f.text) + "s());\n"; }
+          { $read = "        for (int i=0,l=readCount();i<l;i++){\n" +
+                    "            node.add" + initialUpper($f.text) + "((" + className($mn.text) + ") readNode());\n" +
+                    "        }\n"; }
+        ;
+
+field returns [String write, String read] :
+          'boolean' f=FIELD_NAME ';'
+          { signature.append(" boolean ").append($f.text); }
+          { $write = "        writeBoolean(node.get" + initialUpper($f.text) + "());\n"; }
+          { $read = "        node.set" + initialUpper($f.text) + "(readBoolean());\n"; }
+        | 'string' f=FIELD_NAME ';'
+          { signature.append(" string ").append($f.text); }
+          { $write = "        writeString(node.get" + initialUpper($f.text) + "());\n"; }
+          { $read = "        node.set" + initialUpper($f.text) + "(readString());\n"; }
+        //the model is never assigned by the parser
+        | 'abstract'? TYPE_NAME FIELD_NAME ';'
+          { $write = ""; }
+          { $read = ""; }
+        ;
+
+NODE_NAME : ('A'..'Z'|'_')+;
+
+FIELD_NAME : ('a'..'z') ('a'..'z'|'A'..'Z')*;
+TYPE_NAME : ('A'..'Z') ('a'..'z'|'A'..'Z'|'<'|'>')*;
+
+WS : (' ' | '\n' | '\t' | '\r' | '\u000C') { skip(); };
+
+CARAT : '^';
+
+LPAREN : '(';
+RPAREN : ')';
+
+MANY : '*'|'+';
+OPTIONAL : '?';
+
+EXTENDS : ':';
+
+SEMI : ';';
+
+DESCRIPTION : '\"' (~'\"')* '\"';
@@ -0,0 +1,93 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the 
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0 
+ ********************************************************************************/
+package main;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.ceylon.cmr.api.RepositoryManager;
+import org.eclipse.ceylon.cmr.ceylon.CeylonUtils;
+import org.eclipse.ceylon.compiler.typechecker.TypeChecker;
+import org.eclipse.ceylon.compiler.typechecker.TypeCheckerBuilder;
+import org.eclipse.ceylon.compiler.typechecker.io.cmr.impl.LeakingLogger;
+import org.eclipse.ceylon.compiler.typechecker.util.AssertionVisitor;
+
+/**
+ * Scaling benchmark for parallel parsing and typechecking. 
+ * Parses and typechecks the given source directories with 
+ * 1, 2, 4, ... threads
+ * up to the number of available processors (or the value
+ * of the <code>threads</code> system property), printing
+ * the time taken by each run, and fails if any run reports
+ * different errors and warnings from the sequential run.
+ */
+public class MainForThreads {
+
+    public static void main(String[] args) throws Exception {
+        if ( args.length==0 ) {
+            System.err.println("Usage MainForThreads <directoryNames>");
+            System.exit(-1);
+            return;
+        }
+        
+        RepositoryManager repositoryManager = 
+                CeylonUtils.repoManager()
+                    .systemRepo("../dist/dist/repo")
+                    .logger(new LeakingLogger())
+                    .buildManager();
+        
+        int maxThreads = Integer.getInteger("threads", 
+                Runtime.getRuntime().availableProcessors());
+        int runs = Integer.getInteger("runs", 3);
+        
+        List<String> expected = null;
+        for (int threads = 1; 
+                threads <= maxThreads; 
+                threads *= 2) {
+            long best = Long.MAX_VALUE;
+            for (int run = 0; run < runs; run++) {
+                final List<String> messages = 
+                        new ArrayList<String>();
+                TypeCheckerBuilder tcb = 
+                        new TypeCheckerBuilder()
+                            .setRepositoryManager(repositoryManager)
+                            .threads(threads)
+                            .assertionVisitor(new AssertionVisitor() {
+                                @Override
+                                protected void out(PrintStream ps, 
+                                        String level, String message, 
+                                        String at, String of) {
+                                    messages.add(level + " [" + message + 
+                                            "] at " + at + " of " + of);
+                                }
+                            });
+                for (String path: args) {
+                    tcb.addSrcDirectory(new File(path));
+                }
+                long start = System.nanoTime();
+                TypeChecker typeChecker = tcb.getTypeChecker();
+                typeChecker.process();
+                long time = System.nanoTime()-start;
+                best = Math.min(best, time);
+                if (expected == null) {
+                    expected = messages;
+                }
+                else if (!expected.equals(messages)) {
+                    System.err.println("Different messages with " + 
+                            threads + " threads: " + messages);
+                    System.exit(1);
+                }
+            }
+            System.out.println(threads + " threads: parsed and type checked in " + 
+                    best/1000000 + " ms (best of " + runs + ")");
+        }
+    }
+}
@@ -9,16 +9,22 @@
  ********************************************************************************/
 package org.eclipse.ceylon.compiler.typechecker;
 
+import java.io.File;
 import java.util.List;
 
 import org.eclipse.ceylon.cmr.api.RepositoryManager;
+import org.eclipse.ceylon.common.Profile;
 import org.eclipse.ceylon.common.Versions;
 import org.eclipse.ceylon.compiler.typechecker.analyzer.ModuleValidator;
 import org.eclipse.ceylon.compiler.typechecker.context.Context;
+import org.eclipse.ceylon.compiler.typechecker.context.PhaseExecutor;
+import org.eclipse.ceylon.compiler.typechecker.context.PhaseExecutor.Phase;
 import org.eclipse.ceylon.compiler.typechecker.context.PhasedUnit;
 import org.eclipse.ceylon.compiler.typechecker.context.PhasedUnits;
+import org.eclipse.ceylon.compiler.typechecker.context.TokenRetention;
 import org.eclipse.ceylon.compiler.typechecker.io.VFS;
 import org.eclipse.ceylon.compiler.typechecker.io.VirtualFile;
+import org.eclipse.ceylon.compiler.typechecker.parser.ParseCache;
 import org.eclipse.ceylon.compiler.typechecker.tree.Message;
 import org.eclipse.ceylon.compiler.typechecker.util.AssertionVisitor;
 import org.eclipse.ceylon.compiler.typechecker.util.ModuleManagerFactory;
@@ -44,6 +50,7 @@ public class TypeChecker {
     private final boolean verifyDependencies;
     private final AssertionVisitor assertionVisitor;
     private final StatisticsVisitor statsVisitor;
+    private final PhaseExecutor phaseExecutor;
 
     TypeChecker(VFS vfs, 
             List<VirtualFile> srcDirectories, 
@@ -54,10 +61,18 @@ public class TypeChecker {
             boolean verbose, boolean statistics,
             List<String> moduleFilters, 
             List<VirtualFile> srcFiles, 
-            String encoding) {
+            String encoding,
+            int threads,
+            Profile profile,
+            TokenRetention tokenRetention,
+            File parseCache) {
         long start = System.nanoTime();
+        Profile.Mark mark = 
+                profile == null ? null : profile.mark();
         this.verbose = verbose;
         this.statistics = statistics;
+        this.phaseExecutor = new PhaseExecutor(threads);
+        this.phaseExecutor.setProfile(profile);
         this.context = new Context(repositoryManager, vfs);
         this.phasedUnits = 
                 new PhasedUnits(context, 
@@ -68,7 +83,15 @@ public class TypeChecker {
         phasedUnits.setSourceFiles(srcFiles);
         phasedUnits.setModuleFilters(moduleFilters);
         phasedUnits.setEncoding(encoding);
+        phasedUnits.setParseExecutor(phaseExecutor);
+        phasedUnits.setTokenRetention(tokenRetention);
+        if (parseCache != null) {
+            phasedUnits.setParseCache(new ParseCache(parseCache));
+        }
         phasedUnits.parseUnits(srcDirectories);
+        if (profile != null) {
+            profile.phase("parse", mark);
+        }
         long time = System.nanoTime()-start;
         if(statistics)
             System.out.println("Parsed in " + 
@@ -146,11 +169,19 @@ public class TypeChecker {
     public void process(boolean forceSilence) 
             throws RuntimeException {
         long start = System.nanoTime();
-        executePhases(phasedUnits, forceSilence);
+        try {
+            executePhases(phasedUnits, forceSilence);
+        }
+        finally {
+            phaseExecutor.shutdown();
+        }
         long time = System.nanoTime()-start;
         if(statistics)
             System.out.println("Type checked in " + 
-                    time/1000000 + " ms");
+                    time/1000000 + " ms" + 
+                    (phaseExecutor.isParallel() ? 
+                            " using " + phaseExecutor.getThreads() + 
+                            " threads" : ""));
     }
 
     private void executePhases(PhasedUnits phasedUnits, 
@@ -201,25 +232,49 @@ public class TypeChecker {
 
     protected void executePhases(
             List<PhasedUnit> listOfUnits) {
-        for (PhasedUnit pu : listOfUnits) {
-            pu.validateTree();
-            pu.scanDeclarations();
-        }
-        for (PhasedUnit pu : listOfUnits) {
-            pu.scanTypeDeclarations();
-        }
-        for (PhasedUnit pu: listOfUnits) {
-            pu.validateRefinement();
-        }
-        for (PhasedUnit pu : listOfUnits) {
-            pu.analyseTypes();
-        }
-        for (PhasedUnit pu: listOfUnits) {
-            pu.analyseFlow();
-        }
-        for (PhasedUnit pu: listOfUnits) {
-            pu.analyseUsage();
-        }
+        phaseExecutor.execute(listOfUnits, "validateTree", 
+                new Phase() {
+            @Override
+            public void run(PhasedUnit pu) {
+                pu.validateTree();
+                pu.scanDeclarations();
+            }
+        });
+        phaseExecutor.execute(listOfUnits, "scanTypeDeclarations", 
+                new Phase() {
+            @Override
+            public void run(PhasedUnit pu) {
+                pu.scanTypeDeclarations();
+            }
+        });
+        phaseExecutor.execute(listOfUnits, "validateRefinement", 
+                new Phase() {
+            @Override
+            public void run(PhasedUnit pu) {
+                pu.validateRefinement();
+            }
+        });
+        phaseExecutor.execute(listOfUnits, "analyseTypes", 
+                new Phase() {
+            @Override
+            public void run(PhasedUnit pu) {
+                pu.analyseTypes();
+            }
+        });
+        phaseExecutor.execute(listOfUnits, "analyseFlow", 
+                new Phase() {
+            @Override
+            public void run(PhasedUnit pu) {
+                pu.analyseFlow();
+            }
+        });
+        phaseExecutor.execute(listOfUnits, "analyseUsage", 
+                new Phase() {
+            @Override
+            public void run(PhasedUnit pu) {
+                pu.analyseUsage();
+            }
+        });
     }
     
     public int getErrors(){
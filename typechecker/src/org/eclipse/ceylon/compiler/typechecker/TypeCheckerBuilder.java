@@ -15,7 +15,9 @@ import java.util.List;
 
 import org.eclipse.ceylon.cmr.api.RepositoryManager;
 import org.eclipse.ceylon.cmr.ceylon.CeylonUtils;
+import org.eclipse.ceylon.common.Profile;
 import org.eclipse.ceylon.compiler.typechecker.analyzer.UnsupportedError;
+import org.eclipse.ceylon.compiler.typechecker.context.TokenRetention;
 import org.eclipse.ceylon.compiler.typechecker.io.VFS;
 import org.eclipse.ceylon.compiler.typechecker.io.VirtualFile;
 import org.eclipse.ceylon.compiler.typechecker.io.cmr.impl.LeakingLogger;
@@ -52,6 +54,10 @@ public class TypeCheckerBuilder {
     private ModuleManagerFactory moduleManagerFactory;
     private RepositoryManager repositoryManager;
     private List<String> moduleFilters = new ArrayList<String>();
+    private int threads = 1;
+    private Profile profile;
+    private TokenRetention tokenRetention = TokenRetention.FULL;
+    private File parseCache;
 
     public TypeCheckerBuilder(VFS vfs) {
         this.vfs = vfs != null ? vfs : new VFS();
@@ -145,6 +151,60 @@ public class TypeCheckerBuilder {
         return this;
     }
 
+    /**
+     * Sets the number of threads used to parse the source 
+     * files and to run each typechecking phase. Source files
+     * are then lexed and parsed concurrently, and units of 
+     * distinct packages are typechecked concurrently, with 
+     * a barrier between phases.
+     *
+     * @param threads the number of threads, where 1 (the
+     *        default) means typechecking on the calling thread.
+     * @return type checker instance.
+     */
+    public TypeCheckerBuilder threads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Records the time taken by parsing and by each
+     * typechecking phase, for every unit, in the given
+     * profile.
+     */
+    public TypeCheckerBuilder profile(Profile profile) {
+        this.profile = profile;
+        return this;
+    }
+
+    /**
+     * Sets how the tokens of each unit are kept once it has 
+     * been parsed. Tools which only need the tree may keep 
+     * them compacted, or not at all, to save memory.
+     * 
+     * @param tokenRetention {@link TokenRetention#FULL} by 
+     *        default, which keeps the tokens of the lexer
+     * @return type checker instance.
+     */
+    public TypeCheckerBuilder tokenRetention(TokenRetention tokenRetention) {
+        this.tokenRetention = tokenRetention;
+        return this;
+    }
+
+    /**
+     * Sets a directory in which the units parsed from source 
+     * files are cached, so that the source files which did 
+     * not change since are not parsed again.
+     * 
+     * @param directory the directory, or null for no cache,
+     *        the default
+     * @return type checker instance.
+     */
+    public TypeCheckerBuilder parseCache(File directory) {
+        this.parseCache = directory;
+        return this;
+    }
+
     public TypeCheckerBuilder moduleManagerFactory(ModuleManagerFactory moduleManagerFactory){
         this.moduleManagerFactory = moduleManagerFactory;
         return this;
@@ -166,7 +226,8 @@ public class TypeCheckerBuilder {
                     .buildManager();
         }
         return new TypeChecker(vfs, srcDirectories, repositoryManager, verifyDependencies, assertionVisitor,
-                moduleManagerFactory, verbose, statistics, moduleFilters, srcFiles, encoding);
+                moduleManagerFactory, verbose, statistics, moduleFilters, srcFiles, encoding, threads, profile,
+                tokenRetention, parseCache);
     }
 
 }
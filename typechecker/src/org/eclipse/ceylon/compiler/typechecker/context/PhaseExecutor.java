@@ -0,0 +1,254 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the 
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0 
+ ********************************************************************************/
+package org.eclipse.ceylon.compiler.typechecker.context;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+
+import org.eclipse.ceylon.common.Profile;
+import org.eclipse.ceylon.model.typechecker.context.TypeCache;
+import org.eclipse.ceylon.model.typechecker.model.Package;
+
+/**
+ * Runs a single typechecking phase over a list of
+ * {@link PhasedUnit}s, either sequentially on the calling
+ * thread, or fanned out over a {@link ForkJoinPool}. Every
+ * call to {@link #execute(List, Phase)} is a barrier: it
+ * returns only once all units have completed the phase.
+ *
+ * Units belonging to the same package are always processed
+ * by the same task, in list order, since they share the
+ * package members and may refer to unshared declarations
+ * with inferred types in each other. Errors and warnings
+ * are attached to the tree of each unit, so they are
+ * reported in the same order whatever the number of
+ * threads.
+ *
+ * Tasks run with the {@link TypeCache} enabled or disabled
+ * as it is on the calling thread, since that is a thread
+ * local setting.
+ *
+ * When given a {@link Profile}, every named phase is
+ * recorded, along with the time it took for each unit.
+ */
+public class PhaseExecutor {
+
+    /**
+     * A phase to run on a single unit.
+     */
+    public static abstract class Phase {
+        public abstract void run(PhasedUnit pu);
+    }
+
+    private final int threads;
+    private ForkJoinPool pool;
+    private Profile profile;
+
+    /**
+     * @param threads the number of worker threads, where
+     *        anything lower than 2 means running every
+     *        phase sequentially on the calling thread
+     */
+    public PhaseExecutor(int threads) {
+        this.threads = threads;
+    }
+
+    public boolean isParallel() {
+        return threads > 1;
+    }
+
+    public int getThreads() {
+        return isParallel() ? threads : 1;
+    }
+
+    public Profile getProfile() {
+        return profile;
+    }
+
+    public void setProfile(Profile profile) {
+        this.profile = profile;
+    }
+
+    /**
+     * Runs the given phase, recording it under the given
+     * name if we are profiling.
+     */
+    public void execute(List<PhasedUnit> listOfUnits,
+            final String phaseName, final Phase phase) {
+        final Profile profile = this.profile;
+        if (profile == null) {
+            execute(listOfUnits, phase);
+            return;
+        }
+        Profile.Mark start = profile.mark();
+        execute(listOfUnits, new Phase() {
+            @Override
+            public void run(PhasedUnit pu) {
+                Profile.Mark unitStart = profile.mark();
+                phase.run(pu);
+                profile.unit(phaseName,
+                        pu.getPathRelativeToSrcDir(),
+                        unitStart);
+            }
+        });
+        profile.phase(phaseName, start);
+    }
+
+    public void execute(List<PhasedUnit> listOfUnits,
+            final Phase phase) {
+        if (!isParallel() || listOfUnits.size() < 2) {
+            for (PhasedUnit pu: listOfUnits) {
+                phase.run(pu);
+            }
+            return;
+        }
+        Map<Package,List<PhasedUnit>> unitsByPackage =
+                new LinkedHashMap<Package,List<PhasedUnit>>();
+        for (PhasedUnit pu: listOfUnits) {
+            Package pkg = pu.getPackage();
+            List<PhasedUnit> units = unitsByPackage.get(pkg);
+            if (units == null) {
+                units = new ArrayList<PhasedUnit>();
+                unitsByPackage.put(pkg, units);
+            }
+            units.add(pu);
+        }
+        final boolean caching = TypeCache.isEnabled();
+        ForkJoinPool pool = getPool();
+        List<ForkJoinTask<?>> tasks =
+                new ArrayList<ForkJoinTask<?>>
+                    (unitsByPackage.size());
+        for (final List<PhasedUnit> units:
+                unitsByPackage.values()) {
+            tasks.add(pool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    Boolean was = TypeCache.setEnabled(caching);
+                    try {
+                        for (PhasedUnit pu: units) {
+                            phase.run(pu);
+                        }
+                    }
+                    finally {
+                        TypeCache.setEnabled(was);
+                    }
+                }
+            }));
+        }
+        //wait for every task, and report the first
+        //failure in list order, so that it does not
+        //depend on scheduling
+        RuntimeException failure = null;
+        for (ForkJoinTask<?> task: tasks) {
+            try {
+                task.join();
+            }
+            catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Runs the given independent tasks, concurrently if we
+     * are parallel, and returns their results in the order
+     * of the tasks, whatever the order in which they ran. 
+     * If any task fails, the failure of the first one in 
+     * list order is rethrown once all tasks are done.
+     */
+    public <T> List<T> invokeAll(List<? extends Callable<T>> tasks) 
+            throws Exception {
+        List<T> results = new ArrayList<T>(tasks.size());
+        if (!isParallel() || tasks.size() < 2) {
+            for (Callable<T> task: tasks) {
+                results.add(task.call());
+            }
+            return results;
+        }
+        boolean caching = TypeCache.isEnabled();
+        List<Callable<T>> cachingTasks = 
+                new ArrayList<Callable<T>>(tasks.size());
+        for (Callable<T> task: tasks) {
+            cachingTasks.add(withCaching(task, caching));
+        }
+        List<Future<T>> futures = getPool().invokeAll(cachingTasks);
+        Throwable failure = null;
+        for (Future<T> future: futures) {
+            try {
+                results.add(future.get());
+            }
+            catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                }
+                results.add(null);
+            }
+        }
+        if (failure instanceof Exception) {
+            throw (Exception) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        return results;
+    }
+
+    /**
+     * Wraps the given task so that it runs with the given
+     * {@link TypeCache} setting, whatever the worker thread
+     * it runs on.
+     */
+    private static <T> Callable<T> withCaching(
+            final Callable<T> task, final boolean caching) {
+        return new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                Boolean was = TypeCache.setEnabled(caching);
+                try {
+                    return task.call();
+                }
+                finally {
+                    TypeCache.setEnabled(was);
+                }
+            }
+        };
+    }
+
+    private synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(threads);
+        }
+        return pool;
+    }
+
+    /**
+     * Releases the worker threads, if any. The executor
+     * may still be used afterwards, in which case a new
+     * pool is created.
+     */
+    public synchronized void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+}
@@ -525,11 +525,25 @@ public class PhasedUnit  implements Visitor.ExceptionHandler {
         return rootNode;
     }
 
+    /**
+     * The tokens of the source file, which depend on the
+     * {@link TokenRetention} this unit was parsed with, or 
+     * null if they were not kept or have been released.
+     */
     @SuppressWarnings({ "unchecked", "rawtypes" })
     public List<CommonToken> getTokens() {
         return (List) tokens;
     }
 
+    /**
+     * Drops the tokens of the source file, once no phase 
+     * needs them anymore. The tree, and the tokens it
+     * references, are kept.
+     */
+    public void releaseTokens() {
+        tokens = null;
+    }
+
     public boolean isScanningDeclarations() {
         return scanningDeclarations;
     }
@@ -13,6 +13,7 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.regex.Pattern;
 
 import org.antlr.runtime.ANTLRInputStream;
@@ -23,7 +24,9 @@ import org.eclipse.ceylon.compiler.typechecker.io.VirtualFile;
 import org.eclipse.ceylon.compiler.typechecker.parser.CeylonInterpolatingLexer;
 import org.eclipse.ceylon.compiler.typechecker.parser.CeylonLexer;
 import org.eclipse.ceylon.compiler.typechecker.parser.CeylonParser;
+import org.eclipse.ceylon.compiler.typechecker.parser.CompactTokenList;
 import org.eclipse.ceylon.compiler.typechecker.parser.LexError;
+import org.eclipse.ceylon.compiler.typechecker.parser.ParseCache;
 import org.eclipse.ceylon.compiler.typechecker.parser.ParseError;
 import org.eclipse.ceylon.compiler.typechecker.tree.Tree;
 import org.eclipse.ceylon.compiler.typechecker.util.ModuleManagerFactory;
@@ -45,6 +48,15 @@ public class PhasedUnits extends PhasedUnitMap<PhasedUnit, PhasedUnit> {
     private Set<VirtualFile> sourceFiles  = new HashSet<VirtualFile>();
     private String encoding;
     private List<VirtualFile> srcDirectories;
+    private PhaseExecutor parseExecutor;
+    private TokenRetention tokenRetention = TokenRetention.FULL;
+    private ParseCache parseCache;
+    /** 
+     * The files found while walking the source directories,
+     * in the order we found them, when they are parsed in
+     * parallel afterwards, otherwise null 
+     */
+    private List<PendingUnit> pendingUnits;
 
     public PhasedUnits(Context context) {
         this.context = context;
@@ -81,6 +93,22 @@ public class PhasedUnits extends PhasedUnitMap<PhasedUnit, PhasedUnit> {
         this.moduleFilters = moduleFilters;
     }
     
+    /**
+     * Sets how the tokens of the units parsed from now on 
+     * are kept, {@link TokenRetention#FULL} by default.
+     */
+    public void setTokenRetention(TokenRetention tokenRetention) {
+        this.tokenRetention = tokenRetention;
+    }
+    
+    /**
+     * Sets the cache the units parsed from now on are read 
+     * from, and stored in, or null not to use one.
+     */
+    public void setParseCache(ParseCache parseCache) {
+        this.parseCache = parseCache;
+    }
+    
     public ModuleManager getModuleManager() {
         return moduleManager;
     }
@@ -89,12 +117,35 @@ public class PhasedUnits extends PhasedUnitMap<PhasedUnit, PhasedUnit> {
         return moduleSourceMapper;
     }
 
+    /**
+     * Sets the executor used to lex and parse source files.
+     * When it is parallel, the source directories are first 
+     * walked on the calling thread, which keeps track of 
+     * packages and applies the module filters, then the 
+     * files found are parsed concurrently, and their units 
+     * are finally added in the order the files were found.
+     */
+    public void setParseExecutor(PhaseExecutor parseExecutor) {
+        this.parseExecutor = parseExecutor;
+    }
+
     public void parseUnits(List<VirtualFile> srcDirectories) {
         this.srcDirectories = srcDirectories;
-        for (VirtualFile file : srcDirectories) {
-            parseUnit(file, file);
+        boolean deferred = startDeferredParsing();
+        try {
+            for (VirtualFile file : srcDirectories) {
+                parseUnit(file, file);
+            }
+            if (deferred) {
+                parsePendingUnits();
+            }
+        }
+        finally {
+            if (deferred) {
+                pendingUnits = null;
+            }
+            this.srcDirectories = null;
         }
-        this.srcDirectories = null;
     }
 
     public void parseUnit(VirtualFile srcDir) {
@@ -102,6 +153,21 @@ public class PhasedUnits extends PhasedUnitMap<PhasedUnit, PhasedUnit> {
     }
 
     public void parseUnit(VirtualFile file, VirtualFile srcDir) {
+        boolean deferred = startDeferredParsing();
+        try {
+            walkUnit(file, srcDir);
+            if (deferred) {
+                parsePendingUnits();
+            }
+        }
+        finally {
+            if (deferred) {
+                pendingUnits = null;
+            }
+        }
+    }
+
+    private void walkUnit(VirtualFile file, VirtualFile srcDir) {
         try {
             if (file.isFolder()) {
                 //root directory is the src dir => start from here
@@ -128,31 +194,140 @@ public class PhasedUnits extends PhasedUnitMap<PhasedUnit, PhasedUnit> {
     protected void parseFile(VirtualFile file, VirtualFile srcDir) throws Exception {
         if (file.getName().endsWith(".ceylon") 
                 && (sourceFiles.isEmpty() || sourceFiles.contains(file))) {
+            Package pkg = moduleSourceMapper.getCurrentPackage();
+            if (pendingUnits != null) {
+                pendingUnits.add(new PendingUnit(file, srcDir, pkg));
+            }
+            else {
+                //System.out.println("Parsing " + file.getName());
+                addParsedUnit(file, srcDir, pkg, parseSource(file));
+            }
+        }
+    }
+
+    private boolean startDeferredParsing() {
+        if (pendingUnits == null
+                && parseExecutor != null 
+                && parseExecutor.isParallel()) {
+            pendingUnits = new ArrayList<PendingUnit>();
+            return true;
+        }
+        return false;
+    }
+
+    private void parsePendingUnits() {
+        List<PendingUnit> units = pendingUnits;
+        pendingUnits = null;
+        List<ParsedSource> sources;
+        try {
+            sources = parseExecutor.invokeAll(units);
+        }
+        catch (RuntimeException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            throw new RuntimeException("Error while parsing the source files", e);
+        }
+        for (int i=0; i<units.size(); i++) {
+            PendingUnit unit = units.get(i);
+            addParsedUnit(unit.file, unit.srcDir, unit.pkg, 
+                    sources.get(i));
+        }
+    }
 
-            //System.out.println("Parsing " + file.getName());
-            CeylonLexer lexer = new CeylonLexer(new ANTLRInputStream(file.getInputStream(), getEncoding()));
+    /**
+     * Lexes and parses a single file, without touching any
+     * state shared with other files, so that it may be run
+     * on any thread.
+     */
+    private ParsedSource parseSource(VirtualFile file) throws Exception {
+        ANTLRInputStream input = new ANTLRInputStream(file.getInputStream(), getEncoding());
+        ParseCache.Entry cached = parseCache == null ? 
+                null : parseCache.lookup(input);
+        Tree.CompilationUnit cu;
+        List<? extends Token> allTokens;
+        if (cached != null 
+                && cached.getCompilationUnit() != null) {
+            cu = cached.getCompilationUnit();
+            allTokens = cached.getTokens();
+        }
+        else {
+            CeylonLexer lexer = new CeylonLexer(input);
             CommonTokenStream tokenStream = new CommonTokenStream(new CeylonInterpolatingLexer(lexer));
             CeylonParser parser = new CeylonParser(tokenStream);
-            Tree.CompilationUnit cu = parser.compilationUnit();
-            PhasedUnit phasedUnit = new PhasedUnit(file, srcDir, cu, 
-                    moduleSourceMapper.getCurrentPackage(), moduleManager, moduleSourceMapper,
-                    context, new ArrayList<Token>(tokenStream.getTokens()));
-            addPhasedUnit(file, phasedUnit);
-
+            cu = parser.compilationUnit();
+            allTokens = tokenStream.getTokens();
+    
             List<LexError> lexerErrors = lexer.getErrors();
+            List<ParseError> parserErrors = parser.getErrors();
+            if (cached != null 
+                    && lexerErrors.isEmpty() 
+                    && parserErrors.isEmpty()) {
+                cached.store(cu, allTokens);
+            }
+            
             for (LexError le : lexerErrors) {
                 //System.out.println("Lexer error in " + file.getName() + ": " + le.getMessage());
                 cu.addLexError(le);
             }
             lexerErrors.clear();
-
-            List<ParseError> parserErrors = parser.getErrors();
+    
             for (ParseError pe : parserErrors) {
                 //System.out.println("Parser error in " + file.getName() + ": " + pe.getMessage());
                 cu.addParseError(pe);
             }
             parserErrors.clear();
+        }
+        
+        List<? extends Token> tokens;
+        switch (tokenRetention) {
+        case COMPACT:
+            tokens = new CompactTokenList(input, allTokens);
+            break;
+        case NONE:
+            tokens = null;
+            break;
+        default:
+            tokens = new ArrayList<Token>(allTokens);
+        }
+        
+        return new ParsedSource(cu, tokens);
+    }
+
+    private void addParsedUnit(VirtualFile file, VirtualFile srcDir, 
+            Package pkg, ParsedSource source) {
+        PhasedUnit phasedUnit = new PhasedUnit(file, srcDir, source.cu, 
+                pkg, moduleManager, moduleSourceMapper,
+                context, source.tokens);
+        addPhasedUnit(file, phasedUnit);
+    }
 
+    private static final class ParsedSource {
+        final Tree.CompilationUnit cu;
+        final List<? extends Token> tokens;
+        ParsedSource(Tree.CompilationUnit cu, List<? extends Token> tokens) {
+            this.cu = cu;
+            this.tokens = tokens;
+        }
+    }
+
+    /**
+     * A file found while walking the source directories, 
+     * along with the package it belongs to, waiting to be
+     * parsed.
+     */
+    private final class PendingUnit implements Callable<ParsedSource> {
+        final VirtualFile file;
+        final VirtualFile srcDir;
+        final Package pkg;
+        PendingUnit(VirtualFile file, VirtualFile srcDir, Package pkg) {
+            this.file = file;
+            this.srcDir = srcDir;
+            this.pkg = pkg;
+        }
+        @Override
+        public ParsedSource call() throws Exception {
+            return parseSource(file);
         }
     }
 
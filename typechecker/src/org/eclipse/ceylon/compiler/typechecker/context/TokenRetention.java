@@ -0,0 +1,35 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.compiler.typechecker.context;
+
+import org.eclipse.ceylon.compiler.typechecker.parser.CompactTokenList;
+
+/**
+ * How the tokens of a source file are kept by its
+ * {@link PhasedUnit} once it has been parsed.
+ */
+public enum TokenRetention {
+    /**
+     * Keep the tokens produced by the lexer, which are the
+     * same objects as the tokens of the tree. This is what
+     * IDEs need.
+     */
+    FULL,
+    /**
+     * Keep the tokens packed in a {@link CompactTokenList},
+     * which recreates them on demand.
+     */
+    COMPACT,
+    /**
+     * Do not keep the tokens at all, for tools which only
+     * need the tree.
+     */
+    NONE
+}
@@ -0,0 +1,130 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.compiler.typechecker.parser;
+
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import org.antlr.runtime.CharStream;
+import org.antlr.runtime.CommonToken;
+import org.antlr.runtime.Token;
+
+/**
+ * An immutable list of the tokens of a source file which,
+ * instead of holding on to a {@link CommonToken} object per
+ * token, packs the type, channel, start and stop indexes,
+ * line and position in line of each token in int arrays.
+ * The tokens are recreated on demand, with their text read
+ * from the source buffer they were lexed from.
+ *
+ * The tokens returned by {@link #get(int)} are therefore
+ * new objects, equal in every respect to the original ones,
+ * but not identical to the tokens referenced by the nodes
+ * of the tree.
+ */
+public final class CompactTokenList
+        extends AbstractList<CommonToken>
+        implements RandomAccess {
+
+    private final CharStream input;
+    /** the type in the low 16 bits, the channel above */
+    private final int[] kinds;
+    private final int[] starts;
+    private final int[] stops;
+    private final int[] lines;
+    private final int[] positions;
+    /**
+     * the text of the few tokens which were not lexed
+     * directly from the source buffer, for example the
+     * pieces of string templates, or whose text was
+     * replaced after lexing, by index
+     */
+    private final Map<Integer,String> texts;
+
+    /**
+     * @param input the source buffer the tokens were lexed
+     *        from, which must be kept by the list
+     * @param tokens the tokens to pack
+     */
+    public CompactTokenList(CharStream input,
+            List<? extends Token> tokens) {
+        this.input = input;
+        int size = tokens.size();
+        kinds = new int[size];
+        starts = new int[size];
+        stops = new int[size];
+        lines = new int[size];
+        positions = new int[size];
+        Map<Integer,String> texts = null;
+        for (int i=0; i<size; i++) {
+            Token token = tokens.get(i);
+            kinds[i] = token.getType() & 0xFFFF
+                    | token.getChannel() << 16;
+            lines[i] = token.getLine();
+            positions[i] = token.getCharPositionInLine();
+            boolean lexed = false;
+            if (token instanceof CommonToken) {
+                CommonToken ct = (CommonToken) token;
+                starts[i] = ct.getStartIndex();
+                stops[i] = ct.getStopIndex();
+                //a token whose text was set after lexing
+                //can't have it read back from the buffer
+                lexed = ct.getInputStream()==input
+                        && equal(ct.getText(), 
+                                new CommonToken(input, 
+                                        ct.getType(), ct.getChannel(), 
+                                        starts[i], stops[i])
+                                .getText());
+            }
+            if (!lexed) {
+                if (texts == null) {
+                    texts = new HashMap<Integer,String>();
+                }
+                texts.put(i, token.getText());
+            }
+        }
+        this.texts = texts;
+    }
+
+    @Override
+    public CommonToken get(int index) {
+        if (index<0 || index>=kinds.length) {
+            throw new IndexOutOfBoundsException("token index " + index +
+                    " out of bounds for " + kinds.length + " tokens");
+        }
+        int kind = kinds[index];
+        CommonToken token =
+                new CommonToken(input, (short) kind, kind >>> 16,
+                        starts[index], stops[index]);
+        token.setLine(lines[index]);
+        token.setCharPositionInLine(positions[index]);
+        token.setTokenIndex(index);
+        if (texts != null) {
+            String text = texts.get(index);
+            if (text != null) {
+                token.setText(text);
+            }
+        }
+        return token;
+    }
+
+    private static boolean equal(String x, String y) {
+        return x==null ? y==null : x.equals(y);
+    }
+
+    @Override
+    public int size() {
+        return kinds.length;
+    }
+
+}
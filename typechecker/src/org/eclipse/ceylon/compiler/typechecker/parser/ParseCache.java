@@ -0,0 +1,322 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.compiler.typechecker.parser;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.antlr.runtime.CharStream;
+import org.antlr.runtime.CommonToken;
+import org.antlr.runtime.Token;
+import org.eclipse.ceylon.common.Versions;
+import org.eclipse.ceylon.compiler.typechecker.tree.BinaryCodec;
+import org.eclipse.ceylon.compiler.typechecker.tree.Tree;
+
+/**
+ * A cache, in a directory, of the compilation units the
+ * parser produced for source files, so that a source file
+ * which did not change need not be lexed and parsed again.
+ * The units are stored in the form {@link BinaryCodec}
+ * writes, keyed by a hash of the content of the source file,
+ * of the kind of stream it is read from, of the compiler 
+ * version, of the lexer and parser classes, and of the node 
+ * types.
+ *
+ * Only units parsed without lexer or parser errors are
+ * stored, since those errors refer to the lexer and parser
+ * which found them: the error lists of a unit read back from
+ * the cache are always empty, and a source file with syntax
+ * errors is always parsed again.
+ *
+ * The cache may be shared by several threads, and by several
+ * processes: every unit is written to a file of its own,
+ * which is only renamed to its final name once complete. A
+ * unit which cannot be read back is ignored.
+ *
+ * The size of the directory is bounded: when a cache is
+ * opened, the least recently used units are deleted until
+ * the units left take no more than the maximum size, which
+ * is 128MB unless the system property 
+ * {@code ceylon.parse.cache.size} gives another number of
+ * bytes. Reading a unit back marks it as used.
+ */
+public final class ParseCache {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final long DEFAULT_MAX_SIZE = 128L*1024*1024;
+
+    /** 
+     * a hash of the classes which turn source text into 
+     * trees, so that a grammar change without a version 
+     * change still misses
+     */
+    private static final byte[] GRAMMAR = grammarHash(
+            CeylonLexer.class, CeylonInterpolatingLexer.class, 
+            CeylonParser.class);
+
+    private final File directory;
+
+    public ParseCache(File directory) {
+        this(directory, 
+                Long.getLong("ceylon.parse.cache.size", 
+                        DEFAULT_MAX_SIZE));
+    }
+
+    /**
+     * @param directory the directory of the cache
+     * @param maxSize the number of bytes the units in the 
+     *        directory may take before the least recently
+     *        used are deleted
+     */
+    public ParseCache(File directory, long maxSize) {
+        this.directory = directory;
+        evict(maxSize);
+    }
+
+    /**
+     * Deletes the least recently used units until the rest
+     * take no more than the given size. Units being written
+     * or read by another process may be missed or deleted,
+     * which at worst means parsing their source again.
+     */
+    private void evict(long maxSize) {
+        File[] dirs = directory.listFiles();
+        if (dirs == null) {
+            return;
+        }
+        List<Unit> units = new ArrayList<Unit>();
+        long size = 0;
+        for (File dir: dirs) {
+            File[] files = dir.listFiles();
+            if (files != null) {
+                for (File file: files) {
+                    Unit unit = new Unit(file);
+                    units.add(unit);
+                    size += unit.length;
+                }
+            }
+        }
+        if (size <= maxSize) {
+            return;
+        }
+        Collections.sort(units);
+        for (Unit unit: units) {
+            if (size <= maxSize) {
+                break;
+            }
+            if (unit.file.delete()) {
+                size -= unit.length;
+            }
+        }
+    }
+
+    private static final class Unit implements Comparable<Unit> {
+        final File file;
+        final long length;
+        final long used;
+        Unit(File file) {
+            this.file = file;
+            length = file.length();
+            used = file.lastModified();
+        }
+        @Override
+        public int compareTo(Unit that) {
+            return used<that.used ? -1 : used>that.used ? 1 : 0;
+        }
+    }
+
+    private static byte[] grammarHash(Class<?>... classes) {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[8192];
+        for (Class<?> c: classes) {
+            digest.update(c.getName().getBytes(UTF8));
+            InputStream in = c.getResourceAsStream(
+                    c.getSimpleName() + ".class");
+            if (in == null) {
+                //the version still tells them apart
+                continue;
+            }
+            try {
+                try {
+                    int read;
+                    while ((read = in.read(buffer)) > 0) {
+                        digest.update(buffer, 0, read);
+                    }
+                }
+                finally {
+                    in.close();
+                }
+            }
+            catch (IOException e) {
+                //the version still tells them apart
+            }
+        }
+        return digest.digest();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Looks up the unit parsed from the given source file.
+     *
+     * @param input the source file, which has not been lexed
+     *        yet
+     *
+     * @return the cache entry for the source file, whether
+     *         it holds a unit or not
+     */
+    public Entry lookup(CharStream input) {
+        String key = key(input);
+        File file = new File(new File(directory,
+                key.substring(0, 2)), key.substring(2));
+        Entry entry = new Entry(file, input);
+        if (file.isFile()) {
+            try {
+                byte[] data = Files.readAllBytes(file.toPath());
+                List<CommonToken> tokens = new ArrayList<CommonToken>();
+                entry.compilationUnit =
+                        BinaryCodec.decode(data, input, tokens);
+                entry.tokens = tokens;
+                //keep it from being evicted
+                file.setLastModified(System.currentTimeMillis());
+            }
+            catch (IOException e) {
+                //written by another version, or
+                //corrupt, so parse it again
+                file.delete();
+            }
+        }
+        return entry;
+    }
+
+    private static String key(CharStream input) {
+        MessageDigest digest = newDigest();
+        digest.update(Versions.CEYLON_VERSION.getBytes(UTF8));
+        digest.update(GRAMMAR);
+        //streams may count lines differently
+        digest.update(input.getClass().getName().getBytes(UTF8));
+        int version = BinaryCodec.VERSION;
+        digest.update(new byte[] {
+                (byte) (version >>> 24), (byte) (version >>> 16),
+                (byte) (version >>> 8), (byte) version
+        });
+        String source = input.substring(0, input.size()-1);
+        byte[] chars = new byte[source.length()*2];
+        for (int i=0, j=0; i<source.length(); i++) {
+            char c = source.charAt(i);
+            chars[j++] = (byte) (c >>> 8);
+            chars[j++] = (byte) c;
+        }
+        digest.update(chars);
+        StringBuilder key = new StringBuilder();
+        for (byte b: digest.digest()) {
+            key.append(Character.forDigit(b >>> 4 & 0xF, 16))
+               .append(Character.forDigit(b & 0xF, 16));
+        }
+        return key.toString();
+    }
+
+    /**
+     * The entry of the cache for a source file.
+     */
+    public final class Entry {
+
+        private final File file;
+        private final CharStream input;
+        private Tree.CompilationUnit compilationUnit;
+        private List<CommonToken> tokens;
+
+        private Entry(File file, CharStream input) {
+            this.file = file;
+            this.input = input;
+        }
+
+        /**
+         * The unit read back from the cache, or null if the
+         * source file must be parsed.
+         */
+        public Tree.CompilationUnit getCompilationUnit() {
+            return compilationUnit;
+        }
+
+        /**
+         * The tokens of the source file read back from the
+         * cache, or null if the source file must be parsed.
+         */
+        public List<CommonToken> getTokens() {
+            return tokens;
+        }
+
+        /**
+         * Stores the unit parsed from the source file, before
+         * anything else touches it. A unit with errors is not
+         * stored, and failing to store it is not an error.
+         *
+         * @param compilationUnit the unit, fresh from the
+         *        parser
+         * @param tokens the tokens of the source file
+         */
+        public void store(Tree.CompilationUnit compilationUnit,
+                List<? extends Token> tokens) {
+            if (!compilationUnit.getErrors().isEmpty()) {
+                return;
+            }
+            byte[] data = BinaryCodec.encode(compilationUnit,
+                    tokens, input);
+            if (data == null) {
+                return;
+            }
+            File dir = file.getParentFile();
+            File temp = null;
+            try {
+                dir.mkdirs();
+                temp = File.createTempFile(file.getName(), ".tmp", dir);
+                OutputStream out = new FileOutputStream(temp);
+                try {
+                    out.write(data);
+                }
+                finally {
+                    out.close();
+                }
+                if (temp.renameTo(file)) {
+                    temp = null;
+                }
+            }
+            catch (IOException e) {
+                //the cache is just an optimization
+            }
+            finally {
+                if (temp != null) {
+                    temp.delete();
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,570 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.compiler.typechecker.tree;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.antlr.runtime.CharStream;
+import org.antlr.runtime.CommonToken;
+import org.antlr.runtime.Token;
+import org.eclipse.ceylon.compiler.typechecker.analyzer.UsageWarning;
+
+/**
+ * Writes a compilation unit, as it comes out of the parser,
+ * along with the tokens of its source file, to a compact
+ * binary form, and reads it back. The members of each node
+ * are written by the {@link Codec} generated from the node
+ * descriptions, and the nodes of {@link CustomTree} are
+ * handled here.
+ *
+ * A node referenced twice is written once, and the tokens
+ * are written once, in a table, and then referred to by
+ * index, so that the tree read back shares its nodes and
+ * tokens exactly like the original one did. The text of a
+ * token is not written when it can be read back from the
+ * source.
+ *
+ * Only what the parser produces is supported: a tree with
+ * model objects or errors, except the usage warnings of the
+ * parser, is not written.
+ */
+public final class BinaryCodec extends Codec {
+
+    private static final int MAGIC = 0xCE7A5701;
+    private static final int FORMAT = 1;
+
+    /**
+     * Identifies the binary form, which must change whenever
+     * the node types change.
+     */
+    public static final int VERSION = FORMAT * 31 + SIGNATURE;
+
+    private static final Class<?>[] CUSTOM_TYPES = {
+        CustomTree.ExtendedTypeExpression.class,
+        CustomTree.IsCase.class,
+        CustomTree.MatchCase.class,
+        CustomTree.GuardedVariable.class
+    };
+
+    private static final Map<Class<?>,Integer> KINDS =
+            new HashMap<Class<?>,Integer>();
+    static {
+        for (int i=0; i<NODE_TYPES.length; i++) {
+            KINDS.put(NODE_TYPES[i], i);
+        }
+        for (int i=0; i<CUSTOM_TYPES.length; i++) {
+            KINDS.put(CUSTOM_TYPES[i], NODE_TYPES.length + i);
+        }
+    }
+
+    private static final int KIND_COUNT =
+            NODE_TYPES.length + CUSTOM_TYPES.length;
+
+    /**
+     * A node is written as 0 for null, as its kind plus 1 when
+     * it is written for the first time, or as its index plus
+     * this when it was already written.
+     */
+    private static final int WRITTEN = KIND_COUNT + 1;
+
+    //which tokens and text of a node are written
+    private static final int TOKEN = 1;
+    private static final int END_TOKEN = 2;
+    private static final int FIRST_CHILD_TOKEN = 4;
+    private static final int LAST_CHILD_TOKEN = 8;
+    private static final int TEXT = 16;
+    private static final int ERRORS = 32;
+
+    private final CharStream input;
+
+    /** the binary form, written or read up to position */
+    private byte[] bytes;
+    private int position;
+
+    private List<? extends Token> tokens;
+    private Map<Node,Integer> writtenNodes;
+    private Map<Token,Integer> writtenTokens;
+
+    private List<CommonToken> readTokens;
+    private int tokenCount;
+    private List<Node> readNodes;
+
+    /** the previous token of the table, for deltas */
+    private int previousStop = -1;
+    private int previousLine = 1;
+    /** the previous token a node referred to, for deltas */
+    private int previousReference = 0;
+
+    private BinaryCodec(CharStream input) {
+        this.input = input;
+    }
+
+    /**
+     * Writes the given compilation unit.
+     *
+     * @param cu the compilation unit, fresh from the parser
+     * @param tokens the tokens of the source file
+     * @param input the source file the tokens were lexed
+     *        from
+     *
+     * @return the binary form, or null if the tree holds
+     *         something which is not supported
+     */
+    public static byte[] encode(Tree.CompilationUnit cu,
+            List<? extends Token> tokens, CharStream input) {
+        BinaryCodec codec = new BinaryCodec(input);
+        codec.bytes = new byte[tokens.size()*16+64];
+        codec.tokens = tokens;
+        codec.writtenNodes = new IdentityHashMap<Node,Integer>();
+        codec.writtenTokens = new IdentityHashMap<Token,Integer>();
+        try {
+            codec.writeFixedInt(MAGIC);
+            codec.writeFixedInt(VERSION);
+            codec.writeTokenTable();
+            codec.writeNode(cu);
+        }
+        catch (UnsupportedTreeException e) {
+            return null;
+        }
+        catch (IOException e) {
+            //can't happen writing to memory
+            throw new RuntimeException(e);
+        }
+        return Arrays.copyOf(codec.bytes, codec.position);
+    }
+
+    /**
+     * Reads back a compilation unit written by
+     * {@link #encode}.
+     *
+     * @param data the binary form
+     * @param input the source file the unit was parsed from,
+     *        which the tokens read back refer to
+     * @param tokens a list to which the tokens of the source
+     *        file are added
+     *
+     * @throws IOException if the binary form is not one this
+     *         version of the codec wrote, or is corrupt
+     */
+    public static Tree.CompilationUnit decode(byte[] data,
+            CharStream input, List<? super CommonToken> tokens)
+                    throws IOException {
+        BinaryCodec codec = new BinaryCodec(input);
+        codec.bytes = data;
+        codec.readNodes = new ArrayList<Node>();
+        try {
+            if (codec.readFixedInt()!=MAGIC ||
+                    codec.readFixedInt()!=VERSION) {
+                throw new IOException("not a compilation unit written by this version");
+            }
+            codec.readTokenTable();
+            Node node = codec.readNode();
+            if (!(node instanceof Tree.CompilationUnit)) {
+                throw new IOException("not a compilation unit");
+            }
+            tokens.addAll(codec.readTokens.subList(0, codec.tokenCount));
+            return (Tree.CompilationUnit) node;
+        }
+        catch (RuntimeException e) {
+            throw new IOException("corrupt compilation unit", e);
+        }
+    }
+
+    /**
+     * Thrown when a tree holds something the binary form
+     * does not support.
+     */
+    private static final class UnsupportedTreeException
+            extends IOException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    // writing
+
+    private void writeTokenTable() throws IOException {
+        int size = tokens.size();
+        writeInt(size);
+        for (int i=0; i<size; i++) {
+            Token token = tokens.get(i);
+            if (token.getTokenIndex()!=i) {
+                throw new UnsupportedTreeException();
+            }
+            writeToken(token);
+            writtenTokens.put(token, i);
+        }
+    }
+
+    /**
+     * Writes a token, relative to the previous one, since
+     * most tokens start right after the previous token, on
+     * the same line.
+     */
+    private void writeToken(Token token) throws IOException {
+        if (token.getClass()!=CommonToken.class) {
+            //a MissingToken, for example
+            throw new UnsupportedTreeException();
+        }
+        CommonToken ct = (CommonToken) token;
+        int start = ct.getStartIndex();
+        int stop = ct.getStopIndex();
+        int line = ct.getLine();
+        boolean hasInput = ct.getInputStream()!=null;
+        writeSignedInt(ct.getType());
+        writeInt(ct.getChannel() << 1 | (hasInput ? 1 : 0));
+        writeSignedInt(start-previousStop-1);
+        writeSignedInt(stop-start);
+        writeSignedInt(line-previousLine);
+        writeSignedInt(ct.getCharPositionInLine());
+        writeSignedInt(ct.getTokenIndex()-writtenTokens.size());
+        previousStop = stop;
+        previousLine = line;
+        //the text is only written when the token would
+        //not read back the same text from the source
+        CommonToken copy = newToken(hasInput,
+                ct.getType(), ct.getChannel(), start, stop);
+        String text = ct.getText();
+        boolean sameText = text==null ?
+                copy.getText()==null :
+                text.equals(copy.getText());
+        writeString(sameText ? null : text);
+    }
+
+    /**
+     * Writes a reference to a token which is not null,
+     * relative to the previous reference, since the nodes
+     * mostly refer to tokens in order.
+     */
+    private void writeTokenReference(Token token)
+            throws IOException {
+        Integer index = writtenTokens.get(token);
+        if (index==null) {
+            //a token the parser made up, which
+            //is not in the token stream
+            index = writtenTokens.size();
+            writeSignedInt(index-previousReference);
+            writeToken(token);
+            writtenTokens.put(token, index);
+        }
+        else {
+            writeSignedInt(index-previousReference);
+        }
+        previousReference = index;
+    }
+
+    @Override
+    protected void writeNode(Node node) throws IOException {
+        if (node==null) {
+            writeInt(0);
+            return;
+        }
+        Integer written = writtenNodes.get(node);
+        if (written!=null) {
+            writeInt(WRITTEN+written);
+            return;
+        }
+        Integer kind = KINDS.get(node.getClass());
+        if (kind==null ||
+                node.getScope()!=null ||
+                node.getUnit()!=null) {
+            throw new UnsupportedTreeException();
+        }
+        writtenNodes.put(node, writtenNodes.size());
+        writeInt(kind+1);
+        Token token = node.getMainToken();
+        Token endToken = node.getMainEndToken();
+        Token firstChildToken = node.getOwnFirstChildToken();
+        Token lastChildToken = node.getOwnLastChildToken();
+        String text = node.getAssignedText();
+        List<Message> errors = node.getErrors();
+        int flags = 0;
+        if (token!=null) flags |= TOKEN;
+        if (endToken!=null) flags |= END_TOKEN;
+        if (firstChildToken!=null) flags |= FIRST_CHILD_TOKEN;
+        if (lastChildToken!=null) flags |= LAST_CHILD_TOKEN;
+        if (text!=null) flags |= TEXT;
+        if (!errors.isEmpty()) flags |= ERRORS;
+        writeInt(flags);
+        if (token!=null) writeTokenReference(token);
+        if (endToken!=null) writeTokenReference(endToken);
+        if (firstChildToken!=null) writeTokenReference(firstChildToken);
+        if (lastChildToken!=null) writeTokenReference(lastChildToken);
+        if (text!=null) writeString(text);
+        if (!errors.isEmpty()) {
+            writeInt(errors.size());
+            for (Message error: errors) {
+                if (error.getClass()!=UsageWarning.class) {
+                    throw new UnsupportedTreeException();
+                }
+                UsageWarning warning = (UsageWarning) error;
+                if (warning.getBackend()!=null ||
+                        warning.isSuppressed() ||
+                        warning.getTreeNode()!=node) {
+                    throw new UnsupportedTreeException();
+                }
+                writeString(warning.getMessage());
+                writeString(warning.getWarningName());
+            }
+        }
+        if (kind<NODE_TYPES.length) {
+            writeFields(kind, node);
+        }
+        else {
+            writeCustomFields(node);
+        }
+    }
+
+    private void writeCustomFields(Node node) throws IOException {
+        writeFields(KINDS.get(node.getClass().getSuperclass()), node);
+        if (node instanceof CustomTree.ExtendedTypeExpression) {
+            writeNode(((CustomTree.ExtendedTypeExpression) node).getType());
+        }
+        else if (node instanceof CustomTree.GuardedVariable) {
+            CustomTree.GuardedVariable gv =
+                    (CustomTree.GuardedVariable) node;
+            writeNode(gv.getConditionList());
+            writeBoolean(gv.isReversed());
+        }
+    }
+
+    @Override
+    protected void writeNodes(List<? extends Node> nodes)
+            throws IOException {
+        writeInt(nodes.size());
+        for (int i=0, l=nodes.size(); i<l; i++) {
+            writeNode(nodes.get(i));
+        }
+    }
+
+    @Override
+    protected void writeBoolean(boolean value) throws IOException {
+        writeInt(value ? 1 : 0);
+    }
+
+    @Override
+    protected void writeString(String value) throws IOException {
+        if (value==null) {
+            writeInt(0);
+        }
+        else {
+            int length = value.length();
+            writeInt(length+1);
+            for (int i=0; i<length; i++) {
+                writeInt(value.charAt(i));
+            }
+        }
+    }
+
+    private void writeSignedInt(int value) {
+        writeInt(value << 1 ^ value >> 31);
+    }
+
+    /**
+     * Writes an unsigned int in as few bytes as possible.
+     */
+    private void writeInt(int value) {
+        if (position+5>bytes.length) {
+            bytes = Arrays.copyOf(bytes, bytes.length*2);
+        }
+        while ((value & ~0x7F) != 0) {
+            bytes[position++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        bytes[position++] = (byte) value;
+    }
+
+    private void writeFixedInt(int value) {
+        if (position+4>bytes.length) {
+            bytes = Arrays.copyOf(bytes, bytes.length*2);
+        }
+        for (int shift=24; shift>=0; shift-=8) {
+            bytes[position++] = (byte) (value >>> shift);
+        }
+    }
+
+    // reading
+
+    private void readTokenTable() throws IOException {
+        tokenCount = readCount();
+        readTokens = new ArrayList<CommonToken>(tokenCount);
+        for (int i=0; i<tokenCount; i++) {
+            readTokens.add(readToken());
+        }
+    }
+
+    private CommonToken readToken() throws IOException {
+        int type = readSignedInt();
+        int channel = readInt();
+        int start = previousStop+1+readSignedInt();
+        int stop = start+readSignedInt();
+        int line = previousLine+readSignedInt();
+        int charPosition = readSignedInt();
+        int index = readTokens.size()+readSignedInt();
+        previousStop = stop;
+        previousLine = line;
+        CommonToken token = newToken((channel & 1) != 0,
+                type, channel >>> 1, start, stop);
+        token.setLine(line);
+        token.setCharPositionInLine(charPosition);
+        token.setTokenIndex(index);
+        String text = readString();
+        if (text!=null) {
+            token.setText(text);
+        }
+        return token;
+    }
+
+    private CommonToken readTokenReference() throws IOException {
+        int index = previousReference+readSignedInt();
+        if (index==readTokens.size()) {
+            readTokens.add(readToken());
+        }
+        previousReference = index;
+        return readTokens.get(index);
+    }
+
+    private CommonToken newToken(boolean hasInput,
+            int type, int channel, int start, int stop) {
+        return new CommonToken(hasInput ? input : null,
+                type, channel, start, stop);
+    }
+
+    @Override
+    protected Node readNode() throws IOException {
+        int reference = readInt();
+        if (reference==0) {
+            return null;
+        }
+        else if (reference>=WRITTEN) {
+            return readNodes.get(reference-WRITTEN);
+        }
+        int kind = reference-1;
+        int flags = readInt();
+        Token token = (flags & TOKEN)==0 ?
+                null : readTokenReference();
+        Node node;
+        if (kind<NODE_TYPES.length) {
+            node = newNode(kind, token);
+        }
+        else {
+            node = newCustomNode(kind-NODE_TYPES.length, token);
+        }
+        readNodes.add(node);
+        Token endToken = (flags & END_TOKEN)==0 ?
+                null : readTokenReference();
+        Token firstChildToken = (flags & FIRST_CHILD_TOKEN)==0 ?
+                null : readTokenReference();
+        Token lastChildToken = (flags & LAST_CHILD_TOKEN)==0 ?
+                null : readTokenReference();
+        if ((flags & TEXT)!=0) {
+            node.setText(readString());
+        }
+        if ((flags & ERRORS)!=0) {
+            for (int i=0, l=readCount(); i<l; i++) {
+                String message = readString();
+                String name = readString();
+                node.addError(new UsageWarning(node, message, name));
+            }
+        }
+        if (kind<NODE_TYPES.length) {
+            readFields(kind, node);
+        }
+        else {
+            readCustomFields(node);
+        }
+        node.restoreTokens(endToken,
+                firstChildToken, lastChildToken);
+        return node;
+    }
+
+    private static Node newCustomNode(int custom, Token token) {
+        switch (custom) {
+        case 0: return new CustomTree.ExtendedTypeExpression(token);
+        case 1: return new CustomTree.IsCase(token);
+        case 2: return new CustomTree.MatchCase(token);
+        case 3: return new CustomTree.GuardedVariable(token);
+        default: throw new IllegalArgumentException("unknown node kind: " + custom);
+        }
+    }
+
+    private void readCustomFields(Node node) throws IOException {
+        readFields(KINDS.get(node.getClass().getSuperclass()), node);
+        if (node instanceof CustomTree.ExtendedTypeExpression) {
+            ((CustomTree.ExtendedTypeExpression) node)
+                    .setType((Tree.SimpleType) readNode());
+        }
+        else if (node instanceof CustomTree.GuardedVariable) {
+            CustomTree.GuardedVariable gv =
+                    (CustomTree.GuardedVariable) node;
+            gv.setConditionList((Tree.ConditionList) readNode());
+            gv.setReversed(readBoolean());
+        }
+    }
+
+    @Override
+    protected int readCount() throws IOException {
+        return readInt();
+    }
+
+    @Override
+    protected boolean readBoolean() throws IOException {
+        return readInt()!=0;
+    }
+
+    @Override
+    protected String readString() throws IOException {
+        int length = readInt()-1;
+        if (length<0) {
+            return null;
+        }
+        char[] chars = new char[length];
+        for (int i=0; i<length; i++) {
+            chars[i] = (char) readInt();
+        }
+        return new String(chars);
+    }
+
+    private int readSignedInt() throws IOException {
+        int value = readInt();
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    private int readInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (position>=bytes.length) {
+                throw new IOException("unexpected end of compilation unit");
+            }
+            int b = bytes[position++];
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("malformed compilation unit");
+    }
+
+    private int readFixedInt() throws IOException {
+        int value = 0;
+        for (int i=0; i<4; i++) {
+            if (position>=bytes.length) {
+                throw new IOException("unexpected end of compilation unit");
+            }
+            value = value << 8 | bytes[position++] & 0xFF;
+        }
+        return value;
+    }
+
+}
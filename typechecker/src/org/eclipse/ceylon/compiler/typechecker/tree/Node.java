@@ -247,7 +247,35 @@ public abstract class Node {
             this.endToken = endToken;
         }
     }
-    
+
+    /**
+     * The text assigned by the parser, as opposed to the
+     * text of the tokens, for {@link BinaryCodec}.
+     */
+    String getAssignedText() {
+        return text;
+    }
+
+    Token getOwnFirstChildToken() {
+        return firstChildToken;
+    }
+
+    Token getOwnLastChildToken() {
+        return lastChildToken;
+    }
+
+    /**
+     * Restores the tokens of a node read back by
+     * {@link BinaryCodec}, exactly as the parser left
+     * them, whatever its children connected.
+     */
+    void restoreTokens(Token endToken,
+            Token firstChildToken, Token lastChildToken) {
+        this.endToken = endToken;
+        this.firstChildToken = firstChildToken;
+        this.lastChildToken = lastChildToken;
+    }
+
     /**
      * The compilation errors belonging to this node.
      */
@@ -17,6 +17,8 @@ import java.io.PrintStream;
 
 import org.antlr.runtime.ANTLRInputStream;
 import org.antlr.runtime.CommonTokenStream;
+import org.eclipse.ceylon.compiler.typechecker.treegen.CodecgenLexer;
+import org.eclipse.ceylon.compiler.typechecker.treegen.CodecgenParser;
 import org.eclipse.ceylon.compiler.typechecker.treegen.TreegenLexer;
 import org.eclipse.ceylon.compiler.typechecker.treegen.TreegenParser;
 import org.eclipse.ceylon.compiler.typechecker.treegen.ValidatorgenLexer;
@@ -40,6 +42,7 @@ public class Generate {
         visitor(file);
         visitorAdaptor(file);
         validator(file);
+        codec(file);
     }
     
     private static void tree(File file) throws Exception {
@@ -114,4 +117,16 @@ public class Generate {
         parser.nodeList();
     }
     
+    private static void codec(File file) throws Exception {
+        InputStream is = new FileInputStream( file );
+        ANTLRInputStream input = new ANTLRInputStream(is);
+        CodecgenLexer lexer = new CodecgenLexer(input);
+        CommonTokenStream tokens = new CommonTokenStream(lexer);
+        CodecgenParser parser = new CodecgenParser(tokens);
+        File out = new File( GENERATED_PACKAGE_DIR + "Codec.java" );
+        out.createNewFile();
+        Util.out=new PrintStream(out);
+        parser.nodeList();
+    }
+    
 }